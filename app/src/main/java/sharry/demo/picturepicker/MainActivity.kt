@@ -1,18 +1,28 @@
 package sharry.demo.picturepicker
 
+import android.content.Context
+import android.graphics.drawable.Drawable
 import android.os.Bundle
 import android.os.Environment
 import android.support.v4.content.ContextCompat
 import android.support.v7.app.AppCompatActivity
 import android.text.TextUtils
+import android.widget.ImageView
 import android.widget.Toast
 import com.bumptech.glide.Glide
+import com.bumptech.glide.load.DataSource
 import com.bumptech.glide.load.engine.DiskCacheStrategy
+import com.bumptech.glide.load.engine.GlideException
+import com.bumptech.glide.request.RequestListener
 import com.bumptech.glide.request.RequestOptions
+import com.bumptech.glide.request.target.Target
 import com.sharry.picturepicker.camera.CameraConfig
 import com.sharry.picturepicker.crop.CropConfig
 import com.sharry.picturepicker.picker.PickerConfig
 import com.sharry.picturepicker.picker.PicturePickerManager
+import com.sharry.picturepicker.support.loader.IPictureLoader
+import com.sharry.picturepicker.support.loader.IPicturePreloader
+import com.sharry.picturepicker.support.loader.IPictureRecycler
 import com.sharry.picturepicker.widget.toolbar.SToolbar
 import kotlinx.android.synthetic.main.app_activity_main.*
 import java.io.File
@@ -102,15 +112,7 @@ class MainActivity : AppCompatActivity() {
                                     .build()
                     )
                     // 图片加载框架注入
-                    .setPictureLoader { context, uri, imageView ->
-                        val options = RequestOptions()
-                                .override(imageView.width, imageView.height)
-                                .diskCacheStrategy(DiskCacheStrategy.AUTOMATIC)
-                        Glide.with(context)
-                                .load(uri)
-                                .apply(options)
-                                .into(imageView)
-                    }
+                    .setPictureLoader(GlidePictureLoader())
                     .start {
                         it.forEach { Toast.makeText(this, it, Toast.LENGTH_SHORT).show() }
                     }
@@ -118,3 +120,71 @@ class MainActivity : AppCompatActivity() {
     }
 
 }
+
+/**
+ * 基于 Glide 的图片加载器, 实现 IPicturePreloader 后图片选择器会在滑动时预加载缩略图,
+ * 实现 IPictureRecycler 后 Item 被回收时会释放图片, 交由 Glide 的 BitmapPool 复用
+ */
+private class GlidePictureLoader : IPictureLoader, IPicturePreloader, IPictureRecycler {
+
+    private val preloadTargets = HashMap<String, Target<Drawable>>()
+
+    override fun load(context: Context, uri: String, imageView: ImageView) {
+        Glide.with(context)
+                .load(uri)
+                .apply(createOptions(imageView.width, imageView.height))
+                .into(imageView)
+    }
+
+    override fun preload(context: Context, uri: String, width: Int, height: Int) {
+        // 与 load 使用相同的尺寸和配置, 绑定时才能命中内存缓存
+        val target = Glide.with(context)
+                .load(uri)
+                .apply(createOptions(width, height))
+                .listener(PreloadListener(uri))
+                .preload(width, height)
+        // 命中内存缓存时请求在 preload 返回前就已经结束, 无需记录
+        val request = target.request
+        if (request != null && !request.isComplete && !request.isFailed) {
+            preloadTargets[uri] = target
+        }
+    }
+
+    override fun cancelPreload(context: Context, uri: String) {
+        preloadTargets.remove(uri)?.let { Glide.with(context).clear(it) }
+    }
+
+    override fun recycle(context: Context, imageView: ImageView) {
+        Glide.with(context).clear(imageView)
+    }
+
+    private fun createOptions(width: Int, height: Int) = RequestOptions()
+            .override(width, height)
+            .diskCacheStrategy(DiskCacheStrategy.AUTOMATIC)
+
+    /**
+     * 预加载结束后移除记录, 避免 preloadTargets 随滑动无限增长
+     */
+    private inner class PreloadListener(private val uri: String) : RequestListener<Drawable> {
+
+        override fun onLoadFailed(e: GlideException?, model: Any?, target: Target<Drawable>?,
+                                  isFirstResource: Boolean): Boolean {
+            onPreloadFinished(target)
+            return false
+        }
+
+        override fun onResourceReady(resource: Drawable?, model: Any?, target: Target<Drawable>?,
+                                     dataSource: DataSource?, isFirstResource: Boolean): Boolean {
+            onPreloadFinished(target)
+            return false
+        }
+
+        private fun onPreloadFinished(target: Target<Drawable>?) {
+            // 同一张图片可能已经重新发起了预加载, 只移除结束的这一次
+            if (preloadTargets[uri] === target) {
+                preloadTargets.remove(uri)
+            }
+        }
+    }
+
+}
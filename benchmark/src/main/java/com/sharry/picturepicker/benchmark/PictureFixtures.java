@@ -0,0 +1,120 @@
+package com.sharry.picturepicker.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+/**
+ * 生成 benchmark 使用的模拟相册数据, 使用固定的随机种子保证每次运行的数据一致
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/25 10:20
+ */
+public final class PictureFixtures {
+
+    private static final String STORAGE_ROOT = "/storage/emulated/0";
+    private static final String[] FOLDER_PREFIXES = {
+            "DCIM/Camera", "Pictures/Screenshots", "Pictures/WeiXin", "Download", "tencent/QQ_Images",
+            "DCIM/Restored", "Pictures/Instagram", "Movies/Thumbnails"
+    };
+
+    private PictureFixtures() {
+    }
+
+    /**
+     * 生成图片路径, 按照 folderCount 个文件夹分布, 其中约 1% 的图片直接位于根目录
+     */
+    public static String[] createPicturePaths(int count, int folderCount) {
+        Random random = new Random(20190325L);
+        String[] folders = createFolderPaths(folderCount);
+        String[] paths = new String[count];
+        for (int i = 0; i < count; i++) {
+            String folder = random.nextInt(100) == 0 ? STORAGE_ROOT : folders[random.nextInt(folders.length)];
+            paths[i] = folder + "/IMG_2019" + (1000000 + random.nextInt(9000000)) + "_" + i + ".jpg";
+        }
+        return paths;
+    }
+
+    /**
+     * 生成与 MediaStore 一致的 BUCKET_ID: 文件夹路径转为小写后的哈希值
+     */
+    public static int[] createBucketIds(String[] picturePaths) {
+        int[] bucketIds = new int[picturePaths.length];
+        for (int i = 0; i < picturePaths.length; i++) {
+            String picturePath = picturePaths[i];
+            bucketIds[i] = picturePath.substring(0, picturePath.lastIndexOf('/')).toLowerCase().hashCode();
+        }
+        return bucketIds;
+    }
+
+    /**
+     * 生成文件夹路径
+     */
+    public static String[] createFolderPaths(int folderCount) {
+        String[] folders = new String[folderCount];
+        for (int i = 0; i < folderCount; i++) {
+            String prefix = FOLDER_PREFIXES[i % FOLDER_PREFIXES.length];
+            folders[i] = STORAGE_ROOT + "/" + (i < FOLDER_PREFIXES.length ? prefix : prefix + "_" + i);
+        }
+        return folders;
+    }
+
+    /**
+     * 生成图片的宽高, 覆盖常见的手机拍摄, 截图以及长图的比例
+     *
+     * @return 依次排列的 [width, height]
+     */
+    public static int[] createPictureSizes(int count) {
+        Random random = new Random(20190325L);
+        int[][] presets = {
+                {4032, 3024}, {3024, 4032}, {1080, 2340}, {1440, 3120}, {1920, 1080},
+                {720, 1280}, {1080, 12000}, {6000, 4000}, {640, 480}, {12000, 9000}
+        };
+        int[] sizes = new int[count * 2];
+        for (int i = 0; i < count; i++) {
+            int[] preset = presets[random.nextInt(presets.length)];
+            sizes[i * 2] = preset[0] + random.nextInt(3);
+            sizes[i * 2 + 1] = preset[1] + random.nextInt(3);
+        }
+        return sizes;
+    }
+
+    /**
+     * 生成 JPEG 的文件头: SOI, 指定长度的 APP1(EXIF) 段, 按照 libjpeg 公式缩放的亮度量化表, 以及 SOS
+     *
+     * @param quality   量化表对应的质量
+     * @param exifBytes APP1 段的长度, 相机拍摄的照片通常包含几十 KB 的 EXIF 与缩略图
+     */
+    public static byte[] createJpegHeader(int quality, int exifBytes) {
+        int[] luminance = {
+                16, 11, 10, 16, 24, 40, 51, 61, 12, 12, 14, 19, 26, 58, 60, 55,
+                14, 13, 16, 24, 40, 57, 69, 56, 14, 17, 22, 29, 51, 87, 80, 62,
+                18, 22, 37, 56, 68, 109, 103, 77, 24, 35, 55, 64, 81, 104, 113, 92,
+                49, 64, 78, 87, 103, 121, 120, 101, 72, 92, 95, 98, 112, 100, 103, 99
+        };
+        int scale = quality < 50 ? 5000 / quality : 200 - quality * 2;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write(0xD8);
+        // APP1
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write((exifBytes + 2) >> 8);
+        out.write((exifBytes + 2) & 0xFF);
+        out.write(new byte[exifBytes], 0, exifBytes);
+        // DQT, 只包含 id 为 0 的 8 位亮度量化表
+        out.write(0xFF);
+        out.write(0xDB);
+        out.write(0);
+        out.write(2 + 1 + 64);
+        out.write(0);
+        for (int value : luminance) {
+            out.write(Math.max(1, Math.min(255, (value * scale + 50) / 100)));
+        }
+        // SOS
+        out.write(0xFF);
+        out.write(0xDA);
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.sharry.picturepicker.crop;
+
+import com.sharry.picturepicker.benchmark.PictureFixtures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 规划一次裁剪的开销: 映射选中的区域, 计算采样率, 以及每一条带的解码范围, 变换矩阵与裁剪范围
+ * <p>
+ * 同时校验内存的峰值只与输出的尺寸有关, 不满足时抛出异常, benchmark 会失败.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 14:50
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CropGeometryBenchmark {
+
+    private static final int SIZE_COUNT = 1000;
+    private static final int OUTPUT_SIZE = 500;
+    private static final int[] ORIENTATIONS = {0, 90, 180, 270};
+
+    /**
+     * 条带与输出的图片同时存在, 加上条带之间重叠的行, 峰值不超过输出像素数的 3 倍
+     */
+    private static final long MAX_PEAK_PIXELS = 3L * OUTPUT_SIZE * OUTPUT_SIZE;
+
+    private int[] sizes;
+    private final int[] rect = new int[4];
+    private final float[] values = new float[9];
+    private final float[] clip = new float[4];
+
+    @Setup
+    public void setup() {
+        sizes = PictureFixtures.createPictureSizes(SIZE_COUNT);
+        for (int i = 0; i < SIZE_COUNT; i++) {
+            CropGeometry geometry = createGeometry(i);
+            if (geometry.estimatePeakPixels() > MAX_PEAK_PIXELS) {
+                throw new IllegalStateException("Peak pixels " + geometry.estimatePeakPixels()
+                        + " exceeds the output bound for " + sizes[i * 2] + "x" + sizes[i * 2 + 1]);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE_COUNT)
+    public void planCrop(Blackhole blackhole) {
+        for (int i = 0; i < SIZE_COUNT; i++) {
+            CropGeometry geometry = createGeometry(i);
+            int sampleSize = geometry.getSampleSize();
+            for (int strip = 0; strip < geometry.getStripCount(); strip++) {
+                geometry.getStripDecodeRect(strip, rect);
+                int bitmapWidth = (rect[2] - rect[0] + sampleSize - 1) / sampleSize;
+                int bitmapHeight = (rect[3] - rect[1] + sampleSize - 1) / sampleSize;
+                geometry.getStripTransform(strip, bitmapWidth, bitmapHeight, values);
+                geometry.getStripClip(strip, clip);
+                blackhole.consume(values);
+                blackhole.consume(clip);
+            }
+        }
+    }
+
+    /**
+     * 在图片中心选中一个 1:1 的区域, 边长为短边的 80%
+     */
+    private CropGeometry createGeometry(int index) {
+        int width = sizes[index * 2];
+        int height = sizes[index * 2 + 1];
+        int orientation = ORIENTATIONS[index % ORIENTATIONS.length];
+        boolean isRotated = orientation % 180 != 0;
+        float orientedWidth = isRotated ? height : width;
+        float orientedHeight = isRotated ? width : height;
+        float side = Math.min(orientedWidth, orientedHeight) * 0.8f;
+        float horizontal = side / orientedWidth / 2;
+        float vertical = side / orientedHeight / 2;
+        return CropGeometry.fromOrientedRect(width, height, orientation,
+                0.5f - horizontal, 0.5f - vertical, 0.5f + horizontal, 0.5f + vertical,
+                OUTPUT_SIZE, OUTPUT_SIZE);
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.sharry.picturepicker.picker;
+
+import com.sharry.picturepicker.benchmark.PictureFixtures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 遍历 MediaStore 时按照文件夹分组的开销, 每次调用处理一页数据, 结果按照单张图片统计
+ * <p>
+ * legacy 开头的 benchmark 为之前基于 java.io.File 的实现, 用于对比内存分配.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.1
+ * @since 2019/3/25 10:36
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PictureGroupingBenchmark {
+
+    private static final int PAGE_SIZE = 500;
+
+    @Param({"8", "64"})
+    public int folderCount;
+
+    private String[] picturePaths;
+    private int[] bucketIds;
+    private String[] folderPaths;
+    private PictureGrouping.FolderPathResolver resolver;
+
+    @Setup
+    public void setup() {
+        picturePaths = PictureFixtures.createPicturePaths(PAGE_SIZE, folderCount);
+        bucketIds = PictureFixtures.createBucketIds(picturePaths);
+        // 与遍历线程一致, 解析器在整个遍历过程中复用
+        resolver = new PictureGrouping.FolderPathResolver();
+        folderPaths = new String[PAGE_SIZE];
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            folderPaths[i] = resolver.resolve(bucketIds[i], picturePaths[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public void legacyGetParentFolderPath(Blackhole blackhole) {
+        for (String picturePath : picturePaths) {
+            blackhole.consume(legacyGetParentFolderPath(picturePath));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public void resolveFolderPathWithBucketId(Blackhole blackhole) {
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            blackhole.consume(resolver.resolve(bucketIds[i], picturePaths[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public void resolveFolderPathWithoutBucketId(Blackhole blackhole) {
+        for (String picturePath : picturePaths) {
+            blackhole.consume(resolver.resolve(PictureGrouping.FolderPathResolver.NO_BUCKET_ID, picturePath));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public void getLastFileName(Blackhole blackhole) {
+        for (String folderPath : folderPaths) {
+            blackhole.consume(PictureGrouping.getLastFileName(folderPath, "Root"));
+        }
+    }
+
+    /**
+     * 之前的流程: 每一行都通过 File 解析文件夹, 分组时重新计算子串的哈希值
+     */
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public PicturePage legacyGroupPage() {
+        PicturePage page = new PicturePage(0);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            String picturePath = picturePaths[i];
+            PictureItem item = new PictureItem(i, picturePath, legacyGetParentFolderPath(picturePath),
+                    4032, 3024, 0, 1024 * 1024, i, i);
+            PictureGrouping.appendToPage(page, item, "Root");
+        }
+        return page;
+    }
+
+    /**
+     * 与 CursorSystemPictureRunnable 中读取一页数据的流程一致: 解析文件夹, 创建 PictureItem, 按文件夹分组
+     */
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public PicturePage groupPage() {
+        PicturePage page = new PicturePage(0);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            String picturePath = picturePaths[i];
+            PictureItem item = new PictureItem(i, picturePath, resolver.resolve(bucketIds[i], picturePath),
+                    4032, 3024, 0, 1024 * 1024, i, i);
+            PictureGrouping.appendToPage(page, item, "Root");
+        }
+        return page;
+    }
+
+    private static String legacyGetParentFolderPath(String filePath) {
+        return new File(filePath).getParentFile().getAbsolutePath();
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.sharry.picturepicker.picker;
+
+import com.sharry.picturepicker.benchmark.PictureFixtures;
+import com.sharry.picturepicker.support.collection.OrderedPathSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 相册数据的合并与传递开销
+ * <p>
+ * mergeAlbum: 将分页数据写入 PictureTable 和各个文件夹, 与 PicturePickerModel.mergePicturePage 一致.
+ * createWatcherPayload: 打开 PictureWatcher 时拷贝展示集合与选中集合, 即写入 WatcherConfig Parcel 的数据.
+ * Parcel 本身由 native 实现, 无法在 JVM 上测量.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/25 11:18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PictureTableBenchmark {
+
+    private static final int PAGE_SIZE = 500;
+
+    @Param({"2000", "20000"})
+    public int pictureCount;
+
+    private List<PicturePage> pages;
+    private PictureFolder allFolder;
+    private OrderedPathSet pickedSet;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] picturePaths = PictureFixtures.createPicturePaths(pictureCount, 32);
+        PictureGrouping.FolderPathResolver resolver = new PictureGrouping.FolderPathResolver();
+        pages = new ArrayList<>();
+        PicturePage page = null;
+        for (int i = 0; i < pictureCount; i++) {
+            if (i % PAGE_SIZE == 0) {
+                page = new PicturePage(pages.size());
+                pages.add(page);
+            }
+            String picturePath = picturePaths[i];
+            PictureItem item = new PictureItem(i, picturePath, resolver.resolve(PictureGrouping.FolderPathResolver.NO_BUCKET_ID, picturePath),
+                    4032, 3024, 0, 1024 * 1024, pictureCount - i, pictureCount - i);
+            PictureGrouping.appendToPage(page, item, "Root");
+        }
+        allFolder = mergeAlbum().get(0);
+        pickedSet = new OrderedPathSet(Arrays.asList(picturePaths).subList(0, 9));
+    }
+
+    @Benchmark
+    public List<PictureFolder> mergeAlbum() {
+        PictureTable table = new PictureTable();
+        ArrayList<PictureFolder> folders = new ArrayList<>();
+        HashMap<String, PictureFolder> folderCaches = new HashMap<>();
+        PictureFolder allFolder = new PictureFolder(null, "All", table);
+        folders.add(allFolder);
+        for (PicturePage page : pages) {
+            int offset = table.size();
+            int count = page.pictureItems.size();
+            int[] allRows = new int[count];
+            for (int i = 0; i < count; i++) {
+                table.add(page.pictureItems.get(i));
+                allRows[i] = i;
+            }
+            allFolder.addRows(allRows, count, offset);
+            for (PicturePage.Folder pageFolder : page.folders.values()) {
+                PictureFolder cachedFolder = folderCaches.get(pageFolder.folderPath);
+                if (cachedFolder == null) {
+                    cachedFolder = new PictureFolder(pageFolder.folderPath, pageFolder.folderName, table);
+                    folderCaches.put(pageFolder.folderPath, cachedFolder);
+                    folders.add(cachedFolder);
+                }
+                cachedFolder.addRows(pageFolder.rows, pageFolder.size, offset);
+            }
+        }
+        return folders;
+    }
+
+    @Benchmark
+    public Object[] createWatcherPayload() {
+        return new Object[]{new ArrayList<>(allFolder.getPicturePaths()), pickedSet.toArrayList()};
+    }
+
+}
@@ -0,0 +1,200 @@
+package com.sharry.picturepicker.picker;
+
+import com.sharry.picturepicker.benchmark.PictureFixtures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 相册数据结构的内存占用: PictureTable 与 int 行号的文件夹, 对比旧版本的路径集合
+ * <p>
+ * legacyPathLists: 旧版本的结构, 每个文件夹一个 ArrayList&lt;String&gt;, <所有图片> 同样保存一份,
+ * 切换文件夹时再将选中的文件夹复制到展示集合中.
+ * pictureTable: 每张图片在表中保存一次, 包含尺寸, 方向等信息, 文件夹只保存行号, 展示集合是文件夹的视图.
+ * <p>
+ * 两者引用的路径字符串在遍历时已经创建, 不计入统计. 分配的字节数见 GC profiler 的 gc.alloc.rate.norm,
+ * 包含扩容产生的垃圾与遍历时创建的 PictureItem. 常驻的字节数在每轮结束时通过 GC 后的堆占用计算并输出.
+ * <p>
+ * 表中每一行额外保存了 28 字节的尺寸, 方向与大小, 旧版本不保存这些信息, 需要在预览, 压缩时重新读取文件头与 EXIF,
+ * 因此表的常驻字节数高于旧版本的路径集合. 旧版本每次切换文件夹还会复制一份展示集合, 此处只计入一次.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 18:50
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PictureTableMemoryBenchmark {
+
+    private static final int FOLDER_COUNT = 32;
+    private static final int RETAINED_SAMPLES = 5;
+
+    private static volatile Object sRetained;     // 测量常驻字节数时保持引用
+
+    @Param({"20000", "100000"})
+    public int pictureCount;
+
+    private String[] picturePaths;
+    private String[] folderPaths;
+    private int[] pictureSizes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        picturePaths = PictureFixtures.createPicturePaths(pictureCount, FOLDER_COUNT);
+        pictureSizes = PictureFixtures.createPictureSizes(pictureCount);
+        PictureGrouping.FolderPathResolver resolver = new PictureGrouping.FolderPathResolver();
+        folderPaths = new String[pictureCount];
+        for (int i = 0; i < pictureCount; i++) {
+            folderPaths[i] = resolver.resolve(PictureGrouping.FolderPathResolver.NO_BUCKET_ID, picturePaths[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void reportRetainedBytes() {
+        long legacyBytes = measureRetainedBytes(new Runnable() {
+            @Override
+            public void run() {
+                sRetained = legacyPathLists();
+            }
+        });
+        long tableBytes = measureRetainedBytes(new Runnable() {
+            @Override
+            public void run() {
+                sRetained = pictureTable();
+            }
+        });
+        System.out.println();
+        System.out.println("# Retained bytes for " + pictureCount + " pictures: legacyPathLists = " + legacyBytes
+                + " (" + legacyBytes / pictureCount + " B/picture), pictureTable = " + tableBytes
+                + " (" + tableBytes / pictureCount + " B/picture)");
+    }
+
+    @Benchmark
+    public Object legacyPathLists() {
+        ArrayList<LegacyFolder> folders = new ArrayList<>();
+        HashMap<String, LegacyFolder> folderCaches = new HashMap<>();
+        LegacyFolder allFolder = new LegacyFolder("All");
+        folders.add(allFolder);
+        for (int i = 0; i < pictureCount; i++) {
+            String picturePath = picturePaths[i];
+            allFolder.addPath(picturePath);
+            LegacyFolder folder = folderCaches.get(folderPaths[i]);
+            if (folder == null) {
+                folder = new LegacyFolder(folderPaths[i]);
+                folderCaches.put(folderPaths[i], folder);
+                folders.add(folder);
+            }
+            folder.addPath(picturePath);
+        }
+        // 展示 <所有图片> 时复制一份
+        ArrayList<String> displayPaths = new ArrayList<>(allFolder.picturePaths);
+        return new Object[]{folders, displayPaths};
+    }
+
+    @Benchmark
+    public Object pictureTable() {
+        PictureTable table = new PictureTable();
+        ArrayList<PictureFolder> folders = new ArrayList<>();
+        HashMap<String, PictureFolder> folderCaches = new HashMap<>();
+        PictureFolder allFolder = new PictureFolder(null, "All", table);
+        folders.add(allFolder);
+        int[] pageRows = {0};
+        for (int i = 0; i < pictureCount; i++) {
+            // 与遍历时一致, 每一行先读取为 PictureItem
+            PictureItem item = new PictureItem(i, picturePaths[i], folderPaths[i],
+                    pictureSizes[i * 2], pictureSizes[i * 2 + 1], 0, 1024 * 1024, i, i);
+            int row = table.add(item);
+            allFolder.addRows(pageRows, 1, row);
+            PictureFolder folder = folderCaches.get(folderPaths[i]);
+            if (folder == null) {
+                folder = new PictureFolder(folderPaths[i], folderPaths[i], table);
+                folderCaches.put(folderPaths[i], folder);
+                folders.add(folder);
+            }
+            folder.addRows(pageRows, 1, row);
+        }
+        // 展示集合是文件夹的视图, 不复制
+        List<String> displayPaths = allFolder.getPicturePaths();
+        return new Object[]{folders, displayPaths};
+    }
+
+    /**
+     * 构建一次数据结构并保持引用, 以 GC 后堆占用的增量作为常驻的字节数, 重复多次取中位数
+     */
+    private static long measureRetainedBytes(Runnable build) {
+        long[] samples = new long[RETAINED_SAMPLES];
+        for (int i = 0; i < samples.length; i++) {
+            sRetained = null;
+            long before = usedHeapAfterGc();
+            build.run();
+            long after = usedHeapAfterGc();
+            sRetained = null;
+            samples[i] = after - before;
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2];
+    }
+
+    /**
+     * 反复 GC 直到连续两次的堆占用相同
+     */
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        long used = -1;
+        for (int i = 0; i < 20; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long current = memoryBean.getHeapMemoryUsage().getUsed();
+            if (current == used) {
+                break;
+            }
+            used = current;
+        }
+        return used;
+    }
+
+    /**
+     * 旧版本的文件夹, 保存路径的集合
+     */
+    private static class LegacyFolder {
+
+        final String folderName;
+        final List<String> picturePaths = new ArrayList<>();
+
+        LegacyFolder(String folderName) {
+            this.folderName = folderName;
+        }
+
+        void addPath(String imageUri) {
+            picturePaths.add(imageUri);
+        }
+    }
+
+}
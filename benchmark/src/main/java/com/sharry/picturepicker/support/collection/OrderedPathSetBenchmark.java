@@ -0,0 +1,98 @@
+package com.sharry.picturepicker.support.collection;
+
+import com.sharry.picturepicker.benchmark.PictureFixtures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 选中集合的操作开销, 与之前使用的 ArrayList 做对比
+ * <p>
+ * bind: 列表绑定时查询每个条目的选中序号; toggle: 取消选中第一张图片, 查询最后一张的序号, 再重新选中.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/25 10:52
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderedPathSetBenchmark {
+
+    private static final int BIND_COUNT = 1000;
+
+    @Param({"9", "99", "999"})
+    public int pickedCount;
+
+    private String[] displayPaths;
+    private OrderedPathSet pickedSet;
+    private ArrayList<String> pickedList;
+
+    @Setup
+    public void setup() {
+        displayPaths = PictureFixtures.createPicturePaths(BIND_COUNT, 16);
+        // 从展示集合中均匀地选中 pickedCount 张图片, 超出部分选中展示集合之外的图片
+        String[] extraPaths = PictureFixtures.createPicturePaths(BIND_COUNT + pickedCount, 16);
+        String[] picked = new String[pickedCount];
+        for (int i = 0; i < pickedCount; i++) {
+            picked[i] = i < BIND_COUNT / 2 ? displayPaths[i * 2] : extraPaths[BIND_COUNT + i];
+        }
+        pickedSet = new OrderedPathSet(Arrays.asList(picked));
+        pickedList = new ArrayList<>(Arrays.asList(picked));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BIND_COUNT)
+    public void bindOrderedPathSet(Blackhole blackhole) {
+        for (String path : displayPaths) {
+            blackhole.consume(pickedSet.indexOf(path));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BIND_COUNT)
+    public void bindArrayList(Blackhole blackhole) {
+        for (String path : displayPaths) {
+            blackhole.consume(pickedList.indexOf(path));
+        }
+    }
+
+    @Benchmark
+    public int toggleOrderedPathSet() {
+        String first = pickedSet.get(0);
+        pickedSet.remove(first);
+        int ordinal = pickedSet.indexOf(pickedSet.get(pickedSet.size() - 1));
+        pickedSet.add(first);
+        return ordinal;
+    }
+
+    @Benchmark
+    public int toggleArrayList() {
+        String first = pickedList.get(0);
+        pickedList.remove(first);
+        int ordinal = pickedList.indexOf(pickedList.get(pickedList.size() - 1));
+        if (pickedList.indexOf(first) == -1) {
+            pickedList.add(first);
+        }
+        return ordinal;
+    }
+
+}
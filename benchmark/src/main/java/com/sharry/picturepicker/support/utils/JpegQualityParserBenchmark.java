@@ -0,0 +1,54 @@
+package com.sharry.picturepicker.support.utils;
+
+import com.sharry.picturepicker.benchmark.PictureFixtures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 从 JPEG 文件头估算质量的开销, 决定压缩时能否跳过解码直接复制文件, 需要远小于一次解码
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/29 17:40
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JpegQualityParserBenchmark {
+
+    /**
+     * APP1 段的长度, 0 表示没有 EXIF, 64KB 为 EXIF 段的上限
+     */
+    @Param({"0", "65000"})
+    public int exifBytes;
+
+    private byte[] header;
+
+    @Setup
+    public void setup() {
+        header = PictureFixtures.createJpegHeader(85, exifBytes);
+    }
+
+    @Benchmark
+    public int estimateQuality() throws IOException {
+        return JpegQualityParser.estimateQuality(new ByteArrayInputStream(header));
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.sharry.picturepicker.support.utils;
+
+import com.sharry.picturepicker.benchmark.PictureFixtures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 采样率计算的开销, 覆盖常见的拍摄, 截图以及长图的尺寸, 以及按照内存预算计算采样率的开销
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.1
+ * @since 2019/3/25 11:05
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PictureUtilBenchmark {
+
+    private static final int SIZE_COUNT = 1000;
+    private static final int MAX_DIMENSION = 1920;
+    private static final long MEMORY_BUDGET = 16 * 1024 * 1024;
+
+    private int[] sizes;
+
+    @Setup
+    public void setup() {
+        sizes = PictureFixtures.createPictureSizes(SIZE_COUNT);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE_COUNT)
+    public void calculateSampleSize(Blackhole blackhole) {
+        for (int i = 0; i < SIZE_COUNT; i++) {
+            blackhole.consume(PictureUtil.calculateSampleSize(sizes[i * 2], sizes[i * 2 + 1]));
+        }
+    }
+
+    /**
+     * 按照 1920 的长边上限与 16MB 的内存预算计算 RGB_565 的采样率
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE_COUNT)
+    public void calculateBudgetSampleSize(Blackhole blackhole) {
+        for (int i = 0; i < SIZE_COUNT; i++) {
+            int width = sizes[i * 2];
+            int height = sizes[i * 2 + 1];
+            int sampleSize = Math.max(PictureUtil.calculateSampleSize(width, height),
+                    PictureUtil.calculateMaxDimensionSampleSize(Math.max(width, height), MAX_DIMENSION));
+            blackhole.consume(PictureUtil.calculateBudgetSampleSize(width, height, sampleSize,
+                    MAX_DIMENSION, 2, MEMORY_BUDGET));
+        }
+    }
+
+}
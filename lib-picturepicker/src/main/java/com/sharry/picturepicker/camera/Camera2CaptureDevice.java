@@ -0,0 +1,335 @@
+package com.sharry.picturepicker.camera;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.graphics.SurfaceTexture;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CameraMetadata;
+import android.hardware.camera2.CaptureFailure;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.util.Size;
+import android.view.Surface;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 基于 android.hardware.camera2 的相机设备, 使用后置摄像头
+ * <p>
+ * 预览与拍照共用一个会话, 拍照时不执行对焦锁定与测光的预拍摄序列, 直接提交单帧的拍摄请求,
+ * 依赖预览中持续的自动对焦, 快门的延迟只有一帧的拍摄与编码. 相机的调用在后台线程中执行, 回调投递到主线程.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 15:45
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+class Camera2CaptureDevice implements CaptureDevice {
+
+    /**
+     * 预览尺寸的上限, 更大的预览没有意义且占用带宽
+     */
+    private static final int MAX_PREVIEW_LONG = 1920;
+    private static final int MAX_PREVIEW_SHORT = 1080;
+
+    private final CameraManager mCameraManager;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private HandlerThread mCameraThread;
+    private Handler mCameraHandler;
+    private Callback mCallback;
+    private CameraCharacteristics mCharacteristics;
+    private volatile CameraDevice mCameraDevice;
+    private volatile CameraCaptureSession mSession;
+    private volatile ImageReader mImageReader;
+    private Surface mPreviewSurface;
+    private volatile boolean mIsOpening;
+    private volatile boolean mIsClosed;
+
+    Camera2CaptureDevice(@NonNull Context context) {
+        mCameraManager = (CameraManager) context.getApplicationContext().getSystemService(Context.CAMERA_SERVICE);
+    }
+
+    @Override
+    public void open(@NonNull Callback callback) {
+        mCallback = callback;
+        mCameraThread = new HandlerThread("PicturePicker-camera");
+        mCameraThread.start();
+        mCameraHandler = new Handler(mCameraThread.getLooper());
+        try {
+            String cameraId = findBackCamera();
+            mCharacteristics = mCameraManager.getCameraCharacteristics(cameraId);
+            mIsOpening = true;
+            mCameraManager.openCamera(cameraId, new CameraDevice.StateCallback() {
+                @Override
+                public void onOpened(@NonNull CameraDevice camera) {
+                    mIsOpening = false;
+                    if (mIsClosed) {
+                        // 打开的过程中已经关闭, 由这里释放相机与线程
+                        camera.close();
+                        quitCameraThread();
+                        return;
+                    }
+                    mCameraDevice = camera;
+                    deliverOpened();
+                }
+
+                @Override
+                public void onDisconnected(@NonNull CameraDevice camera) {
+                    onFailed(camera, new IOException("Camera2CaptureDevice -> Camera disconnected."));
+                }
+
+                @Override
+                public void onError(@NonNull CameraDevice camera, int error) {
+                    onFailed(camera, new IOException("Camera2CaptureDevice -> Camera error: " + error));
+                }
+
+                private void onFailed(CameraDevice camera, Exception e) {
+                    mIsOpening = false;
+                    camera.close();
+                    mCameraDevice = null;
+                    if (mIsClosed) {
+                        quitCameraThread();
+                        return;
+                    }
+                    deliverError(e);
+                }
+            }, mCameraHandler);
+        } catch (CameraAccessException | SecurityException | IOException e) {
+            mIsOpening = false;
+            deliverError(e);
+        }
+    }
+
+    @Override
+    public void startPreview(@NonNull SurfaceTexture surface, int captureWidth, int captureHeight) {
+        if (mCameraDevice == null) {
+            return;
+        }
+        // 预览与拍摄的宽高比保持一致, 取景与成片相同
+        Size previewSize = choosePreviewSize(captureWidth, captureHeight);
+        surface.setDefaultBufferSize(previewSize.getWidth(), previewSize.getHeight());
+        mPreviewSurface = new Surface(surface);
+        mImageReader = ImageReader.newInstance(captureWidth, captureHeight, ImageFormat.JPEG, 2);
+        mImageReader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
+            @Override
+            public void onImageAvailable(ImageReader reader) {
+                deliverCaptured(reader);
+            }
+        }, mCameraHandler);
+        try {
+            mCameraDevice.createCaptureSession(Arrays.asList(mPreviewSurface, mImageReader.getSurface()),
+                    new CameraCaptureSession.StateCallback() {
+                        @Override
+                        public void onConfigured(@NonNull CameraCaptureSession session) {
+                            if (mIsClosed) {
+                                session.close();
+                                return;
+                            }
+                            mSession = session;
+                            startRepeatingPreview();
+                        }
+
+                        @Override
+                        public void onConfigureFailed(@NonNull CameraCaptureSession session) {
+                            deliverError(new IOException("Camera2CaptureDevice -> Configure session failed."));
+                        }
+                    }, mCameraHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            deliverError(e);
+        }
+    }
+
+    @Override
+    public void capture(int quality, int jpegOrientation) {
+        if (mSession == null) {
+            deliverError(new IOException("Camera2CaptureDevice -> Preview is not ready."));
+            return;
+        }
+        try {
+            CaptureRequest.Builder builder = mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_STILL_CAPTURE);
+            builder.addTarget(mImageReader.getSurface());
+            builder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+            builder.set(CaptureRequest.JPEG_QUALITY, (byte) Math.max(1, Math.min(100, quality)));
+            builder.set(CaptureRequest.JPEG_ORIENTATION, jpegOrientation);
+            mSession.capture(builder.build(), new CameraCaptureSession.CaptureCallback() {
+                @Override
+                public void onCaptureFailed(@NonNull CameraCaptureSession session,
+                                            @NonNull CaptureRequest request,
+                                            @NonNull CaptureFailure failure) {
+                    deliverError(new IOException("Camera2CaptureDevice -> Capture failed: " + failure.getReason()));
+                }
+            }, mCameraHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            deliverError(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (mIsClosed) {
+            return;
+        }
+        mIsClosed = true;
+        mMainHandler.removeCallbacksAndMessages(null);
+        if (mCameraHandler == null) {
+            return;
+        }
+        // 相机的回调都在后台线程中执行, 在同一线程中释放, 避免与正在进行的回调交错
+        mCameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mSession != null) {
+                    mSession.close();
+                    mSession = null;
+                }
+                if (mCameraDevice != null) {
+                    mCameraDevice.close();
+                    mCameraDevice = null;
+                }
+                if (mImageReader != null) {
+                    mImageReader.close();
+                    mImageReader = null;
+                }
+                if (mPreviewSurface != null) {
+                    mPreviewSurface.release();
+                    mPreviewSurface = null;
+                }
+                // 相机仍在打开时等待打开的回调再退出线程
+                if (!mIsOpening) {
+                    quitCameraThread();
+                }
+            }
+        });
+    }
+
+    private void quitCameraThread() {
+        mCameraThread.quitSafely();
+    }
+
+    private String findBackCamera() throws CameraAccessException, IOException {
+        String[] cameraIds = mCameraManager.getCameraIdList();
+        for (String cameraId : cameraIds) {
+            Integer facing = mCameraManager.getCameraCharacteristics(cameraId)
+                    .get(CameraCharacteristics.LENS_FACING);
+            if (facing != null && facing == CameraMetadata.LENS_FACING_BACK) {
+                return cameraId;
+            }
+        }
+        if (cameraIds.length == 0) {
+            throw new IOException("Camera2CaptureDevice -> No camera available.");
+        }
+        return cameraIds[0];
+    }
+
+    private void startRepeatingPreview() {
+        try {
+            CaptureRequest.Builder builder = mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+            builder.addTarget(mPreviewSurface);
+            builder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+            mSession.setRepeatingRequest(builder.build(), null, mCameraHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            deliverError(e);
+        }
+    }
+
+    /**
+     * 宽高比与拍摄的尺寸一致且不超过上限的最大预览尺寸, 不存在时选取不超过上限的最大尺寸
+     */
+    private Size choosePreviewSize(int captureWidth, int captureHeight) {
+        StreamConfigurationMap map = mCharacteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        Size[] sizes = map == null ? null : map.getOutputSizes(SurfaceTexture.class);
+        if (sizes == null || sizes.length == 0) {
+            return new Size(captureWidth, captureHeight);
+        }
+        Size sameAspect = null;
+        Size fallback = null;
+        for (Size size : sizes) {
+            int sizeLong = Math.max(size.getWidth(), size.getHeight());
+            int sizeShort = Math.min(size.getWidth(), size.getHeight());
+            if (sizeLong > MAX_PREVIEW_LONG || sizeShort > MAX_PREVIEW_SHORT) {
+                continue;
+            }
+            long area = (long) size.getWidth() * size.getHeight();
+            if (fallback == null || area > (long) fallback.getWidth() * fallback.getHeight()) {
+                fallback = size;
+            }
+            boolean isSameAspect = (long) size.getWidth() * captureHeight == (long) size.getHeight() * captureWidth;
+            if (isSameAspect && (sameAspect == null || area > (long) sameAspect.getWidth() * sameAspect.getHeight())) {
+                sameAspect = size;
+            }
+        }
+        if (sameAspect != null) {
+            return sameAspect;
+        }
+        return fallback != null ? fallback : sizes[0];
+    }
+
+    private void deliverOpened() {
+        StreamConfigurationMap map = mCharacteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        Size[] sizes = map == null ? null : map.getOutputSizes(ImageFormat.JPEG);
+        final int[] jpegSizes = new int[sizes == null ? 0 : sizes.length * 2];
+        for (int i = 0; sizes != null && i < sizes.length; i++) {
+            jpegSizes[i * 2] = sizes[i].getWidth();
+            jpegSizes[i * 2 + 1] = sizes[i].getHeight();
+        }
+        Integer orientation = mCharacteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        final int sensorOrientation = orientation == null ? 0 : orientation;
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mIsClosed) {
+                    mCallback.onOpened(jpegSizes, sensorOrientation);
+                }
+            }
+        });
+    }
+
+    private void deliverCaptured(ImageReader reader) {
+        Image image = reader.acquireNextImage();
+        if (image == null) {
+            return;
+        }
+        final byte[] jpeg;
+        try {
+            ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+            jpeg = new byte[buffer.remaining()];
+            buffer.get(jpeg);
+        } finally {
+            image.close();
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mIsClosed) {
+                    mCallback.onCaptured(jpeg);
+                }
+            }
+        });
+    }
+
+    private void deliverError(final Exception e) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mIsClosed) {
+                    mCallback.onError(e);
+                }
+            }
+        });
+    }
+
+}
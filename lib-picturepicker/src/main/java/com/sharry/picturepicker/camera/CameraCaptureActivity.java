@@ -0,0 +1,206 @@
+package com.sharry.picturepicker.camera;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Fragment;
+import android.content.Intent;
+import android.graphics.SurfaceTexture;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.design.widget.Snackbar;
+import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
+import android.view.OrientationEventListener;
+import android.view.TextureView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.sharry.picturepicker.R;
+import com.sharry.picturepicker.support.executor.PickerExecutors;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 库内相机的 Activity, 代替系统的相机应用拍照
+ * <p>
+ * 不需要冷启动第三方的相机应用, 由 {@link CaptureController} 按照 {@link CameraConfig} 的目标尺寸与质量
+ * 直接输出 JPEG 到指定的文件. 页面固定为竖屏, 照片的方向通过设备的旋转角度写入 JPEG.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 16:00
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class CameraCaptureActivity extends AppCompatActivity {
+
+    private static final String TAG = CameraCaptureActivity.class.getSimpleName();
+    public static final int REQUEST_CODE = 510;
+    private static final String EXTRA_CONFIG = "start_intent_extra_config";
+    private static final String EXTRA_OUTPUT_PATH = "start_intent_extra_output_path";
+    /**
+     * 相机无法打开, 调用方可以退回到系统的相机应用
+     */
+    public static final int RESULT_CAMERA_UNAVAILABLE = RESULT_FIRST_USER;
+
+    /**
+     * U can launch this activity from here.
+     *
+     * @param request    请求的 Activity
+     * @param resultTo   CameraCaptureActivity 返回值的去向
+     * @param config     拍摄的尺寸与质量
+     * @param outputPath 照片写入的文件
+     */
+    public static void startActivityForResult(@NonNull Activity request, @NonNull Fragment resultTo,
+                                              @NonNull CameraConfig config, @NonNull String outputPath) {
+        Intent intent = new Intent(request, CameraCaptureActivity.class);
+        intent.putExtra(EXTRA_CONFIG, config);
+        intent.putExtra(EXTRA_OUTPUT_PATH, outputPath);
+        resultTo.startActivityForResult(intent, REQUEST_CODE);
+    }
+
+    private CameraConfig mConfig;
+    private String mOutputPath;
+    private TextureView mPreview;
+    private View mShutter;
+    private CaptureController mController;
+    private OrientationEventListener mOrientationListener;
+    private int mDeviceOrientation = 0;
+
+    @Override
+    protected void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mConfig = getIntent().getParcelableExtra(EXTRA_CONFIG);
+        mOutputPath = getIntent().getStringExtra(EXTRA_OUTPUT_PATH);
+        setContentView(R.layout.libpicturepicker_activity_camera_capture);
+        initViews();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (mOrientationListener.canDetectOrientation()) {
+            mOrientationListener.enable();
+        }
+        // 相机在页面可见时独占, 每次回到前台重新打开
+        mController = new CaptureController(new Camera2CaptureDevice(this), mConfig, mOutputPath,
+                PickerExecutors.getWorkExecutor(), new MainThreadExecutor(), new CaptureListener());
+        mController.open();
+        if (mPreview.isAvailable()) {
+            mController.setSurface(mPreview.getSurfaceTexture());
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mOrientationListener.disable();
+        mController.release();
+        mController = null;
+        mShutter.setEnabled(false);
+    }
+
+    private void initViews() {
+        mPreview = findViewById(R.id.tv_capture_preview);
+        mPreview.setSurfaceTextureListener(new TextureView.SurfaceTextureListener() {
+            @Override
+            public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
+                if (mController != null) {
+                    mController.setSurface(surface);
+                }
+            }
+
+            @Override
+            public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
+            }
+
+            @Override
+            public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+                if (mController != null) {
+                    mController.setSurface(null);
+                }
+                return true;
+            }
+
+            @Override
+            public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+            }
+        });
+        mShutter = findViewById(R.id.iv_capture_shutter);
+        mShutter.setEnabled(false);
+        mShutter.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if (mController != null && mController.takePicture(mDeviceOrientation)) {
+                    mShutter.setEnabled(false);
+                }
+            }
+        });
+        mOrientationListener = new OrientationEventListener(this) {
+            @Override
+            public void onOrientationChanged(int orientation) {
+                if (orientation != ORIENTATION_UNKNOWN) {
+                    mDeviceOrientation = orientation;
+                }
+            }
+        };
+    }
+
+    /**
+     * 按照拍摄的宽高比调整预览的高度, 竖屏时拍摄的长边为预览的高
+     */
+    private void adjustPreviewAspect(int captureWidth, int captureHeight) {
+        int previewWidth = ((View) mPreview.getParent()).getWidth();
+        ViewGroup.LayoutParams params = mPreview.getLayoutParams();
+        params.height = previewWidth * Math.max(captureWidth, captureHeight)
+                / Math.min(captureWidth, captureHeight);
+        mPreview.setLayoutParams(params);
+    }
+
+    private class CaptureListener implements CaptureController.Listener {
+
+        @Override
+        public void onPreviewStarted(int captureWidth, int captureHeight) {
+            adjustPreviewAspect(captureWidth, captureHeight);
+            mShutter.setEnabled(true);
+        }
+
+        @Override
+        public void onCaptureComplete(@NonNull String destPath) {
+            setResult(RESULT_OK);
+            finish();
+        }
+
+        @Override
+        public void onCaptureFailed(@NonNull Exception e) {
+            Log.e(TAG, "Capture picture failed.", e);
+            // 依旧处于预览中, 允许重试
+            mShutter.setEnabled(true);
+            Snackbar.make(mPreview, R.string.libpicturepicker_capture_tips_capture_failed,
+                    Snackbar.LENGTH_LONG).show();
+        }
+
+        @Override
+        public void onCameraUnavailable(@NonNull Exception e) {
+            Log.e(TAG, "Camera is unavailable.", e);
+            setResult(RESULT_CAMERA_UNAVAILABLE);
+            finish();
+        }
+
+    }
+
+    private static class MainThreadExecutor implements Executor {
+
+        private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            mMainHandler.post(command);
+        }
+
+    }
+
+}
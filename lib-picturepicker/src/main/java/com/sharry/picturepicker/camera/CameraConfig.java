@@ -10,7 +10,7 @@ import com.sharry.picturepicker.crop.CropConfig;
 /**
  * Created by Sharry on 2018/6/21.
  * Email: SharryChooCHN@Gmail.com
- * Version: 1.0
+ * Version: 1.3
  * Description: 相机拍照的相关参数
  */
 public class CameraConfig implements Parcelable {
@@ -39,6 +39,10 @@ public class CameraConfig implements Parcelable {
     private int cameraDestQuality = 80;       // 拍照后压缩的质量
     private String cameraDirectoryPath;       // 存储文件的目录路径
     private CropConfig cropConfig;            // 图片裁剪的 Config
+    private long cameraDestFileSize;          // 拍照后压缩的文件大小上限, 0 表示不限制
+    private boolean isBuiltInCamera;          // 是否使用库内的相机页面拍照
+    private int cameraTargetWidth;            // 库内相机拍摄的目标宽度, 0 表示使用最大的尺寸
+    private int cameraTargetHeight;           // 库内相机拍摄的目标高度, 0 表示使用最大的尺寸
 
     private CameraConfig() {
 
@@ -50,6 +54,10 @@ public class CameraConfig implements Parcelable {
         dest.writeInt(cameraDestQuality);
         dest.writeString(cameraDirectoryPath);
         dest.writeParcelable(cropConfig, flags);
+        dest.writeLong(cameraDestFileSize);
+        dest.writeByte((byte) (isBuiltInCamera ? 1 : 0));
+        dest.writeInt(cameraTargetWidth);
+        dest.writeInt(cameraTargetHeight);
     }
 
     /**
@@ -67,6 +75,22 @@ public class CameraConfig implements Parcelable {
         return cameraDestQuality;
     }
 
+    public long getCameraDestFileSize() {
+        return cameraDestFileSize;
+    }
+
+    public boolean isBuiltInCamera() {
+        return isBuiltInCamera;
+    }
+
+    public int getCameraTargetWidth() {
+        return cameraTargetWidth;
+    }
+
+    public int getCameraTargetHeight() {
+        return cameraTargetHeight;
+    }
+
     public String getCameraDirectoryPath() {
         return cameraDirectoryPath;
     }
@@ -80,6 +104,10 @@ public class CameraConfig implements Parcelable {
         cameraDestQuality = in.readInt();
         cameraDirectoryPath = in.readString();
         cropConfig = in.readParcelable(CropConfig.class.getClassLoader());
+        cameraDestFileSize = in.readLong();
+        isBuiltInCamera = in.readByte() != 0;
+        cameraTargetWidth = in.readInt();
+        cameraTargetHeight = in.readInt();
     }
 
     @Override
@@ -122,6 +150,38 @@ public class CameraConfig implements Parcelable {
             return this;
         }
 
+        /**
+         * 设置拍照后压缩的文件大小上限, 超出时降低质量, 必要时缩小尺寸
+         *
+         * @param maxBytes 文件大小的上限, 0 表示不限制
+         */
+        public Builder setCameraFileSize(long maxBytes) {
+            mConfig.cameraDestFileSize = maxBytes;
+            return this;
+        }
+
+        /**
+         * 设置是否使用库内的相机页面拍照, 需要 Android 5.0 以上, 更低的版本依旧使用系统相机
+         * <p>
+         * 库内相机按照目标尺寸与拍照质量直接输出 JPEG, 满足文件大小的上限时不再压缩
+         */
+        public Builder setBuiltInCamera(boolean isBuiltInCamera) {
+            mConfig.isBuiltInCamera = isBuiltInCamera;
+            return this;
+        }
+
+        /**
+         * 设置库内相机拍摄的目标尺寸, 选取不小于目标尺寸的最小输出尺寸, 长边与短边分别比较, 与横竖屏无关
+         *
+         * @param width  目标宽度, 0 表示使用最大的尺寸
+         * @param height 目标高度, 0 表示使用最大的尺寸
+         */
+        public Builder setCameraTargetSize(int width, int height) {
+            mConfig.cameraTargetWidth = width;
+            mConfig.cameraTargetHeight = height;
+            return this;
+        }
+
         /**
          * 设置 FileProvider 的路径, 7.0 以后用于查找 URI
          */
@@ -132,6 +192,8 @@ public class CameraConfig implements Parcelable {
 
         /**
          * 设置裁剪的配置
+         * <p>
+         * 启用裁剪时, 相机输出的图片直接进行裁剪, 输出的质量与文件大小以裁剪的配置为准
          */
         public Builder setCropConfig(@Nullable CropConfig cropConfig) {
             mConfig.cropConfig = cropConfig;
@@ -5,22 +5,23 @@ import android.app.Fragment;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.provider.MediaStore;
 import android.util.Log;
 
-import com.sharry.picturepicker.crop.CropCallback;
-import com.sharry.picturepicker.crop.PictureCropManager;
+import com.sharry.picturepicker.crop.PictureCropActivity;
+import com.sharry.picturepicker.support.compress.CompressCallback;
+import com.sharry.picturepicker.support.compress.PictureCompressor;
+import com.sharry.picturepicker.support.executor.CancelToken;
 import com.sharry.picturepicker.support.utils.FileUtil;
-import com.sharry.picturepicker.support.utils.PictureUtil;
 
 import java.io.File;
-import java.io.IOException;
 
 /**
  * Created by Sharry on 2018/6/13.
  * Email: SharryChooCHN@Gmail.com
- * Version: 1.0
+ * Version: 1.3
  * Description: 从相机拍照获取图片的 Fragment
  */
 public class CameraRequestFragment extends Fragment {
@@ -44,6 +45,8 @@ public class CameraRequestFragment extends Fragment {
     private CameraConfig mConfig;
     private CameraCallback mCameraCallback;
     private File mTempFile;                  // Temp file associated with camera.
+    private File mCropSourceFile;            // Camera output being cropped, deleted after crop finished.
+    private CancelToken mCompressToken;      // Cancel compress when fragment destroyed.
 
     @Override
     public void onAttach(Context context) {
@@ -70,6 +73,19 @@ public class CameraRequestFragment extends Fragment {
         this.mConfig = config;
         this.mCameraCallback = callback;
         mTempFile = FileUtil.createTempFileByDestDirectory(config.getCameraDirectoryPath());
+        if (config.isBuiltInCamera() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            // 库内相机直接按照目标尺寸与质量写入临时文件
+            CameraCaptureActivity.startActivityForResult(getActivity(), this, config,
+                    mTempFile.getAbsolutePath());
+        } else {
+            startSystemCamera();
+        }
+    }
+
+    /**
+     * 启动系统的相机应用拍照
+     */
+    private void startSystemCamera() {
         Uri tempUri = FileUtil.getUriFromFile(mContext, mConfig.getAuthority(), mTempFile);
         // 启动相机
         Intent intent = new Intent(INTENT_ACTION_START_CAMERA);
@@ -80,50 +96,131 @@ public class CameraRequestFragment extends Fragment {
     @Override
     public void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
-        if (resultCode != Activity.RESULT_OK || null == mCameraCallback) return;
         switch (requestCode) {
             case REQUEST_CODE_TAKE:
-                try {
-                    // 1. 将拍摄后的图片, 压缩到 cameraDestFile 中
-                    File cameraDestFile = FileUtil.createCameraDestFile(mConfig.getCameraDirectoryPath());
-                    PictureUtil.doCompress(mTempFile.getAbsolutePath(), cameraDestFile.getAbsolutePath(),
-                            mConfig.getCameraDestQuality());
-                    // 2. 处理图片裁剪
+                if (resultCode == Activity.RESULT_OK && null != mCameraCallback) {
                     if (mConfig.isCropSupport()) {
-                        performCropPicture(cameraDestFile.getAbsolutePath());
+                        cropTakenPicture(mTempFile);
                     } else {
-                        // 3. 回调
-                        mCameraCallback.onCameraTakeComplete(cameraDestFile.getAbsolutePath());
-                        // 刷新文件管理器
-                        FileUtil.freshMediaStore(mContext, cameraDestFile);
+                        compressTakenPicture(mTempFile);
                     }
-                } catch (IOException e) {
-                    Log.e(TAG, "Picture compress failed after camera take.", e);
-                } finally {
-                    mTempFile.delete();
+                } else if (mTempFile != null) {
+                    // 取消拍照时也需要删除临时文件
+                    PictureCompressor.deleteInBackground(mTempFile.getAbsolutePath());
                 }
+                mTempFile = null;
+                break;
+            case CameraCaptureActivity.REQUEST_CODE:
+                if (resultCode == CameraCaptureActivity.RESULT_CAMERA_UNAVAILABLE && null != mCameraCallback) {
+                    // 库内相机无法打开时退回到系统的相机应用, 临时文件继续使用
+                    startSystemCamera();
+                    break;
+                }
+                if (resultCode == Activity.RESULT_OK && null != mCameraCallback) {
+                    if (mConfig.isCropSupport()) {
+                        cropTakenPicture(mTempFile);
+                    } else {
+                        deliverCapturedPicture(mTempFile);
+                    }
+                } else if (mTempFile != null) {
+                    PictureCompressor.deleteInBackground(mTempFile.getAbsolutePath());
+                }
+                mTempFile = null;
+                break;
+            case PictureCropActivity.REQUEST_CODE:
+                // 相机输出的文件在裁剪结束后删除
+                if (mCropSourceFile != null) {
+                    PictureCompressor.deleteInBackground(mCropSourceFile.getAbsolutePath());
+                    mCropSourceFile = null;
+                }
+                if (resultCode != Activity.RESULT_OK || null == data || null == mCameraCallback) {
+                    break;
+                }
+                String croppedPath = data.getStringExtra(PictureCropActivity.RESULT_EXTRA_CROPPED_PATH);
+                // 回调
+                mCameraCallback.onCameraTakeComplete(croppedPath);
+                // 刷新文件管理器
+                FileUtil.freshMediaStore(mContext, new File(croppedPath));
                 break;
             default:
                 break;
         }
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        // 宿主销毁时取消尚未完成的压缩, 临时文件依旧会在回调中删除
+        if (mCompressToken != null) {
+            mCompressToken.cancel();
+        }
+    }
+
     /**
-     * 处理裁剪
+     * 在子线程中将拍摄后的图片压缩到 cameraDestFile 中, 完成后在主线程回调
      */
-    private void performCropPicture(String cameraFilePath) {
-        PictureCropManager.with(mContext)
-                .setConfig(
-                        mConfig.getCropConfig().rebuild()
-                                .setOriginFile(cameraFilePath)// 需要裁剪的文件路径
-                                .build()
-                )
-                .crop(new CropCallback() {
+    private void compressTakenPicture(final File tempFile) {
+        final File cameraDestFile = FileUtil.createCameraDestFile(mConfig.getCameraDirectoryPath());
+        mCompressToken = new CancelToken();
+        PictureCompressor.compress(tempFile.getAbsolutePath(), cameraDestFile.getAbsolutePath(),
+                mConfig.getCameraDestQuality(), mConfig.getCameraDestFileSize(), mCompressToken,
+                new CompressCallback() {
+                    @Override
+                    public void onCompressComplete(String destPath) {
+                        PictureCompressor.deleteInBackground(tempFile.getAbsolutePath());
+                        // 回调
+                        mCameraCallback.onCameraTakeComplete(destPath);
+                        // 刷新文件管理器
+                        FileUtil.freshMediaStore(mContext, cameraDestFile);
+                    }
+
                     @Override
-                    public void onCropComplete(String path) {
-                        mCameraCallback.onCameraTakeComplete(path);
+                    public void onCompressFailed(Exception e) {
+                        PictureCompressor.deleteInBackground(tempFile.getAbsolutePath());
+                        Log.e(TAG, "Picture compress failed after camera take.", e);
+                    }
+
+                    @Override
+                    public void onCompressCanceled() {
+                        PictureCompressor.deleteInBackground(tempFile.getAbsolutePath());
                     }
                 });
     }
 
+    /**
+     * 库内相机已经按照目标尺寸与质量编码, 满足文件大小的上限时直接作为 cameraDestFile, 不再压缩
+     */
+    private void deliverCapturedPicture(File tempFile) {
+        long maxFileSize = mConfig.getCameraDestFileSize();
+        if (maxFileSize > 0 && tempFile.length() > maxFileSize) {
+            compressTakenPicture(tempFile);
+            return;
+        }
+        File cameraDestFile = FileUtil.createCameraDestFile(mConfig.getCameraDirectoryPath());
+        // 同一目录下的重命名, 无需复制文件
+        if (!tempFile.renameTo(cameraDestFile)) {
+            compressTakenPicture(tempFile);
+            return;
+        }
+        // 回调
+        mCameraCallback.onCameraTakeComplete(cameraDestFile.getAbsolutePath());
+        // 刷新文件管理器
+        FileUtil.freshMediaStore(mContext, cameraDestFile);
+    }
+
+    /**
+     * 直接裁剪相机输出的文件
+     * <p>
+     * 裁剪时只解码一次选中的区域, 按照 EXIF 修正方向后以裁剪配置的质量编码一次, 不再先压缩到 cameraDestFile,
+     * 除相机输出的文件外不产生中间文件, 拍照的质量与文件大小在此时不再生效.
+     */
+    private void cropTakenPicture(File tempFile) {
+        mCropSourceFile = tempFile;
+        PictureCropActivity.startActivityForResult(getActivity(), this,
+                mConfig.getCropConfig().rebuild()
+                        .setOriginFile(tempFile.getAbsolutePath())// 需要裁剪的文件路径
+                        .build()
+        );
+    }
+
 }
@@ -0,0 +1,295 @@
+package com.sharry.picturepicker.camera;
+
+import android.graphics.SurfaceTexture;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import com.sharry.picturepicker.support.executor.CancelToken;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * 库内相机的拍照流程, 只在主线程中调用
+ * <p>
+ * 相机打开且预览的画布可用后, 按照 {@link CameraConfig} 的目标尺寸选取拍摄的尺寸并开始预览.
+ * 拍照时由相机按照配置的质量直接编码 JPEG, 在子线程中原样写入目标文件, 不再解码与二次压缩.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 15:30
+ */
+class CaptureController implements CaptureDevice.Callback {
+
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_OPENING = 1;
+    private static final int STATE_PREVIEWING = 2;
+    private static final int STATE_CAPTURING = 3;
+    private static final int STATE_SAVING = 4;
+    private static final int STATE_RELEASED = 5;
+
+    private final CaptureDevice mDevice;
+    private final CameraConfig mConfig;
+    private final String mDestPath;
+    private final Executor mWorkExecutor;
+    private final Executor mMainExecutor;
+    private final Listener mListener;
+
+    private int mState = STATE_IDLE;
+    private SurfaceTexture mSurface;
+    private int[] mJpegSizes;
+    private int mSensorOrientation;
+    private CancelToken mSaveToken;
+
+    /**
+     * @param device       相机设备
+     * @param config       拍摄的尺寸与质量
+     * @param destPath     照片写入的文件
+     * @param workExecutor 写入文件的线程池
+     * @param mainExecutor 投递结果到主线程
+     * @param listener     拍照的监听
+     */
+    CaptureController(@NonNull CaptureDevice device, @NonNull CameraConfig config, @NonNull String destPath,
+                      @NonNull Executor workExecutor, @NonNull Executor mainExecutor,
+                      @NonNull Listener listener) {
+        mDevice = device;
+        mConfig = config;
+        mDestPath = destPath;
+        mWorkExecutor = workExecutor;
+        mMainExecutor = mainExecutor;
+        mListener = listener;
+    }
+
+    /**
+     * 打开相机, 预览在画布可用后开始
+     */
+    void open() {
+        if (mState != STATE_IDLE) {
+            return;
+        }
+        mState = STATE_OPENING;
+        mDevice.open(this);
+    }
+
+    /**
+     * 预览的画布可用
+     */
+    void setSurface(@Nullable SurfaceTexture surface) {
+        mSurface = surface;
+        startPreviewIfReady();
+    }
+
+    /**
+     * 拍照, 预览尚未开始或正在拍照时忽略
+     *
+     * @param deviceOrientation 设备相对于自然方向顺时针旋转的角度, 未知时传 0
+     * @return 是否开始拍照
+     */
+    boolean takePicture(int deviceOrientation) {
+        if (mState != STATE_PREVIEWING) {
+            return false;
+        }
+        mState = STATE_CAPTURING;
+        mDevice.capture(mConfig.getCameraDestQuality(),
+                computeJpegOrientation(mSensorOrientation, deviceOrientation));
+        return true;
+    }
+
+    /**
+     * 关闭相机, 取消尚未完成的写入, 之后不再回调
+     */
+    void release() {
+        if (mState == STATE_RELEASED) {
+            return;
+        }
+        mState = STATE_RELEASED;
+        if (mSaveToken != null) {
+            mSaveToken.cancel();
+        }
+        mDevice.close();
+        mSurface = null;
+    }
+
+    @Override
+    public void onOpened(@NonNull int[] jpegSizes, int sensorOrientation) {
+        if (mState != STATE_OPENING) {
+            return;
+        }
+        mJpegSizes = jpegSizes;
+        mSensorOrientation = sensorOrientation;
+        startPreviewIfReady();
+    }
+
+    @Override
+    public void onCaptured(@NonNull final byte[] jpeg) {
+        if (mState != STATE_CAPTURING) {
+            return;
+        }
+        mState = STATE_SAVING;
+        final CancelToken token = new CancelToken();
+        mSaveToken = token;
+        mWorkExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Exception error = null;
+                try {
+                    writeJpeg(jpeg, mDestPath, token);
+                } catch (IOException e) {
+                    error = e;
+                }
+                deliverSaved(error, token);
+            }
+        });
+    }
+
+    @Override
+    public void onError(@NonNull Exception e) {
+        if (mState == STATE_RELEASED) {
+            return;
+        }
+        if (mState == STATE_CAPTURING) {
+            // 拍照失败时回到预览, 允许重试
+            mState = STATE_PREVIEWING;
+            mListener.onCaptureFailed(e);
+        } else {
+            release();
+            mListener.onCameraUnavailable(e);
+        }
+    }
+
+    private void startPreviewIfReady() {
+        if (mState != STATE_OPENING || mSurface == null || mJpegSizes == null) {
+            return;
+        }
+        int[] size = chooseCaptureSize(mJpegSizes, mConfig.getCameraTargetWidth(),
+                mConfig.getCameraTargetHeight());
+        if (size == null) {
+            onError(new IOException("CaptureController -> Camera has no jpeg output size."));
+            return;
+        }
+        mState = STATE_PREVIEWING;
+        mDevice.startPreview(mSurface, size[0], size[1]);
+        mListener.onPreviewStarted(size[0], size[1]);
+    }
+
+    private void deliverSaved(final Exception error, final CancelToken token) {
+        mMainExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (token.isCanceled()) {
+                    return;
+                }
+                mSaveToken = null;
+                if (error == null) {
+                    release();
+                    mListener.onCaptureComplete(mDestPath);
+                } else {
+                    mState = STATE_PREVIEWING;
+                    mListener.onCaptureFailed(error);
+                }
+            }
+        });
+    }
+
+    /**
+     * 选取拍摄的尺寸: 宽高均不小于目标尺寸的最小尺寸, 不存在时选取最大的尺寸
+     *
+     * @param jpegSizes    支持的尺寸, 依次为 width, height
+     * @param targetWidth  目标宽度, 0 表示选取最大的尺寸
+     * @param targetHeight 目标高度, 0 表示选取最大的尺寸
+     * @return 依次为 width, height, 没有支持的尺寸时返回 null
+     */
+    @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+    @Nullable
+    static int[] chooseCaptureSize(@NonNull int[] jpegSizes, int targetWidth, int targetHeight) {
+        // 相机输出的尺寸为横向, 目标尺寸同样按照横向比较
+        int targetLong = Math.max(targetWidth, targetHeight);
+        int targetShort = Math.min(targetWidth, targetHeight);
+        boolean isLargest = targetLong <= 0 || targetShort <= 0;
+        int bestFit = -1;
+        int largest = -1;
+        for (int i = 0; i + 1 < jpegSizes.length; i += 2) {
+            long area = (long) jpegSizes[i] * jpegSizes[i + 1];
+            if (largest < 0 || area > (long) jpegSizes[largest] * jpegSizes[largest + 1]) {
+                largest = i;
+            }
+            if (isLargest) {
+                continue;
+            }
+            int sizeLong = Math.max(jpegSizes[i], jpegSizes[i + 1]);
+            int sizeShort = Math.min(jpegSizes[i], jpegSizes[i + 1]);
+            if (sizeLong >= targetLong && sizeShort >= targetShort
+                    && (bestFit < 0 || area < (long) jpegSizes[bestFit] * jpegSizes[bestFit + 1])) {
+                bestFit = i;
+            }
+        }
+        int chosen = bestFit >= 0 ? bestFit : largest;
+        return chosen < 0 ? null : new int[]{jpegSizes[chosen], jpegSizes[chosen + 1]};
+    }
+
+    /**
+     * 计算后置摄像头的 JPEG 需要顺时针旋转的角度
+     *
+     * @param sensorOrientation 传感器相对于设备自然方向顺时针旋转的角度
+     * @param deviceOrientation 设备相对于自然方向顺时针旋转的角度, 取值范围 [0, 360)
+     */
+    @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+    static int computeJpegOrientation(int sensorOrientation, int deviceOrientation) {
+        // 取最接近的 90 的整数倍
+        int rounded = ((deviceOrientation + 45) / 90 * 90) % 360;
+        return (sensorOrientation + rounded) % 360;
+    }
+
+    private static void writeJpeg(byte[] jpeg, String destPath, CancelToken token) throws IOException {
+        File destFile = new File(destPath);
+        boolean isCompleted = false;
+        FileOutputStream fos = null;
+        try {
+            fos = new FileOutputStream(destFile);
+            fos.write(jpeg);
+            fos.flush();
+            isCompleted = !token.isCanceled();
+        } finally {
+            if (fos != null) {
+                try {
+                    fos.close();
+                } catch (IOException e) {
+                    // ignore.
+                }
+            }
+            // 失败或被取消时不保留写了一半的文件
+            if (!isCompleted) {
+                destFile.delete();
+            }
+        }
+    }
+
+    /**
+     * 拍照的监听, 在主线程中回调
+     */
+    interface Listener {
+
+        /**
+         * @param captureWidth  拍摄的宽, 与预览的宽高比一致
+         * @param captureHeight 拍摄的高
+         */
+        void onPreviewStarted(int captureWidth, int captureHeight);
+
+        void onCaptureComplete(@NonNull String destPath);
+
+        /**
+         * 拍照或写入失败, 依旧处于预览中, 可以重试
+         */
+        void onCaptureFailed(@NonNull Exception e);
+
+        /**
+         * 相机无法打开或预览, 已经释放
+         */
+        void onCameraUnavailable(@NonNull Exception e);
+
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.sharry.picturepicker.camera;
+
+import android.graphics.SurfaceTexture;
+import android.support.annotation.NonNull;
+
+/**
+ * 库内相机所依赖的相机设备
+ * <p>
+ * {@link CaptureController} 只通过该接口与相机交互, 真实的实现为 {@link Camera2CaptureDevice},
+ * 拍照的流程可以使用伪造的设备验证. 所有的回调都需要投递到主线程.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 15:20
+ */
+interface CaptureDevice {
+
+    /**
+     * 打开相机, 成功后回调 {@link Callback#onOpened}
+     */
+    void open(@NonNull Callback callback);
+
+    /**
+     * 开始预览, 预览画面的宽高比与拍摄的尺寸保持一致
+     *
+     * @param surface       预览的画布
+     * @param captureWidth  拍摄的宽, 为 {@link Callback#onOpened} 中支持的尺寸之一
+     * @param captureHeight 拍摄的高
+     */
+    void startPreview(@NonNull SurfaceTexture surface, int captureWidth, int captureHeight);
+
+    /**
+     * 拍照, 成功后回调 {@link Callback#onCaptured}
+     *
+     * @param quality         JPEG 的质量, 取值范围 [1, 100]
+     * @param jpegOrientation JPEG 需要顺时针旋转的角度, 为 90 的整数倍
+     */
+    void capture(int quality, int jpegOrientation);
+
+    /**
+     * 关闭相机, 释放所有的资源, 之后不再回调
+     */
+    void close();
+
+    interface Callback {
+
+        /**
+         * @param jpegSizes         支持的 JPEG 尺寸, 依次为 width, height
+         * @param sensorOrientation 传感器相对于设备自然方向顺时针旋转的角度
+         */
+        void onOpened(@NonNull int[] jpegSizes, int sensorOrientation);
+
+        /**
+         * @param jpeg 相机直接编码的 JPEG 数据
+         */
+        void onCaptured(@NonNull byte[] jpeg);
+
+        void onError(@NonNull Exception e);
+
+    }
+
+}
@@ -8,7 +8,7 @@ import android.support.annotation.NonNull;
  * 图片裁剪的相关参数
  *
  * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
- * @version 1.1
+ * @version 1.2
  * @since 2018/11/29 16:57
  */
 public class CropConfig implements Parcelable {
@@ -38,6 +38,7 @@ public class CropConfig implements Parcelable {
     private int outputX = 500;          // 图像输出时的宽
     private int outputY = 500;          // 图像输出的高
     private int destQuality = 80;       // 裁剪后图片输出的质量
+    private long destFileSize;          // 裁剪后图片输出的文件大小上限, 0 表示不限制
 
     private CropConfig() {
     }
@@ -78,6 +79,10 @@ public class CropConfig implements Parcelable {
         return destQuality;
     }
 
+    public long getDestFileSize() {
+        return destFileSize;
+    }
+
     @Override
     public void writeToParcel(Parcel dest, int flags) {
         dest.writeString(originFilePath);
@@ -89,6 +94,7 @@ public class CropConfig implements Parcelable {
         dest.writeInt(outputX);
         dest.writeInt(outputY);
         dest.writeInt(destQuality);
+        dest.writeLong(destFileSize);
     }
 
     @Override
@@ -110,6 +116,7 @@ public class CropConfig implements Parcelable {
         outputX = in.readInt();
         outputY = in.readInt();
         destQuality = in.readInt();
+        destFileSize = in.readLong();
     }
 
     /**
@@ -129,6 +136,9 @@ public class CropConfig implements Parcelable {
 
         /**
          * 设置是否为圆形裁剪区域
+         * <p>
+         * 只影响选框的形状, 输出的图片依旧是选框外接的方形 JPEG, 不会裁掉圆形以外的部分.
+         * 需要圆形图片时由调用方在展示时处理, 如使用圆形的 ImageView.
          */
         public Builder setCropCircle(boolean isCropCircle) {
             this.mConfig.isCropCircle = isCropCircle;
@@ -185,6 +195,16 @@ public class CropConfig implements Parcelable {
             return this;
         }
 
+        /**
+         * 设置裁剪后压缩的文件大小上限, 超出时降低质量, 必要时缩小尺寸
+         *
+         * @param maxBytes 文件大小的上限, 0 表示不限制
+         */
+        public Builder setCropFileSize(long maxBytes) {
+            mConfig.destFileSize = maxBytes;
+            return this;
+        }
+
         @NonNull
         public CropConfig build() {
             return mConfig;
@@ -0,0 +1,337 @@
+package com.sharry.picturepicker.crop;
+
+/**
+ * 裁剪的几何计算, 不依赖 Android 的运行时
+ * <p>
+ * 输入为原图中的裁剪区域与裁剪后顺时针旋转的角度, 计算解码的采样率, 以及将区域按行切分后,
+ * 每一条带在原图中的解码范围, 到输出图片的变换矩阵与裁剪范围.
+ * 条带的高度保证单条带解码后的像素数不超过输出图片的像素数, 因此裁剪过程中内存的峰值只与输出的尺寸有关.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.1
+ * @since 2019/3/30 14:10
+ */
+final class CropGeometry {
+
+    /**
+     * 相邻条带额外解码的采样后的行数, 使双线性过滤在条带的边缘有像素可用, 避免出现接缝
+     */
+    private static final int STRIP_OVERLAP = 1;
+
+    private final int mLeft;
+    private final int mTop;
+    private final int mRight;
+    private final int mBottom;
+    private final int mRotation;
+    private final int mOutputWidth;
+    private final int mOutputHeight;
+    private final int mSampleSize;
+    private final int mStripHeight;     // 每一条带在原图中的行数, 为采样率的整数倍
+    private final int mStripCount;
+
+    /**
+     * @param sourceWidth  原图的宽
+     * @param sourceHeight 原图的高
+     * @param left         裁剪区域在原图中的左边界
+     * @param top          裁剪区域在原图中的上边界
+     * @param right        裁剪区域在原图中的右边界
+     * @param bottom       裁剪区域在原图中的下边界
+     * @param rotation     裁剪后顺时针旋转的角度, 为 90 的整数倍
+     * @param outputWidth  旋转后输出的宽
+     * @param outputHeight 旋转后输出的高
+     */
+    CropGeometry(int sourceWidth, int sourceHeight, int left, int top, int right, int bottom,
+                 int rotation, int outputWidth, int outputHeight) {
+        if (sourceWidth <= 0 || sourceHeight <= 0 || outputWidth <= 0 || outputHeight <= 0) {
+            throw new IllegalArgumentException("CropGeometry -> Source and output size must be positive.");
+        }
+        mLeft = clamp(left, 0, sourceWidth);
+        mTop = clamp(top, 0, sourceHeight);
+        mRight = clamp(right, 0, sourceWidth);
+        mBottom = clamp(bottom, 0, sourceHeight);
+        if (mRight <= mLeft || mBottom <= mTop) {
+            throw new IllegalArgumentException("CropGeometry -> Crop rect is out of picture bounds.");
+        }
+        mRotation = normalizeRotation(rotation);
+        mOutputWidth = outputWidth;
+        mOutputHeight = outputHeight;
+        mSampleSize = calculateSampleSize();
+        mStripHeight = calculateStripHeight();
+        mStripCount = (getCropHeight() + mStripHeight - 1) / mStripHeight;
+    }
+
+    /**
+     * 将按照 EXIF 旋转后的图片中的比例区域映射为原图中的区域
+     *
+     * @param sourceWidth  原图的宽
+     * @param sourceHeight 原图的高
+     * @param orientation  EXIF 中旋转的角度, 即裁剪后需要旋转的角度
+     * @param left         旋转后的图片中左边界的比例, 取值范围 [0, 1]
+     */
+    static CropGeometry fromOrientedRect(int sourceWidth, int sourceHeight, int orientation,
+                                         float left, float top, float right, float bottom,
+                                         int outputWidth, int outputHeight) {
+        int rotation = normalizeRotation(orientation);
+        boolean isRotated = rotation % 180 != 0;
+        float orientedWidth = isRotated ? sourceHeight : sourceWidth;
+        float orientedHeight = isRotated ? sourceWidth : sourceHeight;
+        float orientedLeft = left * orientedWidth;
+        float orientedTop = top * orientedHeight;
+        float orientedRight = right * orientedWidth;
+        float orientedBottom = bottom * orientedHeight;
+        // 旋转后的图片 -> 原图的逆映射, 矩形的两个对角映射后依旧为对角
+        float sourceLeft, sourceTop, sourceRight, sourceBottom;
+        switch (rotation) {
+            case 90:
+                sourceLeft = orientedTop;
+                sourceRight = orientedBottom;
+                sourceTop = sourceHeight - orientedRight;
+                sourceBottom = sourceHeight - orientedLeft;
+                break;
+            case 180:
+                sourceLeft = sourceWidth - orientedRight;
+                sourceRight = sourceWidth - orientedLeft;
+                sourceTop = sourceHeight - orientedBottom;
+                sourceBottom = sourceHeight - orientedTop;
+                break;
+            case 270:
+                sourceLeft = sourceWidth - orientedBottom;
+                sourceRight = sourceWidth - orientedTop;
+                sourceTop = orientedLeft;
+                sourceBottom = orientedRight;
+                break;
+            default:
+                sourceLeft = orientedLeft;
+                sourceRight = orientedRight;
+                sourceTop = orientedTop;
+                sourceBottom = orientedBottom;
+                break;
+        }
+        return new CropGeometry(sourceWidth, sourceHeight, Math.round(sourceLeft), Math.round(sourceTop),
+                Math.round(sourceRight), Math.round(sourceBottom), rotation, outputWidth, outputHeight);
+    }
+
+    int getCropWidth() {
+        return mRight - mLeft;
+    }
+
+    int getCropHeight() {
+        return mBottom - mTop;
+    }
+
+    int getRotation() {
+        return mRotation;
+    }
+
+    int getOutputWidth() {
+        return mOutputWidth;
+    }
+
+    int getOutputHeight() {
+        return mOutputHeight;
+    }
+
+    /**
+     * 解码的采样率, 采样后的区域不小于输出的尺寸
+     *
+     * @return 2 的幂次的采样率
+     */
+    int getSampleSize() {
+        return mSampleSize;
+    }
+
+    int getStripCount() {
+        return mStripCount;
+    }
+
+    /**
+     * 第 index 条带在原图中的解码范围, 包含与相邻条带重叠的行
+     *
+     * @param outRect 依次写入 left, top, right, bottom
+     */
+    void getStripDecodeRect(int index, int[] outRect) {
+        int overlap = STRIP_OVERLAP * mSampleSize;
+        outRect[0] = mLeft;
+        outRect[1] = Math.max(mTop, stripTop(index) - overlap);
+        outRect[2] = mRight;
+        outRect[3] = Math.min(mBottom, stripBottom(index) + overlap);
+    }
+
+    /**
+     * 第 index 条带解码后的 Bitmap 到输出图片的变换, 与 android.graphics.Matrix#setValues 的顺序一致
+     *
+     * @param bitmapWidth  条带解码后的宽
+     * @param bitmapHeight 条带解码后的高
+     * @param outValues    长度为 9 的数组
+     */
+    void getStripTransform(int index, int bitmapWidth, int bitmapHeight, float[] outValues) {
+        int overlap = STRIP_OVERLAP * mSampleSize;
+        int decodeTop = Math.max(mTop, stripTop(index) - overlap);
+        int decodeBottom = Math.min(mBottom, stripBottom(index) + overlap);
+        // 条带的像素 (x, y) -> 裁剪区域中的坐标 (u, v) = (ku * x, kv * y + v0)
+        float ku = getCropWidth() / (float) bitmapWidth;
+        float kv = (decodeBottom - decodeTop) / (float) bitmapHeight;
+        float v0 = decodeTop - mTop;
+        float width = getCropWidth();
+        float height = getCropHeight();
+        // 裁剪区域中的坐标 -> 顺时针旋转后的坐标
+        float a, b, c, d, e, f;
+        switch (mRotation) {
+            case 90:
+                // (x', y') = (height - v, u)
+                a = 0;
+                b = -kv;
+                c = height - v0;
+                d = ku;
+                e = 0;
+                f = 0;
+                break;
+            case 180:
+                // (x', y') = (width - u, height - v)
+                a = -ku;
+                b = 0;
+                c = width;
+                d = 0;
+                e = -kv;
+                f = height - v0;
+                break;
+            case 270:
+                // (x', y') = (v, width - u)
+                a = 0;
+                b = kv;
+                c = v0;
+                d = -ku;
+                e = 0;
+                f = width;
+                break;
+            default:
+                a = ku;
+                b = 0;
+                c = 0;
+                d = 0;
+                e = kv;
+                f = v0;
+                break;
+        }
+        // 旋转后的坐标 -> 输出图片
+        boolean isRotated = mRotation % 180 != 0;
+        float scaleX = mOutputWidth / (isRotated ? height : width);
+        float scaleY = mOutputHeight / (isRotated ? width : height);
+        outValues[0] = a * scaleX;
+        outValues[1] = b * scaleX;
+        outValues[2] = c * scaleX;
+        outValues[3] = d * scaleY;
+        outValues[4] = e * scaleY;
+        outValues[5] = f * scaleY;
+        outValues[6] = 0;
+        outValues[7] = 0;
+        outValues[8] = 1;
+    }
+
+    /**
+     * 第 index 条带在输出图片中负责的范围, 不包含重叠的行, 绘制时以此裁剪
+     *
+     * @param outClip 依次写入 left, top, right, bottom
+     */
+    void getStripClip(int index, float[] outClip) {
+        float stripTop = stripTop(index) - mTop;
+        float stripBottom = stripBottom(index) - mTop;
+        float width = getCropWidth();
+        float height = getCropHeight();
+        boolean isRotated = mRotation % 180 != 0;
+        float scaleX = mOutputWidth / (isRotated ? height : width);
+        float scaleY = mOutputHeight / (isRotated ? width : height);
+        switch (mRotation) {
+            case 90:
+                outClip[0] = (height - stripBottom) * scaleX;
+                outClip[1] = 0;
+                outClip[2] = (height - stripTop) * scaleX;
+                outClip[3] = mOutputHeight;
+                break;
+            case 180:
+                outClip[0] = 0;
+                outClip[1] = (height - stripBottom) * scaleY;
+                outClip[2] = mOutputWidth;
+                outClip[3] = (height - stripTop) * scaleY;
+                break;
+            case 270:
+                outClip[0] = stripTop * scaleX;
+                outClip[1] = 0;
+                outClip[2] = stripBottom * scaleX;
+                outClip[3] = mOutputHeight;
+                break;
+            default:
+                outClip[0] = 0;
+                outClip[1] = stripTop * scaleY;
+                outClip[2] = mOutputWidth;
+                outClip[3] = stripBottom * scaleY;
+                break;
+        }
+    }
+
+    /**
+     * 条带解码后的宽
+     */
+    int getSampledWidth() {
+        return (getCropWidth() + mSampleSize - 1) / mSampleSize;
+    }
+
+    /**
+     * 条带解码后最大的高, 包含上下重叠的行, 所有条带都可以复用这一尺寸的 Bitmap
+     */
+    int getMaxStripSampledHeight() {
+        int stripRows = (mStripHeight + 2 * STRIP_OVERLAP * mSampleSize + mSampleSize - 1) / mSampleSize;
+        int cropRows = (getCropHeight() + mSampleSize - 1) / mSampleSize;
+        return Math.min(stripRows, cropRows);
+    }
+
+    /**
+     * 估算裁剪过程中像素数的峰值: 输出的图片与一条带同时存在
+     */
+    long estimatePeakPixels() {
+        return (long) mOutputWidth * mOutputHeight + (long) getSampledWidth() * getMaxStripSampledHeight();
+    }
+
+    private int stripTop(int index) {
+        return mTop + index * mStripHeight;
+    }
+
+    private int stripBottom(int index) {
+        return Math.min(mBottom, mTop + (index + 1) * mStripHeight);
+    }
+
+    private int calculateSampleSize() {
+        // 旋转 90 度时输出的宽对应原图的高
+        boolean isRotated = mRotation % 180 != 0;
+        int outputWidth = isRotated ? mOutputHeight : mOutputWidth;
+        int outputHeight = isRotated ? mOutputWidth : mOutputHeight;
+        int sampleSize = 1;
+        while (getCropWidth() / (sampleSize * 2) >= outputWidth
+                && getCropHeight() / (sampleSize * 2) >= outputHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * 单条带采样后的像素数不超过输出图片的像素数
+     */
+    private int calculateStripHeight() {
+        long sampledRows = Math.max(1, (long) mOutputWidth * mOutputHeight / getSampledWidth());
+        long stripHeight = sampledRows * mSampleSize;
+        return (int) Math.min(getCropHeight(), stripHeight);
+    }
+
+    private static int normalizeRotation(int rotation) {
+        int normalized = ((rotation % 360) + 360) % 360;
+        if (normalized % 90 != 0) {
+            throw new IllegalArgumentException("CropGeometry -> Rotation must be a multiple of 90: " + rotation);
+        }
+        return normalized;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+}
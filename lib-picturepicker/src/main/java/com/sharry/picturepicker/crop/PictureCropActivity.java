@@ -0,0 +1,246 @@
+package com.sharry.picturepicker.crop;
+
+import android.app.Activity;
+import android.app.Fragment;
+import android.content.Intent;
+import android.graphics.Matrix;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.design.widget.Snackbar;
+import android.support.v4.content.ContextCompat;
+import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.sharry.picturepicker.R;
+import com.sharry.picturepicker.support.compress.PictureCompressor;
+import com.sharry.picturepicker.support.executor.CancelToken;
+import com.sharry.picturepicker.support.executor.PickerExecutors;
+import com.sharry.picturepicker.support.loader.PictureLoader;
+import com.sharry.picturepicker.support.loader.ThumbnailPictureLoader;
+import com.sharry.picturepicker.support.utils.FileUtil;
+import com.sharry.picturepicker.widget.CropFrameView;
+import com.sharry.picturepicker.widget.photoview.PhotoView;
+import com.sharry.picturepicker.widget.toolbar.SToolbar;
+import com.sharry.picturepicker.widget.toolbar.TextViewOptions;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * 图片裁剪的 Activity, 代替系统的裁剪工具
+ * <p>
+ * 选框固定在中心, 拖拽与缩放图片选择裁剪的区域. PhotoView 的内边距与选框对齐, 图片始终铺满选框.
+ * 确认后由 {@link PictureCropper} 只解码选中的区域, 按照 {@link CropConfig} 的尺寸与质量直接写入目标文件.
+ * 圆形选框只影响选择区域的形状, 输出的 JPEG 依旧为方形.
+ * <p>
+ * 预览固定使用内置的 {@link ThumbnailPictureLoader}, 宿主的图片加载器可能按照 ScaleType 裁剪后再展示,
+ * Drawable 不再是完整的图片, 选框换算到原图中的区域会产生偏移.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.2
+ * @since 2019/3/30 11:05
+ */
+public class PictureCropActivity extends AppCompatActivity {
+
+    private static final String TAG = PictureCropActivity.class.getSimpleName();
+    public static final int REQUEST_CODE = 509;
+    private static final String EXTRA_CONFIG = "start_intent_extra_config";
+    public static final String RESULT_EXTRA_CROPPED_PATH = "result_extra_cropped_path";
+
+    /**
+     * U can launch this activity from here.
+     *
+     * @param request  请求的 Activity
+     * @param resultTo PictureCropActivity 返回值的去向
+     * @param config   PictureCropActivity 的配置
+     */
+    public static void startActivityForResult(@NonNull Activity request, @NonNull Fragment resultTo,
+                                              @NonNull CropConfig config) {
+        Intent intent = new Intent(request, PictureCropActivity.class);
+        intent.putExtra(EXTRA_CONFIG, config);
+        resultTo.startActivityForResult(intent, REQUEST_CODE);
+    }
+
+    private CropConfig mConfig;
+    private PhotoView mPhotoView;
+    private CropFrameView mCropFrame;
+    private CancelToken mCropToken;
+
+    @Override
+    protected void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mConfig = getIntent().getParcelableExtra(EXTRA_CONFIG);
+        setContentView(R.layout.libpicturepicker_activity_picture_crop);
+        initTitle();
+        initViews();
+        initData();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // 页面销毁时取消尚未完成的裁剪, 不会留下目标文件
+        if (mCropToken != null) {
+            mCropToken.cancel();
+        }
+        mPhotoView.setSubsamplingSource(null);
+        PictureLoader.getDefaultPictureLoader().recycle(this, mPhotoView);
+    }
+
+    private void initTitle() {
+        SToolbar toolbar = findViewById(R.id.toolbar);
+        toolbar.addRightMenuText(
+                TextViewOptions.Builder()
+                        .setText(getString(R.string.libpicturepicker_crop_ensure))
+                        .setTextSize(15)
+                        .setListener(new View.OnClickListener() {
+                            @Override
+                            public void onClick(View v) {
+                                performCrop();
+                            }
+                        })
+                        .build()
+        );
+    }
+
+    private void initViews() {
+        mPhotoView = findViewById(R.id.iv_crop_picture);
+        // 图片的最小缩放铺满选框
+        mPhotoView.setScaleType(ImageView.ScaleType.CENTER_CROP);
+        mCropFrame = findViewById(R.id.crop_frame);
+        mCropFrame.setMaskColor(ContextCompat.getColor(this, R.color.libpricturepicker_crop_mask_color));
+        mCropFrame.setBorderColor(ContextCompat.getColor(this, R.color.libpricturepicker_crop_frame_color));
+        mCropFrame.setFrameStyle(mConfig.getAspectX(), mConfig.getAspectY(), mConfig.isCropCircle());
+        mCropFrame.setOnFrameChangedListener(new CropFrameView.OnFrameChangedListener() {
+            @Override
+            public void onFrameChanged(final RectF frameRect) {
+                // 选框在布局时计算, 布局完成后再更新 PhotoView 的内边距
+                mPhotoView.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        alignPictureToFrame(frameRect);
+                    }
+                });
+            }
+        });
+    }
+
+    private void initData() {
+        // Drawable 需要是完整的图片, 才能按比例将选框换算到原图中
+        PictureLoader.getDefaultPictureLoader().load(this, mConfig.getOriginFilePath(), mPhotoView);
+        // 放大后分块加载原图, 保证选择区域时的清晰度
+        mPhotoView.setSubsamplingSource(mConfig.getOriginFilePath());
+    }
+
+    /**
+     * 将 PhotoView 的内容区域对齐到选框, 图片的拖拽边界即为选框的边界
+     */
+    private void alignPictureToFrame(RectF frameRect) {
+        mPhotoView.setPadding(
+                Math.round(frameRect.left),
+                Math.round(frameRect.top),
+                Math.round(mPhotoView.getWidth() - frameRect.right),
+                Math.round(mPhotoView.getHeight() - frameRect.bottom)
+        );
+        mPhotoView.getAttacher().update();
+    }
+
+    /**
+     * 计算选框在图片中的比例区域, 在子线程中裁剪
+     */
+    private void performCrop() {
+        if (mCropToken != null) {
+            return;
+        }
+        final RectF cropRect = computeCropRect();
+        if (cropRect == null) {
+            return;
+        }
+        final String destPath = FileUtil.createCropDestFile(mConfig.getCropDirectoryPath()).getAbsolutePath();
+        final CancelToken token = new CancelToken();
+        mCropToken = token;
+        PickerExecutors.getWorkExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    PictureCropper.crop(mConfig.getOriginFilePath(), cropRect, mConfig, destPath, token);
+                    deliverComplete(destPath, token);
+                } catch (CancellationException e) {
+                    // 页面已经销毁, 无需回调
+                } catch (final Exception e) {
+                    deliverFailed(e, token);
+                }
+            }
+        });
+    }
+
+    /**
+     * 选框在图片中的比例区域, 图片尚未加载时返回 null
+     */
+    @Nullable
+    private RectF computeCropRect() {
+        Drawable drawable = mPhotoView.getDrawable();
+        if (drawable == null || drawable.getIntrinsicWidth() <= 0 || drawable.getIntrinsicHeight() <= 0) {
+            return null;
+        }
+        // PhotoView 的内容区域即为选框, 通过矩阵的逆映射得到选框在图片中的位置
+        Matrix displayMatrix = new Matrix();
+        mPhotoView.getDisplayMatrix(displayMatrix);
+        Matrix inverse = new Matrix();
+        if (!displayMatrix.invert(inverse)) {
+            return null;
+        }
+        RectF cropRect = new RectF(0, 0,
+                mPhotoView.getWidth() - mPhotoView.getPaddingLeft() - mPhotoView.getPaddingRight(),
+                mPhotoView.getHeight() - mPhotoView.getPaddingTop() - mPhotoView.getPaddingBottom());
+        inverse.mapRect(cropRect);
+        cropRect.set(
+                cropRect.left / drawable.getIntrinsicWidth(),
+                cropRect.top / drawable.getIntrinsicHeight(),
+                cropRect.right / drawable.getIntrinsicWidth(),
+                cropRect.bottom / drawable.getIntrinsicHeight()
+        );
+        if (!cropRect.intersect(0, 0, 1, 1)) {
+            return null;
+        }
+        return cropRect;
+    }
+
+    private void deliverComplete(final String destPath, final CancelToken token) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                // 投递前页面被销毁, 丢弃裁剪结果
+                if (token.isCanceled()) {
+                    PictureCompressor.deleteInBackground(destPath);
+                    return;
+                }
+                Intent intent = new Intent();
+                intent.putExtra(RESULT_EXTRA_CROPPED_PATH, destPath);
+                setResult(RESULT_OK, intent);
+                finish();
+            }
+        });
+    }
+
+    private void deliverFailed(final Exception e, final CancelToken token) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (token.isCanceled()) {
+                    return;
+                }
+                Log.e(TAG, "Crop picture failed.", e);
+                // 允许调整选框后重试
+                mCropToken = null;
+                Snackbar.make(mPhotoView, R.string.libpicturepicker_crop_tips_crop_failed,
+                        Snackbar.LENGTH_LONG).show();
+            }
+        });
+    }
+
+}
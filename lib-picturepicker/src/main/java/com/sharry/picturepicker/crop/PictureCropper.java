@@ -0,0 +1,175 @@
+package com.sharry.picturepicker.crop;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.sharry.picturepicker.support.executor.CancelToken;
+import com.sharry.picturepicker.support.loader.BitmapPool;
+import com.sharry.picturepicker.support.utils.PictureMetadataCache;
+import com.sharry.picturepicker.support.utils.PictureUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * 图片裁剪的实现, 在子线程中调用
+ * <p>
+ * 使用 {@link BitmapRegionDecoder} 只解码选中的区域, 采样率保证解码后的尺寸不小于输出的尺寸.
+ * 区域按行切分为若干条带依次解码, 每一条带解码后立即旋转并缩放绘制到输出的图片中, 随后回收到 Bitmap 池,
+ * 不会产生完整的原图或完整的选中区域, 内存的峰值只与输出的尺寸有关. 最后直接编码到目标文件中.
+ * 几何计算见 {@link CropGeometry}.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.4
+ * @since 2019/3/30 10:20
+ */
+class PictureCropper {
+
+    /**
+     * 裁剪图片, 选中的区域来自按照 EXIF 旋转后展示的图片, 裁剪后同样按照 EXIF 旋转
+     *
+     * @param originPath 原图的路径
+     * @param cropRect   选中的区域, 为按照 EXIF 旋转后的图片中的比例, 取值范围 [0, 1]
+     * @param config     输出的尺寸, 质量与文件大小
+     * @param destPath   输出的文件
+     * @param token      取消令牌, 传 null 则不可取消
+     * @throws CancellationException 裁剪被取消, 此时不会留下目标文件
+     * @throws IOException           无法解码或写入, 此时不会留下目标文件
+     */
+    static void crop(@NonNull String originPath, @NonNull RectF cropRect, @NonNull CropConfig config,
+                     @NonNull String destPath, @Nullable CancelToken token) throws IOException {
+        // 相册遍历时已经读取了旋转角度, 不需要再解析 EXIF
+        PictureMetadataCache.Metadata metadata = PictureMetadataCache.getDefault().get(originPath);
+        int orientation = metadata != null ? metadata.orientation : PictureUtil.readPictureAngle(originPath);
+        BitmapRegionDecoder decoder = newDecoder(originPath);
+        try {
+            CropGeometry geometry = CropGeometry.fromOrientedRect(decoder.getWidth(), decoder.getHeight(),
+                    orientation, cropRect.left, cropRect.top, cropRect.right, cropRect.bottom,
+                    config.getOutputX(), config.getOutputY());
+            crop(decoder, geometry, config, destPath, token);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e);
+        } finally {
+            decoder.recycle();
+        }
+    }
+
+    /**
+     * 裁剪图片
+     *
+     * @param originPath 原图的路径
+     * @param sourceRect 原图中裁剪的区域
+     * @param rotation   裁剪后顺时针旋转的角度, 为 90 的整数倍
+     * @param config     输出的尺寸, 质量与文件大小, 尺寸为旋转后的尺寸
+     * @param destPath   输出的文件
+     * @param token      取消令牌, 传 null 则不可取消
+     * @throws CancellationException 裁剪被取消, 此时不会留下目标文件
+     * @throws IOException           无法解码或写入, 此时不会留下目标文件
+     */
+    static void crop(@NonNull String originPath, @NonNull Rect sourceRect, int rotation,
+                     @NonNull CropConfig config, @NonNull String destPath,
+                     @Nullable CancelToken token) throws IOException {
+        BitmapRegionDecoder decoder = newDecoder(originPath);
+        try {
+            CropGeometry geometry = new CropGeometry(decoder.getWidth(), decoder.getHeight(),
+                    sourceRect.left, sourceRect.top, sourceRect.right, sourceRect.bottom, rotation,
+                    config.getOutputX(), config.getOutputY());
+            crop(decoder, geometry, config, destPath, token);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e);
+        } finally {
+            decoder.recycle();
+        }
+    }
+
+    private static BitmapRegionDecoder newDecoder(String originPath) throws IOException {
+        BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(originPath, false);
+        if (decoder == null) {
+            throw new IOException("PictureCropper.crop -> Unsupported picture format: " + originPath);
+        }
+        return decoder;
+    }
+
+    private static void crop(BitmapRegionDecoder decoder, CropGeometry geometry, CropConfig config,
+                             String destPath, @Nullable CancelToken token) throws IOException {
+        BitmapPool bitmapPool = BitmapPool.getDefault();
+        int outputWidth = geometry.getOutputWidth();
+        int outputHeight = geometry.getOutputHeight();
+        Bitmap output = BitmapPool.isReuseSupport() ?
+                bitmapPool.get(outputWidth, outputHeight, Bitmap.Config.ARGB_8888) :
+                Bitmap.createBitmap(outputWidth, outputHeight, Bitmap.Config.ARGB_8888);
+        boolean isCompleted = false;
+        try {
+            // 1. 逐条带解码, 旋转并缩放绘制到输出的图片中
+            Canvas canvas = new Canvas(output);
+            Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            Matrix matrix = new Matrix();
+            Rect stripRect = new Rect();
+            int[] rect = new int[4];
+            float[] values = new float[9];
+            float[] clip = new float[4];
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = geometry.getSampleSize();
+            // 首尾的条带比中间的条带矮, 按照最大的条带分配一次, 所有条带复用同一块内存
+            Bitmap strip = BitmapPool.isReuseSupport() ?
+                    bitmapPool.get(geometry.getSampledWidth(), geometry.getMaxStripSampledHeight(),
+                            Bitmap.Config.ARGB_8888) : null;
+            try {
+                for (int i = 0; i < geometry.getStripCount(); i++) {
+                    checkCanceled(token);
+                    geometry.getStripDecodeRect(i, rect);
+                    stripRect.set(rect[0], rect[1], rect[2], rect[3]);
+                    options.inBitmap = strip;
+                    strip = bitmapPool.decodeRegion(decoder, stripRect, options);
+                    if (strip == null) {
+                        throw new IOException("PictureCropper.crop -> Decode region failed: " + stripRect);
+                    }
+                    geometry.getStripTransform(i, strip.getWidth(), strip.getHeight(), values);
+                    geometry.getStripClip(i, clip);
+                    matrix.setValues(values);
+                    int saveCount = canvas.save();
+                    canvas.clipRect(clip[0], clip[1], clip[2], clip[3]);
+                    canvas.drawBitmap(strip, matrix, paint);
+                    canvas.restoreToCount(saveCount);
+                    if (!BitmapPool.isReuseSupport()) {
+                        // 无法复用时立即释放, 不与下一条带同时存在
+                        strip.recycle();
+                        strip = null;
+                    }
+                }
+            } finally {
+                bitmapPool.put(strip);
+            }
+            checkCanceled(token);
+            // 2. 编码到目标文件中
+            output = PictureUtil.compressBitmap(output, destPath, config.getDestQuality(),
+                    config.getDestFileSize(), token);
+            checkCanceled(token);
+            isCompleted = true;
+            // 输出的像素已经旋转, 插入相册时直接使用
+            PictureMetadataCache.getDefault().retainWritten(destPath, output.getWidth(), output.getHeight(), 0);
+        } finally {
+            // 失败或被取消时不保留目标文件
+            if (!isCompleted) {
+                new File(destPath).delete();
+            }
+            bitmapPool.put(output);
+        }
+    }
+
+    private static void checkCanceled(@Nullable CancelToken token) {
+        if (token != null && token.isCanceled()) {
+            throw new CancellationException();
+        }
+    }
+
+}
@@ -0,0 +1,301 @@
+package com.sharry.picturepicker.picker;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * 持久化到磁盘的相册索引
+ * <p>
+ * 保存上一次遍历 MediaStore 的结果, 再次打开相册时先加载索引, 再根据 _ID/DATE_MODIFIED 的水位线增量刷新.
+ * 文件格式: 魔数, 版本, 水位线, 文件夹表, 图片行(_ID, 文件夹索引, 宽, 高, 旋转角度, 文件大小,
+ * date_added, date_modified, path).
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.1
+ * @since 2019/3/21 10:36
+ */
+class AlbumIndex {
+
+    private static final String TAG = AlbumIndex.class.getSimpleName();
+    private static final String FILE_NAME = "libpicturepicker_album_index";
+    private static final int MAGIC = 0x50504149;    // "PPAI"
+    private static final int VERSION = 2;
+
+    /**
+     * 按照相册的展示顺序排序: date_added 倒序, 相同时 _ID 倒序
+     */
+    private static final Comparator<PictureItem> DISPLAY_ORDER = new Comparator<PictureItem>() {
+        @Override
+        public int compare(PictureItem o1, PictureItem o2) {
+            if (o1.dateAdded != o2.dateAdded) {
+                return o1.dateAdded > o2.dateAdded ? -1 : 1;
+            }
+            return o1.id == o2.id ? 0 : (o1.id > o2.id ? -1 : 1);
+        }
+    };
+
+    /**
+     * 获取索引文件
+     */
+    static File getIndexFile(File cacheDir) {
+        return new File(cacheDir, FILE_NAME);
+    }
+
+    /**
+     * 从磁盘中读取索引
+     *
+     * @return 索引不存在或者已损坏时返回 null
+     */
+    @Nullable
+    static AlbumIndex read(@NonNull File indexFile) {
+        if (!indexFile.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Log.i(TAG, "Album index format changed, it will be rebuilt.");
+                return null;
+            }
+            AlbumIndex index = new AlbumIndex();
+            index.mMaxId = in.readLong();
+            index.mMaxDateModified = in.readLong();
+            // 文件夹表
+            int folderCount = in.readInt();
+            String[] folderPaths = new String[folderCount];
+            for (int i = 0; i < folderCount; i++) {
+                folderPaths[i] = in.readUTF();
+            }
+            // 图片行
+            int itemCount = in.readInt();
+            index.mItems.ensureCapacity(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                long id = in.readLong();
+                int folderIndex = in.readInt();
+                int width = in.readInt();
+                int height = in.readInt();
+                int orientation = in.readInt();
+                long size = in.readLong();
+                long dateAdded = in.readLong();
+                long dateModified = in.readLong();
+                String path = in.readUTF();
+                index.mItems.add(new PictureItem(id, path, folderIndex < 0 ? null : folderPaths[folderIndex],
+                        width, height, orientation, size, dateAdded, dateModified));
+            }
+            return index;
+        } catch (Exception e) {
+            Log.e(TAG, "Read album index failed, it will be rebuilt.", e);
+            indexFile.delete();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private final ArrayList<PictureItem> mItems = new ArrayList<>();
+    private long mMaxId;
+    private long mMaxDateModified;
+
+    AlbumIndex() {
+    }
+
+    /**
+     * 写入磁盘, 先写临时文件再重命名, 避免多个相册同时写入时损坏索引
+     * <p>
+     * 每次写入使用独立的临时文件, 同时写入的相册不会写到同一个文件中, 最后完成重命名的一方生效.
+     */
+    void write(@NonNull File indexFile) throws IOException {
+        File tempFile = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getParentFile());
+        boolean isRenamed = false;
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(mMaxId);
+            out.writeLong(mMaxDateModified);
+            // 文件夹表
+            HashMap<String, Integer> folderIndices = new HashMap<>();
+            ArrayList<String> folderPaths = new ArrayList<>();
+            for (PictureItem item : mItems) {
+                if (item.folderPath != null && !folderIndices.containsKey(item.folderPath)) {
+                    folderIndices.put(item.folderPath, folderPaths.size());
+                    folderPaths.add(item.folderPath);
+                }
+            }
+            out.writeInt(folderPaths.size());
+            for (String folderPath : folderPaths) {
+                out.writeUTF(folderPath);
+            }
+            // 图片行
+            out.writeInt(mItems.size());
+            for (PictureItem item : mItems) {
+                out.writeLong(item.id);
+                out.writeInt(item.folderPath == null ? -1 : folderIndices.get(item.folderPath));
+                out.writeInt(item.width);
+                out.writeInt(item.height);
+                out.writeInt(item.orientation);
+                out.writeLong(item.size);
+                out.writeLong(item.dateAdded);
+                out.writeLong(item.dateModified);
+                out.writeUTF(item.path);
+            }
+            out.flush();
+            closeQuietly(out);
+            out = null;
+            isRenamed = tempFile.renameTo(indexFile);
+            if (!isRenamed) {
+                throw new IOException("Rename album index failed -> " + indexFile.getAbsolutePath());
+            }
+        } finally {
+            closeQuietly(out);
+            if (!isRenamed) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * 追加一行数据, 用于全量遍历时构建索引
+     */
+    void append(@NonNull PictureItem item) {
+        mItems.add(item);
+        updateWatermark(item);
+    }
+
+    /**
+     * 合并增量数据, 已存在的 _ID 会被替换
+     * <p>
+     * 水位线包含边界, 增量中会重复出现已索引且未变更的行, 这些行不视为变更.
+     * 旧数据与排好序的增量数据一次归并, 不需要逐个移除再整体排序.
+     *
+     * @return 是否有数据发生了变更
+     */
+    boolean merge(@NonNull List<PictureItem> delta) {
+        if (delta.isEmpty()) {
+            return false;
+        }
+        HashMap<Long, PictureItem> changed = new HashMap<>(delta.size() * 2);
+        for (PictureItem item : delta) {
+            changed.put(item.id, item);
+        }
+        // 1. 过滤掉与索引中完全一致的行
+        for (PictureItem item : mItems) {
+            PictureItem newer = changed.get(item.id);
+            if (newer != null && isSameRow(item, newer)) {
+                changed.remove(item.id);
+            }
+        }
+        if (changed.isEmpty()) {
+            return false;
+        }
+        for (PictureItem item : changed.values()) {
+            updateWatermark(item);
+        }
+        // 2. 跳过被替换的旧数据, 与排好序的增量数据归并
+        ArrayList<PictureItem> sortedDelta = new ArrayList<>(changed.values());
+        Collections.sort(sortedDelta, DISPLAY_ORDER);
+        ArrayList<PictureItem> merged = new ArrayList<>(mItems.size() + sortedDelta.size());
+        int deltaIndex = 0;
+        for (PictureItem item : mItems) {
+            if (changed.containsKey(item.id)) {
+                continue;
+            }
+            while (deltaIndex < sortedDelta.size() && DISPLAY_ORDER.compare(sortedDelta.get(deltaIndex), item) < 0) {
+                merged.add(sortedDelta.get(deltaIndex++));
+            }
+            merged.add(item);
+        }
+        merged.addAll(sortedDelta.subList(deltaIndex, sortedDelta.size()));
+        mItems.clear();
+        mItems.addAll(merged);
+        return true;
+    }
+
+    /**
+     * 仅保留 MediaStore 中依旧存在的数据, 一次遍历重建列表
+     *
+     * @return 是否有数据被移除
+     */
+    boolean retain(@NonNull HashSet<Long> existIds) {
+        ArrayList<PictureItem> retained = new ArrayList<>(mItems.size());
+        for (PictureItem item : mItems) {
+            if (existIds.contains(item.id)) {
+                retained.add(item);
+            }
+        }
+        if (retained.size() == mItems.size()) {
+            return false;
+        }
+        mItems.clear();
+        mItems.addAll(retained);
+        return true;
+    }
+
+    /**
+     * 按照展示顺序排列的数据
+     */
+    List<PictureItem> getItems() {
+        return mItems;
+    }
+
+    int size() {
+        return mItems.size();
+    }
+
+    long getMaxId() {
+        return mMaxId;
+    }
+
+    long getMaxDateModified() {
+        return mMaxDateModified;
+    }
+
+    /**
+     * 增量查询中的行与索引中的行是否完全一致
+     */
+    private static boolean isSameRow(PictureItem indexed, PictureItem queried) {
+        return indexed.dateModified == queried.dateModified
+                && indexed.dateAdded == queried.dateAdded
+                && indexed.size == queried.size
+                && indexed.width == queried.width
+                && indexed.height == queried.height
+                && indexed.orientation == queried.orientation
+                && indexed.path.equals(queried.path);
+    }
+
+    private void updateWatermark(PictureItem item) {
+        mMaxId = Math.max(mMaxId, item.id);
+        mMaxDateModified = Math.max(mMaxDateModified, item.dateModified);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore.
+        }
+    }
+
+}
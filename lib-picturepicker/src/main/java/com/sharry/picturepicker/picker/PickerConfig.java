@@ -59,6 +59,8 @@ public class PickerConfig implements Parcelable {
     // 是否展示滚动动画
     private boolean isToolbarBehavior = false;
     private boolean isFabBehavior = false;
+    // 预加载的行数, 需要图片加载器实现 IPicturePreloader
+    private int prefetchRowCount = 3;
     private CameraConfig cameraConfig;                                                       // 拍照的配置
     private CropConfig cropConfig;                                                           // 裁剪的配置
 
@@ -85,6 +87,7 @@ public class PickerConfig implements Parcelable {
         dest.writeInt(indicatorBorderUncheckedColor);
         dest.writeByte((byte) (isToolbarBehavior ? 1 : 0));
         dest.writeByte((byte) (isFabBehavior ? 1 : 0));
+        dest.writeInt(prefetchRowCount);
         dest.writeParcelable(cameraConfig, flags);
         dest.writeParcelable(cropConfig, flags);
     }
@@ -142,6 +145,10 @@ public class PickerConfig implements Parcelable {
         return isFabBehavior;
     }
 
+    public int getPrefetchRowCount() {
+        return prefetchRowCount;
+    }
+
     @Nullable
     public CameraConfig getCameraConfig() {
         return cameraConfig;
@@ -184,6 +191,7 @@ public class PickerConfig implements Parcelable {
         indicatorBorderUncheckedColor = in.readInt();
         isToolbarBehavior = in.readByte() != 0;
         isFabBehavior = in.readByte() != 0;
+        prefetchRowCount = in.readInt();
         cameraConfig = in.readParcelable(CameraConfig.class.getClassLoader());
         cropConfig = in.readParcelable(CropConfig.class.getClassLoader());
     }
@@ -309,6 +317,17 @@ public class PickerConfig implements Parcelable {
             return this;
         }
 
+        /**
+         * 设置滑动时预加载的行数, 快速滑动时最多会扩大为两倍
+         * 需要图片加载器实现 {@link com.sharry.picturepicker.support.loader.IPicturePreloader}, 传 0 则关闭预加载
+         *
+         * @param rowCount 预加载的行数
+         */
+        public Builder setPrefetchRowCount(int rowCount) {
+            mConfig.prefetchRowCount = Math.max(0, rowCount);
+            return this;
+        }
+
         public Builder setCropConfig(@Nullable CropConfig cropConfig) {
             mConfig.cropConfig = cropConfig;
             return this;
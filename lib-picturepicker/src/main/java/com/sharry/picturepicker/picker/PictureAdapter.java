@@ -4,6 +4,9 @@ import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.widget.RecyclerView;
 import android.util.TypedValue;
 import android.view.LayoutInflater;
@@ -12,32 +15,53 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import com.sharry.picturepicker.R;
+import com.sharry.picturepicker.support.collection.OrderedPathSet;
+import com.sharry.picturepicker.support.executor.PickerExecutors;
 import com.sharry.picturepicker.support.loader.PictureLoader;
 import com.sharry.picturepicker.widget.CheckedIndicatorView;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Adapter associated with PicturePicker.
  *
  * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
- * @version 1.3
+ * @version 1.6
  * @since 2018/9/1 10:19
  */
 class PictureAdapter extends RecyclerView.Adapter<PictureAdapter.ViewHolder> {
 
+    /**
+     * 局部刷新的标记: 只更新角标, 不重新加载图片
+     */
+    private static final Object PAYLOAD_CHECKED_INDICATOR = new Object();
+
+    /**
+     * 差异计算量的上限, 超过时不计算差异, 直接全量刷新
+     * <p>
+     * DiffUtil 的耗时为 O((N + M) * D), D 为编辑距离, 且计算占用的是与遍历共享的线程池.
+     * 编辑距离不小于两个文件夹中不共有的图片数量, 共有的图片很少时可复用的条目本就不多.
+     */
+    private static final long DIFF_MAX_COST = 2000000L;
+
     private final Context mContext;
     private final PickerConfig mConfig;
-    private final List<String> mDisplayPaths;
-    private final List<String> mUserPickedPaths;
+    private final OrderedPathSet mUserPickedPaths;
     private final AdapterInteraction mInteraction;
+    private List<String> mDisplayPaths = Collections.emptyList();
+    private PictureFolder mDisplayFolder;                         // 展示的文件夹, 尚未设置时为 null
+    private int mDisplayGeneration = 0;                           // 每次切换展示集合时递增, 用于丢弃过期的差异结果
+    private boolean mIsDiffPending = false;                       // 差异计算中, 此时展示的是旧集合的快照
 
     // 用于延时更新角标
     private Handler mMainThreadHandler = new Handler(Looper.getMainLooper());
+    private int mShiftedOrdinalStart = Integer.MAX_VALUE;
     private Runnable mRefreshIndicatorRunnable = new Runnable() {
         @Override
         public void run() {
-            notifyDataSetChanged();
+            notifyPickedOrdinalsShifted(mShiftedOrdinalStart);
+            mShiftedOrdinalStart = Integer.MAX_VALUE;
         }
     };
 
@@ -47,12 +71,16 @@ class PictureAdapter extends RecyclerView.Adapter<PictureAdapter.ViewHolder> {
 
         void onPictureRemoved(String uri);
 
-        void onPictureClicked(ImageView imageView, String uri, int position);
+        /**
+         * @param displayPaths 点击时列表展示的集合, 切换文件夹的差异计算完成前为旧文件夹的快照
+         * @param position     图片在 displayPaths 中的位置
+         */
+        void onPictureClicked(ImageView imageView, PictureRowsSnapshot displayPaths, int position);
 
         void onCameraClicked();
     }
 
-    PictureAdapter(Context context, PickerConfig config, List<String> displayPaths, List<String> userPickedPaths) {
+    PictureAdapter(Context context, PickerConfig config, OrderedPathSet userPickedPaths) {
         if (context instanceof AdapterInteraction) {
             this.mInteraction = (AdapterInteraction) context;
         } else {
@@ -61,7 +89,6 @@ class PictureAdapter extends RecyclerView.Adapter<PictureAdapter.ViewHolder> {
         }
         this.mContext = context;
         this.mConfig = config;
-        this.mDisplayPaths = displayPaths;
         this.mUserPickedPaths = userPickedPaths;
     }
 
@@ -104,10 +131,29 @@ class PictureAdapter extends RecyclerView.Adapter<PictureAdapter.ViewHolder> {
         }
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty() || (mConfig.isCameraSupport() && position == 0)) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        // 仅角标发生了变化, 不重新加载图片
+        int relativePosition = position - (mConfig.isCameraSupport() ? 1 : 0);
+        bindCheckedIndicator(holder, mDisplayPaths.get(relativePosition));
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        // 释放缩略图, 内置的加载器会将其回收到 Bitmap 池中复用
+        PictureLoader.recycle(mContext, holder.ivPicture);
+    }
+
     /**
      * 绑定相机 Header 的数据
      */
     private void bindCameraHeader(@NonNull ViewHolder holder) {
+        // 复用的 View 可能还有尚未完成的加载
+        PictureLoader.recycle(mContext, holder.ivPicture);
         holder.ivPicture.setScaleType(ImageView.ScaleType.CENTER);
         holder.ivPicture.setImageResource(R.drawable.libpicturepicker_picker_camera);
         holder.checkIndicator.setVisibility(View.INVISIBLE);
@@ -119,10 +165,16 @@ class PictureAdapter extends RecyclerView.Adapter<PictureAdapter.ViewHolder> {
     private void bindItemView(final ViewHolder holder, final String uri) {
         holder.ivPicture.setScaleType(ImageView.ScaleType.CENTER_CROP);
         PictureLoader.load(mContext, uri, holder.ivPicture);
-        // 判断当前 uri 是否被选中了
-        final int index = mUserPickedPaths.indexOf(uri);
-        // 设置点击监听
         holder.checkIndicator.setVisibility(View.VISIBLE);
+        bindCheckedIndicator(holder, uri);
+    }
+
+    /**
+     * 绑定选中的角标
+     */
+    private void bindCheckedIndicator(ViewHolder holder, String uri) {
+        // 判断当前 uri 是否被选中了, 哈希索引查询, 不会随选中数量增长
+        final int index = mUserPickedPaths.indexOf(uri);
         holder.checkIndicator.setCheckedWithoutAnimator(index != -1);
         holder.checkIndicator.setText(String.valueOf(index + 1));
     }
@@ -132,10 +184,191 @@ class PictureAdapter extends RecyclerView.Adapter<PictureAdapter.ViewHolder> {
         return mDisplayPaths.size() + (mConfig.isCameraSupport() ? 1 : 0);
     }
 
+    /**
+     * 获取 adapterPosition 对应的图片路径
+     *
+     * @return 相机 Header 或者越界时返回 null
+     */
+    @Nullable
+    String getDisplayPathAt(int adapterPosition) {
+        int relativePosition = adapterPosition - (mConfig.isCameraSupport() ? 1 : 0);
+        if (relativePosition < 0 || relativePosition >= mDisplayPaths.size()) {
+            return null;
+        }
+        return mDisplayPaths.get(relativePosition);
+    }
+
+    /**
+     * 设置需要展示的文件夹
+     * <p>
+     * 在后台线程比较新旧文件夹的行号计算差异, 计算完成前继续展示旧集合的快照, 完成后只刷新发生变化的条目,
+     * 两个文件夹中共有的图片不会重新加载. 共有的图片很少, 计算量超过 {@link #DIFF_MAX_COST} 时直接全量刷新.
+     *
+     * @param displayFolder 选中的文件夹, 后续分页追加的数据通过 {@link #notifyDisplayPathsRangeInserted} 通知
+     */
+    void setDisplayFolder(@NonNull final PictureFolder displayFolder) {
+        final int generation = ++mDisplayGeneration;
+        final PictureRowsSnapshot oldSnapshot = snapshotDisplayRows();
+        // 只记录数组的引用与数量, 不在主线程中复制
+        final PictureRowsSnapshot newSnapshot = displayFolder.snapshotRows();
+        if (oldSnapshot == null || !oldSnapshot.isDiffableWith(newSnapshot)
+                || exceedsDiffCost(oldSnapshot.count, newSnapshot.count, Math.abs(oldSnapshot.count - newSnapshot.count))) {
+            performDisplayFolderChanged(displayFolder);
+            return;
+        }
+        // 计算期间展示旧集合的快照, 避免旧文件夹分页追加数据导致与 RecyclerView 的记录不一致
+        mIsDiffPending = true;
+        mDisplayPaths = oldSnapshot;
+        PickerExecutors.getWorkExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                // 共有的图片太少时差异计算的开销过大, 直接全量刷新
+                final DiffUtil.DiffResult result = exceedsDiffCost(oldSnapshot.count, newSnapshot.count,
+                        oldSnapshot.count + newSnapshot.count - 2 * countCommonRows(oldSnapshot, newSnapshot))
+                        ? null : DiffUtil.calculateDiff(new DisplayRowsDiffCallback(oldSnapshot, newSnapshot), false);
+                mMainThreadHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // 计算期间又切换了文件夹, 丢弃过期的结果
+                        if (generation != mDisplayGeneration) {
+                            return;
+                        }
+                        // 未计算差异, 或计算期间新集合发生了变更, 差异已失效
+                        if (result == null || displayFolder.getPictureCount() != newSnapshot.count) {
+                            performDisplayFolderChanged(displayFolder);
+                            return;
+                        }
+                        mIsDiffPending = false;
+                        mDisplayFolder = displayFolder;
+                        mDisplayPaths = displayFolder.getPicturePaths();
+                        result.dispatchUpdatesTo(new HeaderOffsetUpdateCallback());
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 全量刷新展示的文件夹
+     */
+    private void performDisplayFolderChanged(@NonNull PictureFolder displayFolder) {
+        mIsDiffPending = false;
+        mDisplayFolder = displayFolder;
+        mDisplayPaths = displayFolder.getPicturePaths();
+        notifyDataSetChanged();
+    }
+
+    /**
+     * 获取当前展示的集合的快照
+     *
+     * @return 尚未展示任何集合时返回 null
+     */
+    @Nullable
+    private PictureRowsSnapshot snapshotDisplayRows() {
+        if (mIsDiffPending) {
+            return (PictureRowsSnapshot) mDisplayPaths;
+        }
+        if (mDisplayFolder == null || mDisplayFolder.getPictureCount() == 0) {
+            return null;
+        }
+        return mDisplayFolder.snapshotRows();
+    }
+
+    /**
+     * 差异计算量是否超过上限
+     *
+     * @param minEditDistance 编辑距离的下限
+     */
+    private static boolean exceedsDiffCost(int oldCount, int newCount, int minEditDistance) {
+        return (long) (oldCount + newCount) * minEditDistance > DIFF_MAX_COST;
+    }
+
+    /**
+     * 统计两个快照中共有的行号数量, 耗时 O(N + M)
+     */
+    private static int countCommonRows(PictureRowsSnapshot oldSnapshot, PictureRowsSnapshot newSnapshot) {
+        int maxRow = -1;
+        for (int i = 0; i < oldSnapshot.count; i++) {
+            maxRow = Math.max(maxRow, oldSnapshot.rows[i]);
+        }
+        boolean[] isOldRow = new boolean[maxRow + 1];
+        for (int i = 0; i < oldSnapshot.count; i++) {
+            isOldRow[oldSnapshot.rows[i]] = true;
+        }
+        int commonCount = 0;
+        for (int i = 0; i < newSnapshot.count; i++) {
+            int row = newSnapshot.rows[i];
+            if (row <= maxRow && isOldRow[row]) {
+                commonCount++;
+            }
+        }
+        return commonCount;
+    }
+
+    /**
+     * 通知展示集合中追加了数据, 需要修正相机 Header 的偏移量
+     */
+    void notifyDisplayPathsRangeInserted(int positionStart, int itemCount) {
+        // 差异计算完成时会校验集合的数量, 此处无需处理
+        if (mIsDiffPending) {
+            return;
+        }
+        notifyItemRangeInserted(positionStart + (mConfig.isCameraSupport() ? 1 : 0), itemCount);
+    }
+
+    /**
+     * 通知选中集合发生了变更, 只局部刷新序号发生变化的角标
+     *
+     * @param oldPickedPaths 变更前选中的图片
+     */
+    void notifyPickedPathsChanged(@NonNull List<String> oldPickedPaths) {
+        OrderedPathSet oldPickedSet = new OrderedPathSet(oldPickedPaths);
+        // 新旧集合的并集大小, 全部找到后即可结束遍历
+        int remaining = mUserPickedPaths.size();
+        for (String path : oldPickedSet) {
+            if (!mUserPickedPaths.contains(path)) {
+                remaining++;
+            }
+        }
+        for (int i = 0, size = mDisplayPaths.size(); i < size && remaining > 0; i++) {
+            String path = mDisplayPaths.get(i);
+            int oldOrdinal = oldPickedSet.indexOf(path);
+            int newOrdinal = mUserPickedPaths.indexOf(path);
+            if (oldOrdinal == -1 && newOrdinal == -1) {
+                continue;
+            }
+            remaining--;
+            if (oldOrdinal != newOrdinal) {
+                notifyDisplayPathChanged(i);
+            }
+        }
+    }
+
+    /**
+     * 通知序号大于等于 ordinalStart 的选中图片角标发生了变更
+     */
+    private void notifyPickedOrdinalsShifted(int ordinalStart) {
+        int remaining = mUserPickedPaths.size() - ordinalStart;
+        for (int i = 0, size = mDisplayPaths.size(); i < size && remaining > 0; i++) {
+            if (mUserPickedPaths.indexOf(mDisplayPaths.get(i)) >= ordinalStart) {
+                remaining--;
+                notifyDisplayPathChanged(i);
+            }
+        }
+    }
+
+    private void notifyDisplayPathChanged(int displayPosition) {
+        notifyItemChanged(displayPosition + (mConfig.isCameraSupport() ? 1 : 0), PAYLOAD_CHECKED_INDICATOR);
+    }
+
     /**
      * 通知选中图片的角标变更
+     *
+     * @param removedOrdinal 被移除的图片的序号, 在它之后的角标需要更新
      */
-    private void notifyCheckedIndicatorChanged() {
+    private void notifyCheckedIndicatorChanged(int removedOrdinal) {
+        mShiftedOrdinalStart = Math.min(mShiftedOrdinalStart, removedOrdinal);
+        mMainThreadHandler.removeCallbacks(mRefreshIndicatorRunnable);
         mMainThreadHandler.postDelayed(mRefreshIndicatorRunnable, 300);
     }
 
@@ -182,7 +415,11 @@ class PictureAdapter extends RecyclerView.Adapter<PictureAdapter.ViewHolder> {
                 mInteraction.onCameraClicked();
             } else {
                 int position = getAdapterPosition() - (mConfig.isCameraSupport() ? 1 : 0);
-                mInteraction.onPictureClicked(ivPicture, mDisplayPaths.get(position), position);
+                PictureRowsSnapshot displayPaths = snapshotDisplayRows();
+                if (displayPaths == null || position < 0 || position >= displayPaths.size()) {
+                    return;
+                }
+                mInteraction.onPictureClicked(ivPicture, displayPaths, position);
             }
         }
 
@@ -192,10 +429,11 @@ class PictureAdapter extends RecyclerView.Adapter<PictureAdapter.ViewHolder> {
             String path = mDisplayPaths.get(position);
             if (checkIndicator.isChecked()) {// Checked-> Unchecked
                 // 移除选中数据与状态
+                int removedOrdinal = mUserPickedPaths.indexOf(path);
                 mInteraction.onPictureRemoved(path);
                 checkIndicator.setChecked(false);
                 // 需要延时的更新索引角标
-                notifyCheckedIndicatorChanged();
+                notifyCheckedIndicatorChanged(removedOrdinal);
             } else {// Unchecked -> Checked
                 // 判断是否达到选择上限
                 checkIndicator.setChecked(mInteraction.onPictureChecked(path));
@@ -205,4 +443,67 @@ class PictureAdapter extends RecyclerView.Adapter<PictureAdapter.ViewHolder> {
         }
     }
 
+    /**
+     * 比较两个文件夹的行号, 同一张表中行号相同即为同一张图片
+     */
+    private static class DisplayRowsDiffCallback extends DiffUtil.Callback {
+
+        private final PictureRowsSnapshot oldSnapshot;
+        private final PictureRowsSnapshot newSnapshot;
+
+        DisplayRowsDiffCallback(PictureRowsSnapshot oldSnapshot, PictureRowsSnapshot newSnapshot) {
+            this.oldSnapshot = oldSnapshot;
+            this.newSnapshot = newSnapshot;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldSnapshot.count;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newSnapshot.count;
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldSnapshot.rows[oldItemPosition] == newSnapshot.rows[newItemPosition];
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            // 选中状态的变化通过角标的局部刷新处理
+            return true;
+        }
+    }
+
+    /**
+     * 分发差异时修正相机 Header 的偏移量
+     */
+    private class HeaderOffsetUpdateCallback implements ListUpdateCallback {
+
+        private final int offset = mConfig.isCameraSupport() ? 1 : 0;
+
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position + offset, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position + offset, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            notifyItemMoved(fromPosition + offset, toPosition + offset);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            notifyItemRangeChanged(position + offset, count, payload);
+        }
+    }
+
 }
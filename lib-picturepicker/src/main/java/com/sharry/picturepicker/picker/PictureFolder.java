@@ -1,34 +1,128 @@
 package com.sharry.picturepicker.picker;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Describe pictures that in the same folder.
+ * <p>
+ * 文件夹只保存图片在 {@link PictureTable} 中的行号, 路径集合是基于行号的只读视图.
+ * 行号数组中前 size 个元素写入后不再修改, 追加只写入其后的位置, 插入时重新分配数组,
+ * 因此 {@link #getRows()} 与 {@link #getPictureCount()} 可以作为快照交给子线程读取.
  *
  * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
- * @version 1.0
+ * @version 1.4
  * @since 2018/8/31 22:29
  */
 class PictureFolder {
 
-    private String folderName;//文件名
-    private List<String> picturePaths = new ArrayList<>();//文件夹内部的图片的Uri
+    private static final int[] EMPTY_ROWS = new int[0];
 
-    PictureFolder(String folderName) {
+    private final String folderPath;//文件夹的绝对路径, <所有图片> 的文件夹为 null
+    private final String folderName;//文件名
+    private final PictureTable table;//图片数据所在的表
+    private int[] rows = EMPTY_ROWS;//文件夹内部的图片在表中的行号
+    private int size;
+    private final List<String> picturePaths = new AbstractList<String>() {//文件夹内部的图片的Uri
+
+        @Override
+        public String get(int index) {
+            return table.getPath(getRowAt(index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    };
+
+    PictureFolder(String folderPath, String folderName, PictureTable table) {
+        this.folderPath = folderPath;
         this.folderName = folderName;
+        this.table = table;
+    }
+
+    String getFolderPath() {
+        return folderPath;
     }
 
     String getFolderName() {
         return folderName;
     }
 
+    /**
+     * 获取文件夹内部图片的只读视图
+     */
     List<String> getPicturePaths() {
         return picturePaths;
     }
 
-    void addPath(String imageUri) {
-        picturePaths.add(imageUri);
+    int getPictureCount() {
+        return size;
+    }
+
+    /**
+     * 获取图片数据所在的表, 同一张表中行号相同即为同一张图片
+     */
+    PictureTable getTable() {
+        return table;
+    }
+
+    /**
+     * 获取行号数组, 只读, 有效的元素为前 {@link #getPictureCount()} 个
+     */
+    int[] getRows() {
+        return rows;
+    }
+
+    /**
+     * 获取当前行号的快照, 不复制数组
+     */
+    PictureRowsSnapshot snapshotRows() {
+        return new PictureRowsSnapshot(table, rows, size);
+    }
+
+    int getRowAt(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return rows[index];
+    }
+
+    /**
+     * 追加一组行号
+     *
+     * @param pageRows 页内的行号
+     * @param count    行号的数量
+     * @param offset   页内行号到表中行号的偏移量
+     */
+    void addRows(int[] pageRows, int count, int offset) {
+        ensureCapacity(size + count);
+        for (int i = 0; i < count; i++) {
+            rows[size + i] = pageRows[i] + offset;
+        }
+        size += count;
+    }
+
+    /**
+     * 在指定位置插入一行
+     */
+    void insertRow(int index, int row) {
+        // 重新分配数组, 已交给子线程的快照不受影响, 插入只发生在拍照之后, 复制的开销可以忽略
+        int[] newRows = new int[Math.max(size + 1, rows.length)];
+        System.arraycopy(rows, 0, newRows, 0, index);
+        newRows[index] = row;
+        System.arraycopy(rows, index, newRows, index + 1, size - index);
+        rows = newRows;
+        size++;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity <= rows.length) {
+            return;
+        }
+        rows = Arrays.copyOf(rows, Math.max(minCapacity, rows.length + (rows.length >> 1)));
     }
 
-}
\ No newline at end of file
+}
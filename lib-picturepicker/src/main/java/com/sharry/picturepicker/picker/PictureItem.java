@@ -0,0 +1,45 @@
+package com.sharry.picturepicker.picker;
+
+/**
+ * Describe a picture that fetched from MediaStore.
+ * <p>
+ * 所有字段都在遍历 MediaStore 时一次性读取, 后续流程可直接使用, 无需再次打开文件解析头信息.
+ * 宽高为文件中存储的原始尺寸, 未应用 {@link #orientation} 旋转.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/23 11:08
+ */
+class PictureItem {
+
+    final long id;                  // MediaStore 中的 _ID
+    final String path;              // 图片的绝对路径
+    final String folderPath;        // 图片所在文件夹的绝对路径
+    final int width;                // 图片的宽, 未知时为 0
+    final int height;               // 图片的高, 未知时为 0
+    final int orientation;          // 图片旋转的角度
+    final long size;                // 文件大小, 单位 byte
+    final long dateAdded;           // 添加的时间, 单位秒
+    final long dateModified;        // 修改的时间, 单位秒
+
+    PictureItem(long id, String path, String folderPath, int width, int height,
+                int orientation, long size, long dateAdded, long dateModified) {
+        this.id = id;
+        this.path = path;
+        this.folderPath = folderPath;
+        this.width = width;
+        this.height = height;
+        this.orientation = orientation;
+        this.size = size;
+        this.dateAdded = dateAdded;
+        this.dateModified = dateModified;
+    }
+
+    /**
+     * 是否包含有效的尺寸信息
+     */
+    boolean hasDimensions() {
+        return width > 0 && height > 0;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.sharry.picturepicker.picker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * Describe a page of pictures that fetched from MediaStore.
+ * <p>
+ * 一页数据在工作线程中构建完毕之后便不再修改, 由主线程合并到 {@link PicturePickerModel} 中.
+ * 文件夹中保存的是图片在本页中的下标, 合并时加上本页在 {@link PictureTable} 中的起始行即可.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.1
+ * @since 2019/3/20 14:12
+ */
+class PicturePage {
+
+    final int pageIndex;                                                            // 页码, 从 0 开始
+    final ArrayList<PictureItem> pictureItems = new ArrayList<>();                  // 本页中所有的图片信息
+    final LinkedHashMap<String, Folder> folders = new LinkedHashMap<>();            // 本页图片按文件夹分组, key 为文件夹的绝对路径
+
+    PicturePage(int pageIndex) {
+        this.pageIndex = pageIndex;
+    }
+
+    boolean isFirstPage() {
+        return pageIndex == 0;
+    }
+
+    /**
+     * 本页中一个文件夹包含的图片
+     */
+    static final class Folder {
+
+        final String folderPath;
+        final String folderName;
+        int[] rows = new int[16];   // 图片在本页中的下标
+        int size;
+
+        Folder(String folderPath, String folderName) {
+            this.folderPath = folderPath;
+            this.folderName = folderName;
+        }
+
+        void add(int pageRow) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size << 1);
+            }
+            rows[size++] = pageRow;
+        }
+    }
+
+}
@@ -22,6 +22,8 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.sharry.picturepicker.R;
+import com.sharry.picturepicker.support.collection.OrderedPathSet;
+import com.sharry.picturepicker.support.loader.PictureLoader;
 import com.sharry.picturepicker.support.utils.ColorUtil;
 import com.sharry.picturepicker.support.utils.VersionUtil;
 import com.sharry.picturepicker.widget.PicturePickerFabBehavior;
@@ -29,12 +31,13 @@ import com.sharry.picturepicker.widget.toolbar.SToolbar;
 import com.sharry.picturepicker.widget.toolbar.TextViewOptions;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 图片选择器的 Activity
  *
  * @author Sharry <a href="xiaoyu.zhu@1hai.cn">Contact me.</a>
- * @version 1.3
+ * @version 1.5
  * @since 2018/9/1 10:17
  */
 public class PicturePickerActivity extends AppCompatActivity implements PicturePickerContract.IView,
@@ -77,6 +80,7 @@ public class PicturePickerActivity extends AppCompatActivity implements PictureP
     private TextView mTvToolbarEnsure;
     // Content pictures
     private RecyclerView mRecyclePictures;
+    private PicturePrefetcher mPrefetcher;
     // bottom navigation menu
     private ViewGroup mMenuNavContainer;
     private ImageView mIvNavIndicator;
@@ -101,6 +105,15 @@ public class PicturePickerActivity extends AppCompatActivity implements PictureP
         initData();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mPresenter.handleViewDestroy();
+        if (mPrefetcher != null) {
+            mPrefetcher.cancelAll();
+        }
+    }
+
     @Override
     public void setToolbarBackgroundColor(int color) {
         mToolbar.setBackgroundColor(color);
@@ -133,11 +146,15 @@ public class PicturePickerActivity extends AppCompatActivity implements PictureP
     }
 
     @Override
-    public void setPicturesAdapter(@NonNull PickerConfig config,
-                                   @NonNull ArrayList<String> displayPaths,
-                                   @NonNull ArrayList<String> userPickedPaths) {
-        mRecyclePictures.setAdapter(new PictureAdapter(this, config,
-                displayPaths, userPickedPaths));
+    public void setPicturesAdapter(@NonNull PickerConfig config, @NonNull OrderedPathSet userPickedPaths) {
+        PictureAdapter adapter = new PictureAdapter(this, config, userPickedPaths);
+        mRecyclePictures.setAdapter(adapter);
+        // 图片加载器支持预加载时, 根据滑动方向预加载缩略图
+        if (config.getPrefetchRowCount() > 0 && PictureLoader.isPreloadSupport()) {
+            mPrefetcher = new PicturePrefetcher(this, adapter,
+                    (GridLayoutManager) mRecyclePictures.getLayoutManager(), config.getPrefetchRowCount());
+            mRecyclePictures.addOnScrollListener(mPrefetcher);
+        }
     }
 
     @Override
@@ -164,7 +181,6 @@ public class PicturePickerActivity extends AppCompatActivity implements PictureP
         // 更新文件夹名称
         mTvFolderName.setText(folderName);
         mTvToolbarFolderName.setText(folderName);
-        mRecyclePictures.getAdapter().notifyDataSetChanged();
     }
 
     @Override
@@ -178,18 +194,23 @@ public class PicturePickerActivity extends AppCompatActivity implements PictureP
     }
 
     @Override
-    public void notifyPickedPathsChanged() {
-        mRecyclePictures.getAdapter().notifyDataSetChanged();
+    public void notifyPickedPathsChanged(@NonNull List<String> oldPickedPaths) {
+        ((PictureAdapter) mRecyclePictures.getAdapter()).notifyPickedPathsChanged(oldPickedPaths);
+    }
+
+    @Override
+    public void notifyDisplayPathsChanged(@NonNull PictureFolder displayFolder) {
+        ((PictureAdapter) mRecyclePictures.getAdapter()).setDisplayFolder(displayFolder);
     }
 
     @Override
-    public void notifyDisplayPathsChanged() {
-        mRecyclePictures.getAdapter().notifyDataSetChanged();
+    public void notifyDisplayPathsRangeInserted(int positionStart, int itemCount) {
+        ((PictureAdapter) mRecyclePictures.getAdapter()).notifyDisplayPathsRangeInserted(positionStart, itemCount);
     }
 
     @Override
     public void notifyDisplayPathsInsertToFirst() {
-        mRecyclePictures.getAdapter().notifyItemInserted(1);
+        ((PictureAdapter) mRecyclePictures.getAdapter()).notifyDisplayPathsRangeInserted(0, 1);
     }
 
     @Override
@@ -221,8 +242,8 @@ public class PicturePickerActivity extends AppCompatActivity implements PictureP
     }
 
     @Override
-    public void onPictureClicked(ImageView imageView, String uri, int position) {
-        mPresenter.handlePictureClicked(position, imageView);
+    public void onPictureClicked(ImageView imageView, PictureRowsSnapshot displayPaths, int position) {
+        mPresenter.handlePictureClicked(displayPaths, position, imageView);
     }
 
     @Override
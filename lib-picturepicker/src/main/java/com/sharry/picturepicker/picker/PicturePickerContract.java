@@ -7,7 +7,12 @@ import android.support.annotation.Nullable;
 import android.support.annotation.StringRes;
 import android.widget.ImageView;
 
+import com.sharry.picturepicker.support.collection.OrderedPathSet;
+import com.sharry.picturepicker.support.executor.CancelToken;
+import com.sharry.picturepicker.support.utils.PictureMetadataCache;
+
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by Sharry on 2018/6/13.
@@ -55,10 +60,9 @@ interface PicturePickerContract {
         void setPicturesSpanCount(int spanCount);
 
         /**
-         * 设置图片的 Adapter
+         * 设置图片的 Adapter, 展示的数据通过 {@link #notifyDisplayPathsChanged(PictureFolder)} 设置
          */
-        void setPicturesAdapter(@NonNull PickerConfig config, @NonNull ArrayList<String> displayPaths,
-                                @NonNull ArrayList<String> userPickedPaths);
+        void setPicturesAdapter(@NonNull PickerConfig config, @NonNull OrderedPathSet userPickedPaths);
 
         /**
          * 设置图片文件夹的 Adapter
@@ -83,20 +87,32 @@ interface PicturePickerContract {
         void setPreviewText(@NonNull CharSequence content);
 
         /**
-         * 通知选中的图片集合变更了
+         * 通知选中的图片集合变更了, 只刷新角标发生变化的条目
+         *
+         * @param oldPickedPaths 变更前选中的图片
          */
-        void notifyPickedPathsChanged();
+        void notifyPickedPathsChanged(@NonNull List<String> oldPickedPaths);
 
         /**
-         * 通知需要展示的集合变更了
+         * 通知需要展示的集合变更了, 在后台计算新旧集合的差异后局部刷新
+         *
+         * @param displayFolder 选中的文件夹
          */
-        void notifyDisplayPathsChanged();
+        void notifyDisplayPathsChanged(@NonNull PictureFolder displayFolder);
 
         /**
          * 通知文件夹菜单数据变更了
          */
         void notifyFolderDataSetChanged();
 
+        /**
+         * 通知需要展示的集合尾部追加了数据
+         *
+         * @param positionStart 追加数据在展示集合中的起始位置
+         * @param itemCount     追加数据的数量
+         */
+        void notifyDisplayPathsRangeInserted(int positionStart, int itemCount);
+
         /**
          * 通过相机拍摄了一张照片
          */
@@ -132,8 +148,12 @@ interface PicturePickerContract {
 
         /**
          * 处理图片被点击了
+         *
+         * @param displayPaths 点击时列表展示的集合, 可能尚未切换到选中的文件夹
+         * @param position     图片在 displayPaths 中的位置
          */
-        void handlePictureClicked(int position, @Nullable ImageView sharedElement);
+        void handlePictureClicked(@NonNull PictureRowsSnapshot displayPaths, int position,
+                                  @Nullable ImageView sharedElement);
 
         /**
          * 处理预览按钮被点击了
@@ -154,12 +174,22 @@ interface PicturePickerContract {
          * 相机按钮被点击了
          */
         void handleCameraClicked();
+
+        /**
+         * 处理 View 的销毁
+         */
+        void handleViewDestroy();
     }
 
     interface IModel {
 
         interface Callback {
 
+            /**
+             * 一页图片数据加载完成, 在工作线程回调
+             */
+            void onPageLoaded(PicturePage page);
+
             void onComplete();
 
             void onFailed(Throwable throwable);
@@ -169,8 +199,21 @@ interface PicturePickerContract {
 
         /**
          * 获取系统图片
+         *
+         * @param token 取消令牌, 取消后不会再回调 listener
+         */
+        void getSystemPictures(Context context, CancelToken token, final Callback listener);
+
+        /**
+         * 合并一页图片数据到文件夹中
+         */
+        void mergePicturePage(PicturePage page);
+
+        /**
+         * 获取遍历时读取的图片信息
          */
-        void getSystemPictures(Context context, final Callback listener);
+        @Nullable
+        PictureItem getPictureItem(String path);
 
         /**
          * 获取当前需要显示的文件模型
@@ -190,7 +233,7 @@ interface PicturePickerContract {
         /**
          * 获取用户选中的图片
          */
-        ArrayList<String> getPickedPaths();
+        OrderedPathSet getPickedPaths();
 
         /**
          * 设置当前选中的文件夹
@@ -198,9 +241,17 @@ interface PicturePickerContract {
         void setCheckedFolder(PictureFolder curDisplayFolder);
 
         /**
-         * 获取用户选中的图片
+         * 获取当前需要展示的图片集合, 只读
+         */
+        List<String> getDisplayPaths();
+
+        /**
+         * 插入一张新的图片到 <所有图片> 和图片所在的文件夹的首位
+         *
+         * @param metadata 写入文件时已知的宽高与旋转角度, 未知时传 null
+         * @return <当前展示> 的文件夹是否插入了该图片
          */
-        ArrayList<String> getDisplayPaths();
+        boolean insertPictureToFirst(@NonNull String path, @Nullable PictureMetadataCache.Metadata metadata);
 
         /**
          * 添加用户选中的图片
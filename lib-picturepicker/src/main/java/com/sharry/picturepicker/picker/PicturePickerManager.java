@@ -48,7 +48,7 @@ public class PicturePickerManager {
     }
 
     /**
-     * 设置图片加载方案
+     * 设置图片加载方案, 不设置时使用内置的 {@link com.sharry.picturepicker.support.loader.ThumbnailPictureLoader}
      */
     public PicturePickerManager setPictureLoader(@NonNull IPictureLoader loader) {
         PictureLoader.setPictureLoader(loader);
@@ -112,11 +112,7 @@ public class PicturePickerManager {
     }
 
     private void verify() {
-        // 1. 验证是否实现了图片加载器
-        if (PictureLoader.getPictureLoader() == null) {
-            throw new UnsupportedOperationException("PictureLoader.load -> please invoke setPictureLoader first");
-        }
-        // 2. 若开启了裁剪, 则只能选中一张图片
+        // 若开启了裁剪, 则只能选中一张图片
         if (mConfig.isCropSupport()) {
             mConfig.rebuild()
                     .setThreshold(1)
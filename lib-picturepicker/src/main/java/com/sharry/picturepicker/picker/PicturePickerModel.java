@@ -1,33 +1,55 @@
 package com.sharry.picturepicker.picker;
 
+import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
 import android.provider.MediaStore;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 import android.text.TextUtils;
+import android.util.Log;
 
 import com.sharry.picturepicker.R;
+import com.sharry.picturepicker.support.collection.OrderedPathSet;
+import com.sharry.picturepicker.support.executor.CancelToken;
+import com.sharry.picturepicker.support.executor.PickerExecutors;
+import com.sharry.picturepicker.support.utils.PictureMetadataCache;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * MVP frame model associated with PicturePicker.
  *
  * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
- * @version 1.2
+ * @version 1.8
  * @since 2018/8/30 20:00
  */
 class PicturePickerModel implements PicturePickerContract.IModel {
 
-    private final ArrayList<String> mPickedPaths;                           // 用户已选中的图片地址集合(默认构造为空)
-    private final ArrayList<String> mDisplayPaths = new ArrayList<>();      // 当前需要展示的集合
-    private ArrayList<PictureFolder> mPictureFolders;                       // 所有包含图片数据的集合
-    private PictureFolder mCheckedFolder;                                   // 当前正在展示的文件夹
+    private final OrderedPathSet mPickedPaths;                                      // 用户已选中的图片地址集合(默认构造为空)
+    private PictureTable mPictureTable = new PictureTable();                        // 所有图片的数据, 每张图片只保存一次
+    private final ArrayList<PictureFolder> mPictureFolders = new ArrayList<>();     // 所有包含图片数据的集合
+    private final HashMap<String, PictureFolder> mFolderCaches = new HashMap<>();   // key 为图片的文件夹的绝对路径, 用于分页合并
+    private final List<String> mDisplayPaths = new DisplayPaths();                  // 当前需要展示的集合, 是选中文件夹的视图
+    private final LinkedHashMap<String, PictureMetadataCache.Metadata> mPendingInserts
+            = new LinkedHashMap<>();                                                // 插入后尚未出现在 MediaStore 首页中的图片
+    private String mAllPictureFolderName;                                           // <所有图片> 文件夹的名称
+    private String mRootFolderName;                                                 // 根目录下的图片所在文件夹的名称
+    private PictureFolder mCheckedFolder;                                           // 当前正在展示的文件夹
 
     PicturePickerModel(ArrayList<String> pickedPaths, int threshold) {
-        mPickedPaths = pickedPaths;
+        mPickedPaths = new OrderedPathSet(pickedPaths);
         // 验证一下阈值是否异常
         if (getPickedPaths().size() > threshold) {
             throw new RuntimeException("Your picked picture count is over your set threshold!");
@@ -35,12 +57,20 @@ class PicturePickerModel implements PicturePickerContract.IModel {
     }
 
     @Override
-    public void getSystemPictures(Context context, final Callback callback) {
-        new Thread(new CursorSystemPictureRunnable(context,
+    public void getSystemPictures(Context context, CancelToken token, final Callback callback) {
+        // 创建一个图片文件夹, 用于保存所有图片
+        mAllPictureFolderName = context.getString(R.string.libpicturepicker_picker_all_picture);
+        mRootFolderName = context.getString(R.string.libpicturepicker_picker_root_folder);
+        resetFolders();
+        PickerExecutors.getWorkExecutor().execute(new CursorSystemPictureRunnable(context, token,
                 new CursorSystemPictureRunnable.RunnableInteraction() {
                     @Override
-                    public void onComplete(ArrayList<PictureFolder> pictureFolders) {
-                        mPictureFolders = pictureFolders;
+                    public void onPageLoaded(PicturePage page) {
+                        callback.onPageLoaded(page);
+                    }
+
+                    @Override
+                    public void onComplete() {
                         callback.onComplete();
                     }
 
@@ -49,7 +79,83 @@ class PicturePickerModel implements PicturePickerContract.IModel {
                         callback.onFailed(throwable);
                     }
                 })
-        ).start();
+        );
+    }
+
+    /**
+     * 将一页图片数据合并到当前的文件夹中, 需要在主线程调用
+     */
+    @Override
+    public void mergePicturePage(PicturePage page) {
+        // 0. 首页到达时重置数据, 增量刷新会重新回调首页
+        if (page.isFirstPage()) {
+            resetFolders();
+        }
+        // 1. 写入图片表, 同时合并到 <所有图片> 的文件夹下
+        int offset = mPictureTable.size();
+        int count = page.pictureItems.size();
+        int[] allRows = new int[count];
+        for (int i = 0; i < count; i++) {
+            mPictureTable.add(page.pictureItems.get(i));
+            allRows[i] = i;
+        }
+        mPictureFolders.get(0).addRows(allRows, count, offset);
+        // 2. 合并到各自的文件夹下
+        for (PicturePage.Folder pageFolder : page.folders.values()) {
+            PictureFolder cachedFolder = mFolderCaches.get(pageFolder.folderPath);
+            if (cachedFolder == null) {
+                cachedFolder = new PictureFolder(pageFolder.folderPath, pageFolder.folderName, mPictureTable);
+                mFolderCaches.put(pageFolder.folderPath, cachedFolder);
+                mPictureFolders.add(cachedFolder);
+            }
+            cachedFolder.addRows(pageFolder.rows, pageFolder.size, offset);
+        }
+        // 3. 首页重置了文件夹, 重新插入尚未被 MediaStore 收录的图片
+        // 新图片的 date_added 最大, 被收录后一定出现在首页中, 此时不再需要插入
+        if (page.isFirstPage() && !mPendingInserts.isEmpty()) {
+            for (PictureItem item : page.pictureItems) {
+                mPendingInserts.remove(item.path);
+            }
+            for (Map.Entry<String, PictureMetadataCache.Metadata> pending : mPendingInserts.entrySet()) {
+                insertRowToFirst(pending.getKey(), pending.getValue());
+            }
+        }
+    }
+
+    /**
+     * 插入一张新的图片到 <所有图片> 和图片所在的文件夹的首位
+     * <p>
+     * 新文件写入后立即调用, 不需要等待 MediaStore 扫描完成后重新遍历.
+     * 图片不属于 <当前展示> 的其他文件夹, 因此不会插入其中. MediaStore 收录之前首页到达时会重新插入.
+     *
+     * @return <当前展示> 的文件夹是否插入了该图片
+     */
+    @Override
+    public boolean insertPictureToFirst(String path, @Nullable PictureMetadataCache.Metadata metadata) {
+        mPendingInserts.put(path, metadata);
+        return insertRowToFirst(path, metadata);
+    }
+
+    private boolean insertRowToFirst(String path, @Nullable PictureMetadataCache.Metadata metadata) {
+        int row = mPictureTable.add(path, metadata);
+        // 1. 添加到 <所有图片> 的文件夹下
+        PictureFolder allPictureFolder = mPictureFolders.get(0);
+        allPictureFolder.insertRow(0, row);
+        // 2. 添加到图片所在的文件夹下, 文件夹尚不存在时新建
+        PictureFolder ownerFolder = findOrCreateFolder(new File(path).getParent());
+        if (ownerFolder != null) {
+            ownerFolder.insertRow(0, row);
+        }
+        return mCheckedFolder != null && (mCheckedFolder == allPictureFolder || mCheckedFolder == ownerFolder);
+    }
+
+    /**
+     * 获取遍历时读取的图片信息, 非 MediaStore 中的图片返回 null
+     */
+    @Override
+    public PictureItem getPictureItem(String path) {
+        int row = mPictureTable.indexOf(path);
+        return row == -1 ? null : mPictureTable.getItem(row);
     }
 
     /**
@@ -77,20 +183,18 @@ class PicturePickerModel implements PicturePickerContract.IModel {
     }
 
     /**
-     * 设置当前选中的文件夹
+     * 设置当前选中的文件夹, 展示集合是文件夹的视图, 无需拷贝
      */
     @Override
     public void setCheckedFolder(PictureFolder checkedFolder) {
         this.mCheckedFolder = checkedFolder;
-        mDisplayPaths.clear();
-        mDisplayPaths.addAll(checkedFolder.getPicturePaths());
     }
 
     /**
      * 获取用户选中的图片
      */
     @Override
-    public ArrayList<String> getPickedPaths() {
+    public OrderedPathSet getPickedPaths() {
         return mPickedPaths;
     }
 
@@ -99,9 +203,7 @@ class PicturePickerModel implements PicturePickerContract.IModel {
      */
     @Override
     public void addPickedPicture(String path) {
-        if (mPickedPaths.indexOf(path) == -1) {
-            mPickedPaths.add(path);
-        }
+        mPickedPaths.add(path);
     }
 
     /**
@@ -109,117 +211,372 @@ class PicturePickerModel implements PicturePickerContract.IModel {
      */
     @Override
     public void removePickedPicture(String path) {
-        if (mPickedPaths.indexOf(path) == -1) return;
         mPickedPaths.remove(path);
     }
 
     @Override
-    public ArrayList<String> getDisplayPaths() {
+    public List<String> getDisplayPaths() {
         return mDisplayPaths;
     }
 
     /**
-     * 遍历加载系统图片的线程
+     * 查找路径对应的文件夹, 与遍历时的分组使用相同的 key
+     */
+    private PictureFolder findOrCreateFolder(String folderPath) {
+        if (TextUtils.isEmpty(folderPath)) {
+            return null;
+        }
+        PictureFolder folder = mFolderCaches.get(folderPath);
+        if (folder == null) {
+            folder = new PictureFolder(folderPath, PictureGrouping.getLastFileName(folderPath, mRootFolderName),
+                    mPictureTable);
+            mFolderCaches.put(folderPath, folder);
+            mPictureFolders.add(folder);
+        }
+        return folder;
+    }
+
+    /**
+     * 清空所有的文件夹数据
+     * <p>
+     * 创建新的图片表而不是清空旧表, 列表在切换到新数据之前依旧可以读取旧的文件夹
      */
-    private static class CursorSystemPictureRunnable implements Runnable {
+    private void resetFolders() {
+        mPictureTable = new PictureTable();
+        mPictureFolders.clear();
+        mFolderCaches.clear();
+        mPictureFolders.add(new PictureFolder(null, mAllPictureFolderName, mPictureTable));
+        mCheckedFolder = null;
+    }
+
+    /**
+     * 当前选中文件夹的只读视图
+     */
+    private class DisplayPaths extends AbstractList<String> {
+
+        @Override
+        public String get(int index) {
+            return mCheckedFolder.getPicturePaths().get(index);
+        }
+
+        @Override
+        public int size() {
+            return mCheckedFolder == null ? 0 : mCheckedFolder.getPictureCount();
+        }
+    }
+
+    /**
+     * 分页遍历加载系统图片的线程
+     * <p>
+     * 1. 存在相册索引时, 先将索引作为首页回调, 再根据水位线增量查询 MediaStore, 有变更时重新回调首页.
+     * 2. 不存在索引时, 每次只查询 {@link #PAGE_SIZE} 条数据, 解析完一页便立即回调, 遍历结束后写入索引.
+     * 分页使用 (date_added, _ID) 的键集定位下一页, 每页只读取 PAGE_SIZE 行, 不会因为 OFFSET 重复跳过之前的行,
+     * 遍历期间新增的图片也不会使后续的页重复或遗漏.
+     */
+    @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+    static class CursorSystemPictureRunnable implements Runnable {
 
         interface RunnableInteraction {
-            void onComplete(ArrayList<PictureFolder> pictureFolders);
+            void onPageLoaded(PicturePage page);
+
+            void onComplete();
 
             void onFailed(Throwable throwable);
         }
 
+        /**
+         * 分页查询, 结果按照 date_added, _ID 倒序排列
+         */
+        interface PageQuery {
+
+            /**
+             * 查询排在 (afterDateAdded, afterId) 之后的最多 limit 行, 首页时两者均为 {@link Long#MAX_VALUE}
+             * <p>
+             * 实现可以忽略 limit 返回之后所有的行, 遍历依旧正确, 只是退化为一次性读取.
+             */
+            @Nullable
+            Cursor query(long afterDateAdded, long afterId, int limit);
+
+        }
+
+        private static final String TAG = CursorSystemPictureRunnable.class.getSimpleName();
+        private static final int PAGE_SIZE = 500;
+        private static final String MIME_SELECTION = "(" + MediaStore.Images.Media.MIME_TYPE + "=? or " +
+                MediaStore.Images.Media.MIME_TYPE + "=? or " + MediaStore.Images.Media.MIME_TYPE + "=?)";
+        private static final String[] MIME_SELECTION_ARGS = new String[]{"image/jpeg", "image/png", "image/jpg"};
+        /**
+         * 路径为空的行遍历时会被跳过, 不会写入索引, 比对数量与 _ID 时同样需要排除
+         */
+        private static final String INDEXED_SELECTION = MIME_SELECTION + " and " + MediaStore.Images.Media.DATA
+                + " is not null and " + MediaStore.Images.Media.DATA + "!=''";
+        private static final String[] PROJECTION = new String[]{
+                MediaStore.Images.Media._ID,
+                MediaStore.Images.Media.DATA,
+                MediaStore.Images.Media.WIDTH,
+                MediaStore.Images.Media.HEIGHT,
+                MediaStore.Images.Media.ORIENTATION,
+                MediaStore.Images.Media.SIZE,
+                MediaStore.Images.Media.DATE_ADDED,
+                MediaStore.Images.Media.DATE_MODIFIED,
+                MediaStore.Images.Media.BUCKET_ID
+        };
+
         private final Context mContext;
+        private final CancelToken mToken;
         private final RunnableInteraction mListener;
+        private final PageQuery mPageQuery;
+        private final File mIndexFile;
+        private final String mRootFolderName;
+        private final PictureGrouping.FolderPathResolver mFolderPathResolver = new PictureGrouping.FolderPathResolver();
+        private long mLastDateAdded;    // 最近读取的一页中最后一行的 date_added, 作为下一页的键
+        private long mLastId;           // 最近读取的一页中最后一行的 _ID, 作为下一页的键
+
+        CursorSystemPictureRunnable(Context context, CancelToken token, RunnableInteraction listener) {
+            this(context, token, listener, null);
+        }
 
-        CursorSystemPictureRunnable(Context context, RunnableInteraction listener) {
-            mContext = context;
+        /**
+         * @param pageQuery 分页查询, 传 null 则查询 MediaStore
+         */
+        @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+        CursorSystemPictureRunnable(Context context, CancelToken token, RunnableInteraction listener,
+                                    @Nullable PageQuery pageQuery) {
+            // 使用 ApplicationContext, 避免 Activity 销毁后仍被线程持有
+            mContext = context.getApplicationContext();
+            mToken = token;
             mListener = listener;
+            mPageQuery = pageQuery != null ? pageQuery : new PageQuery() {
+                @Override
+                public Cursor query(long afterDateAdded, long afterId, int limit) {
+                    return createImageCursor(afterDateAdded, afterId, limit);
+                }
+            };
+            mIndexFile = AlbumIndex.getIndexFile(mContext.getCacheDir());
+            mRootFolderName = mContext.getString(R.string.libpicturepicker_picker_root_folder);
         }
 
         @Override
         public void run() {
-            // 用于存储遍历到的所有图片文件夹集合
-            ArrayList<PictureFolder> pictureFolders = new ArrayList<>();
-            // 创建一个图片文件夹, 用于保存所有图片
-            PictureFolder allPictureFolder = new PictureFolder(mContext.getString(R.string.libpicturepicker_picker_all_picture));
-            pictureFolders.add(allPictureFolder);
-            // key 为图片的文件夹的绝对路径, values 为 PictureFolder 的对象
-            HashMap<String, PictureFolder> caches = new HashMap<>();
-            Cursor cursor = createImageCursor();
+            if (mToken.isCanceled()) {
+                return;
+            }
+            AlbumIndex index = AlbumIndex.read(mIndexFile);
             try {
-                if (cursor != null && cursor.getCount() > 0) {
-                    // 是否是第一个遍历到的图片目录
-                    while (cursor.moveToNext()) {
-                        // 通过 cursor 获取图片路径
-                        String picturePath = cursor.getString(cursor.getColumnIndex(MediaStore.Images.Media.DATA));
-                        if (TextUtils.isEmpty(picturePath)) {
-                            continue;
-                        }
-                        // 添加到所有图片的目录下
-                        allPictureFolder.addPath(picturePath);
-                        // 获取图片父文件夹路径
-                        String pictureFolderPath = getParentFolderPath(picturePath);
-                        if (TextUtils.isEmpty(pictureFolderPath)) {
-                            continue;
-                        }
-                        // 尝试从缓存中查找 pictureFolder 对象, 没有则创建新对象加入缓存
-                        if (!caches.containsKey(pictureFolderPath)) {
-                            String folderName = getLastFileName(pictureFolderPath);
-                            caches.put(pictureFolderPath, new PictureFolder(folderName));
-                        }
-                        // 添加图片到缓存
-                        caches.get(pictureFolderPath).addPath(picturePath);
-                    }
+                if (index != null) {
+                    performDeltaRefresh(index);
+                } else {
+                    performFullScan();
                 }
-                // 添加所有文件夹数据
-                pictureFolders.addAll(caches.values());
             } catch (Exception e) {
-                mListener.onFailed(e);
+                // 任务已取消时, 查询被中断抛出的异常不需要通知
+                if (!mToken.isCanceled()) {
+                    mListener.onFailed(e);
+                }
+                return;
+            }
+            if (!mToken.isCanceled()) {
+                mListener.onComplete();
+            }
+        }
+
+        /**
+         * 先展示索引中的数据, 再增量刷新
+         */
+        private void performDeltaRefresh(AlbumIndex index) {
+            // 1. 索引中的数据立即展示
+            mListener.onPageLoaded(createPageFromIndex(index));
+            // 2. 查询水位线之后新增或修改的数据
+            // date_modified 的精度为秒, 与水位线同一秒内修改的图片同样需要查询, 未变更的行在合并时会被过滤
+            ArrayList<PictureItem> delta = new ArrayList<>();
+            Cursor cursor = mContext.getContentResolver().query(
+                    MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                    PROJECTION,
+                    MIME_SELECTION + " and (" + MediaStore.Images.Media._ID + ">? or "
+                            + MediaStore.Images.Media.DATE_MODIFIED + ">=?)",
+                    new String[]{MIME_SELECTION_ARGS[0], MIME_SELECTION_ARGS[1], MIME_SELECTION_ARGS[2],
+                            String.valueOf(index.getMaxId()), String.valueOf(index.getMaxDateModified())},
+                    null,
+                    mToken.getCancellationSignal()
+            );
+            try {
+                readItems(cursor, delta);
             } finally {
                 if (cursor != null) cursor.close();
             }
-            mListener.onComplete(pictureFolders);
+            boolean isChanged = index.merge(delta);
+            // 3. 数量不一致时说明有数据被删除了, 仅查询 _ID 列进行比对
+            if (queryPictureCount() != index.size()) {
+                isChanged |= index.retain(queryPictureIds());
+            }
+            if (!isChanged || mToken.isCanceled()) {
+                return;
+            }
+            // 4. 数据有变更, 重新展示并更新索引
+            mListener.onPageLoaded(createPageFromIndex(index));
+            writeIndexQuietly(index);
         }
 
         /**
-         * Create cursor associated with this runnable.
+         * 分页遍历整张表, 并构建索引
          */
-        private Cursor createImageCursor() {
-            Uri uri = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
-            String[] projection = new String[]{MediaStore.Images.Media.DATA};
-            String selection = MediaStore.Images.Media.MIME_TYPE + "=? or " +
-                    MediaStore.Images.Media.MIME_TYPE + "=? or " + MediaStore.Images.Media.MIME_TYPE + "=?";
-            String[] selectionArgs = new String[]{"image/jpeg", "image/png", "image/jpg"};
-            String sortOrder = MediaStore.Images.Media.DATE_ADDED + " DESC";
-            return mContext.getContentResolver().query(uri, projection,
-                    selection, selectionArgs, sortOrder);
+        private void performFullScan() {
+            AlbumIndex index = new AlbumIndex();
+            ArrayList<PictureItem> items = new ArrayList<>(PAGE_SIZE);
+            int pageIndex = 0;
+            int rowCount;
+            mLastDateAdded = Long.MAX_VALUE;
+            mLastId = Long.MAX_VALUE;
+            do {
+                if (mToken.isCanceled()) {
+                    return;
+                }
+                Cursor cursor = mPageQuery.query(mLastDateAdded, mLastId, PAGE_SIZE);
+                items.clear();
+                try {
+                    rowCount = readItems(cursor, items);
+                } finally {
+                    if (cursor != null) cursor.close();
+                }
+                PicturePage page = new PicturePage(pageIndex);
+                for (PictureItem item : items) {
+                    PictureGrouping.appendToPage(page, item, mRootFolderName);
+                    index.append(item);
+                }
+                // 首页即使为空也需要回调, 以便 UI 完成初始化
+                mListener.onPageLoaded(page);
+                pageIndex++;
+                // 查询忽略了 limit 时, 行数会超过 PAGE_SIZE, 下一页为空后结束
+            } while (rowCount >= PAGE_SIZE);
+            writeIndexQuietly(index);
         }
 
         /**
-         * Get parent folder associated with this file.
+         * 读取 cursor 中的数据
+         *
+         * @return cursor 中的行数
          */
-        private String getParentFolderPath(String filePath) {
-            String parentFolderPath = new File(filePath).getParentFile().getAbsolutePath();
-            if (TextUtils.isEmpty(parentFolderPath)) {
-                int end = filePath.lastIndexOf(File.separator);
-                if (end != -1) {
-                    parentFolderPath = filePath.substring(0, end);
+        private int readItems(Cursor cursor, List<PictureItem> output) {
+            if (cursor == null || cursor.getCount() == 0) {
+                return 0;
+            }
+            int idIndex = cursor.getColumnIndex(MediaStore.Images.Media._ID);
+            int dataIndex = cursor.getColumnIndex(MediaStore.Images.Media.DATA);
+            int widthIndex = cursor.getColumnIndex(MediaStore.Images.Media.WIDTH);
+            int heightIndex = cursor.getColumnIndex(MediaStore.Images.Media.HEIGHT);
+            int orientationIndex = cursor.getColumnIndex(MediaStore.Images.Media.ORIENTATION);
+            int sizeIndex = cursor.getColumnIndex(MediaStore.Images.Media.SIZE);
+            int dateAddedIndex = cursor.getColumnIndex(MediaStore.Images.Media.DATE_ADDED);
+            int dateModifiedIndex = cursor.getColumnIndex(MediaStore.Images.Media.DATE_MODIFIED);
+            int bucketIdIndex = cursor.getColumnIndex(MediaStore.Images.Media.BUCKET_ID);
+            while (cursor.moveToNext()) {
+                // 记录下一页的键, 被跳过的行同样需要推进
+                mLastDateAdded = cursor.getLong(dateAddedIndex);
+                mLastId = cursor.getLong(idIndex);
+                // 通过 cursor 获取图片路径
+                String picturePath = cursor.getString(dataIndex);
+                if (TextUtils.isEmpty(picturePath)) {
+                    continue;
                 }
+                // 同一个文件夹的图片共享路径实例, 分组时也不需要重新计算哈希值
+                int bucketId = bucketIdIndex == -1 ? PictureGrouping.FolderPathResolver.NO_BUCKET_ID
+                        : cursor.getInt(bucketIdIndex);
+                output.add(new PictureItem(
+                        cursor.getLong(idIndex),
+                        picturePath,
+                        mFolderPathResolver.resolve(bucketId, picturePath),
+                        cursor.getInt(widthIndex),
+                        cursor.getInt(heightIndex),
+                        cursor.getInt(orientationIndex),
+                        cursor.getLong(sizeIndex),
+                        cursor.getLong(dateAddedIndex),
+                        cursor.getLong(dateModifiedIndex)
+                ));
             }
-            return parentFolderPath;
+            return cursor.getCount();
         }
 
         /**
-         * Get last file name associated with this filePath.
+         * 将索引中的所有数据构建成首页
          */
-        private String getLastFileName(String filePath) {
-            String fileName = filePath.substring(filePath.lastIndexOf(File.separator) + 1);
-            // 为空说明直接在 StorageCard 的根目录
-            if (TextUtils.isEmpty(fileName)) {
-                fileName = mContext.getString(R.string.libpicturepicker_picker_root_folder);
+        private PicturePage createPageFromIndex(AlbumIndex index) {
+            PicturePage page = new PicturePage(0);
+            for (PictureItem item : index.getItems()) {
+                PictureGrouping.appendToPage(page, item, mRootFolderName);
+            }
+            return page;
+        }
+
+        /**
+         * Create cursor associated with this runnable.
+         *
+         * @param afterDateAdded 上一页最后一行的 date_added
+         * @param afterId        上一页最后一行的 _ID
+         * @param limit          本页的最大行数
+         */
+        private Cursor createImageCursor(long afterDateAdded, long afterId, int limit) {
+            // 追加 _ID 排序, 保证 date_added 相同时分页的顺序稳定, 键集条件直接命中索引, 不需要跳过之前的行
+            String selection = MIME_SELECTION + " and (" + MediaStore.Images.Media.DATE_ADDED + "<? or ("
+                    + MediaStore.Images.Media.DATE_ADDED + "=? and " + MediaStore.Images.Media._ID + "<?))";
+            String[] selectionArgs = new String[]{MIME_SELECTION_ARGS[0], MIME_SELECTION_ARGS[1],
+                    MIME_SELECTION_ARGS[2], String.valueOf(afterDateAdded), String.valueOf(afterDateAdded),
+                    String.valueOf(afterId)};
+            String sortOrder = MediaStore.Images.Media.DATE_ADDED + " DESC, "
+                    + MediaStore.Images.Media._ID + " DESC";
+            // 旧版本的 MediaProvider 通过 URI 的 limit 参数限制行数, 新版本会拒绝 sortOrder 中的 LIMIT
+            Uri uri = MediaStore.Images.Media.EXTERNAL_CONTENT_URI.buildUpon()
+                    .appendQueryParameter("limit", String.valueOf(limit))
+                    .build();
+            ContentResolver resolver = mContext.getContentResolver();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                Bundle queryArgs = new Bundle();
+                queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection);
+                queryArgs.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, selectionArgs);
+                queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, sortOrder);
+                queryArgs.putInt(ContentResolver.QUERY_ARG_LIMIT, limit);
+                return resolver.query(uri, PROJECTION, queryArgs, mToken.getCancellationSignal());
+            }
+            return resolver.query(uri, PROJECTION, selection, selectionArgs, sortOrder,
+                    mToken.getCancellationSignal());
+        }
+
+        /**
+         * 获取 MediaStore 中可以写入索引的图片的数量
+         */
+        private int queryPictureCount() {
+            Cursor cursor = mContext.getContentResolver().query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                    new String[]{MediaStore.Images.Media._ID}, INDEXED_SELECTION, MIME_SELECTION_ARGS, null,
+                    mToken.getCancellationSignal());
+            try {
+                return cursor == null ? 0 : cursor.getCount();
+            } finally {
+                if (cursor != null) cursor.close();
+            }
+        }
+
+        /**
+         * 获取 MediaStore 中所有可以写入索引的图片的 _ID
+         */
+        private HashSet<Long> queryPictureIds() {
+            HashSet<Long> ids = new HashSet<>();
+            Cursor cursor = mContext.getContentResolver().query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                    new String[]{MediaStore.Images.Media._ID}, INDEXED_SELECTION, MIME_SELECTION_ARGS, null,
+                    mToken.getCancellationSignal());
+            try {
+                while (cursor != null && cursor.moveToNext()) {
+                    ids.add(cursor.getLong(0));
+                }
+            } finally {
+                if (cursor != null) cursor.close();
+            }
+            return ids;
+        }
+
+        private void writeIndexQuietly(AlbumIndex index) {
+            try {
+                index.write(mIndexFile);
+            } catch (IOException e) {
+                Log.e(TAG, "Write album index failed.", e);
             }
-            return fileName;
         }
     }
 }
@@ -12,7 +12,9 @@ import com.sharry.picturepicker.camera.CameraCallback;
 import com.sharry.picturepicker.camera.CameraRequestManager;
 import com.sharry.picturepicker.crop.CropCallback;
 import com.sharry.picturepicker.crop.PictureCropManager;
+import com.sharry.picturepicker.support.executor.CancelToken;
 import com.sharry.picturepicker.support.loader.PictureLoader;
+import com.sharry.picturepicker.support.utils.PictureMetadataCache;
 import com.sharry.picturepicker.watcher.PictureWatcherManager;
 import com.sharry.picturepicker.watcher.WatcherCallback;
 import com.sharry.picturepicker.watcher.WatcherConfig;
@@ -25,16 +27,18 @@ import java.util.ArrayList;
  * MVP frame presenter associated with PicturePicker.
  *
  * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
- * @version 1.3
+ * @version 1.7
  * @since 2018/9/1 10:17
  */
 class PicturePickerPresenter implements PicturePickerContract.IPresenter, CameraCallback, CropCallback, WatcherCallback {
 
     private static final String TAG = PicturePickerPresenter.class.getSimpleName();
+    private static final int WATCHER_METADATA_RADIUS = 64;                                          // 预览时保留点击位置前后的图片信息的数量
     private final PicturePickerContract.IView mView;                                                // View associated with this presenter.
     private final PicturePickerContract.IModel mModel;                                              // Model associated with this presenter.
     private final PickerConfig mPickerConfig;                                                       // Config associated with the PicturePicker.
     private final WatcherConfig mWatcherConfig;                                                     // Config associated with the PictureWatcher.
+    private final CancelToken mFetchToken = new CancelToken();                                      // Cancel fetch pictures when view destroyed.
 
     PicturePickerPresenter(@NonNull PicturePickerContract.IView view,
                            @NonNull Context context, @NonNull PickerConfig config) {
@@ -49,7 +53,6 @@ class PicturePickerPresenter implements PicturePickerContract.IPresenter, Camera
                         mPickerConfig.getIndicatorBorderCheckedColor(),
                         mPickerConfig.getIndicatorBorderUncheckedColor()
                 )
-                .setUserPickedSet(mModel.getPickedPaths())
                 .build();
         initView();
         initModel(context);
@@ -82,13 +85,22 @@ class PicturePickerPresenter implements PicturePickerContract.IPresenter, Camera
     }
 
     @Override
-    public void handlePictureClicked(int position, ImageView sharedElement) {
+    public void handleViewDestroy() {
+        mFetchToken.cancel();
+    }
+
+    @Override
+    public void handlePictureClicked(@NonNull PictureRowsSnapshot displayPaths, int position,
+                                     ImageView sharedElement) {
+        // 使用列表展示的集合, 切换文件夹的差异计算完成前, 展示的依旧是旧文件夹
+        retainDisplayMetadata(displayPaths, position);
         PictureWatcherManager.with((Context) mView)
                 .setSharedElement(sharedElement)
                 .setPictureLoader(PictureLoader.getPictureLoader())
                 .setConfig(
                         mWatcherConfig.rebuild()
-                                .setPictureUris(mModel.getDisplayPaths(), position)
+                                .setUserPickedSet(mModel.getPickedPaths().toArrayList())
+                                .setPictureUris(new ArrayList<>(displayPaths), position)
                                 .build()
                 )
                 .startForResult(this);
@@ -99,11 +111,13 @@ class PicturePickerPresenter implements PicturePickerContract.IPresenter, Camera
         if (!isCanPreview()) {
             return;
         }
+        retainPickedMetadata();
         PictureWatcherManager.with((Context) mView)
                 .setPictureLoader(PictureLoader.getPictureLoader())
                 .setConfig(
                         mWatcherConfig.rebuild()
-                                .setPictureUris(mModel.getPickedPaths(), 0)
+                                .setUserPickedSet(mModel.getPickedPaths().toArrayList())
+                                .setPictureUris(mModel.getPickedPaths().toArrayList(), 0)
                                 .build()
                 )
                 .startForResult(this);
@@ -114,9 +128,11 @@ class PicturePickerPresenter implements PicturePickerContract.IPresenter, Camera
         if (!isCanEnsure()) {
             return;
         }
+        // 返回后的压缩与裁剪可以直接使用遍历时读取的图片信息
+        retainPickedMetadata();
         // 不需要裁剪, 直接返回
         if (!mPickerConfig.isCropSupport()) {
-            mView.setResult(mModel.getPickedPaths());
+            mView.setResult(mModel.getPickedPaths().toArrayList());
             return;
         }
         // 需要裁剪, 则启动裁剪
@@ -137,6 +153,7 @@ class PicturePickerPresenter implements PicturePickerContract.IPresenter, Camera
     @Override
     public void onWatcherPickedComplete(boolean isEnsure, ArrayList<String> pickedPictures) {
         // 刷新用户选中的集合
+        ArrayList<String> oldPickedPaths = mModel.getPickedPaths().toArrayList();
         mModel.getPickedPaths().clear();
         mModel.getPickedPaths().addAll(pickedPictures);
         if (mView == null) {
@@ -148,30 +165,24 @@ class PicturePickerPresenter implements PicturePickerContract.IPresenter, Camera
         if (isEnsure) {
             handleEnsureClicked();// 执行确认事件
         } else {
-            mView.notifyPickedPathsChanged();// 通知更新
+            mView.notifyPickedPathsChanged(oldPickedPaths);// 通知更新
         }
     }
 
     @Override
     public void onCameraTakeComplete(String path) {
-        // 1. 添加到 <当前展示> 的文件夹下
-        PictureFolder checkedFolder = mModel.getCheckedFolder();
-        checkedFolder.getPicturePaths().add(0, path);
-        // 2. 添加到 <所有文件> 的文件夹下
-        PictureFolder allPictureFolder = mModel.getPictureFolderAt(0);
-        if (allPictureFolder != checkedFolder) {
-            allPictureFolder.getPicturePaths().add(0, path);
-        }
-        // 3. 更新展示的图片集合
-        mModel.getDisplayPaths().add(0, path);
-        // 3.1 判断是否可以继续选择
+        // 1. 立即添加到 <所有图片> 和所在的文件夹下, 无需等待 MediaStore 扫描, 压缩与裁剪时已经记录了图片信息
+        boolean isDisplayInserted = mModel.insertPictureToFirst(path, PictureMetadataCache.getDefault().get(path));
+        // 2. 判断是否可以继续选择
         if (isCanPickedPicture(false)) {
             mModel.addPickedPicture(path);// 添加到选中的集合中
             mView.setToolbarEnsureText(buildEnsureText());
             mView.setPreviewText(buildPreviewText());
         }
-        // 3.2 通知 UI 更新视图
-        mView.notifyDisplayPathsInsertToFirst();
+        // 3. 通知 UI 更新视图, <当前展示> 为其他文件夹时没有新增的图片
+        if (isDisplayInserted) {
+            mView.notifyDisplayPathsInsertToFirst();
+        }
         mView.notifyFolderDataSetChanged();
     }
 
@@ -179,7 +190,7 @@ class PicturePickerPresenter implements PicturePickerContract.IPresenter, Camera
     public void onCropComplete(String path) {
         mModel.getPickedPaths().clear();
         mModel.getPickedPaths().add(path);
-        mView.setResult(mModel.getPickedPaths());
+        mView.setResult(mModel.getPickedPaths().toArrayList());
     }
 
     private void initView() {
@@ -199,32 +210,58 @@ class PicturePickerPresenter implements PicturePickerContract.IPresenter, Camera
         // 设置图片的列数
         mView.setPicturesSpanCount(mPickerConfig.getSpanCount());
         // 设置 RecyclerView 的 Adapter
-        mView.setPicturesAdapter(mPickerConfig, mModel.getDisplayPaths(), mModel.getPickedPaths());
+        mView.setPicturesAdapter(mPickerConfig, mModel.getPickedPaths());
     }
 
     private void initModel(Context context) {
         // 获取图片数据
-        mModel.getSystemPictures(context, new PicturePickerContract.IModel.Callback() {
+        mModel.getSystemPictures(context, mFetchToken, new PicturePickerContract.IModel.Callback() {
 
             private final Handler handler = new Handler(Looper.getMainLooper());
 
             @Override
-            public void onComplete() {
+            public void onPageLoaded(final PicturePage page) {
                 handler.post(new Runnable() {
                     @Override
                     public void run() {
-                        mView.setFolderAdapter(mModel.getAllFolders());
-                        handleFolderChecked(0);
+                        // View 已经销毁, 丢弃过期的数据
+                        if (mFetchToken.isCanceled()) {
+                            return;
+                        }
+                        int displayCount = mModel.getDisplayPaths().size();
+                        PictureFolder lastCheckedFolder = mModel.getCheckedFolder();
+                        mModel.mergePicturePage(page);
+                        if (page.isFirstPage()) {
+                            // 首页数据到达, 立即展示; 增量刷新时保持用户当前选中的文件夹
+                            mView.setFolderAdapter(mModel.getAllFolders());
+                            handleFolderChecked(lastCheckedFolder == null ? 0
+                                    : indexOfFolder(lastCheckedFolder.getFolderPath()));
+                        } else {
+                            // 后续分页增量更新
+                            int insertedCount = mModel.getDisplayPaths().size() - displayCount;
+                            if (insertedCount > 0) {
+                                mView.notifyDisplayPathsRangeInserted(displayCount, insertedCount);
+                            }
+                            mView.notifyFolderDataSetChanged();
+                        }
                     }
                 });
             }
 
+            @Override
+            public void onComplete() {
+                Log.i(TAG, "Fetch system pictures complete, folder count is " + mModel.getAllFolders().size());
+            }
+
             @Override
             public void onFailed(Throwable throwable) {
                 Log.e(TAG, throwable.getMessage(), throwable);
                 handler.post(new Runnable() {
                     @Override
                     public void run() {
+                        if (mFetchToken.isCanceled()) {
+                            return;
+                        }
                         mView.showMsg(mView.getString(R.string.libpicturepicker_picker_tips_fetch_album_failed));
                     }
                 });
@@ -232,6 +269,54 @@ class PicturePickerPresenter implements PicturePickerContract.IPresenter, Camera
         });
     }
 
+    /**
+     * 根据文件夹路径查找文件夹的位置, 找不到时返回 <所有图片> 的位置
+     */
+    private int indexOfFolder(String folderPath) {
+        if (folderPath == null) {
+            return 0;
+        }
+        ArrayList<PictureFolder> folders = mModel.getAllFolders();
+        for (int i = 1; i < folders.size(); i++) {
+            if (folderPath.equals(folders.get(i).getFolderPath())) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 保留用户选中的图片的信息
+     */
+    private void retainPickedMetadata() {
+        for (String path : mModel.getPickedPaths()) {
+            retainMetadata(mModel.getPictureItem(path));
+        }
+    }
+
+    /**
+     * 保留预览的图片及其前后的图片的信息, 通过展示的位置读取, 不需要在整个相册中查找路径
+     */
+    private void retainDisplayMetadata(PictureRowsSnapshot displayPaths, int position) {
+        int count = displayPaths.size();
+        int start = Math.max(0, position - WATCHER_METADATA_RADIUS);
+        int end = Math.min(count, position + WATCHER_METADATA_RADIUS + 1);
+        for (int i = start; i < end; i++) {
+            retainMetadata(displayPaths.getItem(i));
+        }
+    }
+
+    private static void retainMetadata(PictureItem item) {
+        if (item == null) {
+            return;
+        }
+        PictureMetadataCache.Metadata metadata = PictureMetadataCache.Metadata.create(item.width, item.height,
+                item.orientation, item.size);
+        if (metadata != null) {
+            PictureMetadataCache.getDefault().retain(item.path, metadata);
+        }
+    }
+
     /**
      * 执行展示文件夹的操作
      */
@@ -246,7 +331,7 @@ class PicturePickerPresenter implements PicturePickerContract.IPresenter, Camera
         // Set preview text associated with view.
         mView.setPreviewText(buildPreviewText());
         // Notify view displays paths changed.
-        mView.notifyDisplayPathsChanged();
+        mView.notifyDisplayPathsChanged(curDisplayFolder);
     }
 
     /**
@@ -0,0 +1,161 @@
+package com.sharry.picturepicker.picker;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.widget.ImageView;
+
+import com.sharry.picturepicker.support.loader.IPicturePreloader;
+import com.sharry.picturepicker.support.loader.PictureLoader;
+
+import java.util.HashSet;
+import java.util.Iterator;
+
+/**
+ * 图片列表的缩略图预加载
+ * <p>
+ * 根据滑动的方向和速度, 让图片加载器提前按照条目中图片控件的尺寸解码即将展示的若干行, 滑出预加载范围的请求会被取消.
+ * 仅当图片加载器实现了 {@link IPicturePreloader} 时生效.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.1
+ * @since 2019/3/26 10:40
+ */
+class PicturePrefetcher extends RecyclerView.OnScrollListener {
+
+    /**
+     * 根据当前速度预估之后多少帧滑过的距离, 用于扩大预加载的行数
+     */
+    private static final int LOOKAHEAD_FRAMES = 10;
+
+    private final Context mContext;
+    private final PictureAdapter mAdapter;
+    private final GridLayoutManager mLayoutManager;
+    private final int mRowCount;
+    private final HashSet<String> mPrefetchedUris = new HashSet<>();
+    private final HashSet<String> mWindowUris = new HashSet<>();
+
+    // 上一次计算预加载范围时的状态, 没有变化时不重新计算
+    private int mLastFirstVisible = RecyclerView.NO_POSITION;
+    private int mLastLastVisible = RecyclerView.NO_POSITION;
+    private int mLastDirection = 0;
+    private int mLastRowCount = 0;
+
+    // 已布局的条目中图片控件的尺寸, 条目带有内边距, 小于网格的尺寸
+    private int mPictureWidth = 0;
+    private int mPictureHeight = 0;
+
+    /**
+     * @param rowCount 匀速滑动时预加载的行数, 快速滑动时最多会扩大为两倍
+     */
+    PicturePrefetcher(@NonNull Context context, @NonNull PictureAdapter adapter,
+                      @NonNull GridLayoutManager layoutManager, int rowCount) {
+        this.mContext = context;
+        this.mAdapter = adapter;
+        this.mLayoutManager = layoutManager;
+        this.mRowCount = rowCount;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0) {
+            return;
+        }
+        int spanCount = mLayoutManager.getSpanCount();
+        int cellSize = (recyclerView.getWidth() - recyclerView.getPaddingLeft()
+                - recyclerView.getPaddingRight()) / spanCount;
+        if (cellSize <= 0 || !measurePictureSize(recyclerView)) {
+            return;
+        }
+        int firstVisible = mLayoutManager.findFirstVisibleItemPosition();
+        int lastVisible = mLayoutManager.findLastVisibleItemPosition();
+        if (firstVisible == RecyclerView.NO_POSITION || lastVisible == RecyclerView.NO_POSITION) {
+            return;
+        }
+        // 根据速度扩大预加载的行数
+        int direction = dy > 0 ? 1 : -1;
+        int extraRows = Math.min(mRowCount, Math.abs(dy) * LOOKAHEAD_FRAMES / cellSize);
+        int rowCount = mRowCount + extraRows;
+        if (firstVisible == mLastFirstVisible && lastVisible == mLastLastVisible
+                && direction == mLastDirection && rowCount == mLastRowCount) {
+            return;
+        }
+        mLastFirstVisible = firstVisible;
+        mLastLastVisible = lastVisible;
+        mLastDirection = direction;
+        mLastRowCount = rowCount;
+        updateWindow(firstVisible, lastVisible, direction, rowCount * spanCount);
+    }
+
+    /**
+     * 取消所有的预加载
+     */
+    void cancelAll() {
+        for (String uri : mPrefetchedUris) {
+            PictureLoader.cancelPreload(mContext, uri);
+        }
+        mPrefetchedUris.clear();
+        mLastFirstVisible = mLastLastVisible = RecyclerView.NO_POSITION;
+    }
+
+    private void updateWindow(int firstVisible, int lastVisible, int direction, int itemCount) {
+        // 1. 计算新的预加载范围, 由近及远排列
+        mWindowUris.clear();
+        for (int i = 1; i <= itemCount; i++) {
+            String uri = mAdapter.getDisplayPathAt(direction > 0 ? lastVisible + i : firstVisible - i);
+            if (uri != null) {
+                mWindowUris.add(uri);
+            }
+        }
+        // 2. 取消滑出范围的请求, 已经可见的条目由绑定时的加载接管, 无需取消
+        Iterator<String> iterator = mPrefetchedUris.iterator();
+        while (iterator.hasNext()) {
+            String uri = iterator.next();
+            if (!mWindowUris.contains(uri)) {
+                if (!isVisible(uri, firstVisible, lastVisible)) {
+                    PictureLoader.cancelPreload(mContext, uri);
+                }
+                iterator.remove();
+            }
+        }
+        // 3. 发起新的预加载
+        for (int i = 1; i <= itemCount; i++) {
+            String uri = mAdapter.getDisplayPathAt(direction > 0 ? lastVisible + i : firstVisible - i);
+            if (uri != null && mPrefetchedUris.add(uri)) {
+                PictureLoader.preload(mContext, uri, mPictureWidth, mPictureHeight);
+            }
+        }
+    }
+
+    /**
+     * 读取已布局的条目中图片控件的尺寸, 缩略图缓存按照尺寸区分, 与绑定时加载的尺寸一致才能命中
+     *
+     * @return 没有已布局的条目时返回 false
+     */
+    private boolean measurePictureSize(RecyclerView recyclerView) {
+        for (int i = 0, count = recyclerView.getChildCount(); i < count; i++) {
+            RecyclerView.ViewHolder holder = recyclerView.getChildViewHolder(recyclerView.getChildAt(i));
+            if (!(holder instanceof PictureAdapter.ViewHolder)) {
+                continue;
+            }
+            ImageView ivPicture = ((PictureAdapter.ViewHolder) holder).ivPicture;
+            if (ivPicture.getWidth() > 0 && ivPicture.getHeight() > 0) {
+                mPictureWidth = ivPicture.getWidth();
+                mPictureHeight = ivPicture.getHeight();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isVisible(String uri, int firstVisible, int lastVisible) {
+        for (int position = firstVisible; position <= lastVisible; position++) {
+            if (uri.equals(mAdapter.getDisplayPathAt(position))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
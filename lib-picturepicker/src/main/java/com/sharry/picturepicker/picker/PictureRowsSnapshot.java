@@ -0,0 +1,59 @@
+package com.sharry.picturepicker.picker;
+
+import java.util.AbstractList;
+
+/**
+ * 文件夹行号的快照, 行号数组中前 count 个元素不会再被修改, 可以在子线程中读取
+ * <p>
+ * 作为集合时只能在主线程中访问, 路径从表中读取. 列表展示的是快照时, 点击的位置也以快照为准,
+ * 不受文件夹之后的切换与插入影响.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 18:45
+ */
+class PictureRowsSnapshot extends AbstractList<String> {
+
+    final PictureTable table;
+    final int[] rows;
+    final int count;
+
+    PictureRowsSnapshot(PictureTable table, int[] rows, int count) {
+        this.table = table;
+        this.rows = rows;
+        this.count = count;
+    }
+
+    /**
+     * 两个快照的行号来自同一张表时才能比较, 重新遍历后的新表需要全量刷新
+     */
+    boolean isDiffableWith(PictureRowsSnapshot other) {
+        return table == other.table && count > 0 && other.count > 0;
+    }
+
+    /**
+     * 获取指定位置的图片信息, 直接通过行号读取, 不需要查找路径
+     */
+    PictureItem getItem(int index) {
+        checkIndex(index);
+        return table.getItem(rows[index]);
+    }
+
+    @Override
+    public String get(int index) {
+        checkIndex(index);
+        return table.getPath(rows[index]);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    private void checkIndex(int index) {
+        if (index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.sharry.picturepicker.picker;
+
+import android.support.annotation.Nullable;
+
+import com.sharry.picturepicker.support.utils.PictureMetadataCache;
+
+import java.util.Arrays;
+
+/**
+ * 相册中所有图片的列式存储
+ * <p>
+ * 每张图片只在这里保存一次, 文件夹与展示集合通过 int 类型的行号引用, 避免为每个文件夹复制一份路径集合.
+ * 仅在主线程中访问.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.1
+ * @since 2019/3/25 15:40
+ */
+class PictureTable {
+
+    private static final int INITIAL_CAPACITY = 512;
+    private static final long INVALIDATE_ID = -1;
+
+    private String[] mPaths = new String[INITIAL_CAPACITY];
+    private long[] mIds = new long[INITIAL_CAPACITY];
+    private int[] mWidths = new int[INITIAL_CAPACITY];
+    private int[] mHeights = new int[INITIAL_CAPACITY];
+    private int[] mOrientations = new int[INITIAL_CAPACITY];
+    private long[] mSizes = new long[INITIAL_CAPACITY];
+    private int mSize;
+
+    /**
+     * 添加一行 MediaStore 中的图片
+     *
+     * @return 新增的行号
+     */
+    int add(PictureItem item) {
+        ensureCapacity(mSize + 1);
+        mPaths[mSize] = item.path;
+        mIds[mSize] = item.id;
+        mWidths[mSize] = item.width;
+        mHeights[mSize] = item.height;
+        mOrientations[mSize] = item.orientation;
+        mSizes[mSize] = item.size;
+        return mSize++;
+    }
+
+    /**
+     * 添加一行尚未写入 MediaStore 的图片, 如刚刚拍摄的照片
+     *
+     * @param metadata 写入文件时已知的图片信息, 未知时传 null
+     * @return 新增的行号
+     */
+    int add(String path, @Nullable PictureMetadataCache.Metadata metadata) {
+        ensureCapacity(mSize + 1);
+        mPaths[mSize] = path;
+        mIds[mSize] = INVALIDATE_ID;
+        mWidths[mSize] = metadata != null ? metadata.width : 0;
+        mHeights[mSize] = metadata != null ? metadata.height : 0;
+        mOrientations[mSize] = metadata != null ? metadata.orientation : 0;
+        mSizes[mSize] = metadata != null ? metadata.size : 0;
+        return mSize++;
+    }
+
+    String getPath(int row) {
+        return mPaths[row];
+    }
+
+    long getId(int row) {
+        return mIds[row];
+    }
+
+    /**
+     * 获取指定行的图片信息, 既没有 MediaStore 信息, 也没有写入时的信息时返回 null
+     */
+    @Nullable
+    PictureItem getItem(int row) {
+        if (mIds[row] == INVALIDATE_ID && mWidths[row] <= 0) {
+            return null;
+        }
+        return new PictureItem(mIds[row], mPaths[row], null, mWidths[row], mHeights[row],
+                mOrientations[row], mSizes[row], 0, 0);
+    }
+
+    /**
+     * 查找图片所在的行, 线性查找, 仅用于选中图片等少量数据
+     *
+     * @return 不存在时返回 -1
+     */
+    int indexOf(String path) {
+        if (path == null) {
+            return -1;
+        }
+        for (int i = 0; i < mSize; i++) {
+            if (path.equals(mPaths[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity <= mPaths.length) {
+            return;
+        }
+        int newCapacity = Math.max(minCapacity, mPaths.length + (mPaths.length >> 1));
+        mPaths = Arrays.copyOf(mPaths, newCapacity);
+        mIds = Arrays.copyOf(mIds, newCapacity);
+        mWidths = Arrays.copyOf(mWidths, newCapacity);
+        mHeights = Arrays.copyOf(mHeights, newCapacity);
+        mOrientations = Arrays.copyOf(mOrientations, newCapacity);
+        mSizes = Arrays.copyOf(mSizes, newCapacity);
+    }
+
+}
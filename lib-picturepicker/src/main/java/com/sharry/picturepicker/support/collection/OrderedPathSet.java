@@ -0,0 +1,188 @@
+package com.sharry.picturepicker.support.collection;
+
+import android.support.annotation.NonNull;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.RandomAccess;
+
+/**
+ * 有序的图片路径集合, 用于保存用户选中的图片
+ * <p>
+ * 按照插入顺序保存路径, 同时维护 path -> 序号 的哈希索引, {@link #contains} 和 {@link #indexOf} 均为 O(1).
+ * 移除元素后不会立即重新编号, 而是记录失效的起始位置, 在下一次查询到失效区间时才统一修正,
+ * 因此连续移除多个元素只需要重新编号一次. 序号保存在可变的 Entry 中, 重新编号时不需要重新哈希, 也不会产生装箱对象.
+ * <p>
+ * 集合中不会出现重复的路径, 重复添加会被忽略.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/24 14:12
+ */
+public class OrderedPathSet extends AbstractList<String> implements RandomAccess {
+
+    private static final int CLEAN = Integer.MAX_VALUE;
+
+    private final ArrayList<Entry> mEntries;
+    private final HashMap<String, Entry> mIndex;
+    /**
+     * 序号失效的起始位置, 在它之前的序号都是准确的
+     */
+    private int mDirtyFrom = CLEAN;
+
+    public OrderedPathSet() {
+        mEntries = new ArrayList<>();
+        mIndex = new HashMap<>();
+    }
+
+    public OrderedPathSet(@NonNull Collection<String> paths) {
+        mEntries = new ArrayList<>(paths.size());
+        mIndex = new HashMap<>(Math.max(paths.size() * 2, 16));
+        addAll(paths);
+    }
+
+    @Override
+    public String get(int index) {
+        return mEntries.get(index).path;
+    }
+
+    @Override
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * 追加到末尾
+     *
+     * @return 若已经存在则返回 false
+     */
+    @Override
+    public boolean add(String path) {
+        if (mIndex.containsKey(path)) {
+            return false;
+        }
+        Entry entry = new Entry(path, mEntries.size());
+        mIndex.put(path, entry);
+        mEntries.add(entry);
+        modCount++;
+        return true;
+    }
+
+    /**
+     * 插入到指定位置, 若已经存在则忽略
+     */
+    @Override
+    public void add(int index, String path) {
+        if (mIndex.containsKey(path)) {
+            return;
+        }
+        Entry entry = new Entry(path, index);
+        mEntries.add(index, entry);
+        mIndex.put(path, entry);
+        if (index < mEntries.size() - 1) {
+            markDirty(index);
+        }
+        modCount++;
+    }
+
+    @Override
+    public String remove(int index) {
+        Entry removed = mEntries.remove(index);
+        mIndex.remove(removed.path);
+        if (index < mEntries.size()) {
+            markDirty(index);
+        }
+        modCount++;
+        return removed.path;
+    }
+
+    @Override
+    public boolean remove(Object path) {
+        int index = indexOf(path);
+        if (index == -1) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public String set(int index, String path) {
+        throw new UnsupportedOperationException("Use remove and add instead.");
+    }
+
+    @Override
+    public void clear() {
+        mEntries.clear();
+        mIndex.clear();
+        mDirtyFrom = CLEAN;
+        modCount++;
+    }
+
+    @Override
+    public boolean contains(Object path) {
+        return mIndex.containsKey(path);
+    }
+
+    /**
+     * 获取路径的序号
+     *
+     * @return 不存在时返回 -1
+     */
+    @Override
+    public int indexOf(Object path) {
+        Entry entry = mIndex.get(path);
+        if (entry == null) {
+            return -1;
+        }
+        if (entry.ordinal >= mDirtyFrom) {
+            renumber();
+        }
+        return entry.ordinal;
+    }
+
+    @Override
+    public int lastIndexOf(Object path) {
+        return indexOf(path);
+    }
+
+    /**
+     * 拷贝一份可序列化的集合, 用于通过 Intent/Parcel 传递
+     */
+    @NonNull
+    public ArrayList<String> toArrayList() {
+        ArrayList<String> paths = new ArrayList<>(mEntries.size());
+        for (Entry entry : mEntries) {
+            paths.add(entry.path);
+        }
+        return paths;
+    }
+
+    private void markDirty(int index) {
+        mDirtyFrom = Math.min(mDirtyFrom, index);
+    }
+
+    /**
+     * 修正失效区间的序号
+     */
+    private void renumber() {
+        for (int i = mDirtyFrom, size = mEntries.size(); i < size; i++) {
+            mEntries.get(i).ordinal = i;
+        }
+        mDirtyFrom = CLEAN;
+    }
+
+    private static class Entry {
+
+        final String path;
+        int ordinal;
+
+        Entry(String path, int ordinal) {
+            this.path = path;
+            this.ordinal = ordinal;
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.sharry.picturepicker.support.compress;
+
+import java.util.List;
+
+/**
+ * 批量压缩的回调, 均在主线程中执行
+ * <p>
+ * 每张图片完成后立即回调, 回调顺序与完成的先后一致, 不保证与传入的顺序一致.
+ * 所有图片处理完成后回调 {@link #onBatchCompressComplete}, 被取消时回调 {@link #onBatchCompressCanceled()}.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/29 14:30
+ */
+public interface BatchCompressCallback {
+
+    /**
+     * 一张图片压缩完成
+     *
+     * @param index      在传入集合中的位置
+     * @param originPath 原始图片的路径
+     * @param destPath   压缩后的文件路径
+     */
+    void onItemCompressComplete(int index, String originPath, String destPath);
+
+    /**
+     * 一张图片压缩失败, 不影响其他图片
+     *
+     * @param index      在传入集合中的位置
+     * @param originPath 原始图片的路径
+     */
+    void onItemCompressFailed(int index, String originPath, Exception e);
+
+    /**
+     * 所有图片处理完成
+     *
+     * @param destPaths 与传入的集合一一对应, 压缩失败的位置为 null
+     */
+    void onBatchCompressComplete(List<String> destPaths);
+
+    /**
+     * 批量压缩被取消, 已经回调过的文件会保留, 其余的文件会被删除
+     */
+    void onBatchCompressCanceled();
+
+}
@@ -0,0 +1,32 @@
+package com.sharry.picturepicker.support.compress;
+
+/**
+ * 图片压缩的回调, 均在主线程中执行
+ * <p>
+ * 每次压缩只会回调 {@link #onCompressComplete}, {@link #onCompressFailed}, {@link #onCompressCanceled} 中的一个,
+ * 可以在其中释放临时文件等资源. 单张图片的压缩没有中间进度, 批量压缩的进度见 {@link BatchCompressCallback}.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.1
+ * @since 2019/3/29 10:05
+ */
+public interface CompressCallback {
+
+    /**
+     * 压缩完成
+     *
+     * @param destPath 压缩后的文件路径
+     */
+    void onCompressComplete(String destPath);
+
+    /**
+     * 压缩失败, 不会留下目标文件
+     */
+    void onCompressFailed(Exception e);
+
+    /**
+     * 压缩被取消, 不会留下目标文件
+     */
+    void onCompressCanceled();
+
+}
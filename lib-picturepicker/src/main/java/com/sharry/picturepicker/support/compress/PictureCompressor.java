@@ -0,0 +1,287 @@
+package com.sharry.picturepicker.support.compress;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import com.sharry.picturepicker.support.executor.CancelToken;
+import com.sharry.picturepicker.support.executor.PickerExecutors;
+import com.sharry.picturepicker.support.utils.FileUtil;
+import com.sharry.picturepicker.support.utils.PictureMetadataCache;
+import com.sharry.picturepicker.support.utils.PictureUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在后台执行的图片压缩
+ * <p>
+ * 解码, 旋转, 编码与写入文件都在 {@link PickerExecutors} 的线程池中执行, 结果投递到主线程.
+ * 通过 {@link CancelToken} 取消, 取消后不会留下目标文件, 且依旧会回调 {@link CompressCallback#onCompressCanceled()}.
+ * 同时支持多张图片的并行批量压缩. 相册遍历时已经读取了宽高与旋转角度的图片, 压缩时不再解析文件头.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.6
+ * @since 2019/3/29 10:05
+ */
+public class PictureCompressor {
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    /**
+     * 批量压缩最多占用最大堆内存的 1/4
+     */
+    private static final int BATCH_MEMORY_DIVISOR = 4;
+
+    /**
+     * 未指定长边上限时, 按照屏幕自适应采样后长边的上限估算内存
+     */
+    private static final int DEFAULT_DECODED_LONG_SIDE = 2560;
+
+    /**
+     * 批次在进程内的编号, 用于区分同一毫秒开始的批次的目标文件
+     */
+    private static final AtomicInteger BATCH_ID_GENERATOR = new AtomicInteger();
+
+    /**
+     * 将 originPath 的图片压缩到 destPath 中
+     *
+     * @param quality     压缩质量, 限制文件大小时为质量的上限
+     * @param maxFileSize 压缩后文件大小的上限, 传 0 则不限制
+     * @param token       取消令牌, 由调用方在界面销毁时取消
+     */
+    public static void compress(@NonNull final String originPath, @NonNull final String destPath, final int quality,
+                                final long maxFileSize, @NonNull final CancelToken token,
+                                @NonNull final CompressCallback callback) {
+        PickerExecutors.getWorkExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    doCompress(originPath, destPath, quality, maxFileSize, 0, PictureUtil.getDefaultMemoryBudget(),
+                            token);
+                    deliverComplete(destPath, token, callback);
+                } catch (CancellationException e) {
+                    deliverCanceled(callback);
+                } catch (Exception e) {
+                    new File(destPath).delete();
+                    deliverFailed(e, callback);
+                }
+            }
+        });
+    }
+
+    /**
+     * 批量压缩, 多张图片并行处理, 每张图片完成后立即回调
+     * <p>
+     * 并行数量受 CPU 核心数与内存预算的限制, 总耗时接近最慢的一张图片, 而不是所有图片的耗时之和.
+     * 在 {@link PickerExecutors#getBatchExecutor()} 中执行, 多个批次同时进行时共用其中的线程,
+     * 不会占用缩略图加载与相册遍历的共享线程池.
+     *
+     * @param originPaths   需要压缩的图片, 如 PickerCallback 返回的集合
+     * @param destDirectory 压缩后的文件输出的目录
+     * @param quality       压缩质量, 限制文件大小时为质量的上限
+     * @param maxFileSize   每张图片压缩后文件大小的上限, 传 0 则不限制
+     * @param maxDimension  压缩后图片长边的上限, 传 0 则只按照屏幕自适应采样
+     * @param token         取消令牌, 由调用方在界面销毁时取消
+     */
+    public static void compressBatch(@NonNull List<String> originPaths, @NonNull String destDirectory,
+                                     int quality, long maxFileSize, int maxDimension,
+                                     @NonNull CancelToken token, @NonNull BatchCompressCallback callback) {
+        new BatchTask(new ArrayList<>(originPaths), destDirectory, quality, maxFileSize, maxDimension,
+                token, callback).start();
+    }
+
+    /**
+     * 计算批量压缩的并行数量
+     *
+     * @param itemCount    图片的数量
+     * @param maxDimension 压缩后图片长边的上限
+     * @param maxMemory    最大堆内存
+     * @param maxWorkers   可以占用的线程数
+     */
+    @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+    static int calculateParallelism(int itemCount, int maxDimension, long maxMemory, int maxWorkers) {
+        // 采样后的长边不会超过上限的 2 倍, 缩放时采样后的 Bitmap 与缩放后的 Bitmap 同时存在, 每个像素最多 4 个字节
+        long bytesPerItem = maxDimension > 0 ? 4L * (2 * maxDimension) * (2 * maxDimension)
+                + 4L * maxDimension * maxDimension : 4L * DEFAULT_DECODED_LONG_SIDE * DEFAULT_DECODED_LONG_SIDE;
+        long memoryBound = maxMemory / BATCH_MEMORY_DIVISOR / bytesPerItem;
+        return (int) Math.max(1, Math.min(Math.min(maxWorkers, itemCount), memoryBound));
+    }
+
+    /**
+     * 优先使用相册遍历时读取的宽高与旋转角度, 没有记录时由 {@link PictureUtil} 解析文件头
+     */
+    private static void doCompress(String originPath, String destPath, int quality, long maxFileSize,
+                                   int maxDimension, long memoryBudget, CancelToken token) throws IOException {
+        PictureMetadataCache.Metadata metadata = PictureMetadataCache.getDefault().get(originPath);
+        if (metadata == null) {
+            PictureUtil.doCompress(originPath, destPath, quality, maxFileSize, maxDimension, memoryBudget,
+                    0, 0, PictureUtil.INVALIDATE_ORIENTATION, token);
+        } else {
+            PictureUtil.doCompress(originPath, destPath, quality, maxFileSize, maxDimension, memoryBudget,
+                    metadata.width, metadata.height, metadata.orientation, token);
+        }
+    }
+
+    private static void deliverComplete(final String destPath, final CancelToken token,
+                                        final CompressCallback callback) {
+        MAIN_HANDLER.post(new Runnable() {
+            @Override
+            public void run() {
+                // 投递前被取消, 丢弃压缩结果
+                if (token.isCanceled()) {
+                    deleteInBackground(destPath);
+                    callback.onCompressCanceled();
+                    return;
+                }
+                callback.onCompressComplete(destPath);
+            }
+        });
+    }
+
+    private static void deliverFailed(final Exception e, final CompressCallback callback) {
+        MAIN_HANDLER.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onCompressFailed(e);
+            }
+        });
+    }
+
+    private static void deliverCanceled(final CompressCallback callback) {
+        MAIN_HANDLER.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onCompressCanceled();
+            }
+        });
+    }
+
+    /**
+     * 一次批量压缩
+     * <p>
+     * 启动若干个 worker, 每个 worker 依次领取尚未处理的图片, 最后一个结束的 worker 负责回调整体的结果.
+     */
+    private static class BatchTask {
+
+        private final List<String> mOriginPaths;
+        private final String mDestDirectory;
+        private final int mQuality;
+        private final long mMaxFileSize;
+        private final int mMaxDimension;
+        private final CancelToken mToken;
+        private final BatchCompressCallback mCallback;
+        private final long mBatchTime = System.currentTimeMillis();
+        private final int mBatchId = BATCH_ID_GENERATOR.getAndIncrement();
+        private final AtomicInteger mNextIndex = new AtomicInteger();
+        private final AtomicInteger mActiveWorkers = new AtomicInteger();
+        private final String[] mDestPaths;                  // 只在主线程中访问
+        private long mMemoryBudget;
+
+        BatchTask(List<String> originPaths, String destDirectory, int quality, long maxFileSize,
+                  int maxDimension, CancelToken token, BatchCompressCallback callback) {
+            mOriginPaths = originPaths;
+            mDestDirectory = destDirectory;
+            mQuality = quality;
+            mMaxFileSize = maxFileSize;
+            mMaxDimension = maxDimension;
+            mToken = token;
+            mCallback = callback;
+            mDestPaths = new String[originPaths.size()];
+        }
+
+        void start() {
+            if (mOriginPaths.isEmpty()) {
+                deliverFinish();
+                return;
+            }
+            // worker 会一直占用线程直到所有图片处理完成, 其他批次的 worker 在批量线程池中排队
+            int maxWorkers = Math.min(Runtime.getRuntime().availableProcessors(),
+                    PickerExecutors.getBatchPoolSize());
+            int parallelism = calculateParallelism(mOriginPaths.size(), mMaxDimension,
+                    Runtime.getRuntime().maxMemory(), maxWorkers);
+            mActiveWorkers.set(parallelism);
+            // 每张图片的内存预算, 保证所有 worker 同时解码时不超过批量压缩的总预算
+            mMemoryBudget = Runtime.getRuntime().maxMemory() / BATCH_MEMORY_DIVISOR / parallelism;
+            for (int i = 0; i < parallelism; i++) {
+                PickerExecutors.getBatchExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        int index;
+                        while (!mToken.isCanceled() && (index = mNextIndex.getAndIncrement()) < mOriginPaths.size()) {
+                            compressItem(index);
+                        }
+                        if (mActiveWorkers.decrementAndGet() == 0) {
+                            deliverFinish();
+                        }
+                    }
+                });
+            }
+        }
+
+        private void compressItem(final int index) {
+            final String originPath = mOriginPaths.get(index);
+            final String destPath = FileUtil.createCompressDestFile(mDestDirectory, mBatchTime, mBatchId, index)
+                    .getAbsolutePath();
+            try {
+                doCompress(originPath, destPath, mQuality, mMaxFileSize, mMaxDimension, mMemoryBudget, mToken);
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // 投递前被取消, 丢弃压缩结果
+                        if (mToken.isCanceled()) {
+                            deleteInBackground(destPath);
+                            return;
+                        }
+                        mDestPaths[index] = destPath;
+                        mCallback.onItemCompressComplete(index, originPath, destPath);
+                    }
+                });
+            } catch (CancellationException e) {
+                // 取消时 doCompress 不会留下目标文件
+            } catch (final Exception e) {
+                new File(destPath).delete();
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!mToken.isCanceled()) {
+                            mCallback.onItemCompressFailed(index, originPath, e);
+                        }
+                    }
+                });
+            }
+        }
+
+        private void deliverFinish() {
+            MAIN_HANDLER.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mToken.isCanceled()) {
+                        mCallback.onBatchCompressCanceled();
+                    } else {
+                        mCallback.onBatchCompressComplete(Arrays.asList(mDestPaths));
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 在子线程中删除文件, 用于回调方释放临时文件
+     */
+    public static void deleteInBackground(@NonNull final String path) {
+        PickerExecutors.getWorkExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                new File(path).delete();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.sharry.picturepicker.support.executor;
+
+import android.os.CancellationSignal;
+import android.support.annotation.NonNull;
+
+/**
+ * 后台任务的取消令牌
+ * <p>
+ * 由发起任务的一方持有并在界面销毁时调用 {@link #cancel()}, 任务执行方需要在投递结果前检查 {@link #isCanceled()}.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/22 16:20
+ */
+public class CancelToken {
+
+    private final CancellationSignal mSignal = new CancellationSignal();
+
+    /**
+     * 取消任务, 正在执行的 ContentResolver 查询也会被中断
+     */
+    public void cancel() {
+        mSignal.cancel();
+    }
+
+    public boolean isCanceled() {
+        return mSignal.isCanceled();
+    }
+
+    /**
+     * 获取可以传递给 ContentResolver.query 的取消信号
+     */
+    @NonNull
+    public CancellationSignal getCancellationSignal() {
+        return mSignal;
+    }
+
+}
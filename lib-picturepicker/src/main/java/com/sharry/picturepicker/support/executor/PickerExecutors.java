@@ -0,0 +1,119 @@
+package com.sharry.picturepicker.support.executor;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PicturePicker 内部共享的线程池
+ * <p>
+ * 相册遍历, 图片压缩, EXIF 读取等耗时操作统一在这里执行, 线程数有上限, 空闲时线程会被回收.
+ * 批量压缩等长时间占用线程的任务在独立的批量线程池中执行, 不会占满共享的线程池.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.2
+ * @since 2019/3/22 16:05
+ */
+public class PickerExecutors {
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+    private static final int MAX_POOL_SIZE = Math.max(2, Math.min(CPU_COUNT, 4));
+    private static final int BATCH_POOL_SIZE = MAX_POOL_SIZE - 1;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static final String THREAD_NAME_PREFIX = "PicturePicker-worker-";
+    private static final String BATCH_THREAD_NAME_PREFIX = "PicturePicker-batch-";
+
+    private static volatile ExecutorService sWorkExecutor;
+    private static volatile ExecutorService sBatchExecutor;
+
+    /**
+     * 获取用于执行后台任务的线程池
+     */
+    @NonNull
+    public static ExecutorService getWorkExecutor() {
+        if (sWorkExecutor == null) {
+            synchronized (PickerExecutors.class) {
+                if (sWorkExecutor == null) {
+                    sWorkExecutor = newExecutor(MAX_POOL_SIZE, THREAD_NAME_PREFIX);
+                }
+            }
+        }
+        return sWorkExecutor;
+    }
+
+    /**
+     * 获取用于执行批量任务的线程池
+     * <p>
+     * 所有批次共用其中的线程, 同时进行的批次再多, 占用的线程数也不会超过 {@link #getBatchPoolSize()},
+     * 多出的任务排队等待.
+     */
+    @NonNull
+    public static ExecutorService getBatchExecutor() {
+        if (sBatchExecutor == null) {
+            synchronized (PickerExecutors.class) {
+                if (sBatchExecutor == null) {
+                    sBatchExecutor = newExecutor(BATCH_POOL_SIZE, BATCH_THREAD_NAME_PREFIX);
+                }
+            }
+        }
+        return sBatchExecutor;
+    }
+
+    /**
+     * 获取线程池的线程数, 需要长时间占用多个线程的任务应当少于这个数量, 避免阻塞其他任务
+     */
+    public static int getWorkPoolSize() {
+        return MAX_POOL_SIZE;
+    }
+
+    /**
+     * 获取批量线程池的线程数, 比共享线程池少一个, 批量任务与其他任务同时运行时不会占满 CPU
+     */
+    public static int getBatchPoolSize() {
+        return BATCH_POOL_SIZE;
+    }
+
+    private static ExecutorService newExecutor(int poolSize, String threadNamePrefix) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new WorkThreadFactory(threadNamePrefix)
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 为线程命名并降低优先级, 避免与主线程抢占 CPU
+     */
+    private static class WorkThreadFactory implements ThreadFactory {
+
+        private final String mNamePrefix;
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        WorkThreadFactory(String namePrefix) {
+            mNamePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(@NonNull final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, mNamePrefix + mCount.getAndIncrement());
+        }
+    }
+
+}
@@ -0,0 +1,280 @@
+package com.sharry.picturepicker.support.loader;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+
+/**
+ * 可复用的 Bitmap 池
+ * <p>
+ * 解码时通过 {@link BitmapFactory.Options#inBitmap} 复用不再展示的 Bitmap, 减少滑动相册时的内存分配与 GC.
+ * 按照占用字节数的 2 的幂次划分尺寸等级, 获取时只在对应等级中查找, 浪费的内存不会超过一倍.
+ * 超出上限时优先淘汰大尺寸等级中最早放入的 Bitmap.
+ * <p>
+ * Android 4.4 以下 inBitmap 要求尺寸完全一致, 收益有限, 因此只在 4.4 及以上版本启用.
+ * 放入池中的 Bitmap 必须已经不再被任何 View 或缓存引用. 4.4 的 API 均通过 {@link #isReuseSupport()} 判断后才会调用.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.2
+ * @since 2019/3/27 16:40
+ */
+public class BitmapPool {
+
+    private static final int SIZE_CLASS_COUNT = 32;
+
+    private static volatile BitmapPool sDefault;
+
+    /**
+     * 获取共享的 Bitmap 池, 上限为最大堆内存的 1/16
+     */
+    @NonNull
+    public static BitmapPool getDefault() {
+        if (sDefault == null) {
+            synchronized (BitmapPool.class) {
+                if (sDefault == null) {
+                    sDefault = new BitmapPool(Runtime.getRuntime().maxMemory() / 16);
+                }
+            }
+        }
+        return sDefault;
+    }
+
+    private final long mMaxBytes;
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<Bitmap>[] mSizeClasses = new ArrayDeque[SIZE_CLASS_COUNT];
+    private long mRetainedBytes;
+    private int mHitCount;
+    private int mMissCount;
+
+    /**
+     * @param maxBytes 池中保留的 Bitmap 占用字节数的上限
+     */
+    public BitmapPool(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * 是否支持复用, Android 4.4 及以上才启用
+     */
+    public static boolean isReuseSupport() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    }
+
+    /**
+     * 获取一个指定尺寸的可变 Bitmap, 池中没有合适的 Bitmap 时新建
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    @NonNull
+    public Bitmap get(int width, int height, @NonNull Bitmap.Config config) {
+        Bitmap bitmap = poll(width, height, config);
+        if (bitmap == null) {
+            return Bitmap.createBitmap(width, height, config);
+        }
+        bitmap.reconfigure(width, height, config);
+        bitmap.eraseColor(Color.TRANSPARENT);
+        return bitmap;
+    }
+
+    /**
+     * 使用池中的 Bitmap 解码文件
+     *
+     * @param options 需要已经解析出原始宽高与 inSampleSize
+     * @return 解码失败时返回 null
+     */
+    @Nullable
+    public Bitmap decodeFile(@NonNull String path, @NonNull BitmapFactory.Options options) {
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        Bitmap.Config config = options.inPreferredConfig == null ?
+                Bitmap.Config.ARGB_8888 : options.inPreferredConfig;
+        int sampleSize = Math.max(1, options.inSampleSize);
+        if (options.outWidth > 0 && options.outHeight > 0) {
+            // 采样后的尺寸向上取整, 保证复用的 Bitmap 足够大
+            options.inBitmap = poll((options.outWidth + sampleSize - 1) / sampleSize,
+                    (options.outHeight + sampleSize - 1) / sampleSize, config);
+        }
+        try {
+            return BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            // 无法复用时重新分配
+            if (options.inBitmap == null) {
+                throw e;
+            }
+            put(options.inBitmap);
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(path, options);
+        } finally {
+            options.inBitmap = null;
+        }
+    }
+
+    /**
+     * 使用池中的 Bitmap 解码图片的一块区域
+     * <p>
+     * BitmapRegionDecoder 不会调整复用的 Bitmap 的尺寸, 因此先将其调整为区域采样后的尺寸.
+     * 连续解码多个尺寸不同的区域时, 调用方可以在 options.inBitmap 中传入上一次解码的 Bitmap,
+     * 足够大时直接复用, 不受尺寸等级的限制; 不够大时回收到池中.
+     *
+     * @param options 需要已经设置 inSampleSize, 传入 inBitmap 时需要 Android 4.4 及以上
+     * @return 解码失败时返回 null
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    @Nullable
+    public Bitmap decodeRegion(@NonNull BitmapRegionDecoder decoder, @NonNull Rect region,
+                               @NonNull BitmapFactory.Options options) {
+        Bitmap.Config config = options.inPreferredConfig == null ?
+                Bitmap.Config.ARGB_8888 : options.inPreferredConfig;
+        int sampleSize = Math.max(1, options.inSampleSize);
+        int width = (region.width() + sampleSize - 1) / sampleSize;
+        int height = (region.height() + sampleSize - 1) / sampleSize;
+        Bitmap reusable = options.inBitmap;
+        if (reusable != null && reusable.getAllocationByteCount() < (long) width * height * bytesPerPixel(config)) {
+            put(reusable);
+            reusable = null;
+        }
+        options.inBitmap = reusable != null ? reusable : poll(width, height, config);
+        if (options.inBitmap != null) {
+            options.inBitmap.reconfigure(width, height, config);
+            options.inBitmap.eraseColor(Color.TRANSPARENT);
+        }
+        try {
+            return decoder.decodeRegion(region, options);
+        } catch (IllegalArgumentException e) {
+            // 无法复用时重新分配
+            if (options.inBitmap == null) {
+                throw e;
+            }
+            put(options.inBitmap);
+            options.inBitmap = null;
+            return decoder.decodeRegion(region, options);
+        } finally {
+            options.inBitmap = null;
+        }
+    }
+
+    /**
+     * 回收 Bitmap 到池中, 无法复用或超出上限时直接释放
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    public void put(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (!isReuseSupport() || !bitmap.isMutable() || bitmap.getAllocationByteCount() > mMaxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        synchronized (this) {
+            int sizeClass = sizeClassOf(bitmap.getAllocationByteCount());
+            if (mSizeClasses[sizeClass] == null) {
+                mSizeClasses[sizeClass] = new ArrayDeque<>();
+            }
+            mSizeClasses[sizeClass].offerLast(bitmap);
+            mRetainedBytes += bitmap.getAllocationByteCount();
+            trimToSize(mMaxBytes);
+        }
+    }
+
+    /**
+     * 释放池中所有的 Bitmap
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    /**
+     * 池中保留的 Bitmap 占用的字节数
+     */
+    public synchronized long getRetainedBytes() {
+        return mRetainedBytes;
+    }
+
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * 获取命中率, 没有任何请求时返回 0
+     */
+    public synchronized float getHitRate() {
+        int requestCount = mHitCount + mMissCount;
+        return requestCount == 0 ? 0 : mHitCount / (float) requestCount;
+    }
+
+    /**
+     * 从池中取出一个足够大的 Bitmap
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    @Nullable
+    private synchronized Bitmap poll(int width, int height, Bitmap.Config config) {
+        if (!isReuseSupport()) {
+            return null;
+        }
+        long requiredBytes = (long) width * height * bytesPerPixel(config);
+        ArrayDeque<Bitmap> candidates = mSizeClasses[sizeClassOf(requiredBytes)];
+        if (candidates != null) {
+            for (Bitmap candidate : candidates) {
+                if (candidate.getAllocationByteCount() >= requiredBytes) {
+                    candidates.remove(candidate);
+                    mRetainedBytes -= candidate.getAllocationByteCount();
+                    mHitCount++;
+                    return candidate;
+                }
+            }
+        }
+        mMissCount++;
+        return null;
+    }
+
+    /**
+     * 从大尺寸的等级开始, 淘汰最早放入的 Bitmap
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private void trimToSize(long maxBytes) {
+        for (int i = SIZE_CLASS_COUNT - 1; i >= 0 && mRetainedBytes > maxBytes; i--) {
+            ArrayDeque<Bitmap> bitmaps = mSizeClasses[i];
+            while (bitmaps != null && !bitmaps.isEmpty() && mRetainedBytes > maxBytes) {
+                Bitmap evicted = bitmaps.pollFirst();
+                mRetainedBytes -= evicted.getAllocationByteCount();
+                evicted.recycle();
+            }
+        }
+    }
+
+    /**
+     * 尺寸等级, 即字节数向上取整到 2 的幂次后的指数
+     */
+    private static int sizeClassOf(long bytes) {
+        int sizeClass = 64 - Long.numberOfLeadingZeros(Math.max(1, bytes) - 1);
+        return Math.min(sizeClass, SIZE_CLASS_COUNT - 1);
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.sharry.picturepicker.support.loader;
+
+import android.content.Context;
+
+/**
+ * 图片预加载的接口, {@link IPictureLoader} 的实现类可以选择同时实现这个接口
+ * <p>
+ * 实现后, 图片选择器会根据滑动的方向和速度, 提前将即将展示的缩略图解码到加载框架的缓存中;
+ * 未实现时不会进行预加载, 已有的 {@link IPictureLoader} 无需修改.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/26 10:12
+ */
+public interface IPicturePreloader {
+
+    /**
+     * 预加载图片到缓存中
+     *
+     * @param uri    图片的路径
+     * @param width  目标宽度, 与展示的 ImageView 保持一致, 便于命中缓存
+     * @param height 目标高度
+     */
+    void preload(Context context, String uri, int width, int height);
+
+    /**
+     * 取消尚未完成的预加载
+     *
+     * @param uri 图片的路径
+     */
+    void cancelPreload(Context context, String uri);
+
+}
@@ -0,0 +1,23 @@
+package com.sharry.picturepicker.support.loader;
+
+import android.content.Context;
+import android.widget.ImageView;
+
+/**
+ * 释放 ImageView 持有的图片的接口, {@link IPictureLoader} 的实现类可以选择同时实现这个接口
+ * <p>
+ * 相册的 Item 被回收, 或者图片查看器的页面被移除时回调, 实现类可以在这里取消加载, 并复用图片占用的内存;
+ * 未实现时不会做任何处理.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/27 17:30
+ */
+public interface IPictureRecycler {
+
+    /**
+     * 释放 ImageView 持有的图片, 调用后 ImageView 不再展示该图片
+     */
+    void recycle(Context context, ImageView imageView);
+
+}
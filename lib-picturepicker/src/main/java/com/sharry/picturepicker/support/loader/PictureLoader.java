@@ -6,28 +6,85 @@ import android.widget.ImageView;
 
 /**
  * PicturePicker 加载图片的工具类
+ * <p>
+ * 未设置图片加载器时, 使用内置的 {@link ThumbnailPictureLoader}.
  *
  * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
- * @version 1.0
+ * @version 1.4
  * @since 2018/6/21 16:19
  */
 public class PictureLoader {
 
     private static IPictureLoader mPictureLoader;
+    private static ThumbnailPictureLoader mDefaultPictureLoader;
 
     public static void setPictureLoader(@NonNull IPictureLoader loader) {
         mPictureLoader = loader;
     }
 
+    /**
+     * 获取图片加载器, 未设置时返回内置的 {@link ThumbnailPictureLoader}
+     */
+    @NonNull
     public static IPictureLoader getPictureLoader() {
-        return mPictureLoader;
+        if (mPictureLoader != null) {
+            return mPictureLoader;
+        }
+        return getDefaultPictureLoader();
+    }
+
+    /**
+     * 获取内置的 {@link ThumbnailPictureLoader}, 不受 setPictureLoader 的影响
+     * <p>
+     * 加载的图片只按照 EXIF 旋转并等比缩放, 不会被裁剪, 可以将 View 上的坐标按比例换算到原图中.
+     */
+    @NonNull
+    public static ThumbnailPictureLoader getDefaultPictureLoader() {
+        synchronized (PictureLoader.class) {
+            if (mDefaultPictureLoader == null) {
+                mDefaultPictureLoader = new ThumbnailPictureLoader();
+            }
+            return mDefaultPictureLoader;
+        }
     }
 
     public static void load(Context context, String uri, ImageView imageView) {
-        if (mPictureLoader == null) {
-            throw new UnsupportedOperationException("PictureLoader.load -> please invoke setPictureLoader first");
+        getPictureLoader().load(context, uri, imageView);
+    }
+
+    /**
+     * 图片加载器是否支持预加载
+     */
+    public static boolean isPreloadSupport() {
+        return getPictureLoader() instanceof IPicturePreloader;
+    }
+
+    /**
+     * 预加载图片, 图片加载器未实现 {@link IPicturePreloader} 时不做任何处理
+     */
+    public static void preload(Context context, String uri, int width, int height) {
+        if (isPreloadSupport()) {
+            ((IPicturePreloader) getPictureLoader()).preload(context, uri, width, height);
+        }
+    }
+
+    /**
+     * 取消预加载, 图片加载器未实现 {@link IPicturePreloader} 时不做任何处理
+     */
+    public static void cancelPreload(Context context, String uri) {
+        if (isPreloadSupport()) {
+            ((IPicturePreloader) getPictureLoader()).cancelPreload(context, uri);
+        }
+    }
+
+    /**
+     * 释放 ImageView 持有的图片, 图片加载器未实现 {@link IPictureRecycler} 时不做任何处理
+     */
+    public static void recycle(Context context, ImageView imageView) {
+        IPictureLoader loader = getPictureLoader();
+        if (loader instanceof IPictureRecycler) {
+            ((IPictureRecycler) loader).recycle(context, imageView);
         }
-        mPictureLoader.load(context, uri, imageView);
     }
 
 }
@@ -0,0 +1,508 @@
+package com.sharry.picturepicker.support.loader;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.sharry.picturepicker.support.utils.PictureMetadataCache;
+import com.sharry.picturepicker.support.utils.PictureUtil;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缩略图的两级缓存
+ * <p>
+ * 内存中使用按字节数限制大小的 LRU 缓存, 磁盘中保存降采样后的 JPEG(带透明通道时为 WebP) 缩略图.
+ * 内存缓存与磁盘缓存的 key 均为 路径 + 修改时间 + 目标尺寸, 原图在进程内或进程外被修改后都会重新生成缩略图.
+ * 解码时根据目标尺寸计算 inSampleSize, 并按照 EXIF 信息旋转, 最终缩放到刚好覆盖目标尺寸的大小.
+ * 解码使用 {@link BitmapPool} 中的 Bitmap, 既不在内存缓存中也没有被展示的缩略图会回收到池中.
+ * <p>
+ * 线程安全, 除内存缓存的查询外, 读取操作都会访问磁盘, 需要在子线程中调用.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.4
+ * @since 2019/3/27 10:20
+ */
+public class ThumbnailCache {
+
+    private static final String TAG = ThumbnailCache.class.getSimpleName();
+    private static final int DISK_QUALITY = 85;
+    /**
+     * 磁盘缓存超出上限时, 删除最久未使用的文件, 直到剩余这个比例
+     */
+    private static final float DISK_TRIM_RATIO = 0.75f;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final Comparator<File> LEAST_RECENTLY_USED = new Comparator<File>() {
+        @Override
+        public int compare(File o1, File o2) {
+            long l1 = o1.lastModified(), l2 = o2.lastModified();
+            return l1 == l2 ? 0 : (l1 < l2 ? -1 : 1);
+        }
+    };
+
+    private final LruCache<String, Bitmap> mMemoryCache;
+    private final BitmapPool mBitmapPool;
+    /**
+     * 记录 Bitmap 是否在内存缓存中, 以及正在展示它的 View 的数量, 两者都为空时才会回收到 Bitmap 池.
+     * 内存缓存的所有读写操作都持有这个锁, 保证获取与回收不会交错执行.
+     */
+    private final WeakHashMap<Bitmap, Usage> mUsages = new WeakHashMap<>();
+    private final File mDiskCacheDir;
+    private final long mMaxDiskBytes;
+    private final Object mDiskLock = new Object();
+    /**
+     * 磁盘缓存当前占用的字节数, 首次写入时才统计
+     */
+    private long mDiskBytes = -1;
+    // 命中率的统计
+    private final AtomicInteger mMemoryHitCount = new AtomicInteger();
+    private final AtomicInteger mDiskHitCount = new AtomicInteger();
+    private final AtomicInteger mMissCount = new AtomicInteger();
+
+    /**
+     * 使用共享的 {@link BitmapPool#getDefault()}
+     *
+     * @param diskCacheDir   磁盘缓存的目录, 传 null 则只使用内存缓存
+     * @param maxMemoryBytes 内存缓存的上限
+     * @param maxDiskBytes   磁盘缓存的上限
+     */
+    public ThumbnailCache(@Nullable File diskCacheDir, int maxMemoryBytes, long maxDiskBytes) {
+        this(diskCacheDir, maxMemoryBytes, maxDiskBytes, BitmapPool.getDefault());
+    }
+
+    /**
+     * @param bitmapPool 解码时复用的 Bitmap 池, 不再使用的缩略图也会回收到这里
+     */
+    public ThumbnailCache(@Nullable File diskCacheDir, int maxMemoryBytes, long maxDiskBytes,
+                          @NonNull BitmapPool bitmapPool) {
+        mMemoryCache = new LruCache<String, Bitmap>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return getAllocationByteCount(value);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                // 调用方均持有 mUsages 的锁
+                Usage usage = mUsages.get(oldValue);
+                if (usage != null && oldValue != newValue) {
+                    usage.isCached = false;
+                    recycleIfUnused(oldValue, usage);
+                }
+            }
+        };
+        mDiskCacheDir = diskCacheDir;
+        mMaxDiskBytes = maxDiskBytes;
+        mBitmapPool = bitmapPool;
+    }
+
+    /**
+     * 从内存缓存中获取缩略图, 可以在主线程中调用
+     * <p>
+     * 获取成功后需要在不再展示时调用 {@link #release}, 之后才可能回收到 Bitmap 池.
+     */
+    @Nullable
+    public Bitmap acquireFromMemory(@NonNull String path, int width, int height) {
+        return acquireFromMemory(createMemoryKey(path, new File(path).lastModified(), width, height));
+    }
+
+    /**
+     * 内存缓存中是否存在缩略图, 不计入命中率, 用于预加载前的判断
+     */
+    public boolean isInMemory(@NonNull String path, int width, int height) {
+        synchronized (mUsages) {
+            return mMemoryCache.get(createMemoryKey(path, new File(path).lastModified(), width, height)) != null;
+        }
+    }
+
+    /**
+     * 依次从内存, 磁盘, 原图中获取缩略图, 获取成功后会写入缓存
+     * <p>
+     * 与 {@link #acquireFromMemory} 相同, 获取成功后需要调用 {@link #release}.
+     *
+     * @param width  目标宽度
+     * @param height 目标高度
+     * @return 原图无法解码时返回 null
+     */
+    @Nullable
+    @WorkerThread
+    public Bitmap acquire(@NonNull String path, int width, int height) {
+        File sourceFile = new File(path);
+        long lastModified = sourceFile.lastModified();
+        String memoryKey = createMemoryKey(path, lastModified, width, height);
+        Bitmap bitmap = acquireFromMemory(memoryKey);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        File diskFile = getDiskFile(sourceFile, lastModified, width, height);
+        // 1. 读取磁盘缓存
+        if (diskFile != null && diskFile.exists()) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(diskFile.getAbsolutePath(), options);
+            bitmap = mBitmapPool.decodeFile(diskFile.getAbsolutePath(), options);
+            if (bitmap != null) {
+                mDiskHitCount.incrementAndGet();
+                // 更新修改时间, 用于淘汰最久未使用的文件
+                diskFile.setLastModified(System.currentTimeMillis());
+                return putAndAcquire(memoryKey, bitmap);
+            }
+            // 文件已损坏
+            deleteDiskFile(diskFile);
+        }
+        // 2. 解码原图, 相册遍历时已经读取了宽高与旋转角度的图片不再解析文件头
+        mMissCount.incrementAndGet();
+        PictureMetadataCache.Metadata metadata = PictureMetadataCache.getDefault().get(path);
+        int orientation;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        if (metadata != null) {
+            orientation = metadata.orientation;
+            options.outWidth = metadata.width;
+            options.outHeight = metadata.height;
+        } else {
+            orientation = readOrientation(path);
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(path, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+        }
+        // 旋转 90/270 度时, 原图的宽对应目标的高
+        boolean isTransposed = orientation == 90 || orientation == 270;
+        int sampleSize = calculateSampleSize(options.outWidth, options.outHeight,
+                isTransposed ? height : width, isTransposed ? width : height);
+        options.inSampleSize = sampleSize;
+        bitmap = mBitmapPool.decodeFile(path, options);
+        if (bitmap == null) {
+            return null;
+        }
+        bitmap = transform(bitmap, orientation, width, height);
+        // 3. 写入磁盘缓存, 原图本身就足够小时直接解码原图即可, 不需要再保存一份
+        if (diskFile != null && (sampleSize > 1 || orientation != 0)) {
+            writeToDisk(bitmap, diskFile);
+        }
+        return putAndAcquire(memoryKey, bitmap);
+    }
+
+    /**
+     * 不再展示通过 acquire 获取的缩略图, 已经从内存缓存中淘汰时会回收到 Bitmap 池
+     */
+    public void release(@Nullable Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+        synchronized (mUsages) {
+            Usage usage = mUsages.get(bitmap);
+            if (usage != null && usage.displayCount > 0) {
+                usage.displayCount--;
+                recycleIfUnused(bitmap, usage);
+            }
+        }
+    }
+
+    /**
+     * 清空内存缓存
+     */
+    public void clearMemory() {
+        synchronized (mUsages) {
+            mMemoryCache.evictAll();
+        }
+    }
+
+    /**
+     * 将内存缓存裁剪到指定的大小
+     */
+    public void trimMemory(int maxBytes) {
+        synchronized (mUsages) {
+            mMemoryCache.trimToSize(maxBytes);
+        }
+    }
+
+    @NonNull
+    public BitmapPool getBitmapPool() {
+        return mBitmapPool;
+    }
+
+    public int getMemoryBytes() {
+        return mMemoryCache.size();
+    }
+
+    public int getMaxMemoryBytes() {
+        return mMemoryCache.maxSize();
+    }
+
+    public int getMemoryHitCount() {
+        return mMemoryHitCount.get();
+    }
+
+    public int getDiskHitCount() {
+        return mDiskHitCount.get();
+    }
+
+    /**
+     * 内存与磁盘均未命中, 需要解码原图的次数
+     */
+    public int getMissCount() {
+        return mMissCount.get();
+    }
+
+    public void resetStatistics() {
+        mMemoryHitCount.set(0);
+        mDiskHitCount.set(0);
+        mMissCount.set(0);
+    }
+
+    /**
+     * 计算采样率, 保证采样后的宽高均不小于目标宽高
+     */
+    static int calculateSampleSize(int srcWidth, int srcHeight, int reqWidth, int reqHeight) {
+        int sampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return sampleSize;
+        }
+        while (srcWidth / (sampleSize * 2) >= reqWidth && srcHeight / (sampleSize * 2) >= reqHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * 从 Bitmap 池中复用的 Bitmap 占用的内存可能大于图片本身, 按照实际分配的字节数统计
+     */
+    static int getAllocationByteCount(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    @Nullable
+    private Bitmap acquireFromMemory(String memoryKey) {
+        synchronized (mUsages) {
+            Bitmap bitmap = mMemoryCache.get(memoryKey);
+            if (bitmap != null) {
+                mMemoryHitCount.incrementAndGet();
+                obtainUsage(bitmap).displayCount++;
+            }
+            return bitmap;
+        }
+    }
+
+    /**
+     * 内存缓存的 key, 包含修改时间, 原图被覆盖写入后不会继续使用旧的缩略图
+     */
+    private static String createMemoryKey(String path, long lastModified, int width, int height) {
+        return path + '#' + lastModified + '#' + width + 'x' + height;
+    }
+
+    /**
+     * 获取磁盘缓存的文件, 文件名为 路径 + 修改时间 + 目标尺寸 的 MD5
+     */
+    @Nullable
+    private File getDiskFile(File sourceFile, long lastModified, int width, int height) {
+        if (mDiskCacheDir == null) {
+            return null;
+        }
+        String key = sourceFile.getAbsolutePath() + '#' + lastModified + '#' + width + 'x' + height;
+        String fileName = md5(key);
+        return fileName == null ? null : new File(mDiskCacheDir, fileName);
+    }
+
+    /**
+     * 先写入临时文件再重命名, 避免读取到写了一半的缩略图
+     */
+    private void writeToDisk(Bitmap bitmap, File diskFile) {
+        if (!mDiskCacheDir.exists() && !mDiskCacheDir.mkdirs()) {
+            return;
+        }
+        File tempFile = new File(mDiskCacheDir, diskFile.getName() + ".tmp." + Thread.currentThread().getId());
+        OutputStream out = null;
+        boolean isSuccess = false;
+        try {
+            out = new FileOutputStream(tempFile);
+            // 带透明通道的图片使用 WebP, 避免透明区域变为黑色
+            isSuccess = bitmap.compress(bitmap.hasAlpha() ? Bitmap.CompressFormat.WEBP :
+                    Bitmap.CompressFormat.JPEG, DISK_QUALITY, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Write thumbnail failed -> " + diskFile.getAbsolutePath(), e);
+        } finally {
+            closeQuietly(out);
+        }
+        if (!isSuccess || !tempFile.renameTo(diskFile)) {
+            tempFile.delete();
+            return;
+        }
+        synchronized (mDiskLock) {
+            if (mDiskBytes < 0) {
+                mDiskBytes = calculateDiskBytes();
+            } else {
+                mDiskBytes += diskFile.length();
+            }
+            if (mDiskBytes > mMaxDiskBytes) {
+                trimDisk();
+            }
+        }
+    }
+
+    private void deleteDiskFile(File diskFile) {
+        synchronized (mDiskLock) {
+            long length = diskFile.length();
+            if (diskFile.delete() && mDiskBytes >= 0) {
+                mDiskBytes -= length;
+            }
+        }
+    }
+
+    private long calculateDiskBytes() {
+        File[] files = mDiskCacheDir.listFiles();
+        long bytes = 0;
+        if (files != null) {
+            for (File file : files) {
+                bytes += file.length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 删除最久未使用的文件, 直到低于上限的 {@link #DISK_TRIM_RATIO}
+     */
+    private void trimDisk() {
+        File[] files = mDiskCacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, LEAST_RECENTLY_USED);
+        long targetBytes = (long) (mMaxDiskBytes * DISK_TRIM_RATIO);
+        for (int i = 0; i < files.length && mDiskBytes > targetBytes; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                mDiskBytes -= length;
+            }
+        }
+    }
+
+    private static int readOrientation(String path) {
+        try {
+            return PictureUtil.readPictureAngle(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 写入内存缓存, 并记为正在展示
+     */
+    private Bitmap putAndAcquire(String memoryKey, Bitmap bitmap) {
+        synchronized (mUsages) {
+            Usage usage = obtainUsage(bitmap);
+            usage.displayCount++;
+            // 先标记再写入, 写入时若淘汰了其他缩略图, 会在 entryRemoved 中回收
+            usage.isCached = true;
+            mMemoryCache.put(memoryKey, bitmap);
+            return bitmap;
+        }
+    }
+
+    private Usage obtainUsage(Bitmap bitmap) {
+        Usage usage = mUsages.get(bitmap);
+        if (usage == null) {
+            usage = new Usage();
+            mUsages.put(bitmap, usage);
+        }
+        return usage;
+    }
+
+    private void recycleIfUnused(Bitmap bitmap, Usage usage) {
+        if (!usage.isCached && usage.displayCount == 0) {
+            mUsages.remove(bitmap);
+            mBitmapPool.put(bitmap);
+        }
+    }
+
+    /**
+     * 按照 EXIF 信息旋转, 采样后的图片依旧比目标尺寸大很多时, 同时缩放到刚好覆盖目标尺寸, 减少缓存占用的内存.
+     * 旋转与缩放通过一次绘制完成, 目标 Bitmap 从 Bitmap 池中获取, 原始的 Bitmap 会回收到池中.
+     */
+    private Bitmap transform(Bitmap source, int orientation, int width, int height) {
+        boolean isTransposed = orientation == 90 || orientation == 270;
+        int rotatedWidth = isTransposed ? source.getHeight() : source.getWidth();
+        int rotatedHeight = isTransposed ? source.getWidth() : source.getHeight();
+        float scale = width <= 0 || height <= 0 ? 1f :
+                Math.max(width / (float) rotatedWidth, height / (float) rotatedHeight);
+        if (scale >= 0.8f) {
+            scale = 1f;
+        }
+        if (orientation == 0 && scale == 1f) {
+            return source;
+        }
+        int destWidth = Math.max(1, Math.round(rotatedWidth * scale));
+        int destHeight = Math.max(1, Math.round(rotatedHeight * scale));
+        Bitmap dest = mBitmapPool.get(destWidth, destHeight, Bitmap.Config.ARGB_8888);
+        Matrix matrix = new Matrix();
+        // 以原图中心旋转, 再平移到目标的中心
+        matrix.postTranslate(-source.getWidth() / 2f, -source.getHeight() / 2f);
+        matrix.postRotate(orientation);
+        matrix.postScale(scale, scale);
+        matrix.postTranslate(destWidth / 2f, destHeight / 2f);
+        new Canvas(dest).drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        dest.setHasAlpha(source.hasAlpha());
+        mBitmapPool.put(source);
+        return dest;
+    }
+
+    @Nullable
+    private static String md5(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException | IOException e) {
+            Log.w(TAG, "Create disk cache key failed.", e);
+            return null;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore.
+        }
+    }
+
+    /**
+     * 缩略图的使用情况
+     */
+    private static class Usage {
+
+        boolean isCached;
+        int displayCount;
+    }
+
+}
@@ -0,0 +1,310 @@
+package com.sharry.picturepicker.support.loader;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.util.DisplayMetrics;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import com.sharry.picturepicker.R;
+import com.sharry.picturepicker.support.executor.PickerExecutors;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * PicturePicker 内置的图片加载器, 未调用 setPictureLoader 时默认使用
+ * <p>
+ * 根据 ImageView 的尺寸在子线程中解码缩略图, 并通过 {@link ThumbnailCache} 缓存到内存与磁盘中,
+ * 不依赖 Glide 等第三方框架也可以流畅的滑动相册. 同时实现了 {@link IPicturePreloader}, 支持相册的预加载.
+ * <p>
+ * ImageView 被复用时, 会取消上一次尚未完成的加载, 不会出现图片错位.
+ * ImageView 展示的缩略图记录在 Tag 中, 替换或者 {@link #recycle} 时释放, 被内存缓存淘汰后会回收到 {@link BitmapPool}.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.1
+ * @since 2019/3/27 11:05
+ */
+public class ThumbnailPictureLoader implements IPictureLoader, IPicturePreloader, IPictureRecycler {
+
+    private static final String DISK_CACHE_DIR_NAME = "libpicturepicker_thumbnails";
+    private static final long DEFAULT_MAX_DISK_BYTES = 64 * 1024 * 1024;
+    private static final int TAG_REQUEST = R.id.libpicturepicker_tag_thumbnail_request;
+    private static final int TAG_BITMAP = R.id.libpicturepicker_tag_thumbnail_bitmap;
+
+    private final int mMaxMemoryBytes;
+    private final long mMaxDiskBytes;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ConcurrentHashMap<String, PreloadTask> mPreloadTasks = new ConcurrentHashMap<>();
+    private volatile ThumbnailCache mCache;
+
+    /**
+     * 使用默认的缓存大小: 内存为最大堆内存的 1/8, 磁盘为 64MB
+     */
+    public ThumbnailPictureLoader() {
+        this((int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8), DEFAULT_MAX_DISK_BYTES);
+    }
+
+    /**
+     * @param maxMemoryBytes 内存缓存的上限
+     * @param maxDiskBytes   磁盘缓存的上限, 传 0 则不使用磁盘缓存
+     */
+    public ThumbnailPictureLoader(int maxMemoryBytes, long maxDiskBytes) {
+        mMaxMemoryBytes = maxMemoryBytes;
+        mMaxDiskBytes = maxDiskBytes;
+    }
+
+    /**
+     * 获取缩略图缓存, 首次调用时创建, 可用于查看命中率
+     */
+    @NonNull
+    public ThumbnailCache getThumbnailCache(@NonNull Context context) {
+        if (mCache == null) {
+            synchronized (this) {
+                if (mCache == null) {
+                    final Context appContext = context.getApplicationContext();
+                    File diskCacheDir = mMaxDiskBytes > 0 ?
+                            new File(appContext.getCacheDir(), DISK_CACHE_DIR_NAME) : null;
+                    final ThumbnailCache cache = new ThumbnailCache(diskCacheDir, mMaxMemoryBytes, mMaxDiskBytes);
+                    // 内存不足时释放缓存
+                    appContext.registerComponentCallbacks(new ComponentCallbacks2() {
+                        @Override
+                        public void onTrimMemory(int level) {
+                            if (level >= TRIM_MEMORY_MODERATE) {
+                                cache.clearMemory();
+                                cache.getBitmapPool().clear();
+                            } else if (level >= TRIM_MEMORY_BACKGROUND) {
+                                cache.trimMemory(cache.getMaxMemoryBytes() / 2);
+                            }
+                        }
+
+                        @Override
+                        public void onConfigurationChanged(Configuration newConfig) {
+                        }
+
+                        @Override
+                        public void onLowMemory() {
+                            cache.clearMemory();
+                            cache.getBitmapPool().clear();
+                        }
+                    });
+                    mCache = cache;
+                }
+            }
+        }
+        return mCache;
+    }
+
+    @Override
+    public void load(Context context, String uri, ImageView imageView) {
+        // 1. 取消 ImageView 上一次的加载
+        cancelRequest(imageView);
+        ThumbnailCache cache = getThumbnailCache(context);
+        if (TextUtils.isEmpty(uri)) {
+            setBitmap(cache, imageView, null);
+            return;
+        }
+        // 2. 尺寸已知时尝试从内存缓存中获取
+        int width = getTargetWidth(imageView);
+        int height = getTargetHeight(imageView);
+        if (width > 0 && height > 0) {
+            Bitmap bitmap = cache.acquireFromMemory(uri, width, height);
+            if (bitmap != null) {
+                setBitmap(cache, imageView, bitmap);
+                return;
+            }
+        }
+        // 3. 清除复用前的图片, 在子线程中加载
+        setBitmap(cache, imageView, null);
+        LoadRequest request = new LoadRequest(cache, uri, imageView);
+        imageView.setTag(TAG_REQUEST, request);
+        if (width > 0 && height > 0) {
+            request.submit(width, height);
+        } else {
+            // 尚未完成测量, 等待布局结束后再获取尺寸
+            imageView.post(request);
+        }
+    }
+
+    @Override
+    public void recycle(Context context, ImageView imageView) {
+        cancelRequest(imageView);
+        if (imageView.getTag(TAG_BITMAP) != null) {
+            setBitmap(getThumbnailCache(context), imageView, null);
+        }
+    }
+
+    @Override
+    public void preload(Context context, String uri, int width, int height) {
+        if (TextUtils.isEmpty(uri) || width <= 0 || height <= 0 || mPreloadTasks.containsKey(uri)) {
+            return;
+        }
+        ThumbnailCache cache = getThumbnailCache(context);
+        if (cache.isInMemory(uri, width, height)) {
+            return;
+        }
+        PreloadTask task = new PreloadTask(cache, uri, width, height);
+        if (mPreloadTasks.putIfAbsent(uri, task) == null) {
+            PickerExecutors.getWorkExecutor().execute(task);
+        }
+    }
+
+    @Override
+    public void cancelPreload(Context context, String uri) {
+        PreloadTask task = mPreloadTasks.remove(uri);
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    private static void cancelRequest(ImageView imageView) {
+        LoadRequest previous = (LoadRequest) imageView.getTag(TAG_REQUEST);
+        if (previous != null) {
+            previous.cancel();
+            imageView.setTag(TAG_REQUEST, null);
+        }
+    }
+
+    /**
+     * 替换 ImageView 展示的缩略图, 先替换再释放, 保证释放的 Bitmap 不会再被绘制
+     */
+    private static void setBitmap(ThumbnailCache cache, ImageView imageView, @Nullable Bitmap bitmap) {
+        Bitmap previous = (Bitmap) imageView.getTag(TAG_BITMAP);
+        if (bitmap == null) {
+            imageView.setImageDrawable(null);
+        } else {
+            imageView.setImageBitmap(bitmap);
+        }
+        imageView.setTag(TAG_BITMAP, bitmap);
+        cache.release(previous);
+    }
+
+    private static int getTargetWidth(ImageView imageView) {
+        if (imageView.getWidth() > 0) {
+            return imageView.getWidth();
+        }
+        ViewGroup.LayoutParams params = imageView.getLayoutParams();
+        return params != null && params.width > 0 ? params.width : 0;
+    }
+
+    private static int getTargetHeight(ImageView imageView) {
+        if (imageView.getHeight() > 0) {
+            return imageView.getHeight();
+        }
+        ViewGroup.LayoutParams params = imageView.getLayoutParams();
+        return params != null && params.height > 0 ? params.height : 0;
+    }
+
+    /**
+     * 一次加载到 ImageView 的请求
+     * <p>
+     * 作为 Runnable 时在主线程中执行, 用于等待 ImageView 完成测量.
+     */
+    private class LoadRequest implements Runnable {
+
+        private final ThumbnailCache mCache;
+        private final String mUri;
+        private final WeakReference<ImageView> mImageViewRef;
+        private volatile boolean mIsCanceled;
+        private Future<?> mFuture;
+
+        LoadRequest(ThumbnailCache cache, String uri, ImageView imageView) {
+            mCache = cache;
+            mUri = uri;
+            mImageViewRef = new WeakReference<>(imageView);
+        }
+
+        @Override
+        public void run() {
+            ImageView imageView = mImageViewRef.get();
+            if (mIsCanceled || imageView == null) {
+                return;
+            }
+            int width = getTargetWidth(imageView);
+            int height = getTargetHeight(imageView);
+            // 依旧无法获取尺寸时, 使用屏幕的尺寸
+            DisplayMetrics metrics = imageView.getResources().getDisplayMetrics();
+            submit(width > 0 ? width : metrics.widthPixels, height > 0 ? height : metrics.heightPixels);
+        }
+
+        void submit(final int width, final int height) {
+            mFuture = PickerExecutors.getWorkExecutor().submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (mIsCanceled) {
+                        return;
+                    }
+                    final Bitmap bitmap = mCache.acquire(mUri, width, height);
+                    if (bitmap == null) {
+                        return;
+                    }
+                    if (mIsCanceled) {
+                        mCache.release(bitmap);
+                        return;
+                    }
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            deliver(bitmap);
+                        }
+                    });
+                }
+            });
+        }
+
+        void cancel() {
+            mIsCanceled = true;
+            if (mFuture != null) {
+                mFuture.cancel(false);
+            }
+        }
+
+        private void deliver(Bitmap bitmap) {
+            ImageView imageView = mImageViewRef.get();
+            if (mIsCanceled || imageView == null || imageView.getTag(TAG_REQUEST) != this) {
+                mCache.release(bitmap);
+                return;
+            }
+            imageView.setTag(TAG_REQUEST, null);
+            setBitmap(mCache, imageView, bitmap);
+        }
+    }
+
+    /**
+     * 预加载的任务, 完成或取消后从 {@link #mPreloadTasks} 中移除
+     */
+    private class PreloadTask extends FutureTask<Bitmap> {
+
+        private final String mUri;
+
+        PreloadTask(final ThumbnailCache cache, final String uri, final int width, final int height) {
+            super(new Callable<Bitmap>() {
+                @Override
+                public Bitmap call() {
+                    // 只需要写入缓存, 不会展示
+                    Bitmap bitmap = cache.acquire(uri, width, height);
+                    cache.release(bitmap);
+                    return bitmap;
+                }
+            });
+            mUri = uri;
+        }
+
+        @Override
+        protected void done() {
+            mPreloadTasks.remove(mUri, this);
+        }
+    }
+
+}
@@ -1,8 +1,6 @@
 package com.sharry.picturepicker.support.utils;
 
 import android.content.Context;
-import android.content.Intent;
-import android.media.MediaScannerConnection;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
@@ -20,7 +18,7 @@ import java.util.Locale;
  * 处理文件相关的工具类
  *
  * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
- * @version 1.0
+ * @version 1.2
  * @since 2018/9/22 17:39
  */
 public class FileUtil {
@@ -28,10 +26,10 @@ public class FileUtil {
     private static final String TAG = FileUtil.class.getSimpleName();
 
     /**
-     * 刷新文件管理器
+     * 刷新文件管理器, 短时间内的多个文件合并到一次扫描中, 见 {@link MediaStoreNotifier}
      */
     public static void freshMediaStore(Context context, File file) {
-        MediaScanner.refresh(context, file);
+        MediaStoreNotifier.getDefault().enqueue(context, file);
     }
 
     /**
@@ -123,6 +121,20 @@ public class FileUtil {
         return cropFile;
     }
 
+    /**
+     * 创建批量压缩的目标文件, 同一批次内通过序号区分
+     *
+     * @param directoryPath 文件目录路径
+     * @param batchTime     批次开始的时间, 精确到毫秒, 避免与之前进程中的批次重名
+     * @param batchId       批次在进程内的编号, 避免与同一毫秒开始的批次重名
+     * @param index         在批次中的序号
+     */
+    public static File createCompressDestFile(String directoryPath, long batchTime, int batchId, int index) {
+        File dir = new File(directoryPath);
+        if (!dir.exists()) dir.mkdirs();
+        return new File(dir, "compress_" + batchTime + "_" + batchId + "_" + index + ".jpg");
+    }
+
     /**
      * 创建默认的 FileProvider 的 Authority
      */
@@ -144,55 +156,4 @@ public class FileUtil {
         return null;
     }
 
-    /**
-     * 用于通知文件管理器变更
-     */
-    private static class MediaScanner implements MediaScannerConnection.MediaScannerConnectionClient {
-
-        private static final String TAG = MediaScanner.class.getSimpleName();
-
-        private static void refresh(Context context, File file) {
-            // 4.0 以上的系统使用 MediaScanner 更新
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                new MediaScanner(context, file);
-            } else {
-                Intent intent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
-                intent.setData(Uri.fromFile(file));
-                context.sendBroadcast(intent);
-            }
-        }
-
-        private File mFile;
-        private MediaScannerConnection mMsc;
-
-        private MediaScanner(Context context, File file) {
-            this.mFile = file;
-            if (verify()) {
-                this.mMsc = new MediaScannerConnection(context, this);
-                mMsc.connect();
-            }
-        }
-
-        @Override
-        public void onMediaScannerConnected() {
-            mMsc.scanFile(mFile.getAbsolutePath(), null);
-        }
-
-        @Override
-        public void onScanCompleted(String path, Uri uri) {
-            mMsc.disconnect();
-        }
-
-        /**
-         * 验证文件的合法性
-         */
-        private boolean verify() {
-            if (!mFile.exists()) {
-                Log.e(TAG, "Verify failed, scanner target file not exist!");
-                return false;
-            }
-            return true;
-        }
-
-    }
 }
@@ -0,0 +1,171 @@
+package com.sharry.picturepicker.support.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 从 JPEG 文件头的量化表中估算压缩质量
+ * <p>
+ * 只读取 SOS 之前的文件头, 不解码像素. 将亮度量化表与 JPEG 标准(Annex K)中的亮度量化表对比,
+ * 按照 libjpeg 的质量缩放公式反推出质量, 与 {@link android.graphics.Bitmap#compress} 使用的质量一致.
+ * 低质量时部分元素会被截断到上限, 这些元素不参与比较.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.1
+ * @since 2019/3/29 17:10
+ */
+class JpegQualityParser {
+
+    /**
+     * 无法估算质量, 如文件不是 JPEG 或缺少亮度量化表
+     */
+    static final int UNKNOWN_QUALITY = -1;
+
+    private static final int MARKER_PREFIX = 0xFF;
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_DQT = 0xDB;
+    private static final int MARKER_TEM = 0x01;
+    private static final int MARKER_RST0 = 0xD0;
+    private static final int MARKER_RST7 = 0xD7;
+    private static final int DCT_SIZE = 64;
+    private static final int MAX_8BIT_VALUE = 255;
+    private static final int MAX_16BIT_VALUE = 32767;
+
+    /**
+     * JPEG 标准中质量为 50 时的亮度量化表, 按照自然顺序排列
+     */
+    private static final int[] STANDARD_LUMINANCE_TABLE = {
+            16, 11, 10, 16, 24, 40, 51, 61,
+            12, 12, 14, 19, 26, 58, 60, 55,
+            14, 13, 16, 24, 40, 57, 69, 56,
+            14, 17, 22, 29, 51, 87, 80, 62,
+            18, 22, 37, 56, 68, 109, 103, 77,
+            24, 35, 55, 64, 81, 104, 113, 92,
+            49, 64, 78, 87, 103, 121, 120, 101,
+            72, 92, 95, 98, 112, 100, 103, 99
+    };
+
+    /**
+     * DQT 段中的元素按照 zigzag 顺序排列, 第 i 个元素对应自然顺序中的 ZIGZAG_ORDER[i]
+     */
+    private static final int[] ZIGZAG_ORDER = {
+            0, 1, 8, 16, 9, 2, 3, 10,
+            17, 24, 32, 25, 18, 11, 4, 5,
+            12, 19, 26, 33, 40, 48, 41, 34,
+            27, 20, 13, 6, 7, 14, 21, 28,
+            35, 42, 49, 56, 57, 50, 43, 36,
+            29, 22, 15, 23, 30, 37, 44, 51,
+            58, 59, 52, 45, 38, 31, 39, 46,
+            53, 60, 61, 54, 47, 55, 62, 63
+    };
+
+    /**
+     * 估算 JPEG 文件的压缩质量
+     *
+     * @return 1 ~ 100 的质量, 无法估算时返回 {@link #UNKNOWN_QUALITY}
+     */
+    static int estimateQuality(String jpegPath) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(jpegPath));
+        try {
+            return estimateQuality(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    static int estimateQuality(InputStream in) throws IOException {
+        DataInputStream input = new DataInputStream(in);
+        try {
+            if (input.readUnsignedByte() != MARKER_PREFIX || input.readUnsignedByte() != MARKER_SOI) {
+                return UNKNOWN_QUALITY;
+            }
+            while (true) {
+                if (input.readUnsignedByte() != MARKER_PREFIX) {
+                    return UNKNOWN_QUALITY;
+                }
+                int marker = input.readUnsignedByte();
+                // 跳过填充的 0xFF
+                while (marker == MARKER_PREFIX) {
+                    marker = input.readUnsignedByte();
+                }
+                if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                    return UNKNOWN_QUALITY;
+                }
+                // 没有数据段的标记
+                if (marker == MARKER_TEM || (marker >= MARKER_RST0 && marker <= MARKER_RST7)) {
+                    continue;
+                }
+                int length = input.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return UNKNOWN_QUALITY;
+                }
+                if (marker != MARKER_DQT) {
+                    input.skipBytes(length);
+                    continue;
+                }
+                int quality = parseQuantizationTables(input, length);
+                if (quality != UNKNOWN_QUALITY) {
+                    return quality;
+                }
+            }
+        } catch (EOFException e) {
+            return UNKNOWN_QUALITY;
+        }
+    }
+
+    /**
+     * 解析一个 DQT 段, 其中可能包含多个量化表
+     *
+     * @return 段中包含亮度量化表(id 为 0)时返回估算的质量
+     */
+    private static int parseQuantizationTables(DataInputStream input, int length) throws IOException {
+        int quality = UNKNOWN_QUALITY;
+        while (length > 0) {
+            int info = input.readUnsignedByte();
+            boolean is16Bit = (info >> 4) != 0;
+            int tableId = info & 0x0F;
+            int maxValue = is16Bit ? MAX_16BIT_VALUE : MAX_8BIT_VALUE;
+            long sum = 0;
+            long standardSum = 0;
+            boolean isAllOnes = true;
+            for (int i = 0; i < DCT_SIZE; i++) {
+                int value = is16Bit ? input.readUnsignedShort() : input.readUnsignedByte();
+                isAllOnes &= value <= 1;
+                // 被截断到上限的元素无法反推缩放比例
+                if (value < maxValue) {
+                    sum += value;
+                    standardSum += STANDARD_LUMINANCE_TABLE[ZIGZAG_ORDER[i]];
+                }
+            }
+            length -= 1 + DCT_SIZE * (is16Bit ? 2 : 1);
+            if (tableId == 0) {
+                // 质量为 100 时所有元素都为 1, 与 99 的区别只在于少数元素是否为 2
+                quality = isAllOnes ? 100 : qualityOf(sum, standardSum);
+            }
+        }
+        return quality;
+    }
+
+    /**
+     * libjpeg 中质量与缩放比例的关系: quality < 50 时 scale = 5000 / quality, 否则 scale = 200 - 2 * quality
+     */
+    private static int qualityOf(long luminanceSum, long standardSum) {
+        // 所有元素都被截断, 质量为最低
+        if (standardSum == 0) {
+            return 1;
+        }
+        double scale = luminanceSum * 100.0 / standardSum;
+        if (scale <= 0) {
+            return UNKNOWN_QUALITY;
+        }
+        int quality = (int) Math.round(scale <= 100 ? (200 - scale) / 2 : 5000 / scale);
+        return Math.max(1, Math.min(100, quality));
+    }
+
+}
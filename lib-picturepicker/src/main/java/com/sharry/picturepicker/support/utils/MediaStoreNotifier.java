@@ -0,0 +1,104 @@
+package com.sharry.picturepicker.support.utils;
+
+import android.content.Context;
+import android.media.MediaScannerConnection;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+/**
+ * 批量通知 MediaStore 扫描新的文件
+ * <p>
+ * 路径先加入队列, 在一个很短的时间窗口内合并, 随后通过 {@link MediaScannerConnection#scanFile(Context, String[], String[],
+ * MediaScannerConnection.OnScanCompletedListener)} 一次性扫描. 同一批的文件只绑定与解绑一次扫描服务,
+ * 连续输出的拍照, 裁剪等文件不会为每个文件单独建立连接. 可在任意线程中调用.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 16:30
+ */
+public class MediaStoreNotifier {
+
+    private static final String TAG = MediaStoreNotifier.class.getSimpleName();
+
+    /**
+     * 合并路径的时间窗口, 窗口内到达的路径在同一个连接中扫描
+     */
+    private static final long BATCH_WINDOW_MILLIS = 300;
+
+    private static volatile MediaStoreNotifier sDefault;
+
+    /**
+     * 获取共享的通知器
+     */
+    @NonNull
+    public static MediaStoreNotifier getDefault() {
+        if (sDefault == null) {
+            synchronized (MediaStoreNotifier.class) {
+                if (sDefault == null) {
+                    sDefault = new MediaStoreNotifier();
+                }
+            }
+        }
+        return sDefault;
+    }
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final LinkedHashSet<String> mPendingPaths = new LinkedHashSet<>();
+    private Context mAppContext;
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private MediaStoreNotifier() {
+    }
+
+    /**
+     * 将文件加入扫描的队列, 重复的路径只扫描一次
+     */
+    public void enqueue(@NonNull Context context, @NonNull File file) {
+        synchronized (mPendingPaths) {
+            // 使用 ApplicationContext, 扫描在 Activity 销毁后依旧可以完成
+            if (mAppContext == null) {
+                mAppContext = context.getApplicationContext();
+            }
+            boolean isFirst = mPendingPaths.isEmpty();
+            mPendingPaths.add(file.getAbsolutePath());
+            // 窗口内的第一个路径负责调度, 之后的路径直接合并
+            if (isFirst) {
+                mMainHandler.postDelayed(mFlushRunnable, BATCH_WINDOW_MILLIS);
+            }
+        }
+    }
+
+    private void flush() {
+        String[] paths;
+        Context context;
+        synchronized (mPendingPaths) {
+            ArrayList<String> existPaths = new ArrayList<>(mPendingPaths.size());
+            for (String path : mPendingPaths) {
+                if (new File(path).exists()) {
+                    existPaths.add(path);
+                } else {
+                    Log.e(TAG, "Scanner target file not exist -> " + path);
+                }
+            }
+            mPendingPaths.clear();
+            paths = existPaths.toArray(new String[existPaths.size()]);
+            context = mAppContext;
+        }
+        if (paths.length == 0) {
+            return;
+        }
+        MediaScannerConnection.scanFile(context, paths, null, null);
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.sharry.picturepicker.support.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+import java.io.File;
+
+/**
+ * 遍历 MediaStore 时读取的图片信息, 供压缩, 裁剪, 缩略图与预览跳过文件头与 EXIF 的解析
+ * 压缩与裁剪写入的文件同样会记录, 插入相册时不需要等待 MediaStore 收录.
+ * <p>
+ * 相册只保留即将交给其他流程的图片, 如选中返回的图片与预览附近的图片, 不复制整个相册.
+ * 文件的大小与记录不一致时视为图片已被修改, 不再使用记录的信息. 可在任意线程中调用.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.1
+ * @since 2019/3/30 17:30
+ */
+public class PictureMetadataCache {
+
+    /**
+     * 保留的图片数量上限, 足够容纳一次选择的结果与预览附近的图片
+     */
+    private static final int MAX_RETAINED_COUNT = 256;
+
+    private static volatile PictureMetadataCache sDefault;
+
+    /**
+     * 获取共享的缓存
+     */
+    @NonNull
+    public static PictureMetadataCache getDefault() {
+        if (sDefault == null) {
+            synchronized (PictureMetadataCache.class) {
+                if (sDefault == null) {
+                    sDefault = new PictureMetadataCache();
+                }
+            }
+        }
+        return sDefault;
+    }
+
+    private final LruCache<String, Metadata> mRetained = new LruCache<>(MAX_RETAINED_COUNT);
+
+    private PictureMetadataCache() {
+    }
+
+    /**
+     * 保留图片的信息, 相册关闭之后依旧可以查询
+     */
+    public void retain(@NonNull String path, @NonNull Metadata metadata) {
+        mRetained.put(path, metadata);
+    }
+
+    /**
+     * 保留刚刚写入的图片的信息, 如拍照压缩与裁剪的结果, 文件的大小从文件中读取
+     *
+     * @param width       文件中存储的原始宽度
+     * @param height      文件中存储的原始高度
+     * @param orientation 写入 EXIF 的旋转角度
+     */
+    public void retainWritten(@NonNull String path, int width, int height, int orientation) {
+        Metadata metadata = Metadata.create(width, height, orientation, new File(path).length());
+        if (metadata != null) {
+            retain(path, metadata);
+        }
+    }
+
+    /**
+     * 获取图片的信息
+     *
+     * @return 没有记录, 或文件在记录之后被修改时返回 null
+     */
+    @Nullable
+    public Metadata get(@Nullable String path) {
+        if (path == null) {
+            return null;
+        }
+        Metadata metadata = mRetained.get(path);
+        // 只比较文件的大小, 一次 stat 远小于解析文件头的开销
+        if (metadata == null || metadata.size != new File(path).length()) {
+            return null;
+        }
+        return metadata;
+    }
+
+    /**
+     * 图片的信息, 宽高为文件中存储的原始尺寸, 未应用旋转
+     */
+    public static final class Metadata {
+
+        public final int width;
+        public final int height;
+        public final int orientation;
+        public final long size;
+
+        /**
+         * @return 宽高或文件大小未知时返回 null
+         */
+        @Nullable
+        public static Metadata create(int width, int height, int orientation, long size) {
+            if (width <= 0 || height <= 0 || size <= 0) {
+                return null;
+            }
+            return new Metadata(width, height, orientation, size);
+        }
+
+        private Metadata(int width, int height, int orientation, long size) {
+            this.width = width;
+            this.height = height;
+            this.orientation = orientation;
+            this.size = size;
+        }
+    }
+
+}
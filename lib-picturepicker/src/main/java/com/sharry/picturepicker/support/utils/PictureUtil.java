@@ -2,43 +2,264 @@ package com.sharry.picturepicker.support.utils;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.media.ExifInterface;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 import android.text.TextUtils;
 
+import com.sharry.picturepicker.support.executor.CancelToken;
+import com.sharry.picturepicker.support.loader.BitmapPool;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
 
 /**
  * 处理图片相关的工具类
  *
  * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
- * @version 1.0
+ * @version 1.5
  * @since 2018/9/18 16:23
  */
 public class PictureUtil {
 
+    /**
+     * 未知的旋转角度, 需要从 EXIF 中读取
+     */
+    public static final int INVALIDATE_ORIENTATION = -1;
+
+    /**
+     * 压缩时从原图复制到目标文件的 EXIF 标签
+     */
+    private static final String[] PRESERVED_EXIF_TAGS = {
+            ExifInterface.TAG_DATETIME,
+            ExifInterface.TAG_MAKE,
+            ExifInterface.TAG_MODEL,
+            ExifInterface.TAG_FLASH,
+            ExifInterface.TAG_WHITE_BALANCE,
+            ExifInterface.TAG_FOCAL_LENGTH,
+            ExifInterface.TAG_EXPOSURE_TIME,
+            ExifInterface.TAG_APERTURE,
+            ExifInterface.TAG_ISO,
+            ExifInterface.TAG_GPS_LATITUDE,
+            ExifInterface.TAG_GPS_LATITUDE_REF,
+            ExifInterface.TAG_GPS_LONGITUDE,
+            ExifInterface.TAG_GPS_LONGITUDE_REF,
+            ExifInterface.TAG_GPS_ALTITUDE,
+            ExifInterface.TAG_GPS_ALTITUDE_REF,
+            ExifInterface.TAG_GPS_TIMESTAMP,
+            ExifInterface.TAG_GPS_DATESTAMP,
+            ExifInterface.TAG_GPS_PROCESSING_METHOD,
+    };
+
+    /**
+     * 限制文件大小时, 为写入的 EXIF 预留的字节数
+     */
+    private static final int EXIF_RESERVED_BYTES = 2 * 1024;
+
     /**
      * 图片压缩
      */
     public static void doCompress(String originPath, String destPath, int quality) throws IOException {
+        doCompress(originPath, destPath, quality, 0, 0, INVALIDATE_ORIENTATION);
+    }
+
+    /**
+     * 图片压缩, 使用已知的图片信息(如 MediaStore 中读取的宽高和旋转角度), 跳过文件头的解析
+     *
+     * @param srcWidth    图片原始的宽, 未知时传 0
+     * @param srcHeight   图片原始的高, 未知时传 0
+     * @param orientation 图片旋转的角度, 未知时传 {@link #INVALIDATE_ORIENTATION}
+     */
+    public static void doCompress(String originPath, String destPath, int quality,
+                                  int srcWidth, int srcHeight, int orientation) throws IOException {
+        doCompress(originPath, destPath, quality, 0, 0, getDefaultMemoryBudget(),
+                srcWidth, srcHeight, orientation, null);
+    }
+
+    /**
+     * 可取消的图片压缩, 在解码, 缩放, 写入等耗时步骤之间检查取消令牌
+     * <p>
+     * 原图已经满足尺寸与质量的要求时直接复制文件. 否则采样率同时满足屏幕自适应, 长边上限与内存预算,
+     * 不透明的图片使用 RGB_565 解码, 原图的 EXIF 与旋转角度写入目标文件中, 不会为旋转再创建一个 Bitmap.
+     * 限制文件大小时, 在内存中二分查找满足大小的最高质量, 只写入一次文件, 编码的缓冲区同样计入内存预算.
+     *
+     * @param quality      压缩质量, 限制文件大小时为质量的上限
+     * @param maxFileSize  压缩后文件大小的上限, 传 0 则不限制
+     * @param maxDimension 压缩后图片长边的上限, 传 0 则只按照屏幕自适应采样
+     * @param memoryBudget 压缩过程中 Bitmap 占用内存的峰值上限
+     * @param token        取消令牌, 传 null 则不可取消
+     * @throws IOException           原图无法解码, 无法满足文件大小, 或写入失败, 此时不会留下目标文件
+     * @throws CancellationException 压缩被取消, 此时不会留下目标文件
+     */
+    public static void doCompress(String originPath, String destPath, int quality, long maxFileSize,
+                                  int maxDimension, long memoryBudget, int srcWidth, int srcHeight, int orientation,
+                                  @Nullable CancelToken token) throws IOException {
         if (TextUtils.isEmpty(originPath)) {
             throw new IllegalArgumentException("PictureUtil.doCompress -> parameter originFilePath must not be null!");
         }
         if (TextUtils.isEmpty(destPath)) {
             throw new IllegalArgumentException("PictureUtil.doCompress -> parameter destPath must not be null!");
         }
-        // 1. 邻近采样压缩尺寸(Nearest Neighbour Resampling Compress)
-        BitmapFactory.Options options = getBitmapOptions(originPath);
-        Bitmap bitmap = BitmapFactory.decodeFile(originPath, options);
-        if (bitmap == null) {
+        // 1. 邻近采样压缩尺寸(Nearest Neighbour Resampling Compress), 复用 Bitmap 池中的内存
+        BitmapFactory.Options options = srcWidth > 0 && srcHeight > 0 ?
+                getBitmapOptions(srcWidth, srcHeight) : getBitmapOptions(originPath);
+        // 输出的 JPEG 没有透明通道, 不透明的图片使用 RGB_565 解码, 内存减半
+        options.inPreferredConfig = isOpaque(options.outMimeType, originPath) ?
+                Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        int sampleSize = options.inSampleSize;
+        if (maxDimension > 0) {
+            sampleSize = Math.max(sampleSize,
+                    calculateMaxDimensionSampleSize(Math.max(options.outWidth, options.outHeight), maxDimension));
+        }
+        long encodeFileSize = maxFileSize > 0 ?
+                Math.max(maxFileSize - EXIF_RESERVED_BYTES, maxFileSize / 2) : 0;
+        // 限制文件大小时, 编码的缓冲区与 Bitmap 同时存在
+        options.inSampleSize = calculateBudgetSampleSize(options.outWidth, options.outHeight, sampleSize,
+                maxDimension, bytesPerPixel(options.inPreferredConfig),
+                memoryBudget - SizeLimitedEncoder.getBufferBytes(encodeFileSize));
+        checkCanceled(token);
+        // 2. 原图无需缩小, 质量与大小不高于目标时, 直接复制文件, 完整保留 EXIF, 跳过解码与编码
+        if (options.inSampleSize == 1 && options.outWidth > 0 && options.outHeight > 0
+                && (maxDimension <= 0 || Math.max(options.outWidth, options.outHeight) <= maxDimension)
+                && (maxFileSize <= 0 || new File(originPath).length() <= maxFileSize)
+                && isQualityWithin(originPath, quality)) {
+            boolean isCopied = false;
+            try {
+                copyFile(originPath, destPath);
+                checkCanceled(token);
+                isCopied = true;
+                if (orientation != INVALIDATE_ORIENTATION) {
+                    PictureMetadataCache.getDefault().retainWritten(destPath, options.outWidth, options.outHeight,
+                            orientation);
+                }
+            } finally {
+                // 复制失败或被取消, 删除写了一半的文件
+                if (!isCopied) {
+                    new File(destPath).delete();
+                }
+            }
             return;
         }
-        // 2. 旋转一下 Bitmap
-        bitmap = rotateBitmap(bitmap, readPictureAngle(originPath));
-        // 3. 质量压缩(Quality Compress)
-        qualityCompress(bitmap, quality, destPath);
+        BitmapPool bitmapPool = BitmapPool.getDefault();
+        Bitmap bitmap = bitmapPool.decodeFile(originPath, options);
+        if (bitmap == null) {
+            // 没有写入目标文件, 不能当作压缩成功
+            throw new IOException("PictureUtil.doCompress -> decode failed: " + originPath);
+        }
+        boolean isWritten = false;
+        try {
+            checkCanceled(token);
+            // 3. 缩放到长边的上限, 缩放后立即回收采样的 Bitmap
+            bitmap = scaleToMaxDimension(bitmapPool, bitmap, maxDimension);
+            int angle = orientation != INVALIDATE_ORIENTATION ? orientation : readPictureAngle(originPath);
+            checkCanceled(token);
+            // 4. 质量压缩(Quality Compress), 复制原图的 EXIF 并写入旋转角度
+            bitmap = compressBitmap(bitmap, destPath, quality, encodeFileSize, token);
+            boolean isExifWritten = copyExif(originPath, destPath, angle);
+            if (!isExifWritten && angle != 0) {
+                // 无法写入 EXIF 时, 旋转像素后重新压缩
+                Bitmap rotated = rotateBitmap(bitmap, angle);
+                bitmapPool.put(bitmap);
+                bitmap = rotated;
+                bitmap = compressBitmap(bitmap, destPath, quality, encodeFileSize, token);
+            }
+            checkCanceled(token);
+            isWritten = true;
+            // 旋转像素后的文件不再需要旋转
+            PictureMetadataCache.getDefault().retainWritten(destPath, bitmap.getWidth(), bitmap.getHeight(),
+                    isExifWritten ? angle : 0);
+        } finally {
+            bitmapPool.put(bitmap);
+            // 任何一步失败或被取消, 都删除已经写入的文件, 包括旋转像素前写入的未旋转的文件
+            if (!isWritten) {
+                new File(destPath).delete();
+            }
+        }
+    }
+
+    /**
+     * 将 Bitmap 编码为 JPEG 写入 destPath, 只写入一次文件
+     * <p>
+     * 限制文件大小时, 在内存中二分查找满足大小的最高质量, 最低质量依旧超出时缩小尺寸.
+     *
+     * @param quality     压缩质量, 限制文件大小时为质量的上限
+     * @param maxFileSize 文件大小的上限, 传 0 则不限制
+     * @param token       取消令牌, 传 null 则不可取消
+     * @return 实际编码的 Bitmap, 为满足文件大小缩小尺寸时, 传入的 bitmap 会回收到 Bitmap 池中
+     * @throws IOException 缩小尺寸后依旧无法满足文件大小, 或写入失败, 此时传入的 bitmap 依旧由调用方持有
+     */
+    public static Bitmap compressBitmap(Bitmap bitmap, String destPath, int quality, long maxFileSize,
+                                        @Nullable CancelToken token) throws IOException {
+        if (maxFileSize <= 0) {
+            qualityCompress(bitmap, quality, destPath);
+            return bitmap;
+        }
+        SizeLimitedEncoder encoder = new SizeLimitedEncoder(maxFileSize);
+        bitmap = encoder.encode(BitmapPool.getDefault(), bitmap, quality, token);
+        encoder.writeTo(destPath);
+        return bitmap;
+    }
+
+    /**
+     * 复制文件, 通过 FileChannel.transferTo 由内核完成拷贝, 不经过 Java 堆
+     *
+     * @param srcPath  源文件
+     * @param destPath 目标文件, 已存在时覆盖
+     */
+    private static void copyFile(String srcPath, String destPath) throws IOException {
+        FileInputStream in = new FileInputStream(srcPath);
+        try {
+            FileOutputStream out = new FileOutputStream(destPath);
+            try {
+                FileChannel srcChannel = in.getChannel();
+                FileChannel destChannel = out.getChannel();
+                long size = srcChannel.size();
+                long position = 0;
+                while (position < size) {
+                    position += srcChannel.transferTo(position, size - position, destChannel);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 原图是否为质量不高于 quality 的 JPEG, 重新编码无法再减小文件
+     */
+    @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+    static boolean isQualityWithin(String originPath, int quality) {
+        try {
+            int originQuality = JpegQualityParser.estimateQuality(originPath);
+            return originQuality != JpegQualityParser.UNKNOWN_QUALITY && originQuality <= quality;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 获取单次压缩默认的内存预算, 为最大堆内存的 1/8
+     */
+    public static long getDefaultMemoryBudget() {
+        return Runtime.getRuntime().maxMemory() / 8;
+    }
+
+    private static void checkCanceled(@Nullable CancelToken token) {
+        if (token != null && token.isCanceled()) {
+            throw new CancellationException();
+        }
     }
 
     /**
@@ -51,8 +272,20 @@ public class PictureUtil {
         BitmapFactory.Options options = new BitmapFactory.Options();
         options.inJustDecodeBounds = true;
         BitmapFactory.decodeFile(filePath, options);
-        options.inSampleSize = calculateSampleSize(options.outWidth, options.outHeight);
-        options.inJustDecodeBounds = false;
+        BitmapFactory.Options result = getBitmapOptions(options.outWidth, options.outHeight);
+        result.outMimeType = options.outMimeType;
+        return result;
+    }
+
+    /**
+     * 根据已知的图片宽高, 获取 Bitmap.Options
+     */
+    private static BitmapFactory.Options getBitmapOptions(int srcWidth, int srcHeight) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        // 用于从 Bitmap 池中获取尺寸合适的 Bitmap
+        options.outWidth = srcWidth;
+        options.outHeight = srcHeight;
+        options.inSampleSize = calculateSampleSize(srcWidth, srcHeight);
         return options;
     }
 
@@ -63,7 +296,8 @@ public class PictureUtil {
      * @param srcHeight 原始高度
      * @return 采样率
      */
-    private static int calculateSampleSize(int srcWidth, int srcHeight) {
+    @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+    static int calculateSampleSize(int srcWidth, int srcHeight) {
         //将 srcWidth 和 srcHeight 设置为偶数，方便除法计算
         srcWidth = srcWidth % 2 == 1 ? srcWidth + 1 : srcWidth;
         srcHeight = srcHeight % 2 == 1 ? srcHeight + 1 : srcHeight;
@@ -89,6 +323,103 @@ public class PictureUtil {
         }
     }
 
+    /**
+     * 根据长边的上限计算采样率, 采样后的长边不小于上限, 再由缩放精确到上限
+     *
+     * @param longSide     原始的长边
+     * @param maxDimension 长边的上限
+     * @return 2 的幂次的采样率
+     */
+    @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+    static int calculateMaxDimensionSampleSize(int longSide, int maxDimension) {
+        int sampleSize = 1;
+        while (longSide / (sampleSize * 2) >= maxDimension) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * 在采样率 minSampleSize 的基础上继续增大, 直到压缩过程中内存的峰值不超过预算
+     *
+     * @param minSampleSize 屏幕自适应与长边上限计算出的采样率
+     * @param memoryBudget  内存的预算
+     * @return 2 的幂次的采样率
+     */
+    @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+    static int calculateBudgetSampleSize(int srcWidth, int srcHeight, int minSampleSize, int maxDimension,
+                                         int bytesPerPixel, long memoryBudget) {
+        int sampleSize = Math.max(1, minSampleSize);
+        while (estimatePeakBytes(srcWidth, srcHeight, sampleSize, maxDimension, bytesPerPixel) > memoryBudget
+                && Math.max(srcWidth, srcHeight) / sampleSize > 1) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * 估算压缩过程中内存的峰值: 采样后的 Bitmap 与缩放后的 Bitmap 同时存在
+     */
+    @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+    static long estimatePeakBytes(int srcWidth, int srcHeight, int sampleSize, int maxDimension,
+                                  int bytesPerPixel) {
+        long width = (srcWidth + sampleSize - 1) / sampleSize;
+        long height = (srcHeight + sampleSize - 1) / sampleSize;
+        long peakBytes = width * height * bytesPerPixel;
+        long longSide = Math.max(width, height);
+        if (maxDimension > 0 && longSide > maxDimension) {
+            double scale = maxDimension / (double) longSide;
+            peakBytes += Math.round(width * scale) * Math.round(height * scale) * bytesPerPixel;
+        }
+        return peakBytes;
+    }
+
+    /**
+     * 是否为不透明的图片格式, 未知时根据文件后缀判断
+     */
+    private static boolean isOpaque(@Nullable String mimeType, String filePath) {
+        if (mimeType != null) {
+            return "image/jpeg".equals(mimeType);
+        }
+        String lowerPath = filePath.toLowerCase(Locale.US);
+        return lowerPath.endsWith(".jpg") || lowerPath.endsWith(".jpeg");
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        return config == Bitmap.Config.RGB_565 ? 2 : 4;
+    }
+
+    /**
+     * 将 Bitmap 缩放到长边的上限, 缩放后原始的 Bitmap 回收到 Bitmap 池中
+     *
+     * @return 无需缩放时返回原始 bitmap
+     */
+    private static Bitmap scaleToMaxDimension(BitmapPool bitmapPool, Bitmap bitmap, int maxDimension) {
+        int longSide = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (maxDimension <= 0 || longSide <= maxDimension) {
+            return bitmap;
+        }
+        Bitmap scaled = createScaledBitmap(bitmapPool, bitmap, maxDimension);
+        bitmapPool.put(bitmap);
+        return scaled;
+    }
+
+    /**
+     * 创建缩放到长边上限的 Bitmap, 原始的 Bitmap 依旧由调用方持有
+     */
+    private static Bitmap createScaledBitmap(BitmapPool bitmapPool, Bitmap bitmap, int maxDimension) {
+        int longSide = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        float scale = maxDimension / (float) longSide;
+        int width = Math.max(1, Math.round(bitmap.getWidth() * scale));
+        int height = Math.max(1, Math.round(bitmap.getHeight() * scale));
+        Bitmap.Config config = bitmap.getConfig() == null ? Bitmap.Config.ARGB_8888 : bitmap.getConfig();
+        Bitmap scaled = BitmapPool.isReuseSupport() ? bitmapPool.get(width, height, config) :
+                Bitmap.createBitmap(width, height, config);
+        Canvas canvas = new Canvas(scaled);
+        canvas.drawBitmap(bitmap, null, new Rect(0, 0, width, height), new Paint(Paint.FILTER_BITMAP_FLAG));
+        return scaled;
+    }
+
     /**
      * Bitmap 质量压缩
      *
@@ -104,10 +435,204 @@ public class PictureUtil {
         file.createNewFile();
         // 进行质量压缩
         FileOutputStream out = new FileOutputStream(file);
-        // 采用有损的 jpeg 图片压缩
-        srcBitmap.compress(Bitmap.CompressFormat.JPEG, quality, out);
-        out.flush();
-        out.close();
+        try {
+            // 采用有损的 jpeg 图片压缩
+            srcBitmap.compress(Bitmap.CompressFormat.JPEG, quality, out);
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * 限制文件大小的编码器
+     * <p>
+     * 每次尝试都编码到内存中, 两块缓冲区交替复用, 一块保存目前满足大小的最佳结果, 另一块用于下一次尝试.
+     * 先尝试质量的上限, 超出时在 [MIN_QUALITY, quality) 中二分查找满足大小的最高质量.
+     * 最低质量依旧超出时, 按照大小的比例缩小尺寸后重新查找, 缩小 MAX_SCALE_ATTEMPTS 次依旧超出时失败.
+     * 超出上限的结果只记录大小, 不保存内容, 因此缓冲区的内存不超过上限的两倍.
+     */
+    private static class SizeLimitedEncoder {
+
+        /**
+         * 二分查找的质量下限, 更低的质量会出现明显的块效应, 此时优先缩小尺寸
+         */
+        private static final int MIN_QUALITY = 40;
+
+        /**
+         * 缩小尺寸的最大次数
+         */
+        private static final int MAX_SCALE_ATTEMPTS = 3;
+
+        /**
+         * 获取编码缓冲区占用的内存
+         *
+         * @param maxBytes 文件大小的上限, 0 表示不限制, 此时不使用缓冲区
+         */
+        static long getBufferBytes(long maxBytes) {
+            return 2 * Math.min(maxBytes, Integer.MAX_VALUE / 2);
+        }
+
+        /**
+         * JPEG 的大小近似与像素数成正比, 按照比例缩小边长后再留出的余量
+         */
+        private static final float SCALE_MARGIN = 0.9f;
+
+        private final long mMaxBytes;
+        private CappedOutputStream mBest;
+        private CappedOutputStream mTrial;
+        private int mQuality;           // mBest 的质量
+        private boolean mFit;
+
+        SizeLimitedEncoder(long maxBytes) {
+            mMaxBytes = maxBytes;
+            int capacity = (int) Math.min(maxBytes, Integer.MAX_VALUE / 2);
+            mBest = new CappedOutputStream(capacity);
+            mTrial = new CappedOutputStream(capacity);
+        }
+
+        /**
+         * 编码 bitmap, 直到大小不超过上限
+         *
+         * @param maxQuality 质量的上限
+         * @return 最终编码的 Bitmap, 缩小尺寸时原始的 bitmap 会回收到 Bitmap 池中
+         * @throws IOException 缩小尺寸后依旧超出上限, 此时原始的 bitmap 依旧由调用方持有
+         */
+        Bitmap encode(BitmapPool bitmapPool, Bitmap bitmap, int maxQuality,
+                      @Nullable CancelToken token) throws IOException {
+            Bitmap encoded = bitmap;
+            try {
+                for (int attempt = 0; attempt <= MAX_SCALE_ATTEMPTS && !mFit; attempt++) {
+                    if (attempt > 0) {
+                        // mBest 中为最低质量的结果, 按照大小的比例缩小边长
+                        double ratio = Math.sqrt(mMaxBytes / (double) mBest.size()) * SCALE_MARGIN;
+                        int longSide = Math.max(encoded.getWidth(), encoded.getHeight());
+                        int maxDimension = (int) (longSide * ratio);
+                        if (maxDimension < 1 || maxDimension >= longSide) {
+                            break;
+                        }
+                        Bitmap scaled = createScaledBitmap(bitmapPool, encoded, maxDimension);
+                        if (encoded != bitmap) {
+                            bitmapPool.put(encoded);
+                        }
+                        encoded = scaled;
+                    }
+                    searchQuality(encoded, maxQuality, token);
+                }
+            } finally {
+                // 失败或被取消时只回收缩小后的 Bitmap, 原始的 bitmap 由调用方回收
+                if (!mFit && encoded != bitmap) {
+                    bitmapPool.put(encoded);
+                }
+            }
+            if (!mFit) {
+                throw new IOException("PictureUtil.compressBitmap -> Cannot encode within " + mMaxBytes
+                        + " bytes, the smallest result is " + mBest.size() + " bytes.");
+            }
+            if (encoded != bitmap) {
+                bitmapPool.put(bitmap);
+            }
+            return encoded;
+        }
+
+        private void searchQuality(Bitmap bitmap, int maxQuality, @Nullable CancelToken token) {
+            mFit = false;
+            mBest.reset();
+            if (tryQuality(bitmap, maxQuality, token) || maxQuality <= MIN_QUALITY) {
+                return;
+            }
+            if (!tryQuality(bitmap, MIN_QUALITY, token)) {
+                return;
+            }
+            int low = MIN_QUALITY + 1;
+            int high = maxQuality - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (tryQuality(bitmap, mid, token)) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+        }
+
+        /**
+         * 以 quality 编码到 mTrial 中, 满足大小且质量更高, 或尚无满足大小的结果且体积更小时保留
+         *
+         * @return 是否满足大小
+         */
+        private boolean tryQuality(Bitmap bitmap, int quality, @Nullable CancelToken token) {
+            checkCanceled(token);
+            mTrial.reset();
+            bitmap.compress(Bitmap.CompressFormat.JPEG, quality, mTrial);
+            boolean fit = mTrial.size() <= mMaxBytes;
+            if (mBest.size() == 0 || (fit && (!mFit || quality > mQuality))
+                    || (!mFit && mTrial.size() < mBest.size())) {
+                CappedOutputStream temp = mBest;
+                mBest = mTrial;
+                mTrial = temp;
+                mQuality = quality;
+                mFit = fit;
+            }
+            return fit;
+        }
+
+        /**
+         * 将选中的结果写入文件, 只在 encode 成功后调用
+         */
+        void writeTo(String destFilePath) throws IOException {
+            FileOutputStream out = new FileOutputStream(destFilePath);
+            try {
+                mBest.writeTo(out);
+                out.flush();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * 超出容量后只记录写入的字节数, 不再保存内容, 缓冲区不会扩容
+     */
+    private static class CappedOutputStream extends ByteArrayOutputStream {
+
+        private final int mCapacity;
+        private long mWrittenBytes;
+
+        CappedOutputStream(int capacity) {
+            super(capacity);
+            mCapacity = capacity;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (mWrittenBytes < mCapacity) {
+                super.write(b);
+            }
+            mWrittenBytes++;
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (mWrittenBytes + len <= mCapacity) {
+                super.write(b, off, len);
+            }
+            mWrittenBytes += len;
+        }
+
+        @Override
+        public synchronized void reset() {
+            super.reset();
+            mWrittenBytes = 0;
+        }
+
+        /**
+         * 写入的字节数, 超出容量时大于保存的内容
+         */
+        @Override
+        public synchronized int size() {
+            return (int) Math.min(mWrittenBytes, Integer.MAX_VALUE);
+        }
     }
 
     /**
@@ -115,8 +640,9 @@ public class PictureUtil {
      *
      * @param bitmap 原始 bitmap
      * @param angle  旋转的角度
+     * @return 角度为 0 时返回原始 bitmap
      */
-    private static Bitmap rotateBitmap(Bitmap bitmap, int angle) {
+    public static Bitmap rotateBitmap(Bitmap bitmap, int angle) {
         if (angle == 0) {
             return bitmap;
         }
@@ -133,7 +659,7 @@ public class PictureUtil {
      *
      * @param imagePath 文件路径
      */
-    private static int readPictureAngle(String imagePath) throws IOException {
+    public static int readPictureAngle(String imagePath) throws IOException {
         int degree = 0;
         ExifInterface exifInterface = new ExifInterface(imagePath);
         int orientation = exifInterface.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
@@ -153,4 +679,47 @@ public class PictureUtil {
         return degree;
     }
 
+    /**
+     * 将原图中需要保留的 EXIF 与旋转的角度写入压缩后的 JPEG 文件中
+     * <p>
+     * 尺寸, 缩略图等与像素相关的标签不再适用, 不会复制.
+     *
+     * @param angle 像素未旋转时需要写入的角度
+     * @return 写入失败时返回 false
+     */
+    private static boolean copyExif(String originPath, String jpegPath, int angle) {
+        int orientation;
+        switch (angle) {
+            case 0:
+                orientation = ExifInterface.ORIENTATION_NORMAL;
+                break;
+            case 90:
+                orientation = ExifInterface.ORIENTATION_ROTATE_90;
+                break;
+            case 180:
+                orientation = ExifInterface.ORIENTATION_ROTATE_180;
+                break;
+            case 270:
+                orientation = ExifInterface.ORIENTATION_ROTATE_270;
+                break;
+            default:
+                return false;
+        }
+        try {
+            ExifInterface originExif = new ExifInterface(originPath);
+            ExifInterface destExif = new ExifInterface(jpegPath);
+            for (String tag : PRESERVED_EXIF_TAGS) {
+                String value = originExif.getAttribute(tag);
+                if (value != null) {
+                    destExif.setAttribute(tag, value);
+                }
+            }
+            destExif.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(orientation));
+            destExif.saveAttributes();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
 }
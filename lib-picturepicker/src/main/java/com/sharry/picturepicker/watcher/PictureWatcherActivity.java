@@ -17,7 +17,6 @@ import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.util.TypedValue;
 import android.view.View;
-import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
@@ -34,12 +33,13 @@ import com.sharry.picturepicker.widget.toolbar.SToolbar;
 import com.sharry.picturepicker.widget.toolbar.ViewOptions;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 图片查看器的 Activity, 主题设置为背景透明效果更佳
  *
  * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
- * @version 1.3
+ * @version 1.4
  * @since 2018/9/22 23:24
  */
 public class PictureWatcherActivity extends AppCompatActivity implements
@@ -92,7 +92,8 @@ public class PictureWatcherActivity extends AppCompatActivity implements
     private LinearLayout mLlBottomPreviewContainer;
     private RecyclerView mBottomPreviewPictures;
     private TextView mTvEnsure;
-    private ArrayList<PhotoView> mPhotoViews = new ArrayList<>();
+    private WatcherPagerAdapter mPagerAdapter;
+    private WatcherPrefetcher mPrefetcher;
 
     /**
      * The animator for bottom preview.
@@ -110,6 +111,14 @@ public class PictureWatcherActivity extends AppCompatActivity implements
         mPresenter.setup();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mPrefetcher != null) {
+            mPrefetcher.cancelAll();
+        }
+    }
+
     @Override
     public void onBackPressed() {
         mPresenter.handleBackPressed();
@@ -141,32 +150,37 @@ public class PictureWatcherActivity extends AppCompatActivity implements
     }
 
     @Override
-    public void createPhotoViews(int photoViewCount) {
-        for (int i = 0; i < photoViewCount; i++) {
-            PhotoView photoView = new PhotoView(this);
-            photoView.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
-                    ViewGroup.LayoutParams.MATCH_PARENT));
-            photoView.setOnPhotoTapListener(new OnPhotoTapListener() {
-                @Override
-                public void onPhotoTap(ImageView view, float x, float y) {
-                    onBackPressed();
-                }
-            });
-            mPhotoViews.add(photoView);
+    public void setDisplayPictures(List<String> pictureUris, WatcherConfig config) {
+        mPagerAdapter = new WatcherPagerAdapter(pictureUris, new OnPhotoTapListener() {
+            @Override
+            public void onPhotoTap(ImageView view, float x, float y) {
+                onBackPressed();
+            }
+        });
+        // 超出半径的页面会被移除, 并释放图片
+        mViewPager.setOffscreenPageLimit(config.getEvictionRadius());
+        mViewPager.setAdapter(mPagerAdapter);
+        // 预加载窗口之外的图片
+        int maxPrefetchCount = Math.max(config.getPrefetchAheadCount(), config.getPrefetchBehindCount());
+        if (maxPrefetchCount > config.getEvictionRadius() && PictureLoader.isPreloadSupport()) {
+            mPrefetcher = new WatcherPrefetcher(this, mViewPager, pictureUris,
+                    config.getPrefetchAheadCount(), config.getPrefetchBehindCount(), config.getEvictionRadius());
         }
-        mViewPager.setAdapter(new WatcherPagerAdapter(mPhotoViews));
     }
 
     @Override
     public void showSharedElementEnter(final SharedElementData data) {
         mViewPager.setSharedElementPosition(data.sharedPosition);
-        final PhotoView target = mPhotoViews.get(data.sharedPosition);
-        target.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+        // 页面在首次布局时才会创建, 在绘制前获取共享元素对应的 PhotoView
+        mViewPager.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
             @Override
             public boolean onPreDraw() {
-                target.getViewTreeObserver().removeOnPreDrawListener(this);
-                // Execute enter animator.
-                SharedElementUtils.createSharedElementEnterAnimator(target, data).start();
+                mViewPager.getViewTreeObserver().removeOnPreDrawListener(this);
+                PhotoView target = mPagerAdapter.getPhotoView(data.sharedPosition);
+                if (target != null) {
+                    // Execute enter animator.
+                    SharedElementUtils.createSharedElementEnterAnimator(target, data).start();
+                }
                 return true;
             }
         });
@@ -174,8 +188,8 @@ public class PictureWatcherActivity extends AppCompatActivity implements
 
     @Override
     public void showSharedElementExitAndFinish(SharedElementData data) {
-        final PhotoView target = mPhotoViews.get(data.sharedPosition);
-        Animator exitAnim = SharedElementUtils.createSharedElementExitAnimator(target, data);
+        final PhotoView target = mPagerAdapter.getPhotoView(data.sharedPosition);
+        Animator exitAnim = target == null ? null : SharedElementUtils.createSharedElementExitAnimator(target, data);
         if (exitAnim == null) {
             finish();
             return;
@@ -205,24 +219,12 @@ public class PictureWatcherActivity extends AppCompatActivity implements
     }
 
     @Override
-    public void displayPictureAt(ArrayList<String> pictureUris, int curPosition) {
+    public void displayPictureAt(int curPosition) {
+        // 窗口内的页面由 WatcherPagerAdapter 创建时加载
         mViewPager.setCurrentItem(curPosition);
-        // 加载当前的位置的图片
-        PhotoView curView = mPhotoViews.get(curPosition);
-        if (curView != null && curView.getDrawable() == null) {
-            PictureLoader.load(this, pictureUris.get(curPosition), curView);
-        }
-        // 加载前一个
-        int beforeIndex = curPosition - 1;
-        PhotoView beforeView = beforeIndex >= 0 ? mPhotoViews.get(beforeIndex) : null;
-        if (beforeView != null && beforeView.getDrawable() == null) {
-            PictureLoader.load(this, pictureUris.get(beforeIndex), beforeView);
-        }
-        // 加载后一个
-        int afterIndex = curPosition + 1;
-        PhotoView afterView = afterIndex < pictureUris.size() ? mPhotoViews.get(afterIndex) : null;
-        if (afterView != null && afterView.getDrawable() == null) {
-            PictureLoader.load(this, pictureUris.get(afterIndex), afterView);
+        // 翻页时根据方向预加载窗口之外的图片
+        if (mPrefetcher != null) {
+            mPrefetcher.onPageSelected(curPosition);
         }
     }
 
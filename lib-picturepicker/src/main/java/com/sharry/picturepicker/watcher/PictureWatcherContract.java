@@ -4,6 +4,7 @@ import android.support.annotation.Nullable;
 import android.support.annotation.StringRes;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by Sharry on 2018/6/13.
@@ -55,17 +56,18 @@ interface PictureWatcherContract {
         void displayPreviewEnsureText(CharSequence content);
 
         /**
-         * 创建 PhotoViews
+         * 设置需要展示的图片集合, 页面会在展示时按需创建
+         *
+         * @param config 用于获取预加载与页面保留的范围
          */
-        void createPhotoViews(int photoViewCount);
+        void setDisplayPictures(List<String> pictureUris, WatcherConfig config);
 
         /**
          * 展示指定位置的图片
          *
-         * @param pictureUris 需要展示的图片集合
          * @param curPosition 指定位置的图片
          */
-        void displayPictureAt(ArrayList<String> pictureUris, int curPosition);
+        void displayPictureAt(int curPosition);
 
         /**
          * 通知选中的图片被移除了
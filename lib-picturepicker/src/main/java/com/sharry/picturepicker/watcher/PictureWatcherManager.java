@@ -64,7 +64,7 @@ public class PictureWatcherManager {
     }
 
     /**
-     * 设置图片加载方案
+     * 设置图片加载方案, 不设置时使用内置的 {@link com.sharry.picturepicker.support.loader.ThumbnailPictureLoader}
      */
     public PictureWatcherManager setPictureLoader(@NonNull IPictureLoader loader) {
         PictureLoader.setPictureLoader(loader);
@@ -99,7 +99,6 @@ public class PictureWatcherManager {
      * 真正执行 Activity 的启动
      */
     private void startForResultActual(@Nullable final WatcherCallback callback) {
-        verify();
         CallbackFragment callbackFragment = CallbackFragment.getInstance(mActivity);
         callbackFragment.setCallback(new CallbackFragment.Callback() {
             @Override
@@ -123,13 +122,4 @@ public class PictureWatcherManager {
         PictureWatcherActivity.startActivityForResult(mActivity, callbackFragment, mConfig, mTransitionView);
     }
 
-    /**
-     * 验证 Activity 启动参数
-     */
-    private void verify() {
-        if (PictureLoader.getPictureLoader() == null) {
-            throw new UnsupportedOperationException("PictureLoader.load -> please invoke setPictureLoader first");
-        }
-    }
-
 }
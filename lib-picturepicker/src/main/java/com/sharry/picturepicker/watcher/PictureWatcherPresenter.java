@@ -5,6 +5,7 @@ import android.os.Looper;
 import android.widget.ImageView;
 
 import com.sharry.picturepicker.R;
+import com.sharry.picturepicker.support.collection.OrderedPathSet;
 
 import java.text.MessageFormat;
 import java.util.ArrayList;
@@ -24,7 +25,7 @@ class PictureWatcherPresenter implements PictureWatcherContract.IPresenter, Watc
     private final PictureWatcherContract.IView mView;
     private final WatcherConfig mConfig;
     private final ArrayList<String> mDisplayPaths;
-    private final ArrayList<String> mPickedPaths;
+    private final OrderedPathSet mPickedPaths;
     private final SharedElementData mSharedElementData;
 
     private int mCurPosition;
@@ -37,8 +38,8 @@ class PictureWatcherPresenter implements PictureWatcherContract.IPresenter, Watc
         this.mSharedElementData = sharedElementData;
         // 获取需要展示图片的 URI 集合
         this.mDisplayPaths = config.getPictureUris();
-        // 获取已经选中的图片
-        this.mPickedPaths = config.getUserPickedSet();
+        // 获取已经选中的图片, 为 null 时不提供图片选择的功能
+        this.mPickedPaths = config.isPickerSupport() ? new OrderedPathSet(config.getUserPickedSet()) : null;
         // 获取当前需要展示的 Position 和 URI
         this.mCurPosition = config.getPosition();
         this.mCurDisplayPath = mDisplayPaths.get(mCurPosition);
@@ -51,8 +52,8 @@ class PictureWatcherPresenter implements PictureWatcherContract.IPresenter, Watc
         mView.setToolbarCheckedIndicatorVisibility(mConfig.isPickerSupport());
 
         // 2. 设置 Pictures 数据
-        mView.createPhotoViews(mDisplayPaths.size());
-        mView.displayPictureAt(mDisplayPaths, mCurPosition);
+        mView.setDisplayPictures(mDisplayPaths, mConfig);
+        mView.displayPictureAt(mCurPosition);
 
         // 3. 设置底部菜单和按钮选中的状态
         if (mConfig.isPickerSupport()) {
@@ -62,7 +63,7 @@ class PictureWatcherPresenter implements PictureWatcherContract.IPresenter, Watc
                     mConfig.getIndicatorSolidColor(),
                     mConfig.getIndicatorTextColor()
             );
-            mView.setToolbarIndicatorChecked(mPickedPaths.indexOf(mCurDisplayPath) != -1);
+            mView.setToolbarIndicatorChecked(mPickedPaths.contains(mCurDisplayPath));
             mView.displayToolbarIndicatorText(buildToolbarCheckedIndicatorText());
             // 底部菜单
             mView.setPreviewAdapter(new WatcherPreviewAdapter(mPickedPaths, this));
@@ -91,9 +92,9 @@ class PictureWatcherPresenter implements PictureWatcherContract.IPresenter, Watc
         // 展示 Toolbar 左边的指示文本
         mView.displayToolbarLeftText(buildToolbarLeftText());
         // 展示图片
-        mView.displayPictureAt(mDisplayPaths, mCurPosition);
+        mView.displayPictureAt(mCurPosition);
         if (mConfig.isPickerSupport()) {
-            mView.setToolbarIndicatorChecked(mPickedPaths.indexOf(mCurDisplayPath) != -1);
+            mView.setToolbarIndicatorChecked(mPickedPaths.contains(mCurDisplayPath));
             mView.displayToolbarIndicatorText(buildToolbarCheckedIndicatorText());
             mView.displayPreviewEnsureText(buildEnsureText());
         }
@@ -111,7 +112,7 @@ class PictureWatcherPresenter implements PictureWatcherContract.IPresenter, Watc
             // 判断是否达到选择上限
             if (mPickedPaths.size() < mConfig.getThreshold()) {
                 mPickedPaths.add(mCurDisplayPath);
-                int addedIndex = mPickedPaths.indexOf(mCurDisplayPath);
+                int addedIndex = mPickedPaths.size() - 1;
                 // 通知 RecyclerView 数据变更
                 mView.notifyBottomPictureAdded(mCurDisplayPath, addedIndex);
                 mView.previewPicturesSmoothScrollToPosition(addedIndex);
@@ -123,7 +124,7 @@ class PictureWatcherPresenter implements PictureWatcherContract.IPresenter, Watc
                 );
             }
         }
-        mView.setToolbarIndicatorChecked(mPickedPaths.indexOf(mCurDisplayPath) != -1);
+        mView.setToolbarIndicatorChecked(mPickedPaths.contains(mCurDisplayPath));
         mView.displayToolbarIndicatorText(buildToolbarCheckedIndicatorText());
         mView.displayPreviewEnsureText(buildEnsureText());
         // 控制底部导航栏的展示
@@ -156,14 +157,14 @@ class PictureWatcherPresenter implements PictureWatcherContract.IPresenter, Watc
 
     @Override
     public void handleSetResultBeforeFinish() {
-        mView.setResultBeforeFinish(mPickedPaths, mIsEnsurePressed);
+        mView.setResultBeforeFinish(mPickedPaths == null ? null : mPickedPaths.toArrayList(), mIsEnsurePressed);
     }
 
     @Override
     public void onPreviewItemClicked(ImageView imageView, String uri, int position) {
         int indexOfPictureUris = mDisplayPaths.indexOf(uri);
         if (indexOfPictureUris != -1) {
-            mView.displayPictureAt(mDisplayPaths, indexOfPictureUris);
+            mView.displayPictureAt(indexOfPictureUris);
         }
     }
 
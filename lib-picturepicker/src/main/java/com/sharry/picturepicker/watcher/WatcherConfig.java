@@ -13,7 +13,7 @@ import java.util.ArrayList;
  * 图片查看器相关的配置
  *
  * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
- * @version 1.0
+ * @version 1.1
  * @since 2018/9/22 17:56
  */
 public class WatcherConfig implements Parcelable {
@@ -43,6 +43,10 @@ public class WatcherConfig implements Parcelable {
     private int indicatorBorderCheckedColor = indicatorSolidColor;                   // 指示器边框选中的颜色
     private int indicatorBorderUncheckedColor = Color.WHITE;                         // 指示器边框未被选中的颜色
     private int position;                                                            // 定位展示的位置
+    // 翻页方向上/反方向上预加载的数量(包含 ViewPager 窗口内的页面), 需要图片加载器实现 IPicturePreloader
+    private int prefetchAheadCount = 3;
+    private int prefetchBehindCount = 1;
+    private int evictionRadius = 1;                                                  // 当前页两侧保留的页面数, 超出的页面会释放图片
 
     public WatcherConfig() {
     }
@@ -56,6 +60,9 @@ public class WatcherConfig implements Parcelable {
         indicatorBorderCheckedColor = in.readInt();
         indicatorBorderUncheckedColor = in.readInt();
         position = in.readInt();
+        prefetchAheadCount = in.readInt();
+        prefetchBehindCount = in.readInt();
+        evictionRadius = in.readInt();
     }
 
     @Override
@@ -68,6 +75,9 @@ public class WatcherConfig implements Parcelable {
         dest.writeInt(indicatorBorderCheckedColor);
         dest.writeInt(indicatorBorderUncheckedColor);
         dest.writeInt(position);
+        dest.writeInt(prefetchAheadCount);
+        dest.writeInt(prefetchBehindCount);
+        dest.writeInt(evictionRadius);
     }
 
     @Override
@@ -109,6 +119,18 @@ public class WatcherConfig implements Parcelable {
         return position;
     }
 
+    public int getPrefetchAheadCount() {
+        return prefetchAheadCount;
+    }
+
+    public int getPrefetchBehindCount() {
+        return prefetchBehindCount;
+    }
+
+    public int getEvictionRadius() {
+        return evictionRadius;
+    }
+
     public boolean isPickerSupport() {
         return userPickedSet != null;
     }
@@ -202,6 +224,29 @@ public class WatcherConfig implements Parcelable {
             return this;
         }
 
+        /**
+         * 设置预加载的数量, 需要图片加载器实现 {@link com.sharry.picturepicker.support.loader.IPicturePreloader}
+         * 数量包含 {@link #setEvictionRadius} 范围内的页面, 不大于该半径时不会额外预加载
+         *
+         * @param aheadCount  翻页方向上预加载的数量
+         * @param behindCount 翻页反方向上预加载的数量
+         */
+        public Builder setPrefetchCount(int aheadCount, int behindCount) {
+            mConfig.prefetchAheadCount = Math.max(0, aheadCount);
+            mConfig.prefetchBehindCount = Math.max(0, behindCount);
+            return this;
+        }
+
+        /**
+         * 设置当前页两侧保留的页面数, 超出范围的页面会被移除并释放图片, 最小为 1
+         *
+         * @param radius 保留的半径
+         */
+        public Builder setEvictionRadius(int radius) {
+            mConfig.evictionRadius = Math.max(1, radius);
+            return this;
+        }
+
         public WatcherConfig build() {
             return mConfig;
         }
@@ -1,23 +1,43 @@
 package com.sharry.picturepicker.watcher;
 
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.view.PagerAdapter;
+import android.util.SparseArray;
 import android.view.View;
 import android.view.ViewGroup;
 
+import com.sharry.picturepicker.support.loader.PictureLoader;
+import com.sharry.picturepicker.widget.photoview.OnPhotoTapListener;
+import com.sharry.picturepicker.widget.photoview.PhotoView;
+
+import java.util.ArrayDeque;
 import java.util.List;
 
 /**
  * Created by Sharry on 2018/5/28.
  * Email: SharryChooCHN@Gmail.com
- * Version: 1.0
+ * Version: 1.1
  * Description: 图片查看器的 Adapter
+ * <p>
+ * 只为 ViewPager 窗口内的页面创建 PhotoView, 页面移出窗口后释放图片并回收到复用池中,
+ * 页面数量不会随图片数量增长. 放大图片后由 PhotoView 分块解码原图的可见区域.
  */
 class WatcherPagerAdapter extends PagerAdapter {
 
-    private List<? extends View> mViews;
+    /**
+     * 每次翻页只会移除少量页面, 复用池中保留少量的 View 即可
+     */
+    private static final int MAX_RECYCLED_VIEWS = 3;
+
+    private final List<String> mPictureUris;
+    private final OnPhotoTapListener mPhotoTapListener;
+    private final SparseArray<PhotoView> mActiveViews = new SparseArray<>();
+    private final ArrayDeque<PhotoView> mRecycledViews = new ArrayDeque<>();
 
-    WatcherPagerAdapter(List<? extends View> children) {
-        this.mViews = children;
+    WatcherPagerAdapter(List<String> pictureUris, OnPhotoTapListener photoTapListener) {
+        this.mPictureUris = pictureUris;
+        this.mPhotoTapListener = photoTapListener;
     }
 
     /**
@@ -25,34 +45,65 @@ class WatcherPagerAdapter extends PagerAdapter {
      */
     @Override
     public int getCount() {
-        return mViews.size();
+        return mPictureUris.size();
     }
 
     /**
      * 判断某个 View 对象是否为当前被添加到 ViewPager 容器中的对象
      */
     @Override
-    public boolean isViewFromObject(View view, Object object) {
+    public boolean isViewFromObject(@NonNull View view, @NonNull Object object) {
         return view == object;
     }
 
     /**
-     * 实例化 ViewPager 容器中指定的 position 位置需要显示的 View 对象
+     * 实例化 ViewPager 容器中指定的 position 位置需要显示的 View 对象, 优先从复用池中获取
      */
+    @NonNull
     @Override
-    public Object instantiateItem(ViewGroup container, int position) {
-        View view = mViews.get(position);
-        container.addView(view);
-        return view;
+    public Object instantiateItem(@NonNull ViewGroup container, int position) {
+        PhotoView photoView = mRecycledViews.pollFirst();
+        if (photoView == null) {
+            photoView = new PhotoView(container.getContext());
+            photoView.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.MATCH_PARENT));
+            photoView.setOnPhotoTapListener(mPhotoTapListener);
+        }
+        container.addView(photoView);
+        mActiveViews.put(position, photoView);
+        PictureLoader.load(container.getContext(), mPictureUris.get(position), photoView);
+        // 放大后按需分块解码原图
+        photoView.setSubsamplingSource(mPictureUris.get(position));
+        return photoView;
     }
 
     /**
-     * 在ViewPager中移除指定的 position 位置的 view 对象
+     * 在ViewPager中移除指定的 position 位置的 view 对象, 释放图片后放入复用池
      */
     @Override
-    public void destroyItem(ViewGroup container, int position, Object object) {
-        View view = mViews.get(position);
-        container.removeView(view);
+    public void destroyItem(@NonNull ViewGroup container, int position, @NonNull Object object) {
+        PhotoView photoView = (PhotoView) object;
+        container.removeView(photoView);
+        if (mActiveViews.get(position) == photoView) {
+            mActiveViews.remove(position);
+        }
+        // 页面离开窗口后释放图片, 再次展示时会重新加载
+        PictureLoader.recycle(container.getContext(), photoView);
+        photoView.setSubsamplingSource(null);
+        photoView.setImageDrawable(null);
+        if (mRecycledViews.size() < MAX_RECYCLED_VIEWS) {
+            mRecycledViews.offerLast(photoView);
+        }
+    }
+
+    /**
+     * 获取指定位置正在展示的 PhotoView, 用于执行共享元素动画
+     *
+     * @return 该位置的页面不在 ViewPager 窗口内时返回 null
+     */
+    @Nullable
+    PhotoView getPhotoView(int position) {
+        return mActiveViews.get(position);
     }
 
 }
@@ -0,0 +1,122 @@
+package com.sharry.picturepicker.watcher;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import com.sharry.picturepicker.support.loader.IPicturePreloader;
+import com.sharry.picturepicker.support.loader.PictureLoader;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 图片查看器的预加载
+ * <p>
+ * 根据翻页的方向, 让图片加载器提前按照页面的尺寸解码 ViewPager 窗口之外的若干张图片,
+ * 翻页方向上预加载 aheadCount 张, 反方向预加载 behindCount 张, 离开预加载范围的请求会被取消.
+ * 仅当图片加载器实现了 {@link IPicturePreloader} 时生效.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/28 10:15
+ */
+class WatcherPrefetcher {
+
+    private final Context mContext;
+    private final View mPager;
+    private final List<String> mPictureUris;
+    private final int mAheadCount;
+    private final int mBehindCount;
+    private final int mOffscreenCount;
+    private final HashSet<String> mPrefetchedUris = new HashSet<>();
+    private final HashSet<String> mWindowUris = new HashSet<>();
+
+    private int mLastPosition = -1;
+    private int mDirection = 1;
+
+    /**
+     * @param offscreenCount ViewPager 窗口内当前页两侧的页面数量, 这些页面由 Adapter 直接加载, 无需预加载
+     */
+    WatcherPrefetcher(@NonNull Context context, @NonNull View pager, @NonNull List<String> pictureUris,
+                      int aheadCount, int behindCount, int offscreenCount) {
+        this.mContext = context;
+        this.mPager = pager;
+        this.mPictureUris = pictureUris;
+        this.mAheadCount = aheadCount;
+        this.mBehindCount = behindCount;
+        this.mOffscreenCount = offscreenCount;
+    }
+
+    /**
+     * 当前展示的页面发生了变化
+     */
+    void onPageSelected(final int position) {
+        if (position == mLastPosition) {
+            return;
+        }
+        // 页面尚未完成测量时, 等待布局结束后再预加载
+        if (mPager.getWidth() <= 0 || mPager.getHeight() <= 0) {
+            mPager.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mPager.getWidth() > 0 && mPager.getHeight() > 0) {
+                        onPageSelected(position);
+                    }
+                }
+            });
+            return;
+        }
+        if (mLastPosition != -1) {
+            mDirection = position > mLastPosition ? 1 : -1;
+        }
+        mLastPosition = position;
+        updateWindow(position);
+    }
+
+    /**
+     * 取消所有尚未完成的预加载
+     */
+    void cancelAll() {
+        for (String uri : mPrefetchedUris) {
+            PictureLoader.cancelPreload(mContext, uri);
+        }
+        mPrefetchedUris.clear();
+    }
+
+    private void updateWindow(int position) {
+        // 1. 计算新的预加载范围, 跳过 ViewPager 窗口内的页面
+        mWindowUris.clear();
+        int forward = mDirection > 0 ? mAheadCount : mBehindCount;
+        int backward = mDirection > 0 ? mBehindCount : mAheadCount;
+        for (int offset = mOffscreenCount + 1; offset <= forward; offset++) {
+            addToWindow(position + offset);
+        }
+        for (int offset = mOffscreenCount + 1; offset <= backward; offset++) {
+            addToWindow(position - offset);
+        }
+        // 2. 取消离开预加载范围的请求
+        Iterator<String> iterator = mPrefetchedUris.iterator();
+        while (iterator.hasNext()) {
+            String uri = iterator.next();
+            if (!mWindowUris.contains(uri)) {
+                PictureLoader.cancelPreload(mContext, uri);
+                iterator.remove();
+            }
+        }
+        // 3. 发起新的预加载, 尺寸与页面保持一致, 展示时才能命中缓存
+        for (String uri : mWindowUris) {
+            if (mPrefetchedUris.add(uri)) {
+                PictureLoader.preload(mContext, uri, mPager.getWidth(), mPager.getHeight());
+            }
+        }
+    }
+
+    private void addToWindow(int position) {
+        if (position >= 0 && position < mPictureUris.size()) {
+            mWindowUris.add(mPictureUris.get(position));
+        }
+    }
+
+}
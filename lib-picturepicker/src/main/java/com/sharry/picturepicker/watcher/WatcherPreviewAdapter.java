@@ -6,10 +6,9 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 
+import com.sharry.picturepicker.support.collection.OrderedPathSet;
 import com.sharry.picturepicker.support.loader.PictureLoader;
 
-import java.util.ArrayList;
-
 /**
  * 选中视图预览页面的 Adapter
  *
@@ -19,10 +18,10 @@ import java.util.ArrayList;
  */
 class WatcherPreviewAdapter extends RecyclerView.Adapter<WatcherPreviewAdapter.ViewHolder> {
 
-    private final ArrayList<String> userPickedSet;
+    private final OrderedPathSet userPickedSet;
     private final AdapterInteraction interaction;
 
-    public WatcherPreviewAdapter(ArrayList<String> userPickedSet, AdapterInteraction interaction) {
+    public WatcherPreviewAdapter(OrderedPathSet userPickedSet, AdapterInteraction interaction) {
         this.userPickedSet = userPickedSet;
         this.interaction = interaction;
     }
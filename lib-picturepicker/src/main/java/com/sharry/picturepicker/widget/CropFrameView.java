@@ -0,0 +1,180 @@
+package com.sharry.picturepicker.widget;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+
+/**
+ * 图片裁剪的选框, 覆盖在图片之上
+ * <p>
+ * 选框固定在 View 的中心, 按照指定的宽高比尽可能撑满, 选框之外绘制半透明的遮罩.
+ * 不处理触摸事件, 图片的拖拽与缩放由下层的 View 完成.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 10:40
+ */
+public class CropFrameView extends View {
+
+    // Dimension
+    private int mFrameMargin;// 选框与 View 边缘的最小间距
+    private int mBorderWidth;// 选框边框的宽度
+
+    // 选框的样式
+    private int mAspectX = 1;
+    private int mAspectY = 1;
+    private boolean mIsCircle = false;
+
+    // Paint
+    private Paint mMaskPaint;
+    private Paint mBorderPaint;
+    private final RectF mFrameRect = new RectF();
+    private final Path mMaskPath = new Path();
+    private OnFrameChangedListener mListener;
+
+    public CropFrameView(Context context) {
+        this(context, null);
+    }
+
+    public CropFrameView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public CropFrameView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init();
+    }
+
+    private void init() {
+        mFrameMargin = dp2px(20);
+        mBorderWidth = dp2px(1);
+        mMaskPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mMaskPaint.setColor(0xA9000000);
+        mBorderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mBorderPaint.setStyle(Paint.Style.STROKE);
+        mBorderPaint.setStrokeWidth(mBorderWidth);
+        mBorderPaint.setColor(Color.WHITE);
+    }
+
+    /**
+     * 设置选框的样式
+     *
+     * @param aspectX  选框宽的比率
+     * @param aspectY  选框高的比率
+     * @param isCircle 是否为圆形选框, 此时宽高比固定为 1:1
+     */
+    public void setFrameStyle(int aspectX, int aspectY, boolean isCircle) {
+        mAspectX = isCircle || aspectX <= 0 ? 1 : aspectX;
+        mAspectY = isCircle || aspectY <= 0 ? 1 : aspectY;
+        mIsCircle = isCircle;
+        computeFrame(getWidth(), getHeight());
+        invalidate();
+    }
+
+    public void setMaskColor(@ColorInt int maskColor) {
+        mMaskPaint.setColor(maskColor);
+        invalidate();
+    }
+
+    public void setBorderColor(@ColorInt int borderColor) {
+        mBorderPaint.setColor(borderColor);
+        invalidate();
+    }
+
+    /**
+     * 选框变化的监听, 如 View 的尺寸变化
+     */
+    public void setOnFrameChangedListener(@Nullable OnFrameChangedListener listener) {
+        mListener = listener;
+        if (listener != null && !mFrameRect.isEmpty()) {
+            listener.onFrameChanged(new RectF(mFrameRect));
+        }
+    }
+
+    /**
+     * 获取选框在 View 中的位置
+     */
+    @NonNull
+    public RectF getFrameRect() {
+        return new RectF(mFrameRect);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        computeFrame(w, h);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mFrameRect.isEmpty()) {
+            return;
+        }
+        // 绘制选框之外的遮罩
+        canvas.drawPath(mMaskPath, mMaskPaint);
+        // 绘制选框的边框
+        if (mIsCircle) {
+            canvas.drawOval(mFrameRect, mBorderPaint);
+        } else {
+            canvas.drawRect(mFrameRect, mBorderPaint);
+        }
+    }
+
+    private void computeFrame(int width, int height) {
+        int availableWidth = width - mFrameMargin * 2;
+        int availableHeight = height - mFrameMargin * 2;
+        if (availableWidth <= 0 || availableHeight <= 0) {
+            mFrameRect.setEmpty();
+            return;
+        }
+        // 按照宽高比尽可能撑满可用的区域
+        float frameWidth = availableWidth;
+        float frameHeight = frameWidth * mAspectY / mAspectX;
+        if (frameHeight > availableHeight) {
+            frameHeight = availableHeight;
+            frameWidth = frameHeight * mAspectX / mAspectY;
+        }
+        float left = (width - frameWidth) / 2f;
+        float top = (height - frameHeight) / 2f;
+        mFrameRect.set(left, top, left + frameWidth, top + frameHeight);
+        mMaskPath.reset();
+        mMaskPath.setFillType(Path.FillType.EVEN_ODD);
+        mMaskPath.addRect(0, 0, width, height, Path.Direction.CW);
+        if (mIsCircle) {
+            mMaskPath.addOval(mFrameRect, Path.Direction.CW);
+        } else {
+            mMaskPath.addRect(mFrameRect, Path.Direction.CW);
+        }
+        if (mListener != null) {
+            mListener.onFrameChanged(new RectF(mFrameRect));
+        }
+    }
+
+    private int dp2px(float dp) {
+        return (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, dp,
+                getContext().getResources().getDisplayMetrics());
+    }
+
+    /**
+     * 选框变化的监听
+     */
+    public interface OnFrameChangedListener {
+
+        /**
+         * @param frameRect 选框在 View 中的位置
+         */
+        void onFrameChanged(RectF frameRect);
+
+    }
+
+}
@@ -16,10 +16,12 @@
 package com.sharry.picturepicker.widget.photoview;
 
 import android.content.Context;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.support.annotation.Nullable;
 import android.support.v7.widget.AppCompatImageView;
 import android.util.AttributeSet;
 import android.view.GestureDetector;
@@ -33,6 +35,8 @@ public class PhotoView extends AppCompatImageView {
 
     private PhotoViewAttacher attacher;
     private ImageView.ScaleType pendingScaleType;
+    private RegionTileLoader tileLoader;
+    private OnMatrixChangedListener matrixChangeListener;
 
     public PhotoView(Context context) {
         this(context, null);
@@ -49,6 +53,17 @@ public class PhotoView extends AppCompatImageView {
 
     private void init() {
         attacher = new PhotoViewAttacher(this);
+        tileLoader = new RegionTileLoader(this);
+        //Tiles follow every matrix change, the user listener is notified afterwards
+        attacher.setOnMatrixChangeListener(new OnMatrixChangedListener() {
+            @Override
+            public void onMatrixChanged(RectF rect) {
+                tileLoader.update();
+                if (matrixChangeListener != null) {
+                    matrixChangeListener.onMatrixChanged(rect);
+                }
+            }
+        });
         //We always pose as a Matrix scale type, though we can change to another scale type
         //via the attacher
         super.setScaleType(ScaleType.MATRIX);
@@ -103,6 +118,9 @@ public class PhotoView extends AppCompatImageView {
     public void setImageDrawable(Drawable drawable) {
         super.setImageDrawable(drawable);
         // setImageBitmap calls through to this method
+        if (tileLoader != null) {
+            tileLoader.clearTiles();
+        }
         if (attacher != null) {
             attacher.update();
         }
@@ -111,6 +129,9 @@ public class PhotoView extends AppCompatImageView {
     @Override
     public void setImageResource(int resId) {
         super.setImageResource(resId);
+        if (tileLoader != null) {
+            tileLoader.clearTiles();
+        }
         if (attacher != null) {
             attacher.update();
         }
@@ -119,6 +140,9 @@ public class PhotoView extends AppCompatImageView {
     @Override
     public void setImageURI(Uri uri) {
         super.setImageURI(uri);
+        if (tileLoader != null) {
+            tileLoader.clearTiles();
+        }
         if (attacher != null) {
             attacher.update();
         }
@@ -133,6 +157,32 @@ public class PhotoView extends AppCompatImageView {
         return changed;
     }
 
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        tileLoader.draw(canvas);
+    }
+
+    /**
+     * Set the full resolution file of the displayed picture. When the picture is zoomed beyond the
+     * resolution of the current drawable, only the visible tiles of this file are decoded at the
+     * required sample size and drawn over the drawable.
+     * <p>
+     * The current drawable must be a downsampled copy of this file, e.g. loaded by the picture loader.
+     *
+     * @param path the file path, or null to stop tiling and release all the tiles
+     */
+    public void setSubsamplingSource(@Nullable String path) {
+        tileLoader.setSource(path);
+    }
+
+    /**
+     * The matrix actually used by {@link ImageView} to draw the drawable
+     */
+    Matrix getViewImageMatrix() {
+        return super.getImageMatrix();
+    }
+
     /**
      * Thanks for google framework sources, {@link ImageView}
      */
@@ -227,7 +277,7 @@ public class PhotoView extends AppCompatImageView {
     }
 
     public void setOnMatrixChangeListener(OnMatrixChangedListener listener) {
-        attacher.setOnMatrixChangeListener(listener);
+        matrixChangeListener = listener;
     }
 
     public void setOnPhotoTapListener(OnPhotoTapListener listener) {
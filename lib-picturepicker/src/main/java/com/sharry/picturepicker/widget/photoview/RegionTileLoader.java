@@ -0,0 +1,407 @@
+package com.sharry.picturepicker.widget.photoview;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+import android.text.TextUtils;
+
+import com.sharry.picturepicker.support.executor.PickerExecutors;
+import com.sharry.picturepicker.support.loader.BitmapPool;
+import com.sharry.picturepicker.support.utils.PictureMetadataCache;
+import com.sharry.picturepicker.support.utils.PictureUtil;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * PhotoView 的分块加载
+ * <p>
+ * PhotoView 先展示图片加载器按照屏幕尺寸解码的图片, 放大到该图片的清晰度不足时,
+ * 使用 {@link BitmapRegionDecoder} 按照当前缩放所需的采样率, 只解码可见区域内的分块, 绘制在原有图片之上.
+ * 分块在子线程中解码, 缓存在 LRU 中, 被淘汰后回收到 {@link BitmapPool}.
+ * <p>
+ * 除解码外的所有方法都在主线程中调用.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.1
+ * @since 2019/3/28 15:20
+ */
+class RegionTileLoader {
+
+    /**
+     * 分块解码后的边长
+     */
+    private static final int TILE_SIZE = 512;
+
+    /**
+     * 展示的图片与原图宽高比的最大误差, 超出时认为图片被裁剪过, 无法与原图对齐
+     */
+    private static final float ASPECT_RATIO_TOLERANCE = 0.01f;
+
+    private final PhotoView mView;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final BitmapPool mBitmapPool = BitmapPool.getDefault();
+    private final HashMap<Long, TileTask> mPendingTasks = new HashMap<>();
+    private final LruCache<Long, Bitmap> mTiles;
+    private final Matrix mSourceToView = new Matrix();
+    private final Matrix mViewToSource = new Matrix();
+    private final Matrix mTileMatrix = new Matrix();
+    private final RectF mVisibleRect = new RectF();
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private String mSourcePath;
+    private int mGeneration;
+    private BitmapRegionDecoder mDecoder;
+    private int mSourceWidth;
+    private int mSourceHeight;
+    private int mOrientation;
+
+    // 最近一次计算出的可见分块, mSampleSize 为 0 时表示无需分块
+    private int mSampleSize;
+    private int mLeftColumn;
+    private int mTopRow;
+    private int mRightColumn;
+    private int mBottomRow;
+    // 缓存中分块的采样率
+    private int mTileSampleSize;
+
+    RegionTileLoader(@NonNull PhotoView view) {
+        mView = view;
+        mTiles = new LruCache<Long, Bitmap>((int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16)) {
+            @Override
+            protected int sizeOf(@NonNull Long key, @NonNull Bitmap value) {
+                return value.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, @NonNull Long key, @NonNull Bitmap oldValue,
+                                        @Nullable Bitmap newValue) {
+                if (oldValue != newValue) {
+                    mBitmapPool.put(oldValue);
+                }
+            }
+        };
+    }
+
+    /**
+     * 设置分块解码的原图
+     *
+     * @param path 原图的路径, 传 null 则停止分块加载并释放所有分块
+     */
+    void setSource(@Nullable final String path) {
+        if (TextUtils.equals(path, mSourcePath)) {
+            return;
+        }
+        reset();
+        mSourcePath = path;
+        if (TextUtils.isEmpty(path)) {
+            return;
+        }
+        final int generation = mGeneration;
+        PickerExecutors.getWorkExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final BitmapRegionDecoder decoder;
+                final int orientation;
+                try {
+                    // Reuse the orientation read while scanning the album, skipping the EXIF parse.
+                    PictureMetadataCache.Metadata metadata = PictureMetadataCache.getDefault().get(path);
+                    orientation = metadata != null ? metadata.orientation : PictureUtil.readPictureAngle(path);
+                    decoder = BitmapRegionDecoder.newInstance(path, false);
+                } catch (IOException e) {
+                    // 不支持分块解码的格式(如 GIF), 只展示原有的图片
+                    return;
+                }
+                if (decoder == null) {
+                    return;
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            releaseDecoder(decoder);
+                            return;
+                        }
+                        mDecoder = decoder;
+                        mSourceWidth = decoder.getWidth();
+                        mSourceHeight = decoder.getHeight();
+                        mOrientation = orientation;
+                        update();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * PhotoView 展示的图片发生了变化, 之前的分块不再适用
+     */
+    void clearTiles() {
+        cancelPendingTasks();
+        mTiles.evictAll();
+        mTileSampleSize = 0;
+    }
+
+    /**
+     * PhotoView 的矩阵发生了变化, 解码新进入可见区域的分块, 取消已经离开可见区域的分块
+     */
+    void update() {
+        if (!computeVisibleTiles()) {
+            // 原有的图片已经足够清晰, 释放所有分块
+            if (mTileSampleSize != 0) {
+                clearTiles();
+            }
+            return;
+        }
+        if (mTileSampleSize != mSampleSize) {
+            // 采样率变化后, 之前的分块不会再被绘制
+            mTiles.evictAll();
+            mTileSampleSize = mSampleSize;
+        }
+        // 1. 取消离开可见区域的分块
+        Iterator<Map.Entry<Long, TileTask>> iterator = mPendingTasks.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, TileTask> entry = iterator.next();
+            if (!isVisible(entry.getKey())) {
+                entry.getValue().cancel();
+                iterator.remove();
+            }
+        }
+        // 2. 解码可见区域内缺失的分块
+        for (int row = mTopRow; row < mBottomRow; row++) {
+            for (int column = mLeftColumn; column < mRightColumn; column++) {
+                long key = keyOf(mSampleSize, row, column);
+                if (mTiles.get(key) == null && !mPendingTasks.containsKey(key)) {
+                    TileTask task = new TileTask(key, regionOf(row, column), mSampleSize);
+                    mPendingTasks.put(key, task);
+                    task.mFuture = PickerExecutors.getWorkExecutor().submit(task);
+                }
+            }
+        }
+        mView.invalidate();
+    }
+
+    /**
+     * 将已经解码完成的可见分块绘制到 PhotoView 的图片之上
+     */
+    void draw(@NonNull Canvas canvas) {
+        if (mTiles.size() == 0 || !computeVisibleTiles()) {
+            return;
+        }
+        int saveCount = canvas.save();
+        canvas.translate(mView.getPaddingLeft(), mView.getPaddingTop());
+        int tileSize = TILE_SIZE * mSampleSize;
+        for (int row = mTopRow; row < mBottomRow; row++) {
+            for (int column = mLeftColumn; column < mRightColumn; column++) {
+                Bitmap tile = mTiles.get(keyOf(mSampleSize, row, column));
+                if (tile == null) {
+                    continue;
+                }
+                // 分块像素 -> 原图像素 -> View
+                mTileMatrix.set(mSourceToView);
+                mTileMatrix.preTranslate(column * tileSize, row * tileSize);
+                mTileMatrix.preScale(mSampleSize, mSampleSize);
+                canvas.drawBitmap(tile, mTileMatrix, mPaint);
+            }
+        }
+        canvas.restoreToCount(saveCount);
+    }
+
+    private void reset() {
+        mGeneration++;
+        clearTiles();
+        if (mDecoder != null) {
+            releaseDecoder(mDecoder);
+            mDecoder = null;
+        }
+        mSourcePath = null;
+    }
+
+    private void cancelPendingTasks() {
+        for (TileTask task : mPendingTasks.values()) {
+            task.cancel();
+        }
+        mPendingTasks.clear();
+    }
+
+    /**
+     * 计算当前的采样率与可见的分块范围
+     *
+     * @return 无需分块时返回 false
+     */
+    private boolean computeVisibleTiles() {
+        mSampleSize = 0;
+        Drawable drawable = mView.getDrawable();
+        if (mDecoder == null || drawable == null) {
+            return false;
+        }
+        int drawableWidth = drawable.getIntrinsicWidth();
+        int drawableHeight = drawable.getIntrinsicHeight();
+        int viewWidth = mView.getWidth() - mView.getPaddingLeft() - mView.getPaddingRight();
+        int viewHeight = mView.getHeight() - mView.getPaddingTop() - mView.getPaddingBottom();
+        if (drawableWidth <= 0 || drawableHeight <= 0 || viewWidth <= 0 || viewHeight <= 0) {
+            return false;
+        }
+        boolean isRotated = mOrientation % 180 != 0;
+        int orientedWidth = isRotated ? mSourceHeight : mSourceWidth;
+        int orientedHeight = isRotated ? mSourceWidth : mSourceHeight;
+        if (Math.abs(drawableWidth / (float) drawableHeight - orientedWidth / (float) orientedHeight)
+                > ASPECT_RATIO_TOLERANCE) {
+            return false;
+        }
+        // 1. 原图像素到 View 的映射: 原图 -> 按照 EXIF 旋转后的原图 -> 展示的图片 -> View
+        mSourceToView.setRotate(mOrientation);
+        switch (mOrientation) {
+            case 90:
+                mSourceToView.postTranslate(mSourceHeight, 0);
+                break;
+            case 180:
+                mSourceToView.postTranslate(mSourceWidth, mSourceHeight);
+                break;
+            case 270:
+                mSourceToView.postTranslate(0, mSourceWidth);
+                break;
+            default:
+                break;
+        }
+        mSourceToView.postScale(drawableWidth / (float) orientedWidth, drawableHeight / (float) orientedHeight);
+        mSourceToView.postConcat(mView.getViewImageMatrix());
+        // 2. 每个屏幕像素对应的原图像素数不小于展示的图片时, 原有的图片已经足够清晰
+        float sourcePerScreenPixel = 1f / mSourceToView.mapRadius(1f);
+        if (sourcePerScreenPixel >= orientedWidth / (float) drawableWidth) {
+            return false;
+        }
+        int sampleSize = 1;
+        while (sampleSize * 2 <= sourcePerScreenPixel) {
+            sampleSize *= 2;
+        }
+        // 3. 可见区域在原图中的范围
+        if (!mSourceToView.invert(mViewToSource)) {
+            return false;
+        }
+        mVisibleRect.set(0, 0, viewWidth, viewHeight);
+        mViewToSource.mapRect(mVisibleRect);
+        if (!mVisibleRect.intersect(0, 0, mSourceWidth, mSourceHeight)) {
+            return false;
+        }
+        int tileSize = TILE_SIZE * sampleSize;
+        mSampleSize = sampleSize;
+        mLeftColumn = (int) (mVisibleRect.left / tileSize);
+        mTopRow = (int) (mVisibleRect.top / tileSize);
+        mRightColumn = Math.min((int) Math.ceil(mVisibleRect.right / tileSize),
+                (mSourceWidth + tileSize - 1) / tileSize);
+        mBottomRow = Math.min((int) Math.ceil(mVisibleRect.bottom / tileSize),
+                (mSourceHeight + tileSize - 1) / tileSize);
+        return true;
+    }
+
+    private boolean isVisible(long key) {
+        int sampleSize = (int) (key >>> 48);
+        int row = (int) ((key >>> 24) & 0xFFFFFF);
+        int column = (int) (key & 0xFFFFFF);
+        return sampleSize == mSampleSize && row >= mTopRow && row < mBottomRow
+                && column >= mLeftColumn && column < mRightColumn;
+    }
+
+    private Rect regionOf(int row, int column) {
+        int tileSize = TILE_SIZE * mSampleSize;
+        int left = column * tileSize;
+        int top = row * tileSize;
+        return new Rect(left, top, Math.min(left + tileSize, mSourceWidth), Math.min(top + tileSize, mSourceHeight));
+    }
+
+    private static long keyOf(int sampleSize, int row, int column) {
+        return ((long) sampleSize << 48) | ((long) row << 24) | column;
+    }
+
+    /**
+     * 在子线程中释放解码器, 等待正在进行的解码结束
+     */
+    private static void releaseDecoder(final BitmapRegionDecoder decoder) {
+        PickerExecutors.getWorkExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (decoder) {
+                    decoder.recycle();
+                }
+            }
+        });
+    }
+
+    /**
+     * 解码一个分块的任务, 完成后在主线程中放入缓存
+     */
+    private class TileTask implements Runnable {
+
+        private final long mKey;
+        private final Rect mRegion;
+        private final int mSampleSize;
+        private final int mGeneration;
+        private final BitmapRegionDecoder mDecoder;
+        private volatile boolean mIsCanceled;
+        private Future<?> mFuture;
+
+        TileTask(long key, Rect region, int sampleSize) {
+            mKey = key;
+            mRegion = region;
+            mSampleSize = sampleSize;
+            mGeneration = RegionTileLoader.this.mGeneration;
+            mDecoder = RegionTileLoader.this.mDecoder;
+        }
+
+        @Override
+        public void run() {
+            final Bitmap tile;
+            synchronized (mDecoder) {
+                if (mIsCanceled || mDecoder.isRecycled()) {
+                    return;
+                }
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = mSampleSize;
+                tile = mBitmapPool.decodeRegion(mDecoder, mRegion, options);
+            }
+            if (tile == null) {
+                return;
+            }
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(tile);
+                }
+            });
+        }
+
+        void cancel() {
+            mIsCanceled = true;
+            if (mFuture != null) {
+                mFuture.cancel(false);
+            }
+        }
+
+        private void deliver(Bitmap tile) {
+            if (mIsCanceled || mGeneration != RegionTileLoader.this.mGeneration
+                    || mPendingTasks.get(mKey) != this) {
+                mBitmapPool.put(tile);
+                return;
+            }
+            mPendingTasks.remove(mKey);
+            mTiles.put(mKey, tile);
+            mView.invalidate();
+        }
+    }
+
+}
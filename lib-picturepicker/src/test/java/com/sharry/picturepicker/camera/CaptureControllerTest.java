@@ -0,0 +1,238 @@
+package com.sharry.picturepicker.camera;
+
+import android.graphics.SurfaceTexture;
+import android.support.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 库内相机的拍照流程: 相机无法打开, 拍照写入文件, 以及写入失败与释放
+ * <p>
+ * 相机无法打开时 {@link CameraCaptureActivity} 以 {@link CameraCaptureActivity#RESULT_CAMERA_UNAVAILABLE}
+ * 结束, 调用方退回到系统相机.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 18:30
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CaptureControllerTest {
+
+    private static final int[] JPEG_SIZES = {4000, 3000, 1920, 1080, 640, 480};
+    private static final int SENSOR_ORIENTATION = 90;
+    private static final int QUALITY = 85;
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, 1, 2, 3, 4, (byte) 0xFF, (byte) 0xD9};
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private CameraConfig mConfig;
+    private String mDestPath;
+    private RecordingListener mListener;
+
+    @Before
+    public void setUp() {
+        mConfig = CameraConfig.Builder()
+                .setBuiltInCamera(true)
+                .setCameraQuality(QUALITY)
+                .setCameraTargetSize(1080, 1920)
+                .build();
+        mDestPath = new File(mFolder.getRoot(), "capture.jpg").getAbsolutePath();
+        mListener = new RecordingListener();
+    }
+
+    @Test
+    public void openFailureReportsCameraUnavailable() {
+        IOException error = new IOException("Camera is in use.");
+        FakeCaptureDevice device = new FakeCaptureDevice(JPEG_SIZES, SENSOR_ORIENTATION).failOpen(error);
+        CaptureController controller = newController(device, DIRECT_EXECUTOR);
+        controller.open();
+        controller.setSurface(new SurfaceTexture(0));
+
+        assertSame(error, mListener.unavailableError);
+        assertTrue(device.isClosed);
+        assertEquals(0, mListener.previewStartedCount);
+        assertFalse(controller.takePicture(0));
+        assertEquals(0, device.captureCount);
+    }
+
+    @Test
+    public void missingJpegSizeReportsCameraUnavailable() {
+        FakeCaptureDevice device = new FakeCaptureDevice(new int[0], SENSOR_ORIENTATION);
+        CaptureController controller = newController(device, DIRECT_EXECUTOR);
+        controller.open();
+        controller.setSurface(new SurfaceTexture(0));
+
+        assertTrue(mListener.unavailableError instanceof IOException);
+        assertTrue(device.isClosed);
+        assertEquals(0, mListener.previewStartedCount);
+    }
+
+    @Test
+    public void captureWritesCameraJpegToDestFile() throws IOException {
+        FakeCaptureDevice device = new FakeCaptureDevice(JPEG_SIZES, SENSOR_ORIENTATION).captureJpeg(JPEG);
+        CaptureController controller = newController(device, DIRECT_EXECUTOR);
+        controller.open();
+        // 画布可用后才开始预览
+        assertEquals(0, mListener.previewStartedCount);
+        controller.setSurface(new SurfaceTexture(0));
+
+        // 不小于目标尺寸的最小尺寸, 长边与短边分别比较
+        assertEquals(1, mListener.previewStartedCount);
+        assertEquals(1920, device.previewWidth);
+        assertEquals(1080, device.previewHeight);
+
+        assertTrue(controller.takePicture(90));
+        assertEquals(QUALITY, device.captureQuality);
+        assertEquals(180, device.captureJpegOrientation);
+        assertEquals(mDestPath, mListener.completedPath);
+        // 相机编码的 JPEG 原样写入, 不再二次压缩
+        assertArrayEquals(JPEG, readBytes(mDestPath));
+        assertTrue(device.isClosed);
+        assertNull(mListener.unavailableError);
+    }
+
+    @Test
+    public void captureErrorKeepsPreviewForRetry() {
+        FakeCaptureDevice device = new FakeCaptureDevice(JPEG_SIZES, SENSOR_ORIENTATION)
+                .failCapture(new IOException("Capture failed."));
+        CaptureController controller = newController(device, DIRECT_EXECUTOR);
+        controller.open();
+        controller.setSurface(new SurfaceTexture(0));
+
+        assertTrue(controller.takePicture(0));
+        assertEquals(1, mListener.captureFailures.size());
+        assertFalse(device.isClosed);
+        assertNull(mListener.unavailableError);
+
+        device.captureJpeg(JPEG);
+        assertTrue(controller.takePicture(0));
+        assertEquals(mDestPath, mListener.completedPath);
+    }
+
+    @Test
+    public void writeFailureLeavesNoFileAndAllowsRetry() {
+        mDestPath = new File(new File(mFolder.getRoot(), "missing"), "capture.jpg").getAbsolutePath();
+        FakeCaptureDevice device = new FakeCaptureDevice(JPEG_SIZES, SENSOR_ORIENTATION).captureJpeg(JPEG);
+        CaptureController controller = newController(device, DIRECT_EXECUTOR);
+        controller.open();
+        controller.setSurface(new SurfaceTexture(0));
+
+        assertTrue(controller.takePicture(0));
+        assertEquals(1, mListener.captureFailures.size());
+        assertNull(mListener.completedPath);
+        assertFalse(new File(mDestPath).exists());
+        assertTrue(controller.takePicture(0));
+    }
+
+    @Test
+    public void releaseDuringSaveDropsResultAndFile() {
+        List<Runnable> pending = new ArrayList<>();
+        FakeCaptureDevice device = new FakeCaptureDevice(JPEG_SIZES, SENSOR_ORIENTATION).captureJpeg(JPEG);
+        CaptureController controller = newController(device, new QueuedExecutor(pending));
+        controller.open();
+        controller.setSurface(new SurfaceTexture(0));
+
+        assertTrue(controller.takePicture(0));
+        controller.release();
+        for (Runnable runnable : pending) {
+            runnable.run();
+        }
+
+        assertTrue(device.isClosed);
+        assertNull(mListener.completedPath);
+        assertTrue(mListener.captureFailures.isEmpty());
+        assertFalse(new File(mDestPath).exists());
+    }
+
+    private CaptureController newController(FakeCaptureDevice device, Executor workExecutor) {
+        return new CaptureController(device, mConfig, mDestPath, workExecutor, DIRECT_EXECUTOR, mListener);
+    }
+
+    private static byte[] readBytes(String path) throws IOException {
+        File file = new File(path);
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += in.read(bytes, offset, bytes.length - offset);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    /**
+     * 暂存任务, 由测试决定何时执行
+     */
+    private static class QueuedExecutor implements Executor {
+
+        private final List<Runnable> mPending;
+
+        QueuedExecutor(List<Runnable> pending) {
+            mPending = pending;
+        }
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            mPending.add(command);
+        }
+    }
+
+    private static class RecordingListener implements CaptureController.Listener {
+
+        int previewStartedCount;
+        String completedPath;
+        final List<Exception> captureFailures = new ArrayList<>();
+        Exception unavailableError;
+
+        @Override
+        public void onPreviewStarted(int captureWidth, int captureHeight) {
+            previewStartedCount++;
+        }
+
+        @Override
+        public void onCaptureComplete(@NonNull String destPath) {
+            completedPath = destPath;
+        }
+
+        @Override
+        public void onCaptureFailed(@NonNull Exception e) {
+            captureFailures.add(e);
+        }
+
+        @Override
+        public void onCameraUnavailable(@NonNull Exception e) {
+            unavailableError = e;
+        }
+    }
+
+}
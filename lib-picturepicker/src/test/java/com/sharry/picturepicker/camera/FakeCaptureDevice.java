@@ -0,0 +1,100 @@
+package com.sharry.picturepicker.camera;
+
+import android.graphics.SurfaceTexture;
+import android.support.annotation.NonNull;
+
+/**
+ * 伪造的相机设备, 记录 {@link CaptureController} 的调用, 并同步回调预设的结果
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 18:30
+ */
+class FakeCaptureDevice implements CaptureDevice {
+
+    private final int[] mJpegSizes;
+    private final int mSensorOrientation;
+    private Exception mOpenError;
+    private byte[] mCaptureJpeg;
+    private Exception mCaptureError;
+
+    private Callback mCallback;
+    boolean isOpened;
+    boolean isClosed;
+    int previewWidth;
+    int previewHeight;
+    int captureCount;
+    int captureQuality;
+    int captureJpegOrientation;
+
+    /**
+     * @param jpegSizes         相机支持的 JPEG 尺寸, 依次为 width, height
+     * @param sensorOrientation 传感器的角度
+     */
+    FakeCaptureDevice(@NonNull int[] jpegSizes, int sensorOrientation) {
+        mJpegSizes = jpegSizes;
+        mSensorOrientation = sensorOrientation;
+    }
+
+    /**
+     * 打开相机时回调失败
+     */
+    FakeCaptureDevice failOpen(@NonNull Exception error) {
+        mOpenError = error;
+        return this;
+    }
+
+    /**
+     * 拍照时回调的 JPEG 数据
+     */
+    FakeCaptureDevice captureJpeg(@NonNull byte[] jpeg) {
+        mCaptureJpeg = jpeg;
+        mCaptureError = null;
+        return this;
+    }
+
+    /**
+     * 拍照时回调失败
+     */
+    FakeCaptureDevice failCapture(@NonNull Exception error) {
+        mCaptureError = error;
+        mCaptureJpeg = null;
+        return this;
+    }
+
+    @Override
+    public void open(@NonNull Callback callback) {
+        mCallback = callback;
+        if (mOpenError != null) {
+            callback.onError(mOpenError);
+            return;
+        }
+        isOpened = true;
+        callback.onOpened(mJpegSizes, mSensorOrientation);
+    }
+
+    @Override
+    public void startPreview(@NonNull SurfaceTexture surface, int captureWidth, int captureHeight) {
+        previewWidth = captureWidth;
+        previewHeight = captureHeight;
+    }
+
+    @Override
+    public void capture(int quality, int jpegOrientation) {
+        captureCount++;
+        captureQuality = quality;
+        captureJpegOrientation = jpegOrientation;
+        if (mCaptureError != null) {
+            mCallback.onError(mCaptureError);
+        } else if (mCaptureJpeg != null) {
+            mCallback.onCaptured(mCaptureJpeg);
+        }
+    }
+
+    @Override
+    public void close() {
+        isClosed = true;
+        mCallback = null;
+    }
+
+}
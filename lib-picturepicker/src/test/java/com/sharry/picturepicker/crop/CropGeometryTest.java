@@ -0,0 +1,248 @@
+package com.sharry.picturepicker.crop;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 裁剪的几何计算: 四个旋转角度的映射, 条带无缝覆盖裁剪区域, 以及采样率的上下界
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 18:25
+ */
+public class CropGeometryTest {
+
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+    private static final float DELTA = 0.01f;
+
+    private static final int SOURCE_WIDTH = 4000;
+    private static final int SOURCE_HEIGHT = 3000;
+
+    /**
+     * 旋转后图片中的选中区域, 各边的比例都不对称, 映射错误时角点会落在别处
+     */
+    private static final float LEFT = 0.1f;
+    private static final float TOP = 0.2f;
+    private static final float RIGHT = 0.6f;
+    private static final float BOTTOM = 0.7f;
+
+    @Test
+    public void orientedRectCornersLandOnOutputCorners() {
+        for (int rotation : ROTATIONS) {
+            boolean isRotated = rotation % 180 != 0;
+            float orientedWidth = isRotated ? SOURCE_HEIGHT : SOURCE_WIDTH;
+            float orientedHeight = isRotated ? SOURCE_WIDTH : SOURCE_HEIGHT;
+            float orientedLeft = LEFT * orientedWidth;
+            float orientedTop = TOP * orientedHeight;
+            float rectWidth = (RIGHT - LEFT) * orientedWidth;
+            float rectHeight = (BOTTOM - TOP) * orientedHeight;
+            int outputWidth = Math.round(rectWidth / 4);
+            int outputHeight = Math.round(rectHeight / 4);
+            CropGeometry geometry = CropGeometry.fromOrientedRect(SOURCE_WIDTH, SOURCE_HEIGHT, rotation,
+                    LEFT, TOP, RIGHT, BOTTOM, outputWidth, outputHeight);
+            String message = "rotation " + rotation;
+
+            assertEquals(message, rotation, geometry.getRotation());
+            // 原图中的裁剪区域在旋转 90 度时宽高互换
+            assertEquals(message, Math.round(isRotated ? rectHeight : rectWidth), geometry.getCropWidth());
+            assertEquals(message, Math.round(isRotated ? rectWidth : rectHeight), geometry.getCropHeight());
+
+            // 原图中裁剪区域的四个角, 按 EXIF 顺时针旋转后, 应落在输出图片对应的位置
+            int[] first = new int[4];
+            int[] last = new int[4];
+            geometry.getStripDecodeRect(0, first);
+            geometry.getStripDecodeRect(geometry.getStripCount() - 1, last);
+            int[][] corners = {
+                    {first[0], first[1]}, {first[2], first[1]},
+                    {last[0], last[3]}, {last[2], last[3]}
+            };
+            for (int[] corner : corners) {
+                int strip = corner[1] == first[1] ? 0 : geometry.getStripCount() - 1;
+                float[] output = mapSourcePoint(geometry, strip, corner[0], corner[1]);
+                float[] oriented = orient(corner[0], corner[1], rotation);
+                assertEquals(message, (oriented[0] - orientedLeft) * outputWidth / rectWidth, output[0], DELTA);
+                assertEquals(message, (oriented[1] - orientedTop) * outputHeight / rectHeight, output[1], DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void stripsCoverCropWithoutGaps() {
+        // 输出很扁时条带很多, 裁剪区域的尺寸不是条带高度的整数倍, 最后一条带不满
+        int[][] cases = {
+                {SOURCE_WIDTH, SOURCE_HEIGHT, 13, 7, 3999, 2990, 1000, 10},
+                {SOURCE_WIDTH, SOURCE_HEIGHT, 0, 0, SOURCE_WIDTH, SOURCE_HEIGHT, 300, 200},
+                {SOURCE_WIDTH, SOURCE_HEIGHT, 101, 53, 2870, 2911, 37, 1201},
+        };
+        for (int[] c : cases) {
+            for (int rotation : ROTATIONS) {
+                CropGeometry geometry = new CropGeometry(c[0], c[1], c[2], c[3], c[4], c[5],
+                        rotation, c[6], c[7]);
+                String message = "rotation " + rotation + ", output " + c[6] + "x" + c[7];
+                assertDecodeRectsCoverCrop(message, geometry, c[2], c[3], c[4], c[5]);
+                assertClipsCoverOutput(message, geometry);
+            }
+        }
+    }
+
+    @Test
+    public void sampleSizeIsLargestThatKeepsOutputResolution() {
+        int[][] cases = {
+                // 裁剪区域, 旋转, 输出
+                {4000, 3000, 0, 400, 300},
+                {4000, 3000, 0, 1000, 750},
+                {4000, 3000, 90, 300, 400},
+                // 旋转 90 度时输出的宽对应原图的高, 未考虑旋转时采样率为 1
+                {4000, 1000, 90, 250, 1000},
+                {4000, 1000, 270, 250, 1000},
+                {4000, 3000, 180, 3999, 2999},
+                // 输出大于裁剪区域时不采样
+                {400, 300, 0, 800, 600},
+        };
+        for (int[] c : cases) {
+            CropGeometry geometry = new CropGeometry(c[0], c[1], 0, 0, c[0], c[1], c[2], c[3], c[4]);
+            int sampleSize = geometry.getSampleSize();
+            boolean isRotated = c[2] % 180 != 0;
+            int outputWidth = isRotated ? c[4] : c[3];
+            int outputHeight = isRotated ? c[3] : c[4];
+            String message = c[0] + "x" + c[1] + " rotation " + c[2] + " -> " + c[3] + "x" + c[4]
+                    + ", sample size " + sampleSize;
+
+            assertTrue(message, sampleSize >= 1 && Integer.bitCount(sampleSize) == 1);
+            // 采样后的区域不小于输出, 否则输出会变模糊
+            if (sampleSize > 1) {
+                assertTrue(message, c[0] / sampleSize >= outputWidth && c[1] / sampleSize >= outputHeight);
+            }
+            // 再增大一倍就会小于输出
+            assertTrue(message, c[0] / (sampleSize * 2) < outputWidth || c[1] / (sampleSize * 2) < outputHeight);
+        }
+        assertEquals(4, new CropGeometry(4000, 1000, 0, 0, 4000, 1000, 90, 250, 1000).getSampleSize());
+        assertEquals(1, new CropGeometry(4000, 1000, 0, 0, 4000, 1000, 0, 250, 1000).getSampleSize());
+    }
+
+    @Test
+    public void peakPixelsFollowOutputSize() {
+        int[][] sources = {{4000, 3000}, {12000, 9000}, {3000, 12000}, {20000, 500}};
+        int[][] outputs = {{500, 500}, {1080, 720}, {64, 2000}};
+        for (int[] source : sources) {
+            for (int[] output : outputs) {
+                for (int rotation : ROTATIONS) {
+                    CropGeometry geometry = new CropGeometry(source[0], source[1], 0, 0, source[0], source[1],
+                            rotation, output[0], output[1]);
+                    long outputPixels = (long) output[0] * output[1];
+                    // 输出的图片与一条带同时存在, 加上条带之间重叠的行
+                    assertTrue(source[0] + "x" + source[1] + " -> " + output[0] + "x" + output[1]
+                                    + " rotation " + rotation + ", peak " + geometry.estimatePeakPixels(),
+                            geometry.estimatePeakPixels() <= 3 * outputPixels);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRotationThatIsNotRightAngle() {
+        new CropGeometry(SOURCE_WIDTH, SOURCE_HEIGHT, 0, 0, 100, 100, 45, 100, 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCropRectOutOfPicture() {
+        new CropGeometry(SOURCE_WIDTH, SOURCE_HEIGHT, SOURCE_WIDTH, 0, SOURCE_WIDTH + 100, 100, 0, 100, 100);
+    }
+
+    /**
+     * 解码范围连续, 相邻条带至少首尾相接, 合起来恰好为裁剪区域
+     */
+    private static void assertDecodeRectsCoverCrop(String message, CropGeometry geometry,
+                                                   int left, int top, int right, int bottom) {
+        int[] rect = new int[4];
+        int coveredBottom = top;
+        for (int i = 0; i < geometry.getStripCount(); i++) {
+            geometry.getStripDecodeRect(i, rect);
+            assertEquals(message, left, rect[0]);
+            assertEquals(message, right, rect[2]);
+            assertTrue(message + ", strip " + i, rect[1] <= coveredBottom);
+            assertTrue(message + ", strip " + i, rect[3] > coveredBottom);
+            coveredBottom = rect[3];
+        }
+        geometry.getStripDecodeRect(0, rect);
+        assertEquals(message, top, rect[1]);
+        assertEquals(message, bottom, coveredBottom);
+    }
+
+    /**
+     * 绘制的裁剪范围沿一个方向首尾相接, 另一个方向铺满, 合起来恰好为输出图片
+     */
+    private static void assertClipsCoverOutput(String message, CropGeometry geometry) {
+        List<float[]> clips = new ArrayList<>();
+        for (int i = 0; i < geometry.getStripCount(); i++) {
+            float[] clip = new float[4];
+            geometry.getStripClip(i, clip);
+            clips.add(clip);
+        }
+        // 旋转 90 度时条带沿着输出的 x 轴排列
+        final int start = geometry.getRotation() % 180 != 0 ? 0 : 1;
+        final int end = start + 2;
+        int crossStart = 1 - start;
+        int crossEnd = crossStart + 2;
+        float extent = start == 0 ? geometry.getOutputWidth() : geometry.getOutputHeight();
+        float crossExtent = start == 0 ? geometry.getOutputHeight() : geometry.getOutputWidth();
+        Collections.sort(clips, new Comparator<float[]>() {
+            @Override
+            public int compare(float[] lhs, float[] rhs) {
+                return Float.compare(lhs[start], rhs[start]);
+            }
+        });
+        float covered = 0;
+        for (float[] clip : clips) {
+            assertEquals(message, covered, clip[start], DELTA);
+            assertTrue(message, clip[end] > clip[start]);
+            assertEquals(message, 0, clip[crossStart], DELTA);
+            assertEquals(message, crossExtent, clip[crossEnd], DELTA);
+            covered = clip[end];
+        }
+        assertEquals(message, extent, covered, DELTA);
+    }
+
+    /**
+     * 原图中的点经过第 strip 条带的解码与变换后, 在输出图片中的位置
+     */
+    private static float[] mapSourcePoint(CropGeometry geometry, int strip, int x, int y) {
+        int sampleSize = geometry.getSampleSize();
+        int[] rect = new int[4];
+        geometry.getStripDecodeRect(strip, rect);
+        int bitmapWidth = (rect[2] - rect[0] + sampleSize - 1) / sampleSize;
+        int bitmapHeight = (rect[3] - rect[1] + sampleSize - 1) / sampleSize;
+        float bitmapX = (x - rect[0]) * bitmapWidth / (float) (rect[2] - rect[0]);
+        float bitmapY = (y - rect[1]) * bitmapHeight / (float) (rect[3] - rect[1]);
+        float[] values = new float[9];
+        geometry.getStripTransform(strip, bitmapWidth, bitmapHeight, values);
+        return new float[]{
+                values[0] * bitmapX + values[1] * bitmapY + values[2],
+                values[3] * bitmapX + values[4] * bitmapY + values[5]
+        };
+    }
+
+    /**
+     * 原图中的点按照 EXIF 顺时针旋转后的位置
+     */
+    private static float[] orient(float x, float y, int rotation) {
+        switch (rotation) {
+            case 90:
+                return new float[]{SOURCE_HEIGHT - y, x};
+            case 180:
+                return new float[]{SOURCE_WIDTH - x, SOURCE_HEIGHT - y};
+            case 270:
+                return new float[]{y, SOURCE_WIDTH - x};
+            default:
+                return new float[]{x, y};
+        }
+    }
+
+}
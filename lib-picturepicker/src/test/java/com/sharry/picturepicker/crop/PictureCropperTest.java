@@ -0,0 +1,226 @@
+package com.sharry.picturepicker.crop;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import com.sharry.picturepicker.support.loader.BitmapPool;
+import com.sharry.picturepicker.support.utils.PictureMetadataCache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowBitmap;
+import org.robolectric.shadows.ShadowCanvas;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 裁剪过程中 Bitmap 内存的峰值只与输出的尺寸有关, 与原图的尺寸无关
+ * <p>
+ * 记录裁剪过程中分配的所有 Bitmap, 其字节数之和即为峰值的上限. 所有条带复用按照最大条带分配的一块内存,
+ * 原图再大也只会增加条带的数量, 不会增加分配.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 18:55
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {PictureCropperTest.ShadowRecordingBitmap.class, PictureCropperTest.ShadowSampledRegionDecoder.class,
+        PictureCropperTest.ShadowSaveCountCanvas.class})
+public class PictureCropperTest {
+
+    private static final int OUTPUT_SIZE = 500;
+    private static final long OUTPUT_BYTES = 4L * OUTPUT_SIZE * OUTPUT_SIZE;
+    private static final RectF CENTER_SQUARE = new RectF(0.2f, 0.1f, 0.8f, 0.9f);
+
+    private static long sAllocatedBytes;
+    private static int sSourceWidth;
+    private static int sSourceHeight;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private CropConfig mConfig;
+    private String mDestPath;
+
+    @Before
+    public void setUp() {
+        mConfig = CropConfig.Builder()
+                .setCropSize(OUTPUT_SIZE, OUTPUT_SIZE)
+                .setCropQuality(80)
+                .build();
+        mDestPath = new File(mFolder.getRoot(), "crop.jpg").getAbsolutePath();
+    }
+
+    @Test
+    public void peakBitmapBytesFollowOutputSize() throws IOException {
+        int[][] sources = {{4000, 3000}, {12000, 9000}, {3000, 20000}};
+        int[] orientations = {0, 90, 180, 270};
+        for (int[] source : sources) {
+            for (int orientation : orientations) {
+                long allocatedBytes = crop(source[0], source[1], orientation);
+                assertTrue(new File(mDestPath).isFile());
+                // 输出的图片与所有条带共用的一块内存, 条带比输出多出上下重叠的两行
+                assertTrue(source[0] + "x" + source[1] + " orientation " + orientation
+                                + " allocated " + allocatedBytes + " bytes",
+                        allocatedBytes <= 2 * OUTPUT_BYTES + OUTPUT_BYTES / 20);
+            }
+        }
+    }
+
+    @Test
+    public void allocationDoesNotGrowWithSourceSize() throws IOException {
+        long small = crop(4000, 3000, 0);
+        long large = crop(16000, 12000, 0);
+        // 原图的面积为 16 倍, 采样后的区域与条带的尺寸相同
+        assertEquals(small, large);
+    }
+
+    /**
+     * 裁剪一张指定尺寸的原图
+     *
+     * @return 裁剪过程中分配的 Bitmap 的字节数之和
+     */
+    private long crop(int sourceWidth, int sourceHeight, int orientation) throws IOException {
+        sSourceWidth = sourceWidth;
+        sSourceHeight = sourceHeight;
+        String originPath = createPicture("origin_" + sourceWidth + "x" + sourceHeight + ".jpg");
+        PictureMetadataCache.getDefault().retain(originPath,
+                PictureMetadataCache.Metadata.create(sourceWidth, sourceHeight, orientation, 1024));
+        BitmapPool.getDefault().clear();
+        sAllocatedBytes = 0;
+        PictureCropper.crop(originPath, CENTER_SQUARE, mConfig, mDestPath, null);
+        return sAllocatedBytes;
+    }
+
+    private String createPicture(String name) throws IOException {
+        File file = new File(mFolder.getRoot(), name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[1024]);
+        } finally {
+            out.close();
+        }
+        return file.getAbsolutePath();
+    }
+
+    /**
+     * 记录新建的 Bitmap, 并按照分配的字节数支持 reconfigure, 使 Bitmap 池可以复用
+     */
+    @Implements(Bitmap.class)
+    public static class ShadowRecordingBitmap extends ShadowBitmap {
+
+        private int mAllocationByteCount;
+
+        @Implementation
+        public static Bitmap createBitmap(int width, int height, Bitmap.Config config) {
+            return record(ShadowBitmap.createBitmap(width, height, config));
+        }
+
+        @Implementation
+        public static Bitmap createBitmap(Bitmap src, int x, int y, int width, int height,
+                                          Matrix matrix, boolean filter) {
+            return record(ShadowBitmap.createBitmap(src, x, y, width, height, matrix, filter));
+        }
+
+        @Implementation
+        public int getAllocationByteCount() {
+            return mAllocationByteCount;
+        }
+
+        @Implementation
+        public void reconfigure(int width, int height, Bitmap.Config config) {
+            if (4L * width * height > mAllocationByteCount) {
+                throw new IllegalArgumentException("Bitmap not large enough to support new configuration");
+            }
+            setWidth(width);
+            setHeight(height);
+            setConfig(config);
+        }
+
+        private static Bitmap record(Bitmap bitmap) {
+            ShadowRecordingBitmap shadow = Shadow.extract(bitmap);
+            shadow.mAllocationByteCount = bitmap.getRowBytes() * bitmap.getHeight();
+            sAllocatedBytes += shadow.mAllocationByteCount;
+            return bitmap;
+        }
+    }
+
+    /**
+     * 按照采样率解码区域, 优先复用 inBitmap, 与真实的解码器一致; 原图的尺寸由测试指定
+     */
+    @Implements(BitmapRegionDecoder.class)
+    public static class ShadowSampledRegionDecoder {
+
+        @Implementation
+        public static BitmapRegionDecoder newInstance(String pathName, boolean isShareable) {
+            return Shadow.newInstanceOf(BitmapRegionDecoder.class);
+        }
+
+        @Implementation
+        public int getWidth() {
+            return sSourceWidth;
+        }
+
+        @Implementation
+        public int getHeight() {
+            return sSourceHeight;
+        }
+
+        @Implementation
+        public Bitmap decodeRegion(Rect rect, BitmapFactory.Options options) {
+            int sampleSize = Math.max(1, options.inSampleSize);
+            int width = (rect.width() + sampleSize - 1) / sampleSize;
+            int height = (rect.height() + sampleSize - 1) / sampleSize;
+            Bitmap inBitmap = options.inBitmap;
+            if (inBitmap != null) {
+                if (inBitmap.getWidth() != width || inBitmap.getHeight() != height) {
+                    throw new IllegalArgumentException("Problem decoding into existing bitmap");
+                }
+                return inBitmap;
+            }
+            return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+
+        @Implementation
+        public void recycle() {
+        }
+    }
+
+    /**
+     * 与真实的 Canvas 一致, save 返回的层数从 1 开始
+     */
+    @Implements(Canvas.class)
+    public static class ShadowSaveCountCanvas extends ShadowCanvas {
+
+        private int mSaveCount = 1;
+
+        @Implementation
+        public int save() {
+            return mSaveCount++;
+        }
+
+        @Implementation
+        public void restoreToCount(int saveCount) {
+            mSaveCount = saveCount;
+        }
+    }
+
+}
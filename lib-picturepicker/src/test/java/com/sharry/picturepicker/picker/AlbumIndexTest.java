@@ -0,0 +1,112 @@
+package com.sharry.picturepicker.picker;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 相册索引的合并, 裁剪与读写
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 17:10
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AlbumIndexTest {
+
+    private AlbumIndex mIndex;
+
+    @Before
+    public void setUp() {
+        mIndex = new AlbumIndex();
+        // date_added 倒序, 相同时 _ID 倒序
+        mIndex.append(item(5, 500, 500));
+        mIndex.append(item(4, 400, 400));
+        mIndex.append(item(3, 400, 400));
+        mIndex.append(item(2, 200, 200));
+        mIndex.append(item(1, 100, 100));
+    }
+
+    @Test
+    public void mergeIgnoresUnchangedRowsOnWatermark() {
+        // date_modified >= 水位线的查询会再次返回水位线上的行
+        assertFalse(mIndex.merge(Collections.singletonList(item(5, 500, 500))));
+        assertArrayEquals(new long[]{5, 4, 3, 2, 1}, ids(mIndex.getItems()));
+    }
+
+    @Test
+    public void mergeKeepsDisplayOrder() {
+        List<PictureItem> delta = Arrays.asList(
+                item(6, 300, 300),      // 新增
+                item(2, 450, 500),      // 修改且 date_added 变化
+                item(5, 500, 500),      // 未变更
+                item(7, 600, 600)       // 新增
+        );
+        assertTrue(mIndex.merge(delta));
+        assertArrayEquals(new long[]{7, 5, 2, 4, 3, 6, 1}, ids(mIndex.getItems()));
+        assertEquals(7, mIndex.getMaxId());
+        assertEquals(600, mIndex.getMaxDateModified());
+    }
+
+    @Test
+    public void mergeDetectsSameSecondModification() {
+        PictureItem rewritten = new PictureItem(5, "/sdcard/DCIM/5.jpg", "/sdcard/DCIM",
+                1080, 1920, 0, 4096, 500, 500);
+        assertTrue(mIndex.merge(Collections.singletonList(rewritten)));
+        assertEquals(4096, mIndex.getItems().get(0).size);
+        assertEquals(5, mIndex.size());
+    }
+
+    @Test
+    public void retainRemovesDeletedRows() {
+        assertFalse(mIndex.retain(new HashSet<>(Arrays.asList(1L, 2L, 3L, 4L, 5L))));
+        assertTrue(mIndex.retain(new HashSet<>(Arrays.asList(1L, 3L, 5L))));
+        assertArrayEquals(new long[]{5, 3, 1}, ids(mIndex.getItems()));
+    }
+
+    @Test
+    public void writeAndReadBack() throws Exception {
+        File dir = new File(RuntimeEnvironment.application.getCacheDir(), "album_index_test");
+        dir.mkdirs();
+        File indexFile = AlbumIndex.getIndexFile(dir);
+        mIndex.write(indexFile);
+        // 覆盖已存在的索引
+        mIndex.write(indexFile);
+
+        AlbumIndex read = AlbumIndex.read(indexFile);
+        assertNotNull(read);
+        assertArrayEquals(ids(mIndex.getItems()), ids(read.getItems()));
+        assertEquals(mIndex.getMaxId(), read.getMaxId());
+        assertEquals(mIndex.getMaxDateModified(), read.getMaxDateModified());
+        // 临时文件在重命名后不再保留
+        assertArrayEquals(new String[]{indexFile.getName()}, dir.list());
+    }
+
+    private static PictureItem item(long id, long dateAdded, long dateModified) {
+        return new PictureItem(id, "/sdcard/DCIM/" + id + ".jpg", "/sdcard/DCIM",
+                1080, 1920, 0, 2048, dateAdded, dateModified);
+    }
+
+    private static long[] ids(List<PictureItem> items) {
+        long[] ids = new long[items.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = items.get(i).id;
+        }
+        return ids;
+    }
+
+}
@@ -0,0 +1,230 @@
+package com.sharry.picturepicker.picker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.provider.MediaStore;
+
+import com.sharry.picturepicker.support.executor.CancelToken;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 分页遍历 MediaStore 的测试, 使用按照 date_added, _ID 倒序排列的伪造数据代替 MediaStore
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 17:00
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CursorSystemPictureRunnableTest {
+
+    private static final int LARGE_ROW_COUNT = 100000;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        // 不存在索引时才会全量遍历
+        AlbumIndex.getIndexFile(mContext.getCacheDir()).delete();
+    }
+
+    @Test
+    public void fullScanReadsEveryRowOnce() {
+        FakeMediaStore store = new FakeMediaStore(2613, false);
+        RecordingInteraction interaction = new RecordingInteraction();
+        new PicturePickerModel.CursorSystemPictureRunnable(mContext, new CancelToken(), interaction, store).run();
+
+        assertNull(interaction.failure);
+        assertTrue(interaction.isCompleted);
+        assertTrue("Scan should be paged.", interaction.pages.size() > 1);
+        assertEquals(store.getIds(), interaction.getLoadedIds());
+        assertEquals(store.size(), new HashSet<>(interaction.getLoadedIds()).size());
+    }
+
+    @Test
+    public void rowsChangedDuringScanAreNotRepeatedOrSkipped() {
+        final FakeMediaStore store = new FakeMediaStore(2613, false);
+        final List<Long> originalIds = store.getIds();
+        RecordingInteraction interaction = new RecordingInteraction() {
+            @Override
+            public void onPageLoaded(PicturePage page) {
+                super.onPageLoaded(page);
+                if (page.pageIndex == 1) {
+                    // 新拍摄的图片排在最前面, 已读取的图片被删除, 偏移量分页会因此重复或跳过行
+                    store.removeFirst(100);
+                    store.insertNewest(50);
+                }
+            }
+        };
+        new PicturePickerModel.CursorSystemPictureRunnable(mContext, new CancelToken(), interaction, store).run();
+
+        assertTrue(interaction.isCompleted);
+        assertEquals(originalIds, interaction.getLoadedIds());
+    }
+
+    @Test
+    public void firstPageOfLargeAlbumDoesNotWaitForFullQuery() {
+        FakeMediaStore pagedStore = new FakeMediaStore(LARGE_ROW_COUNT, false);
+        FakeMediaStore fullStore = new FakeMediaStore(LARGE_ROW_COUNT, true);
+        // 预热
+        measureFirstPage(pagedStore);
+        measureFirstPage(fullStore);
+
+        RecordingInteraction paged = measureFirstPage(pagedStore);
+        RecordingInteraction full = measureFirstPage(fullStore);
+
+        assertEquals(LARGE_ROW_COUNT, full.pages.get(0).pictureItems.size());
+        assertTrue(paged.pages.get(0).pictureItems.size() < LARGE_ROW_COUNT / 100);
+        assertTrue("paged: " + paged.firstPageNanos + "ns, full: " + full.firstPageNanos + "ns",
+                paged.firstPageNanos * 10 < full.firstPageNanos);
+    }
+
+    /**
+     * 首页到达后立即取消, 记录从开始遍历到首页回调的耗时
+     */
+    private RecordingInteraction measureFirstPage(FakeMediaStore store) {
+        final CancelToken token = new CancelToken();
+        final long startNanos = System.nanoTime();
+        RecordingInteraction interaction = new RecordingInteraction() {
+            @Override
+            public void onPageLoaded(PicturePage page) {
+                firstPageNanos = System.nanoTime() - startNanos;
+                super.onPageLoaded(page);
+                token.cancel();
+            }
+        };
+        new PicturePickerModel.CursorSystemPictureRunnable(mContext, token, interaction, store).run();
+        assertEquals(1, interaction.pages.size());
+        return interaction;
+    }
+
+    private static class RecordingInteraction implements
+            PicturePickerModel.CursorSystemPictureRunnable.RunnableInteraction {
+
+        final ArrayList<PicturePage> pages = new ArrayList<>();
+        boolean isCompleted;
+        Throwable failure;
+        long firstPageNanos;
+
+        @Override
+        public void onPageLoaded(PicturePage page) {
+            pages.add(page);
+        }
+
+        @Override
+        public void onComplete() {
+            isCompleted = true;
+        }
+
+        @Override
+        public void onFailed(Throwable throwable) {
+            failure = throwable;
+        }
+
+        List<Long> getLoadedIds() {
+            ArrayList<Long> ids = new ArrayList<>();
+            for (PicturePage page : pages) {
+                for (PictureItem item : page.pictureItems) {
+                    ids.add(item.id);
+                }
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * 按照 date_added, _ID 倒序排列的图片表, 与 MediaStore 的分页查询语义一致
+     */
+    private static class FakeMediaStore implements PicturePickerModel.CursorSystemPictureRunnable.PageQuery {
+
+        private static final String[] COLUMNS = new String[]{
+                MediaStore.Images.Media._ID,
+                MediaStore.Images.Media.DATA,
+                MediaStore.Images.Media.WIDTH,
+                MediaStore.Images.Media.HEIGHT,
+                MediaStore.Images.Media.ORIENTATION,
+                MediaStore.Images.Media.SIZE,
+                MediaStore.Images.Media.DATE_ADDED,
+                MediaStore.Images.Media.DATE_MODIFIED,
+                MediaStore.Images.Media.BUCKET_ID
+        };
+        private static final long BASE_DATE_ADDED = 1550000000L;
+        private static final int FOLDER_COUNT = 20;
+
+        private final ArrayList<long[]> mRows = new ArrayList<>();    // 每行依次为 date_added, _ID
+        private final boolean mIsIgnoreLimit;
+        private long mNextId;
+
+        /**
+         * @param isIgnoreLimit 忽略 limit 返回之后所有的行, 模拟一次性查询整张表
+         */
+        FakeMediaStore(int rowCount, boolean isIgnoreLimit) {
+            mIsIgnoreLimit = isIgnoreLimit;
+            // 每三张图片的 date_added 相同, 验证相同时间的行不会在页的边界重复或遗漏
+            for (int i = 0; i < rowCount; i++) {
+                mRows.add(new long[]{BASE_DATE_ADDED - i / 3, rowCount - i});
+            }
+            mNextId = rowCount + 1;
+        }
+
+        @Override
+        public Cursor query(long afterDateAdded, long afterId, int limit) {
+            int start = 0;
+            while (start < mRows.size() && !isAfter(mRows.get(start), afterDateAdded, afterId)) {
+                start++;
+            }
+            int end = mIsIgnoreLimit ? mRows.size() : Math.min(mRows.size(), start + limit);
+            MatrixCursor cursor = new MatrixCursor(COLUMNS, end - start);
+            for (int i = start; i < end; i++) {
+                long dateAdded = mRows.get(i)[0];
+                long id = mRows.get(i)[1];
+                int folder = (int) (id % FOLDER_COUNT);
+                cursor.addRow(new Object[]{id, "/storage/emulated/0/DCIM/Folder" + folder + "/IMG_" + id + ".jpg",
+                        4000, 3000, 0, 2048L, dateAdded, dateAdded, folder});
+            }
+            return cursor;
+        }
+
+        void insertNewest(int count) {
+            long dateAdded = mRows.get(0)[0] + 1;
+            for (int i = 0; i < count; i++) {
+                mRows.add(0, new long[]{dateAdded, mNextId++});
+            }
+        }
+
+        void removeFirst(int count) {
+            mRows.subList(0, count).clear();
+        }
+
+        int size() {
+            return mRows.size();
+        }
+
+        List<Long> getIds() {
+            ArrayList<Long> ids = new ArrayList<>(mRows.size());
+            for (long[] row : mRows) {
+                ids.add(row[1]);
+            }
+            return ids;
+        }
+
+        private static boolean isAfter(long[] row, long afterDateAdded, long afterId) {
+            return row[0] < afterDateAdded || (row[0] == afterDateAdded && row[1] < afterId);
+        }
+    }
+
+}
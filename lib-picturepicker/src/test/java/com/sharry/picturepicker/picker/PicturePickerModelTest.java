@@ -0,0 +1,153 @@
+package com.sharry.picturepicker.picker;
+
+import com.sharry.picturepicker.support.utils.PictureMetadataCache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 拍照后的图片只插入 <所有图片> 与其所在的文件夹, 在 MediaStore 收录之前重新遍历时保留
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.1
+ * @since 2019/3/30 18:40
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PicturePickerModelTest {
+
+    private static final String CAMERA_FOLDER = "/sdcard/DCIM/Camera";
+    private static final String DOWNLOAD_FOLDER = "/sdcard/Download";
+    private static final String CAPTURED_PATH = CAMERA_FOLDER + "/captured.jpg";
+
+    private PicturePickerModel mModel;
+    private PictureFolder mAllFolder;
+    private PictureFolder mCameraFolder;
+    private PictureFolder mDownloadFolder;
+
+    @Before
+    public void setUp() {
+        mModel = new PicturePickerModel(new ArrayList<String>(), 9);
+        mModel.mergePicturePage(createFirstPage());
+        mAllFolder = mModel.getPictureFolderAt(0);
+        mCameraFolder = mModel.getPictureFolderAt(1);
+        mDownloadFolder = mModel.getPictureFolderAt(2);
+    }
+
+    @Test
+    public void insertsIntoAllAndOwnerFolder() {
+        mModel.setCheckedFolder(mCameraFolder);
+
+        assertTrue(mModel.insertPictureToFirst(CAPTURED_PATH, null));
+        assertEquals(4, mAllFolder.getPictureCount());
+        assertEquals(CAPTURED_PATH, mAllFolder.getPicturePaths().get(0));
+        assertEquals(3, mCameraFolder.getPictureCount());
+        assertEquals(CAPTURED_PATH, mModel.getDisplayPaths().get(0));
+        assertEquals(1, mDownloadFolder.getPictureCount());
+    }
+
+    @Test
+    public void displayedAllFolderReceivesRow() {
+        mModel.setCheckedFolder(mAllFolder);
+
+        assertTrue(mModel.insertPictureToFirst(CAPTURED_PATH, null));
+        assertEquals(4, mModel.getDisplayPaths().size());
+        assertEquals(CAPTURED_PATH, mModel.getDisplayPaths().get(0));
+    }
+
+    @Test
+    public void displayedThirdFolderIsLeftUnchanged() {
+        mModel.setCheckedFolder(mDownloadFolder);
+
+        // 图片不属于 <当前展示> 的文件夹, 列表不需要新增一行
+        assertFalse(mModel.insertPictureToFirst(CAPTURED_PATH, null));
+        assertEquals(1, mDownloadFolder.getPictureCount());
+        assertEquals(1, mModel.getDisplayPaths().size());
+        assertEquals(4, mAllFolder.getPictureCount());
+        assertEquals(3, mCameraFolder.getPictureCount());
+    }
+
+    @Test
+    public void missingOwnerFolderIsCreated() {
+        mModel.setCheckedFolder(mDownloadFolder);
+        String path = "/sdcard/Pictures/captured.jpg";
+
+        assertFalse(mModel.insertPictureToFirst(path, null));
+        ArrayList<PictureFolder> folders = mModel.getAllFolders();
+        assertEquals(4, folders.size());
+        PictureFolder ownerFolder = folders.get(3);
+        assertEquals("/sdcard/Pictures", ownerFolder.getFolderPath());
+        assertEquals(1, ownerFolder.getPictureCount());
+        assertEquals(path, ownerFolder.getPicturePaths().get(0));
+        assertEquals(1, mDownloadFolder.getPictureCount());
+    }
+
+    @Test
+    public void insertSurvivesFirstPageReplay() {
+        mModel.setCheckedFolder(mAllFolder);
+        assertTrue(mModel.insertPictureToFirst(CAPTURED_PATH, null));
+
+        // 增量刷新重新回调首页, MediaStore 尚未收录拍摄的图片
+        mModel.mergePicturePage(createFirstPage());
+        PictureFolder allFolder = mModel.getPictureFolderAt(0);
+        assertEquals(4, allFolder.getPictureCount());
+        assertEquals(CAPTURED_PATH, allFolder.getPicturePaths().get(0));
+        PictureFolder cameraFolder = mModel.getPictureFolderAt(1);
+        assertEquals(3, cameraFolder.getPictureCount());
+        assertEquals(CAPTURED_PATH, cameraFolder.getPicturePaths().get(0));
+    }
+
+    @Test
+    public void insertIsDroppedOnceMediaStoreHasIt() {
+        mModel.insertPictureToFirst(CAMERA_FOLDER + "/4.jpg", null);
+
+        PicturePage page = createFirstPage();
+        addItem(page, 4, CAMERA_FOLDER);
+        mModel.mergePicturePage(page);
+        assertEquals(4, mModel.getPictureFolderAt(0).getPictureCount());
+        // 之后的首页不再重复插入
+        mModel.mergePicturePage(createFirstPage());
+        assertEquals(3, mModel.getPictureFolderAt(0).getPictureCount());
+    }
+
+    @Test
+    public void insertKeepsWrittenMetadata() {
+        mModel.insertPictureToFirst(CAPTURED_PATH, PictureMetadataCache.Metadata.create(3000, 4000, 90, 4096));
+
+        PictureItem item = mModel.getPictureItem(CAPTURED_PATH);
+        assertNotNull(item);
+        assertEquals(3000, item.width);
+        assertEquals(4000, item.height);
+        assertEquals(90, item.orientation);
+        assertEquals(4096, item.size);
+    }
+
+    private static PicturePage createFirstPage() {
+        PicturePage page = new PicturePage(0);
+        addItem(page, 1, CAMERA_FOLDER);
+        addItem(page, 2, CAMERA_FOLDER);
+        addItem(page, 3, DOWNLOAD_FOLDER);
+        return page;
+    }
+
+    private static void addItem(PicturePage page, long id, String folderPath) {
+        int pageRow = page.pictureItems.size();
+        page.pictureItems.add(new PictureItem(id, folderPath + "/" + id + ".jpg", folderPath,
+                1080, 1920, 0, 2048, id, id));
+        PicturePage.Folder folder = page.folders.get(folderPath);
+        if (folder == null) {
+            folder = new PicturePage.Folder(folderPath, folderPath.substring(folderPath.lastIndexOf('/') + 1));
+            page.folders.put(folderPath, folder);
+        }
+        folder.add(pageRow);
+    }
+
+}
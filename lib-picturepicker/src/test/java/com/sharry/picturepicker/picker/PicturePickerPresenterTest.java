@@ -0,0 +1,180 @@
+package com.sharry.picturepicker.picker;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.sharry.picturepicker.support.collection.OrderedPathSet;
+import com.sharry.picturepicker.support.executor.PickerExecutors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 相册页面反复打开与销毁时, 后台遍历的线程与结果投递
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 17:20
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PicturePickerPresenterTest {
+
+    private static final String WORKER_NAME_PREFIX = "PicturePicker-worker-";
+    private static final int MAX_WORKER_COUNT = 4;
+
+    private Context mContext;
+    private PickerConfig mConfig;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mConfig = PickerConfig.Builder().build();
+    }
+
+    @Test
+    public void openAndDestroyRepeatedlyKeepsWorkerThreadsBounded() throws Exception {
+        ArrayList<RecordingView> destroyedViews = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            RecordingView view = new RecordingView();
+            new PicturePickerPresenter(view, mContext, mConfig).handleViewDestroy();
+            destroyedViews.add(view);
+            assertTrue("Worker threads: " + countWorkerThreads(), countWorkerThreads() <= MAX_WORKER_COUNT);
+        }
+        // 作为对照, 未销毁的页面可以收到数据
+        RecordingView aliveView = new RecordingView();
+        new PicturePickerPresenter(aliveView, mContext, mConfig);
+
+        awaitWorkExecutorIdle();
+        ShadowLooper.idleMainLooper();
+
+        assertTrue("Worker threads: " + countWorkerThreads(), countWorkerThreads() <= MAX_WORKER_COUNT);
+        for (RecordingView view : destroyedViews) {
+            assertEquals("Stale scan delivered to a destroyed view.", 0, view.deliveredCount);
+        }
+        assertTrue(aliveView.deliveredCount > 0);
+    }
+
+    private static int countWorkerThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith(WORKER_NAME_PREFIX)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void awaitWorkExecutorIdle() throws InterruptedException {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) PickerExecutors.getWorkExecutor();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (executor.getCompletedTaskCount() < executor.getTaskCount()) {
+            assertTrue("Scans did not finish in time.", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 记录遍历结果投递次数的 View
+     */
+    private class RecordingView implements PicturePickerContract.IView {
+
+        int deliveredCount;
+
+        @Override
+        public void setFolderAdapter(@NonNull ArrayList<PictureFolder> allFolders) {
+            deliveredCount++;
+        }
+
+        @Override
+        public void notifyDisplayPathsChanged(@NonNull PictureFolder displayFolder) {
+            deliveredCount++;
+        }
+
+        @Override
+        public void notifyDisplayPathsRangeInserted(int positionStart, int itemCount) {
+            deliveredCount++;
+        }
+
+        @Override
+        public void showMsg(@NonNull String msg) {
+            deliveredCount++;
+        }
+
+        @Override
+        public String getString(int resId) {
+            return mContext.getString(resId);
+        }
+
+        @Override
+        public void setToolbarScrollable(boolean isScrollable) {
+        }
+
+        @Override
+        public void setToolbarBackgroundColor(int color) {
+        }
+
+        @Override
+        public void setToolbarBackgroundDrawable(int drawableId) {
+        }
+
+        @Override
+        public void setFabColor(int color) {
+        }
+
+        @Override
+        public void switchFabVisibility(boolean isVisible) {
+        }
+
+        @Override
+        public void setPicturesBackgroundColor(int color) {
+        }
+
+        @Override
+        public void setPicturesSpanCount(int spanCount) {
+        }
+
+        @Override
+        public void setPicturesAdapter(@NonNull PickerConfig config, @NonNull OrderedPathSet userPickedPaths) {
+        }
+
+        @Override
+        public void setPictureFolderText(@NonNull String folderName) {
+        }
+
+        @Override
+        public void setToolbarEnsureText(@NonNull CharSequence content) {
+        }
+
+        @Override
+        public void setPreviewText(@NonNull CharSequence content) {
+        }
+
+        @Override
+        public void notifyPickedPathsChanged(@NonNull List<String> oldPickedPaths) {
+        }
+
+        @Override
+        public void notifyFolderDataSetChanged() {
+        }
+
+        @Override
+        public void notifyDisplayPathsInsertToFirst() {
+        }
+
+        @Override
+        public void setResult(@NonNull ArrayList<String> pickedPaths) {
+        }
+    }
+
+}
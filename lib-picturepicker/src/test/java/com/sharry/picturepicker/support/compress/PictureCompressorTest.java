@@ -0,0 +1,174 @@
+package com.sharry.picturepicker.support.compress;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.sharry.picturepicker.support.executor.CancelToken;
+import com.sharry.picturepicker.support.executor.PickerExecutors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowBitmapFactory;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 批量压缩的并行数量, 失败的图片, 以及同时进行的批次
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.1
+ * @since 2019/3/30 18:00
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = PictureCompressorTest.ShadowBrokenBitmapFactory.class)
+public class PictureCompressorTest {
+
+    private static final String BROKEN_SUFFIX = ".broken.jpg";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void parallelismNeverExceedsWorkerLimit() {
+        long maxMemory = 512L * 1024 * 1024;
+        assertEquals(3, PictureCompressor.calculateParallelism(9, 1080, maxMemory, 3));
+        assertEquals(1, PictureCompressor.calculateParallelism(9, 1080, maxMemory, 1));
+        assertEquals(2, PictureCompressor.calculateParallelism(2, 1080, maxMemory, 3));
+        // 内存不足以同时解码时至少保留一个 worker
+        assertEquals(1, PictureCompressor.calculateParallelism(9, 8000, 64L * 1024 * 1024, 3));
+    }
+
+    @Test
+    public void undecodablePictureIsReportedAsFailed() throws Exception {
+        List<String> originPaths = Arrays.asList(
+                createPicture("first.jpg"),
+                createPicture("second" + BROKEN_SUFFIX),
+                createPicture("third.jpg")
+        );
+        RecordingCallback callback = new RecordingCallback();
+        PictureCompressor.compressBatch(originPaths, mFolder.newFolder("dest").getAbsolutePath(),
+                80, 0, 1080, new CancelToken(), callback);
+        awaitExecutorsIdle();
+        ShadowLooper.idleMainLooper();
+
+        assertNotNull(callback.destPaths);
+        assertEquals(Arrays.asList(1), callback.failedIndexes);
+        assertNull(callback.destPaths.get(1));
+        assertEquals(2, callback.completedPaths.size());
+        for (String destPath : callback.completedPaths.values()) {
+            assertTrue("Reported a file that was never written: " + destPath, new File(destPath).isFile());
+        }
+    }
+
+    @Test
+    public void concurrentBatchesWriteDistinctFiles() throws Exception {
+        List<String> originPaths = Arrays.asList(createPicture("first.jpg"), createPicture("second.jpg"));
+        String destDirectory = mFolder.newFolder("dest").getAbsolutePath();
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+        // 两个批次通常在同一毫秒开始, 输出到同一个目录
+        PictureCompressor.compressBatch(originPaths, destDirectory, 80, 0, 1080, new CancelToken(), first);
+        PictureCompressor.compressBatch(originPaths, destDirectory, 80, 0, 1080, new CancelToken(), second);
+        awaitExecutorsIdle();
+        ShadowLooper.idleMainLooper();
+
+        HashSet<String> destPaths = new HashSet<>();
+        destPaths.addAll(first.completedPaths.values());
+        destPaths.addAll(second.completedPaths.values());
+        assertEquals(4, destPaths.size());
+        for (String destPath : destPaths) {
+            assertTrue(new File(destPath).isFile());
+        }
+        // 所有批次的 worker 共用批量线程池, 不占用共享线程池
+        ThreadPoolExecutor batchExecutor = (ThreadPoolExecutor) PickerExecutors.getBatchExecutor();
+        assertTrue(batchExecutor.getLargestPoolSize() <= PickerExecutors.getBatchPoolSize());
+        assertTrue(PickerExecutors.getBatchPoolSize() < PickerExecutors.getWorkPoolSize());
+    }
+
+    private String createPicture(String name) throws IOException {
+        File file = new File(mFolder.getRoot(), name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[1024]);
+        } finally {
+            out.close();
+        }
+        ShadowBitmapFactory.provideWidthAndHeightHints(file.getAbsolutePath(), 4000, 3000);
+        return file.getAbsolutePath();
+    }
+
+    private static void awaitExecutorsIdle() throws InterruptedException {
+        awaitIdle((ThreadPoolExecutor) PickerExecutors.getBatchExecutor());
+        awaitIdle((ThreadPoolExecutor) PickerExecutors.getWorkExecutor());
+    }
+
+    private static void awaitIdle(ThreadPoolExecutor executor) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (executor.getCompletedTaskCount() < executor.getTaskCount()) {
+            assertTrue("Compression did not finish in time.", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 文件名以 {@link #BROKEN_SUFFIX} 结尾的图片无法解码像素
+     */
+    @Implements(BitmapFactory.class)
+    public static class ShadowBrokenBitmapFactory extends ShadowBitmapFactory {
+
+        @Implementation
+        public static Bitmap decodeFile(String pathName, BitmapFactory.Options options) {
+            if (pathName.endsWith(BROKEN_SUFFIX) && (options == null || !options.inJustDecodeBounds)) {
+                return null;
+            }
+            return ShadowBitmapFactory.decodeFile(pathName, options);
+        }
+    }
+
+    private static class RecordingCallback implements BatchCompressCallback {
+
+        final HashMap<Integer, String> completedPaths = new HashMap<>();
+        final List<Integer> failedIndexes = new ArrayList<>();
+        List<String> destPaths;
+
+        @Override
+        public void onItemCompressComplete(int index, String originPath, String destPath) {
+            completedPaths.put(index, destPath);
+        }
+
+        @Override
+        public void onItemCompressFailed(int index, String originPath, Exception e) {
+            failedIndexes.add(index);
+        }
+
+        @Override
+        public void onBatchCompressComplete(List<String> destPaths) {
+            this.destPaths = destPaths;
+        }
+
+        @Override
+        public void onBatchCompressCanceled() {
+        }
+    }
+
+}
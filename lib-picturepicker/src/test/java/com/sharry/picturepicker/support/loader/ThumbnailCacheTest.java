@@ -0,0 +1,141 @@
+package com.sharry.picturepicker.support.loader;
+
+import android.graphics.Bitmap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowBitmapFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 缩略图缓存依次命中内存, 磁盘与原图
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.1
+ * @since 2019/3/30 17:50
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ThumbnailCacheTest {
+
+    private static final int MAX_MEMORY_BYTES = 8 * 1024 * 1024;
+    private static final long MAX_DISK_BYTES = 8 * 1024 * 1024;
+    private static final int TARGET_SIZE = 100;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mDiskCacheDir;
+    private String mPicturePath;
+
+    @Before
+    public void setUp() throws IOException {
+        mDiskCacheDir = mFolder.newFolder("thumbnails");
+        mPicturePath = createPicture("picture.jpg", 400, 300);
+    }
+
+    @Test
+    public void missDecodesSourceAndWritesDisk() {
+        ThumbnailCache cache = newCache();
+        Bitmap bitmap = cache.acquire(mPicturePath, TARGET_SIZE, TARGET_SIZE);
+
+        assertNotNull(bitmap);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getDiskHitCount());
+        assertEquals(0, cache.getMemoryHitCount());
+        // 需要降采样的原图会保存一份缩略图
+        assertEquals(1, countDiskFiles());
+        assertTrue(cache.isInMemory(mPicturePath, TARGET_SIZE, TARGET_SIZE));
+    }
+
+    @Test
+    public void memoryHitReturnsCachedBitmap() {
+        ThumbnailCache cache = newCache();
+        Bitmap first = cache.acquire(mPicturePath, TARGET_SIZE, TARGET_SIZE);
+        cache.release(first);
+
+        Bitmap second = cache.acquireFromMemory(mPicturePath, TARGET_SIZE, TARGET_SIZE);
+        assertSame(first, second);
+        assertEquals(1, cache.getMemoryHitCount());
+        assertEquals(1, cache.getMissCount());
+        // 缓存的 key 包含目标尺寸
+        assertNull(cache.acquireFromMemory(mPicturePath, TARGET_SIZE - 2, TARGET_SIZE - 2));
+        assertFalse(cache.isInMemory(mPicturePath, TARGET_SIZE - 2, TARGET_SIZE - 2));
+    }
+
+    @Test
+    public void memoryMissAfterSourceIsModified() {
+        ThumbnailCache cache = newCache();
+        Bitmap stale = cache.acquire(mPicturePath, TARGET_SIZE, TARGET_SIZE);
+        cache.release(stale);
+
+        // 进程内覆盖写入原图, 如裁剪或压缩到同一个路径
+        File source = new File(mPicturePath);
+        assertTrue(source.setLastModified(source.lastModified() - 60 * 1000));
+        assertFalse(cache.isInMemory(mPicturePath, TARGET_SIZE, TARGET_SIZE));
+        assertNull(cache.acquireFromMemory(mPicturePath, TARGET_SIZE, TARGET_SIZE));
+
+        Bitmap fresh = cache.acquire(mPicturePath, TARGET_SIZE, TARGET_SIZE);
+        assertNotNull(fresh);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getMemoryHitCount());
+    }
+
+    @Test
+    public void diskHitAfterMemoryIsCleared() {
+        ThumbnailCache writer = newCache();
+        writer.release(writer.acquire(mPicturePath, TARGET_SIZE, TARGET_SIZE));
+
+        // 新的缓存实例的内存为空, 只能从磁盘中读取
+        ThumbnailCache reader = newCache();
+        Bitmap bitmap = reader.acquire(mPicturePath, TARGET_SIZE, TARGET_SIZE);
+        assertNotNull(bitmap);
+        assertEquals(1, reader.getDiskHitCount());
+        assertEquals(0, reader.getMissCount());
+        assertEquals(0, reader.getMemoryHitCount());
+    }
+
+    @Test
+    public void memoryBytesFollowAllocationByteCount() {
+        ThumbnailCache cache = newCache();
+        Bitmap bitmap = cache.acquire(mPicturePath, TARGET_SIZE, TARGET_SIZE);
+
+        assertNotNull(bitmap);
+        assertEquals(ThumbnailCache.getAllocationByteCount(bitmap), cache.getMemoryBytes());
+    }
+
+    private ThumbnailCache newCache() {
+        return new ThumbnailCache(mDiskCacheDir, MAX_MEMORY_BYTES, MAX_DISK_BYTES, new BitmapPool(0));
+    }
+
+    private String createPicture(String name, int width, int height) throws IOException {
+        File file = new File(mFolder.getRoot(), name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[1024]);
+        } finally {
+            out.close();
+        }
+        ShadowBitmapFactory.provideWidthAndHeightHints(file.getAbsolutePath(), width, height);
+        return file.getAbsolutePath();
+    }
+
+    private int countDiskFiles() {
+        String[] names = mDiskCacheDir.list();
+        return names == null ? 0 : names.length;
+    }
+
+}
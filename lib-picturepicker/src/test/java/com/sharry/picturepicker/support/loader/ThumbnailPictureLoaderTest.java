@@ -0,0 +1,81 @@
+package com.sharry.picturepicker.support.loader;
+
+import android.content.Context;
+
+import com.sharry.picturepicker.support.executor.PickerExecutors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowBitmapFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 预加载的缩略图在绑定时命中内存缓存
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 17:55
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ThumbnailPictureLoaderTest {
+
+    private static final int TARGET_SIZE = 98;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private Context mContext;
+    private String mPicturePath;
+
+    @Before
+    public void setUp() throws IOException {
+        mContext = RuntimeEnvironment.application;
+        File file = new File(mFolder.getRoot(), "picture.jpg");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[1024]);
+        } finally {
+            out.close();
+        }
+        ShadowBitmapFactory.provideWidthAndHeightHints(file.getAbsolutePath(), 400, 300);
+        mPicturePath = file.getAbsolutePath();
+    }
+
+    @Test
+    public void preloadFillsMemoryCacheAtRequestedSize() throws Exception {
+        ThumbnailPictureLoader loader = new ThumbnailPictureLoader(8 * 1024 * 1024, 0);
+        ThumbnailCache cache = loader.getThumbnailCache(mContext);
+        loader.preload(mContext, mPicturePath, TARGET_SIZE, TARGET_SIZE);
+        awaitWorkExecutorIdle();
+
+        assertTrue(cache.isInMemory(mPicturePath, TARGET_SIZE, TARGET_SIZE));
+        assertFalse(cache.isInMemory(mPicturePath, TARGET_SIZE + 2, TARGET_SIZE + 2));
+        assertNotNull(cache.acquireFromMemory(mPicturePath, TARGET_SIZE, TARGET_SIZE));
+        assertEquals(1, cache.getMemoryHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    private static void awaitWorkExecutorIdle() throws InterruptedException {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) PickerExecutors.getWorkExecutor();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (executor.getCompletedTaskCount() < executor.getTaskCount()) {
+            assertTrue("Preload did not finish in time.", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+}
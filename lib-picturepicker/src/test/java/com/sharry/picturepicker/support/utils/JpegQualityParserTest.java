@@ -0,0 +1,87 @@
+package com.sharry.picturepicker.support.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 从 JPEG 文件头估算压缩质量
+ * <p>
+ * 测试图片由 libjpeg 的标准量化表按照已知的质量编码, 位于 src/test/resources/jpeg 中.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 18:20
+ */
+public class JpegQualityParserTest {
+
+    private static final int[] FIXTURE_QUALITIES = {10, 30, 50, 75, 90, 100};
+
+    @Test
+    public void estimatesEncodedQuality() throws Exception {
+        for (int quality : FIXTURE_QUALITIES) {
+            assertEquals("quality_" + quality + ".jpg", quality,
+                    JpegQualityParser.estimateQuality(fixturePath("quality_" + quality + ".jpg")));
+        }
+    }
+
+    @Test
+    public void unknownForNonJpeg() throws Exception {
+        assertEquals(JpegQualityParser.UNKNOWN_QUALITY,
+                JpegQualityParser.estimateQuality(fixturePath("not_jpeg.png")));
+    }
+
+    @Test
+    public void unknownForHeaderTruncatedBeforeQuantizationTable() throws Exception {
+        byte[] jpeg = readFixture("quality_75.jpg");
+        int dqtOffset = indexOfMarker(jpeg, 0xDB);
+        byte[] truncated = Arrays.copyOf(jpeg, dqtOffset + 10);
+        assertEquals(JpegQualityParser.UNKNOWN_QUALITY,
+                JpegQualityParser.estimateQuality(new ByteArrayInputStream(truncated)));
+    }
+
+    @Test
+    public void unknownWhenScanStartsWithoutQuantizationTable() throws Exception {
+        // SOI 之后直接是 SOS
+        byte[] jpeg = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xDA, 0x00, 0x02};
+        assertEquals(JpegQualityParser.UNKNOWN_QUALITY,
+                JpegQualityParser.estimateQuality(new ByteArrayInputStream(jpeg)));
+    }
+
+    static String fixturePath(String name) throws URISyntaxException {
+        return new File(JpegQualityParserTest.class.getResource("/jpeg/" + name).toURI()).getAbsolutePath();
+    }
+
+    private static byte[] readFixture(String name) throws IOException, URISyntaxException {
+        File file = new File(fixturePath(name));
+        byte[] bytes = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += in.read(bytes, offset, bytes.length - offset);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    private static int indexOfMarker(byte[] jpeg, int marker) {
+        for (int i = 0; i < jpeg.length - 1; i++) {
+            if ((jpeg[i] & 0xFF) == 0xFF && (jpeg[i + 1] & 0xFF) == marker) {
+                return i;
+            }
+        }
+        throw new AssertionError("Marker not found: " + Integer.toHexString(marker));
+    }
+
+}
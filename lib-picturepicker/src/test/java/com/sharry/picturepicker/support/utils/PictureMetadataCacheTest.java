@@ -0,0 +1,75 @@
+package com.sharry.picturepicker.support.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 保留的图片信息只在文件未被修改时使用
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2019/3/30 17:40
+ */
+public class PictureMetadataCacheTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void returnsRetainedMetadataForUnchangedFile() throws IOException {
+        File file = createFile("unchanged.jpg", 1024);
+        PictureMetadataCache.getDefault().retain(file.getAbsolutePath(),
+                PictureMetadataCache.Metadata.create(4000, 3000, 90, 1024));
+
+        PictureMetadataCache.Metadata metadata = PictureMetadataCache.getDefault().get(file.getAbsolutePath());
+        assertNotNull(metadata);
+        assertEquals(4000, metadata.width);
+        assertEquals(3000, metadata.height);
+        assertEquals(90, metadata.orientation);
+    }
+
+    @Test
+    public void ignoresMetadataOfModifiedFile() throws IOException {
+        File file = createFile("modified.jpg", 1024);
+        PictureMetadataCache.getDefault().retain(file.getAbsolutePath(),
+                PictureMetadataCache.Metadata.create(4000, 3000, 90, 1024));
+        // 文件被重新写入
+        createFile("modified.jpg", 2048);
+
+        assertNull(PictureMetadataCache.getDefault().get(file.getAbsolutePath()));
+    }
+
+    @Test
+    public void ignoresUnknownPaths() {
+        assertNull(PictureMetadataCache.getDefault().get(new File(mFolder.getRoot(), "unknown.jpg").getAbsolutePath()));
+        assertNull(PictureMetadataCache.getDefault().get(null));
+    }
+
+    @Test
+    public void rejectsIncompleteMetadata() {
+        assertNull(PictureMetadataCache.Metadata.create(0, 3000, 0, 1024));
+        assertNull(PictureMetadataCache.Metadata.create(4000, 0, 0, 1024));
+        assertNull(PictureMetadataCache.Metadata.create(4000, 3000, 0, 0));
+    }
+
+    private File createFile(String name, int length) throws IOException {
+        File file = new File(mFolder.getRoot(), name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[length]);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+}
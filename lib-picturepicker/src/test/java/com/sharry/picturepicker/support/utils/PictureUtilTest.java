@@ -0,0 +1,305 @@
+package com.sharry.picturepicker.support.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+
+import com.sharry.picturepicker.support.executor.CancelToken;
+import com.sharry.picturepicker.support.loader.BitmapPool;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowBitmap;
+import org.robolectric.shadows.ShadowBitmapFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 压缩过程中 Bitmap 与编码缓冲区内存的峰值, 失败时目标文件的清理, 以及直接复制原图的判定
+ * <p>
+ * 压缩过程中最多同时存在两个 Bitmap: 采样与缩放, 或缩放与旋转, 因此最大的两次分配之和即为峰值的上限.
+ *
+ * @author Sharry <a href="SharryChooCHN@Gmail.com">Contact me.</a>
+ * @version 1.2
+ * @since 2019/3/30 18:10
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {PictureUtilTest.ShadowRecordingBitmap.class, PictureUtilTest.ShadowRecordingBitmapFactory.class,
+        PictureUtilTest.ShadowReadOnlyExifInterface.class})
+public class PictureUtilTest {
+
+    private static final int SRC_WIDTH = 4000;
+    private static final int SRC_HEIGHT = 3000;
+    private static final int MAX_DIMENSION = 1080;
+    /**
+     * src/test/resources/jpeg 中测试图片的边长
+     */
+    private static final int FIXTURE_SIZE = 32;
+
+    private static final List<Bitmap> sAllocations = new ArrayList<>();
+    private static Runnable sOnRotate;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private String mOriginPath;
+    private String mDestPath;
+
+    @Before
+    public void setUp() throws IOException {
+        sAllocations.clear();
+        sOnRotate = null;
+        BitmapPool.getDefault().clear();
+        mOriginPath = createPicture("origin.jpg");
+        mDestPath = new File(mFolder.getRoot(), "dest.jpg").getAbsolutePath();
+    }
+
+    @Test
+    public void peakBitmapBytesStayWithinBudget() throws IOException {
+        long[] budgets = {64L * 1024 * 1024, 8L * 1024 * 1024, 4L * 1024 * 1024, 1024 * 1024};
+        for (long budget : budgets) {
+            sAllocations.clear();
+            BitmapPool.getDefault().clear();
+            PictureUtil.doCompress(mOriginPath, mDestPath, 80, 0, MAX_DIMENSION, budget,
+                    SRC_WIDTH, SRC_HEIGHT, 0, null);
+            assertTrue(new File(mDestPath).isFile());
+            assertTrue("Budget " + budget + ", peak " + peakBytes(), peakBytes() <= budget);
+        }
+    }
+
+    @Test
+    public void encodeBuffersCountAgainstBudget() throws IOException {
+        long budget = 8L * 1024 * 1024;
+        long maxFileSize = 2L * 1024 * 1024 + 2 * 1024;
+        PictureUtil.doCompress(mOriginPath, mDestPath, 80, maxFileSize, MAX_DIMENSION, budget,
+                SRC_WIDTH, SRC_HEIGHT, 0, null);
+        assertTrue(new File(mDestPath).isFile());
+        // 两块编码的缓冲区, 每块的容量为去掉 EXIF 预留后的文件大小
+        long bufferBytes = 2 * (maxFileSize - 2 * 1024);
+        assertTrue("Peak " + peakBytes() + " with buffers " + bufferBytes, peakBytes() + bufferBytes <= budget);
+    }
+
+    @Test
+    public void fileSizeMissFailsWithoutDestFile() {
+        try {
+            // 描述文本远大于 10 个字节, 缩小尺寸后依旧超出
+            PictureUtil.doCompress(mOriginPath, mDestPath, 80, 10, MAX_DIMENSION, 64L * 1024 * 1024,
+                    SRC_WIDTH, SRC_HEIGHT, 0, null);
+            fail("Compression should fail.");
+        } catch (IOException e) {
+            // expected.
+        }
+        assertFalse(new File(mDestPath).exists());
+    }
+
+    @Test
+    public void opaquePictureDecodesAsRgb565() throws IOException {
+        PictureUtil.doCompress(mOriginPath, mDestPath, 80, 0, MAX_DIMENSION, 64L * 1024 * 1024,
+                SRC_WIDTH, SRC_HEIGHT, 0, null);
+        assertFalse(sAllocations.isEmpty());
+        // 采样解码的 Bitmap 每个像素 2 个字节
+        assertEquals(Bitmap.Config.RGB_565, sAllocations.get(0).getConfig());
+    }
+
+    @Test
+    public void cancelDuringPixelRotationLeavesNoDestFile() throws IOException {
+        final CancelToken token = new CancelToken();
+        // 无法写入 EXIF 时会旋转像素后再次压缩, 限制文件大小时第二次压缩会检查取消
+        sOnRotate = new Runnable() {
+            @Override
+            public void run() {
+                token.cancel();
+            }
+        };
+        try {
+            PictureUtil.doCompress(mOriginPath, mDestPath, 80, 8 * 1024 * 1024, MAX_DIMENSION,
+                    64L * 1024 * 1024, SRC_WIDTH, SRC_HEIGHT, 90, token);
+            fail("Compression should be canceled.");
+        } catch (CancellationException e) {
+            // expected.
+        }
+        assertFalse(new File(mDestPath).exists());
+    }
+
+    @Test
+    public void failureDuringPixelRotationLeavesNoDestFile() throws IOException {
+        sOnRotate = new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("Rotate failed.");
+            }
+        };
+        try {
+            PictureUtil.doCompress(mOriginPath, mDestPath, 80, 0, MAX_DIMENSION,
+                    64L * 1024 * 1024, SRC_WIDTH, SRC_HEIGHT, 90, null);
+            fail("Compression should fail.");
+        } catch (IllegalStateException e) {
+            // expected.
+        }
+        assertFalse(new File(mDestPath).exists());
+    }
+
+    @Test
+    public void qualityWithinTargetOnlyForJpegNotAboveIt() throws Exception {
+        String jpeg = JpegQualityParserTest.fixturePath("quality_50.jpg");
+        assertTrue(PictureUtil.isQualityWithin(jpeg, 50));
+        assertTrue(PictureUtil.isQualityWithin(jpeg, 80));
+        assertFalse(PictureUtil.isQualityWithin(jpeg, 30));
+        // 无法得知质量的文件总是重新编码
+        assertFalse(PictureUtil.isQualityWithin(JpegQualityParserTest.fixturePath("not_jpeg.png"), 100));
+        assertFalse(PictureUtil.isQualityWithin(mOriginPath, 100));
+        assertFalse(PictureUtil.isQualityWithin(new File(mFolder.getRoot(), "missing.jpg").getAbsolutePath(), 100));
+    }
+
+    @Test
+    public void jpegNotAboveTargetQualityIsCopied() throws Exception {
+        String jpeg = JpegQualityParserTest.fixturePath("quality_50.jpg");
+        PictureUtil.doCompress(jpeg, mDestPath, 80, 0, MAX_DIMENSION, 64L * 1024 * 1024,
+                FIXTURE_SIZE, FIXTURE_SIZE, 0, null);
+        assertArrayEquals(readBytes(jpeg), readBytes(mDestPath));
+        // 复制时不会解码像素
+        assertTrue(sAllocations.isEmpty());
+    }
+
+    @Test
+    public void jpegAboveTargetQualityIsReencoded() throws Exception {
+        String jpeg = JpegQualityParserTest.fixturePath("quality_50.jpg");
+        PictureUtil.doCompress(jpeg, mDestPath, 30, 0, MAX_DIMENSION, 64L * 1024 * 1024,
+                FIXTURE_SIZE, FIXTURE_SIZE, 0, null);
+        assertTrue(new File(mDestPath).isFile());
+        assertFalse(Arrays.equals(readBytes(jpeg), readBytes(mDestPath)));
+        assertFalse(sAllocations.isEmpty());
+    }
+
+    private static byte[] readBytes(String path) throws IOException {
+        File file = new File(path);
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += in.read(bytes, offset, bytes.length - offset);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    private String createPicture(String name) throws IOException {
+        File file = new File(mFolder.getRoot(), name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[1024]);
+        } finally {
+            out.close();
+        }
+        ShadowBitmapFactory.provideWidthAndHeightHints(file.getAbsolutePath(), SRC_WIDTH, SRC_HEIGHT);
+        return file.getAbsolutePath();
+    }
+
+    /**
+     * 最大的两次分配的字节数之和
+     */
+    private static long peakBytes() {
+        List<Long> sizes = new ArrayList<>();
+        for (Bitmap bitmap : sAllocations) {
+            sizes.add((long) bitmap.getByteCount());
+        }
+        Collections.sort(sizes, Collections.<Long>reverseOrder());
+        long peak = 0;
+        for (int i = 0; i < Math.min(2, sizes.size()); i++) {
+            peak += sizes.get(i);
+        }
+        return peak;
+    }
+
+    /**
+     * 记录压缩过程中新建的 Bitmap
+     */
+    @Implements(Bitmap.class)
+    public static class ShadowRecordingBitmap extends ShadowBitmap {
+
+        @Implementation
+        public static Bitmap createBitmap(int width, int height, Bitmap.Config config) {
+            Bitmap bitmap = ShadowBitmap.createBitmap(width, height, config);
+            sAllocations.add(bitmap);
+            return bitmap;
+        }
+
+        @Implementation
+        public static Bitmap createBitmap(Bitmap src, int x, int y, int width, int height,
+                                          Matrix matrix, boolean filter) {
+            if (sOnRotate != null) {
+                sOnRotate.run();
+            }
+            Bitmap bitmap = ShadowBitmap.createBitmap(src, x, y, width, height, matrix, filter);
+            sAllocations.add(bitmap);
+            return bitmap;
+        }
+    }
+
+    /**
+     * 无法写入 EXIF, 压缩时只能旋转像素
+     */
+    @Implements(ExifInterface.class)
+    public static class ShadowReadOnlyExifInterface {
+
+        @Implementation
+        public void __constructor__(String filename) {
+        }
+
+        @Implementation
+        public String getAttribute(String tag) {
+            return null;
+        }
+
+        @Implementation
+        public void setAttribute(String tag, String value) {
+        }
+
+        @Implementation
+        public void saveAttributes() throws IOException {
+            throw new IOException("EXIF is read-only.");
+        }
+    }
+
+    /**
+     * 记录解码出的 Bitmap
+     */
+    @Implements(BitmapFactory.class)
+    public static class ShadowRecordingBitmapFactory extends ShadowBitmapFactory {
+
+        @Implementation
+        public static Bitmap decodeFile(String pathName, BitmapFactory.Options options) {
+            Bitmap bitmap = ShadowBitmapFactory.decodeFile(pathName, options);
+            if (bitmap != null && (options == null || !options.inJustDecodeBounds)) {
+                sAllocations.add(bitmap);
+            }
+            return bitmap;
+        }
+    }
+
+}